@@ -1,8 +1,12 @@
 package ws.nmathe.saber;
 
+import ws.nmathe.saber.core.Broadcaster;
+import ws.nmathe.saber.core.OutboundScheduler;
 import ws.nmathe.saber.core.ShardManager;
+import ws.nmathe.saber.core.StatsReporter;
 import ws.nmathe.saber.core.command.CommandHandler;
 import ws.nmathe.saber.core.database.Driver;
+import ws.nmathe.saber.core.metrics.MetricsServer;
 import ws.nmathe.saber.core.google.CalendarConverter;
 import ws.nmathe.saber.core.schedule.EntryManager;
 import ws.nmathe.saber.core.settings.BotSettingsManager;
@@ -25,6 +29,10 @@ public class Main
     private static CalendarConverter calendarConverter       = new CalendarConverter();
     private static GuildSettingsManager guildSettingsManager = new GuildSettingsManager();
     private static Driver mongoDriver                        = new Driver();
+    private static MetricsServer metricsServer               = new MetricsServer();
+    private static Broadcaster broadcaster                   = new Broadcaster();
+    private static StatsReporter statsReporter               = new StatsReporter();
+    private static OutboundScheduler outboundScheduler       = new OutboundScheduler();
 
     /**
      * initialize the bot
@@ -37,9 +45,12 @@ public class Main
                     "bot token to the file and restart the bot.\n");
             System.exit(0);
         }
+        Logging.configure(botSettingsManager.getLogSinks());
 
         mongoDriver.init();         // ready database
+        metricsServer.start(botSettingsManager.getMetricsPort()); // expose metrics
         calendarConverter.init();   // connect to calendar service
+        statsReporter.init();       // start reporting to bot listing sites
 
         // create the shard manager
         shardManager = new ShardManager(botSettingsManager.getShards(), botSettingsManager.getShardTotal());
@@ -88,4 +99,19 @@ public class Main
     {
         return mongoDriver;
     }
+
+    public static Broadcaster getBroadcaster()
+    {
+        return broadcaster;
+    }
+
+    public static StatsReporter getStatsReporter()
+    {
+        return statsReporter;
+    }
+
+    public static OutboundScheduler getOutboundScheduler()
+    {
+        return outboundScheduler;
+    }
 }
@@ -0,0 +1,190 @@
+package ws.nmathe.saber.commands;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The keyword options a command accepts, declared once and kept by the command.
+ * Each option names it's keywords and the number of arguments which follow them, and a rule which
+ * checks those arguments and stores their parsed values in a typed target object.
+ * Parsing walks the arguments a single time, so a command's verify() can produce the values it's action() uses.
+ * @param <T> the type holding the parsed values
+ */
+public class ArgumentGrammar<T>
+{
+    /**
+     * checks and applies the argument(s) of an option
+     */
+    @FunctionalInterface
+    public interface Rule<T>
+    {
+        /**
+         * @param target the object to store the parsed values in
+         * @param args all of the command's arguments
+         * @param index index of the option's first argument (one past it's keyword)
+         * @param head the command's prefix and name, for usage messages
+         * @return an error message for the user, or an empty string if the argument(s) were valid
+         */
+        String apply(T target, String[] args, int index, String head);
+    }
+
+    private final Map<String, Option<T>> options;
+    private final Rule<T> otherwise;
+
+    private ArgumentGrammar(Map<String, Option<T>> options, Rule<T> otherwise)
+    {
+        this.options = Collections.unmodifiableMap(options);
+        this.otherwise = otherwise;
+    }
+
+    public static <T> Builder<T> builder()
+    {
+        return new Builder<>();
+    }
+
+    /**
+     * parses the options found in a command's arguments
+     * @param target the object to store the parsed values in
+     * @param args the command's arguments
+     * @param from index of the first option
+     * @param head the command's prefix and name, for usage messages
+     * @return an error message for the user, or an empty string if all options were valid
+     */
+    public String parse(T target, String[] args, int from, String head)
+    {
+        int[] index = {from};
+        while (index[0] < args.length)
+        {
+            String err = this.parseOption(target, args, index, head);
+            if (!err.isEmpty()) return err;
+        }
+        return "";
+    }
+
+    /**
+     * parses a single option, for commands which take one option per invocation
+     * @param target the object to store the parsed values in
+     * @param args the command's arguments
+     * @param from index of the option's keyword
+     * @param head the command's prefix and name, for usage messages
+     * @return an error message for the user, or an empty string if the option was valid
+     */
+    public String parseOne(T target, String[] args, int from, String head)
+    {
+        return this.parseOption(target, args, new int[]{from}, head);
+    }
+
+    /**
+     * parses the option at index[0], advancing index[0] past the option and it's arguments
+     */
+    private String parseOption(T target, String[] args, int[] index, String head)
+    {
+        Option<T> option = options.get(args[index[0]].toLowerCase());
+        if (option == null)
+        {
+            if (otherwise == null)
+            {
+                return "**" + args[index[0]] + "** is not an option I know of!\n" +
+                        "Please use the ``help`` command to see available options!";
+            }
+            return otherwise.apply(target, args, index[0]++, head);
+        }
+
+        index[0]++;
+        if (option.verbs != null)
+        {
+            // the option is followed by a verb, which is itself parsed as an option
+            if (index[0] >= args.length) return option.rule.apply(target, args, index[0], head);
+            return option.verbs.parseOption(target, args, index, head);
+        }
+        String err = option.rule.apply(target, args, index[0], head);
+        index[0] += option.arity;
+        return err;
+    }
+
+    private static class Option<T>
+    {
+        final int arity;
+        final Rule<T> rule;
+        final ArgumentGrammar<T> verbs;
+
+        Option(int arity, Rule<T> rule, ArgumentGrammar<T> verbs)
+        {
+            this.arity = arity;
+            this.rule = rule;
+            this.verbs = verbs;
+        }
+    }
+
+    public static class Builder<T>
+    {
+        private final Map<String, Option<T>> options = new HashMap<>();
+        private Rule<T> otherwise;
+
+        /**
+         * declares an option
+         * @param arity number of arguments following the keyword
+         * @param rule checks and applies the arguments, which are not guaranteed to be present
+         * @param keywords the option's keyword and aliases
+         */
+        public Builder<T> option(int arity, Rule<T> rule, String... keywords)
+        {
+            return this.add(new Option<>(arity, rule, null), keywords);
+        }
+
+        /**
+         * declares an option which is followed by a verb, such as ``comment add <comment>``
+         * @param verbs the verbs which may follow the keyword, with their own arguments and rules
+         * @param missing rule giving the error when no verb follows the keyword
+         * @param keywords the option's keyword and aliases
+         */
+        public Builder<T> branch(ArgumentGrammar<T> verbs, Rule<T> missing, String... keywords)
+        {
+            return this.add(new Option<>(0, missing, verbs), keywords);
+        }
+
+        private Builder<T> add(Option<T> option, String... keywords)
+        {
+            for (String keyword : keywords)
+            {
+                if (options.put(keyword.toLowerCase(), option) != null)
+                {
+                    throw new IllegalArgumentException("Keyword " + keyword + " is declared twice");
+                }
+            }
+            return this;
+        }
+
+        /**
+         * declares an option taking one argument
+         */
+        public Builder<T> value(Rule<T> rule, String... keywords)
+        {
+            return this.option(1, rule, keywords);
+        }
+
+        /**
+         * declares an option taking no arguments
+         */
+        public Builder<T> flag(Rule<T> rule, String... keywords)
+        {
+            return this.option(0, rule, keywords);
+        }
+
+        /**
+         * sets the rule applied to a word which is not a keyword,
+         * without one such words are rejected
+         */
+        public Builder<T> otherwise(Rule<T> rule)
+        {
+            this.otherwise = rule;
+            return this;
+        }
+
+        public ArgumentGrammar<T> build()
+        {
+            return new ArgumentGrammar<>(new HashMap<>(options), otherwise);
+        }
+    }
+}
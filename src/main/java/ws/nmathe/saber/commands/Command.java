@@ -1,7 +1,5 @@
 package ws.nmathe.saber.commands;
 
-import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
-
 /**
  * file: Command.java
  *
@@ -25,18 +23,25 @@ public interface Command
     /**
      * used to verify that the argument string for the invoking argument
      * is properly formed
-     * @param prefix the initial substring of characters denoting the string is a command
-     * @param args array of argument strings
-     * @param event the originating event
-     * @return true if arguments are properly formed, false otherwise
+     * @param ctx the invocation's context (prefix, arguments, originating event, and memoized lookups)
+     * @return empty string if arguments are properly formed, otherwise an error message
      */
-    String verify(String prefix, String[] args, MessageReceivedEvent event);
+    String verify(CommandContext ctx);
 
     /**
-     * what the bot does when the command is called by the user
-     * @param prefix the initial substring of characters denoting the string is a command
-     * @param args an array of arguments provided with the commands (excludes the invoking argument)
-     * @param event the originating event object
+     * what the bot does when the command is called by the user,
+     * receives the same context as was passed to verify
+     * @param ctx the invocation's context (prefix, arguments, originating event, and memoized lookups)
+     */
+    void action(CommandContext ctx);
+
+    /**
+     * long running commands are run on their own pool of workers and given a longer deadline,
+     * their actions should check ctx.isCancelled() as they work
+     * @return true if the command's action may take more than a few seconds
      */
-    void action(String prefix, String[] args, MessageReceivedEvent event);
+    default boolean isLongRunning()
+    {
+        return false;
+    }
 }
@@ -0,0 +1,218 @@
+package ws.nmathe.saber.commands;
+
+import net.dv8tion.jda.core.MessageBuilder;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.schedule.ScheduleEntry;
+import ws.nmathe.saber.core.schedule.ScheduleManager;
+import ws.nmathe.saber.core.settings.GuildSettingsManager;
+import ws.nmathe.saber.utils.MessageUtilities;
+
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * The state of one command invocation, created by the CommandHandler and shared by the command's
+ * verify() and action(). Holds the parsed arguments along with the guild settings, schedule settings,
+ * and events looked up while handling the command, each read from the database at most once.
+ * Objects handed out are shared, so an entry loaded during verify() is the same object seen by action().
+ */
+public class CommandContext
+{
+    // milliseconds between reports of a long running command's progress
+    private static final long PROGRESS_INTERVAL = 5000;
+
+    private final String prefix;
+    private final String[] args;
+    private final MessageReceivedEvent event;
+
+    // memoized lookups
+    private GuildSettingsManager.GuildSettings guildSettings;
+    private final Map<String, Optional<Document>> schedules = new HashMap<>();
+    private final Map<Integer, Optional<ScheduleEntry>> entries = new HashMap<>();
+
+    // options parsed by verify() for action()
+    private Object options;
+
+    // set when the command runs past it's deadline
+    private volatile boolean cancelled = false;
+
+    // progress message of a long running command, a command which finishes quickly never sends one
+    private Message progress;
+    private long lastProgress = System.currentTimeMillis();
+
+    public CommandContext(String prefix, String[] args, MessageReceivedEvent event)
+    {
+        this.prefix = prefix;
+        this.args = args;
+        this.event = event;
+    }
+
+    /**
+     * @return the command prefix (for admin commands, the prefix and invoking name)
+     */
+    public String getPrefix()
+    {
+        return this.prefix;
+    }
+
+    /**
+     * @return the arguments which followed the invoking name
+     */
+    public String[] getArgs()
+    {
+        return this.args;
+    }
+
+    public MessageReceivedEvent getEvent()
+    {
+        return this.event;
+    }
+
+    public Guild getGuild()
+    {
+        return this.event.getGuild();
+    }
+
+    /**
+     * @return the settings of the guild the command was used in
+     */
+    public synchronized GuildSettingsManager.GuildSettings getGuildSettings()
+    {
+        if (guildSettings == null)
+        {
+            guildSettings = Main.getGuildSettingsManager().getGuildSettings(this.getGuild().getId());
+        }
+        return guildSettings;
+    }
+
+    /**
+     * finds an event belonging to the guild the command was used in
+     * @param entryId event ID
+     * @return the event, or null if it does not exist on the guild
+     */
+    public synchronized ScheduleEntry getEntry(Integer entryId)
+    {
+        return entries.computeIfAbsent(entryId, id ->
+                Optional.ofNullable(Main.getEntryManager().getEntryFromGuild(id, this.getGuild().getId())))
+                .orElse(null);
+    }
+
+    /**
+     * keeps the options parsed while verifying the command, so that the action need not parse them again
+     */
+    public synchronized void setOptions(Object options)
+    {
+        this.options = options;
+    }
+
+    /**
+     * @param type the type the command parsed it's options into
+     * @return the options parsed while verifying the command, or null if none of that type were kept
+     */
+    public synchronized <T> T getOptions(Class<T> type)
+    {
+        return type.isInstance(options) ? type.cast(options) : null;
+    }
+
+    /**
+     * marks the invocation as cancelled, the command's action should stop at it's next check
+     */
+    public void cancel()
+    {
+        this.cancelled = true;
+    }
+
+    /**
+     * @return true if the command has run past it's deadline and should stop
+     */
+    public boolean isCancelled()
+    {
+        return this.cancelled;
+    }
+
+    /**
+     * reports the progress of a long running command, the first report is sent to the channel the command
+     * was used in and later reports edit it, at most one report is made per PROGRESS_INTERVAL
+     */
+    public synchronized void progress(String content)
+    {
+        long now = System.currentTimeMillis();
+        if (now - lastProgress < PROGRESS_INTERVAL) return;
+        lastProgress = now;
+
+        Message message = new MessageBuilder().append(content).build();
+        if (progress == null)
+        {
+            progress = MessageUtilities.sendMsg(message, this.event.getChannel());
+        }
+        else
+        {
+            MessageUtilities.editMsg(message, progress, null);
+        }
+    }
+
+    /**
+     * reports the result of a command, replacing it's progress message if one was sent
+     */
+    public synchronized void finish(String content)
+    {
+        if (progress == null)
+        {
+            MessageUtilities.sendMsg(content, this.event.getChannel(), null);
+        }
+        else
+        {
+            MessageUtilities.editMsg(new MessageBuilder().append(content).build(), progress, null);
+        }
+    }
+
+    /**
+     * @param channelId channel ID
+     * @return true if the channel is a schedule
+     */
+    public boolean isSchedule(String channelId)
+    {
+        return this.getSchedule(channelId) != null;
+    }
+
+    /**
+     * @param channelId schedule ID
+     * @return the schedule's time zone, or the default zone if the channel is not a schedule
+     */
+    public ZoneId getTimeZone(String channelId)
+    {
+        return ScheduleManager.getTimeZone(this.getSchedule(channelId));
+    }
+
+    public boolean isRSVPEnabled(String channelId)
+    {
+        return ScheduleManager.isRSVPEnabled(this.getSchedule(channelId));
+    }
+
+    /**
+     * @return a copy of the schedule's rsvp options, mapping emoji to rsvp group
+     */
+    public Map<String, String> getRSVPOptions(String channelId)
+    {
+        return new LinkedHashMap<>(ScheduleManager.getRSVPOptions(this.getSchedule(channelId)));
+    }
+
+    /**
+     * @return the schedule's settings document, or null if the channel is not a schedule
+     */
+    private synchronized Document getSchedule(String channelId)
+    {
+        return schedules.computeIfAbsent(channelId, id ->
+                Optional.ofNullable(Main.getDBDriver().getScheduleCollection().find(eq("_id", id)).first()))
+                .orElse(null);
+    }
+}
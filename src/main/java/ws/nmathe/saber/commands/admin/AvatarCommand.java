@@ -6,6 +6,7 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.core.managers.AccountManagerUpdatable;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.utils.Logging;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -31,14 +32,16 @@ public class AvatarCommand implements Command
     }
 
     @Override
-    public String verify(String head, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
         return "";
     }
 
     @Override
-    public void action(String head, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        MessageReceivedEvent event = ctx.getEvent();
+
         AccountManagerUpdatable manager = Main.getShardManager().getJDA().getSelfUser().getManagerUpdatable();
         if(event.getMessage().getAttachments().isEmpty()) return;
 
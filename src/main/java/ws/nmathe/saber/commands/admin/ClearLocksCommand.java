@@ -3,6 +3,7 @@ package ws.nmathe.saber.commands.admin;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.utils.MessageUtilities;
 
@@ -24,14 +25,16 @@ public class ClearLocksCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
         return "";
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        MessageReceivedEvent event = ctx.getEvent();
+
         Main.getScheduleManager().clearLocks();
         MessageUtilities.sendPrivateMsg("Cleared locks!", event.getAuthor(), null);
     }
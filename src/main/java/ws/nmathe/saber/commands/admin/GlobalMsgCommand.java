@@ -1,16 +1,12 @@
 package ws.nmathe.saber.commands.admin;
 
-import net.dv8tion.jda.core.entities.MessageChannel;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.utils.MessageUtilities;
-import net.dv8tion.jda.core.entities.Guild;
-import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
-import java.util.Collection;
-
 /**
  * messages all connected guilds
  */
@@ -30,40 +26,31 @@ public class GlobalMsgCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        if(Main.getBroadcaster().isRunning())
+        {
+            return "An announcement is still being sent to guilds!";
+        }
         return "";
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String msg = "";
         for(String arg : args)
         {
             msg += arg + " ";
         }
 
-        for(Guild guild : Main.getShardManager().getGuilds())
+        // the broadcaster messages the author once every guild has been sent the announcement
+        if(!Main.getBroadcaster().start(msg, event.getAuthor().getId()))
         {
-            String channelId = Main.getGuildSettingsManager().getGuildSettings(guild.getId()).getCommandChannelId();
-            if(channelId == null) // look for default control channel name
-            {
-                Collection<TextChannel> chans = guild.getTextChannelsByName( Main.getBotSettingsManager().getControlChan(), true );
-                for( TextChannel chan : chans )
-                {
-                    MessageUtilities.sendMsg(msg, chan, null);
-                }
-            }
-            else // send to configured control channel
-            {
-                MessageChannel chan = guild.getTextChannelById(channelId);
-                if(chan != null)
-                {
-                    MessageUtilities.sendMsg(msg, chan, null);
-                }
-            }
+            MessageUtilities.sendPrivateMsg("An announcement is still being sent to guilds!", event.getAuthor(), null);
         }
-        MessageUtilities.sendPrivateMsg("Finished sending announcements to guilds!", event.getAuthor(), null);
     }
 }
@@ -3,6 +3,7 @@ package ws.nmathe.saber.commands.admin;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.utils.MessageUtilities;
 
@@ -24,15 +25,18 @@ public class ReloadSettingsCommand implements Command
     }
 
     @Override
-    public String verify(String head, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
         return "";
     }
 
     @Override
-    public void action(String head, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        MessageReceivedEvent event = ctx.getEvent();
+
         Main.getBotSettingsManager().reloadSettings();
+        Main.getDBDriver().getPruner().setThrottle(Main.getBotSettingsManager().getPrunerThrottle());
         Main.getShardManager().loadGamesList();
         MessageUtilities.sendPrivateMsg("Reloaded bot settings!", event.getAuthor(), null);
     }
@@ -5,6 +5,7 @@ import net.dv8tion.jda.core.entities.ChannelType;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.utils.MessageUtilities;
 
@@ -28,14 +29,17 @@ public class ShardsCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
         return "";
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         Consumer<String> sendMsg = (msg) ->
         {
             if(event.isFromType(ChannelType.PRIVATE))
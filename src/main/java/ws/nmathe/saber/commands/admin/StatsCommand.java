@@ -4,7 +4,9 @@ import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.entities.ChannelType;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.database.Driver;
 import ws.nmathe.saber.utils.MessageUtilities;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
@@ -29,28 +31,34 @@ public class StatsCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
         return "";
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        MessageReceivedEvent event = ctx.getEvent();
+
         JDA.ShardInfo info = event.getJDA().getShardInfo();
         Runtime rt = Runtime.getRuntime();
         RuntimeMXBean rb = ManagementFactory.getRuntimeMXBean();
 
+        // estimated from collection statistics rather than counted
+        Driver db = Main.getDBDriver();
         String msg = "```python\n" +
                 "\"Database\"\n" +
-                "      Entries: " + Main.getDBDriver().getEventCollection().count() + "\n" +
-                "    Schedules: " + Main.getDBDriver().getScheduleCollection().count() + "\n" +
-                "       Guilds: " + Main.getDBDriver().getGuildCollection().count() + "\n" +
+                "      Entries: ~" + db.getEstimatedCount(db.getEventCollection()) + "\n" +
+                "    Schedules: ~" + db.getEstimatedCount(db.getScheduleCollection()) + "\n" +
+                "       Guilds: ~" + db.getEstimatedCount(db.getGuildCollection()) + "\n" +
+                "       Pruner: " + Main.getDBDriver().getPruner().getProgress() + "\n" +
                 "\n\"Shard\"\n" +
                 "      ShardId: " + info.getShardId() + "/" + info.getShardTotal() + "\n" +
                 "       Guilds: " + event.getJDA().getGuilds().size() + "\n" +
                 "        Users: " + event.getJDA().getUsers().size() + "\n" +
                 "ResponseTotal: " + event.getJDA().getResponseTotal() + "\n" +
+                "     Lateness: " + Main.getEntryManager().getLatenessMonitor().getSummary(info == null ? 0 : info.getShardId()) + "\n" +
                 "\n\"Application\"\n" +
                 " Memory-total: " +rt.totalMemory()/1024/1024 + " MB\n" +
                 "       -free : " + rt.freeMemory()/1024/1024 + " MB\n" +
@@ -5,6 +5,7 @@ import net.dv8tion.jda.core.entities.Message;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -47,8 +48,12 @@ public class AnnouncementsCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String head = prefix + this.name();
         int index = 0;
 
@@ -67,7 +72,7 @@ public class AnnouncementsCommand implements Command
 
         // check to see if event with the provided ID exists for the guild
         Integer Id = ParsingUtilities.encodeIDToInt(args[index]);
-        ScheduleEntry entry = Main.getEntryManager().getEntryFromGuild( Id, event.getGuild().getId() );
+        ScheduleEntry entry = ctx.getEntry(Id);
         if(entry == null)
         {
             return "I could not find an entry with that ID!";
@@ -117,13 +122,16 @@ public class AnnouncementsCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         int index = 0;
 
         // get entry object
         Integer entryId = ParsingUtilities.encodeIDToInt(args[index]);
-        ScheduleEntry entry = Main.getEntryManager().getEntry( entryId );
+        ScheduleEntry entry = ctx.getEntry(entryId);
 
         // verify the entry's message exists
         Message msg = entry.getMessageObject();
@@ -8,12 +8,14 @@ import net.dv8tion.jda.core.entities.*;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.commands.ArgumentGrammar;
 import ws.nmathe.saber.commands.Command;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.core.google.GoogleAuth;
-import ws.nmathe.saber.core.schedule.EntryManager;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
+import ws.nmathe.saber.core.schedule.ScheduleRerenderer;
 import ws.nmathe.saber.utils.MessageUtilities;
 import ws.nmathe.saber.utils.ParsingUtilities;
 import ws.nmathe.saber.utils.VerifyUtilities;
@@ -32,6 +34,73 @@ import static com.mongodb.client.model.Updates.set;
  */
 public class ConfigCommand implements Command
 {
+    /**
+     * the config options which are parsed in verify and kept for the action, declared once for all invocations
+     */
+    private static final ArgumentGrammar<Options> GRAMMAR = ArgumentGrammar.<Options>builder()
+            .value((o, args, i, head) ->
+            {
+                if (i >= args.length)
+                {
+                    return "That's not enough arguments!\n" +
+                            "Use ``" + head + " time <new config>``, " +
+                            "where ``<new config>`` is the time of day to which the schedule should be automatically " +
+                            "resync to the linked google calendar address.";
+                }
+                if (!VerifyUtilities.verifyTime(args[i]))
+                {
+                    return "I cannot parse ``" + args[i] + "`` into a time!";
+                }
+                o.syncTime = ParsingUtilities.parseTime(args[i]);
+                return "";
+            }, "t", "time")
+            .branch(reminders(false), (o, args, i, head) -> missingReminder(head, "reminder [add|remove]"),
+                    "r", "remind", "reminder", "reminders")
+            .branch(reminders(true), (o, args, i, head) -> missingReminder(head, "end-reminder [add|remove]"),
+                    "er", "end-remind", "end-reminder", "end-reminders")
+            .build();
+
+    /**
+     * @param end whether the verbs change the schedule's end reminders rather than it's reminders
+     * @return the verbs which may follow a reminder option
+     */
+    private static ArgumentGrammar<Options> reminders(boolean end)
+    {
+        String keyword = end ? "end-reminder" : "reminder";
+        return ArgumentGrammar.<Options>builder()
+                .flag((o, args, i, head) -> o.setReminders(new LinkedHashSet<>()), "off")
+                .value((o, args, i, head) ->
+                {
+                    if (i >= args.length) return missingReminder(head, keyword + " add");
+                    Set<Integer> list = o.getReminders(end);
+                    list.addAll(ParsingUtilities.parseReminder(args[i]));
+                    if (list.isEmpty()) return "I could not parse out any times!";
+                    return o.setReminders(list);
+                }, "add")
+                .value((o, args, i, head) ->
+                {
+                    if (i >= args.length) return missingReminder(head, keyword + " remove");
+                    Set<Integer> list = o.getReminders(end);
+                    list.removeAll(ParsingUtilities.parseReminder(args[i]));
+                    return o.setReminders(list);
+                }, "remove")
+                .otherwise((o, args, i, head) ->
+                {
+                    Set<Integer> list = ParsingUtilities.parseReminder(args[i]);
+                    if (list.isEmpty()) return "I could not parse out any times!";
+                    return o.setReminders(list);
+                })
+                .build();
+    }
+
+    private static String missingReminder(String head, String usage)
+    {
+        return "That's not enough arguments!\n" +
+                "Use ``" + head + " " + usage + " [reminder]``, " +
+                "where ``[reminder]`` is the number of minutes before the event starts " +
+                "that the reminder should be sent.";
+    }
+
     @Override
     public String name()
     {
@@ -111,8 +180,12 @@ public class ConfigCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String cmd = prefix + this.name();
         int index = 0;
 
@@ -122,7 +195,7 @@ public class ConfigCommand implements Command
         }
 
         String cId = args[index].replaceAll("[^\\d]","");
-        if( !Main.getScheduleManager().isASchedule(cId) )
+        if( !ctx.isSchedule(cId) )
         {
             return "Channel " + args[index] + " is not on my list of schedule channels for your guild. " +
                     "Use the ``" + prefix + "init`` command to create a new schedule!";
@@ -142,7 +215,6 @@ public class ConfigCommand implements Command
                 return "That's not enough arguments! Use ``" + cmd + " <channel> [<option> <new config>]``";
             }
 
-            Set<Integer> list = null;
             switch (args[index++].toLowerCase())
             {
                 case "m":
@@ -273,90 +345,19 @@ public class ConfigCommand implements Command
 
                 case "t":
                 case "time":
-                    if (args.length < 3)
-                    {
-                        return "That's not enough arguments!\n" +
-                                "Use ``" + cmd + " [#channel] time <new config>``, " +
-                                "where ``<new config>`` is the time of day to which the schedule should be automatically " +
-                                "resync to the linked google calendar address.";
-                    }
-                    if(!VerifyUtilities.verifyTime(args[index]))
-                    {
-                        return "I cannot parse ``" + args[index] + "`` into a time!";
-                    }
-                    break;
-
                 case "er":
                 case "end-remind":
                 case "end-reminder":
                 case "end-reminders":
-                    if (args.length < 3)
-                    {
-                        return "That's not enough arguments!\n" +
-                                "Use ``" + cmd + " " + args[0] + " end-reminder [add|remove] [reminder]``, " +
-                                "where ``[reminder]`` is the number of minutes before the event starts " +
-                                "that the reminder should be sent.";
-                    }
-                    list = new LinkedHashSet<>();
-                    list.addAll(Main.getScheduleManager().getReminders(cId));
-                    // verification of end-remind input is the same as remind
                 case "r":
                 case "remind":
                 case "reminder":
                 case "reminders":
-                    if(list == null)
-                    {
-                        if (args.length < 3)
-                        {
-                            return "That's not enough arguments!\n" +
-                                    "Use ``" + cmd + " " + args[0] + " reminder [add|remove] [reminder]``, " +
-                                    "where ``[reminder]`` is the number of minutes before the event starts " +
-                                    "that the reminder should be sent.";
-                        }
-                        list = new LinkedHashSet<>();
-                        list.addAll(Main.getScheduleManager().getReminders(cId));
-                    }
-                    switch(args[index])
-                    {
-                        case "off":
-                            return "";
-                        case "add":
-                            if (args.length < 4)
-                            {
-                                return "That's not enough arguments!\n" +
-                                        "Use ``" + cmd + " " + args[0] + " reminder "+args[index]+" [reminder]``, " +
-                                        "where ``[reminder]`` is the number of minutes before the event starts " +
-                                        "that the reminder should be sent.";
-                            }
-                            index++;
-                            list.addAll(ParsingUtilities.parseReminder(args[index]));
-                            if (list.size() <= 0) return "I could not parse out any times!";
-                            break;
-                        case "remove":
-                            if (args.length < 4)
-                            {
-                                return "That's not enough arguments!\n" +
-                                        "Use ``" + cmd + " " + args[0] + " reminder "+args[index]+" [reminder]``, " +
-                                        "where ``[reminder]`` is the number of minutes before the event starts " +
-                                        "that the reminder should be sent.";
-                            }
-                            index++;
-                            list.removeAll(ParsingUtilities.parseReminder(args[index]));
-                            break;
-                        default:
-                            list = ParsingUtilities.parseReminder(args[index]);
-                            if (list.size() <= 0) return "I could not parse out any times!";
-                            break;
-                    }
-                    if(list.size() > 20)
-                    {
-                        return "More than 20 reminders are not allowed!";
-                    }
-                    for(int reminder : list)
-                    {
-                        if(reminder < 5)
-                            return "Reminders must not less than 5 minutes!";
-                    }
+                    // parsed once here and kept for the action
+                    Options options = new Options(cId);
+                    String err = GRAMMAR.parseOne(options, args, index-1, cmd + " " + args[0]);
+                    if (!err.isEmpty()) return err;
+                    ctx.setOptions(options);
                     break;
 
                 case "rm":
@@ -411,7 +412,7 @@ public class ConfigCommand implements Command
                                 return "*" + args[index+1] + "* is not an emoji!\n" +
                                         "Your emoji must be a valid unicode emoji or custom discord emoji!";
                             }
-                            if(Main.getScheduleManager().getRSVPOptions(cId).values().contains(args[index].trim()))
+                            if(ctx.getRSVPOptions(cId).values().contains(args[index].trim()))
                             {
                                 return "RSVP group name *" + args[index] + "* already exists!\n" +
                                         "Please choose a different name for your rsvp group!";
@@ -464,7 +465,7 @@ public class ConfigCommand implements Command
                                         "Your clear emoji must be a valid unicode emoji or custom discord emoji!";
                         }
                     }
-                    Set<String> keys = Main.getScheduleManager().getRSVPOptions(cId).keySet();
+                    Set<String> keys = ctx.getRSVPOptions(cId).keySet();
                     if(keys.contains(args[index].trim()) || keys.contains(args[index].replaceAll("[^\\d]","")))
                     {
                         return "RSVP group name *" + args[index] + "* already exists!\n" +
@@ -595,8 +596,11 @@ public class ConfigCommand implements Command
     }
 
     @Override
-    public void action(String head, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         int index = 0;
         String cId = args[index].replaceAll("[^\\d]","");
         TextChannel scheduleChan = event.getGuild().getTextChannelById(cId);
@@ -659,26 +663,10 @@ public class ConfigCommand implements Command
                     ZoneId zone = ParsingUtilities.parseZone(args[index]);
                     Main.getScheduleManager().setTimeZone(scheduleChan.getId(), zone);
 
-                    // correct/reload the event displays
-                    Main.getDBDriver().getEventCollection().find(eq("channelId", scheduleChan.getId()))
-                            .forEach((Consumer<? super Document>) document ->
-                            {
-                                Integer id = document.getInteger("_id");
-
-                                // if the timezone conversion causes the end go past 24:00
-                                // the date needs to be corrected
-                                ScheduleEntry se = Main.getEntryManager().getEntry(id);
-                                if(se.getStart().isAfter(se.getEnd()))
-                                {
-                                    Main.getDBDriver().getEventCollection().updateOne(
-                                            eq("_id", id),
-                                            set("end", Date.from(se.getEnd().plusDays(1).toInstant()))
-                                    );
-                                }
-
-                                // reload the entry's display to match new timezone
-                                Main.getEntryManager().reloadEntry(id);
-                            });
+                    // correct/reload the event displays,
+                    // if the timezone conversion causes the end go past 24:00 the date needs to be corrected
+                    Main.getScheduleManager().getRerenderer().submit(scheduleChan.getId(), event.getChannel(),
+                            true, ScheduleRerenderer.Reactions.KEEP);
 
                     // disable auto-sync'ing timezone
                     Main.getDBDriver().getScheduleCollection()
@@ -702,10 +690,9 @@ public class ConfigCommand implements Command
                             altZones.remove(ZoneId.of(args[index]));
                             break;
                     }
-                    // reload each entry on the schedule
-                    Main.getEntryManager().getEntriesFromChannel(scheduleChan.getId())
-                            .forEach(se -> Main.getEntryManager().reloadEntry(se.getId()));
                     Main.getScheduleManager().setAltZones(scheduleChan.getId(), new ArrayList<>(altZones));
+                    // reload each entry on the schedule
+                    Main.getScheduleManager().getRerenderer().submit(scheduleChan.getId(), event.getChannel());
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.MISC, event.getJDA()), event.getChannel(), null);
                     break;
 
@@ -714,9 +701,7 @@ public class ConfigCommand implements Command
                     Main.getScheduleManager().setClockFormat(scheduleChan.getId(), args[index]);
 
                     // reload the schedule display
-                    Main.getDBDriver().getEventCollection().find(eq("channelId", scheduleChan.getId()))
-                            .forEach((Consumer<? super Document>) document ->
-                                    Main.getEntryManager().reloadEntry((Integer) document.get("_id")));
+                    Main.getScheduleManager().getRerenderer().submit(scheduleChan.getId(), event.getChannel());
 
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.MISC, event.getJDA()), event.getChannel(), null);
                     break;
@@ -739,12 +724,12 @@ public class ConfigCommand implements Command
                 case "time":
                     ZonedDateTime syncTime = ZonedDateTime.of(
                             LocalDate.now(),
-                            ParsingUtilities.parseTime(args[index]),
-                            Main.getScheduleManager().getTimeZone(cId));
+                            this.getOptions(ctx, cId).syncTime,
+                            ctx.getTimeZone(cId));
 
                     // don't allow times set in the past
                     if(syncTime.isBefore(ZonedDateTime.now()))
-                        syncTime.plusDays(1);
+                        syncTime = syncTime.plusDays(1);
 
                     Main.getScheduleManager().setSyncTime(cId, Date.from(syncTime.toInstant()));
 
@@ -755,7 +740,7 @@ public class ConfigCommand implements Command
                 case "remind":
                 case "reminder":
                 case "reminders":
-                    Set<Integer> list = this.reminderHelper(args,index,cId);
+                    Set<Integer> list = this.getOptions(ctx, cId).reminders;
 
                     // convert set to a list
                     List<Integer> rem = new ArrayList<>(list);
@@ -778,7 +763,7 @@ public class ConfigCommand implements Command
                 case "end-remind":
                 case "end-reminder":
                 case "end-reminders":
-                    Set<Integer> list2 = this.reminderHelper(args,index,cId);
+                    Set<Integer> list2 = this.getOptions(ctx, cId).reminders;
 
                     // convert set to a list
                     List<Integer> rem2 = new ArrayList<>(list2);
@@ -830,8 +815,8 @@ public class ConfigCommand implements Command
                     break;
 
                 case "rsvp":
-                    boolean enabled = Main.getScheduleManager().isRSVPEnabled(cId);
-                    Map<String, String> options = Main.getScheduleManager().getRSVPOptions(cId);
+                    boolean enabled = ctx.isRSVPEnabled(cId);
+                    Map<String, String> options = ctx.getRSVPOptions(cId);
                     Boolean new_enabled = null;
                     switch(args[index++].toLowerCase())
                     {
@@ -871,72 +856,18 @@ public class ConfigCommand implements Command
                             break;
                     }
 
-                    String clearEmoji = Main.getScheduleManager().getRSVPClear(cId);
                     // if add or remove option was used, clear the reactions and re-add the new reactions
                     if(new_enabled == null)
                     {
-                        // for each entry on the schedule
-                        Main.getDBDriver().getEventCollection()
-                                .find(eq("channelId", scheduleChan.getId()))
-                                .forEach((Consumer<? super Document>) document ->
-                                {
-                                    // clear reactions
-                                    event.getGuild().getTextChannelById(document.getString("channelId"))
-                                            .getMessageById(document.getString("messageId")).complete()
-                                            .clearReactions().queue((message) ->
-                                    {
-                                        Map<String, String> map = Main.getScheduleManager()
-                                                .getRSVPOptions(document.getString("channelId"));
-                                        ScheduleEntry se = new ScheduleEntry(document);
-
-                                        // add reaction options
-                                        event.getGuild()
-                                                .getTextChannelById(document.getString("channelId"))
-                                                .getMessageById(document.getString("messageId"))
-                                                .queue(msg -> EntryManager.addRSVPReactions(map, clearEmoji, msg, se));
-                                    });
-
-                                    Main.getEntryManager().reloadEntry(document.getInteger("_id"));
-                                });
+                        Main.getScheduleManager().getRerenderer().submit(scheduleChan.getId(), event.getChannel(),
+                                false, ScheduleRerenderer.Reactions.RESET);
                     }
                     // otherwise, if the rsvp setting was changes
                     else if(enabled != new_enabled)
                     {   // set schedule settings
                         Main.getScheduleManager().setRSVPEnable(cId, new_enabled);
-
-                        if(new_enabled)
-                        {   // for each entry on the schedule
-                            Main.getDBDriver().getEventCollection()
-                                    .find(eq("channelId", scheduleChan.getId()))
-                                    .forEach((Consumer<? super Document>) document ->
-                                    {
-                                        Map<String, String> map = Main.getScheduleManager()
-                                                .getRSVPOptions(document.getString("channelId"));
-                                        ScheduleEntry se = new ScheduleEntry(document);
-
-                                        // add reaction options
-                                        event.getGuild()
-                                                .getTextChannelById(document.getString("channelId"))
-                                                .getMessageById(document.getString("messageId"))
-                                                .queue(msg -> EntryManager.addRSVPReactions(map, clearEmoji, msg, se));
-
-                                        Main.getEntryManager().reloadEntry(document.getInteger("_id"));
-                                    });
-                        }
-                        else
-                        {   // for each entry on the schedule
-                            Main.getDBDriver().getEventCollection()
-                                    .find(eq("channelId", scheduleChan.getId()))
-                                    .forEach((Consumer<? super Document>) document ->
-                                    {
-                                        // clear reactions
-                                        event.getGuild().getTextChannelById(document.getString("channelId"))
-                                                .getMessageById(document.getString("messageId")).complete()
-                                                .clearReactions().queue();
-
-                                        Main.getEntryManager().reloadEntry(document.getInteger("_id"));
-                                    });
-                        }
+                        Main.getScheduleManager().getRerenderer().submit(scheduleChan.getId(), event.getChannel(),
+                                false, new_enabled ? ScheduleRerenderer.Reactions.ADD : ScheduleRerenderer.Reactions.CLEAR);
                     }
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.RSVP, event.getJDA()), event.getChannel(), null);
                     break;
@@ -954,13 +885,8 @@ public class ConfigCommand implements Command
                     }
                     Main.getScheduleManager().setRSVPClear(cId, emoji);
 
-                    String finalEmoji = emoji;
-                    Map<String, String> rsvpOptions = Main.getScheduleManager().getRSVPOptions(cId);
-                    Main.getEntryManager().getEntriesFromChannel(cId).forEach(se->
-                    {
-                        Message message = se.getMessageObject();
-                        message.clearReactions().queue(ignored-> EntryManager.addRSVPReactions(rsvpOptions, finalEmoji, message, se));
-                    });
+                    Main.getScheduleManager().getRerenderer().submit(cId, event.getChannel(),
+                            false, ScheduleRerenderer.Reactions.RESET);
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.RSVP, event.getJDA()), event.getChannel(), null);
                     break;
 
@@ -1024,11 +950,7 @@ public class ConfigCommand implements Command
                     else if(style.equals("narrow")) Main.getScheduleManager().setStyle(cId, style);
 
                     // for each entry on the schedule
-                    Main.getDBDriver().getEventCollection()
-                            .find(eq("channelId", scheduleChan.getId()))
-                            .forEach((Consumer<? super Document>) document ->
-                                    Main.getEntryManager().reloadEntry(document.getInteger("_id"))
-                            );
+                    Main.getScheduleManager().getRerenderer().submit(scheduleChan.getId(), event.getChannel());
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.MISC, event.getJDA()), event.getChannel(), null);
                     break;
 
@@ -1094,30 +1016,17 @@ public class ConfigCommand implements Command
 
 
     /**
-     * used when parsing reminders strings
+     * @return the options parsed by verify, or the options parsed again if verify did not keep them
      */
-    private Set<Integer> reminderHelper(String[] args, int index, String cId)
+    private Options getOptions(CommandContext ctx, String cId)
     {
-        Set<Integer> list = new LinkedHashSet<>();
-        list.addAll(Main.getScheduleManager().getReminders(cId));
-        switch(args[index])
+        Options options = ctx.getOptions(Options.class);
+        if (options == null)
         {
-            case "off":
-                list = new LinkedHashSet<>();
-                break;
-            case "add":
-                index++;
-                list.addAll(ParsingUtilities.parseReminder(args[index]));
-                break;
-            case "remove":
-                index++;
-                list.removeAll(ParsingUtilities.parseReminder(args[index]));
-                break;
-            default:
-                list = ParsingUtilities.parseReminder(args[index]);
-                break;
+            options = new Options(cId);
+            GRAMMAR.parseOne(options, ctx.getArgs(), 1, ctx.getPrefix() + this.name() + " " + ctx.getArgs()[0]);
         }
-        return list;
+        return options;
     }
 
     private enum Mode {FULL, ANN, REM, MISC, SYNC, RSVP}
@@ -1300,12 +1209,7 @@ public class ConfigCommand implements Command
                         }
                         else
                         {
-                            Emote emote = null;
-                            for(JDA shard : Main.getShardManager().getShards())
-                            {
-                                emote = shard.getEmoteById(key);
-                                if(emote != null) break;
-                            }
+                            Emote emote = Main.getShardManager().getEmoteIndex().getEmote(key);
                             if(emote!=null)
                             {
                                 String displayName = emote.getName();
@@ -1367,4 +1271,43 @@ public class ConfigCommand implements Command
         if(name == null) name = identifier;
         return name;
     }
+
+    /**
+     * the new setting of a time or reminder option, as parsed from the command's arguments
+     */
+    private static class Options
+    {
+        final String channelId;
+        LocalTime syncTime;
+        Set<Integer> reminders;
+
+        Options(String channelId)
+        {
+            this.channelId = channelId;
+        }
+
+        /**
+         * @return a copy of the schedule's current reminders or end reminders
+         */
+        Set<Integer> getReminders(boolean end)
+        {
+            return new LinkedHashSet<>(end ?
+                    Main.getScheduleManager().getEndReminders(channelId) :
+                    Main.getScheduleManager().getReminders(channelId));
+        }
+
+        String setReminders(Set<Integer> list)
+        {
+            if (list.size() > 20)
+            {
+                return "More than 20 reminders are not allowed!";
+            }
+            for (int reminder : list)
+            {
+                if (reminder < 5) return "Reminders must not less than 5 minutes!";
+            }
+            this.reminders = list;
+            return "";
+        }
+    }
 }
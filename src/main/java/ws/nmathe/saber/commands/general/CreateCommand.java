@@ -1,17 +1,17 @@
 package ws.nmathe.saber.commands.general;
 
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.commands.ArgumentGrammar;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.core.schedule.EventRecurrence;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.*;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
-import java.awt.*;
 import java.time.*;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 /**
  * CreateCommand places a new entry message on the discord schedule channel
@@ -87,312 +87,138 @@ public class CreateCommand implements Command
         return info;
     }
 
-
-    @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
-    {
-        String head = prefix + this.name();
-        int index = 0;
-
-        // arg count check
-        if (args.length < 3)
-        {
-            return "That's not enough arguments!\n" +
-                    "Use ``" + head + " <channel> <title> <start> [<end> <extra>]``";
-        }
-
-        // schedule check
-        String cId = args[index].replaceAll("[^\\d]","");
-        if( !Main.getScheduleManager().isASchedule(cId) )
-        {
-            return "Channel " + args[index] + " is not a schedule for your guild. " +
-                    "Use the ``" + prefix + "init`` command to create a new schedule!";
-        }
-        if( Main.getScheduleManager().isLocked(cId) )
-        {
-            return "Schedule is locked while sorting/syncing. Please try again after sort/sync finishes.";
-        }
-        index++; // 1
-
-        // check <title>
-        if (args[index].length() > 255)
-        {
-            return "Your title can be at most 255 characters!";
-        }
-        index++; // 2
-
-        // check <start>
-        if (!VerifyUtilities.verifyTime(args[index]))
-        {
-            return "I could not understand **" + args[index] + "** as a time!\n" +
-                    "Please use the format hh:mm[am|pm].";
-        }
-        ZoneId zone = Main.getScheduleManager().getTimeZone(cId);
-        ZonedDateTime startTime = ZonedDateTime.of(LocalDate.now().plusDays(1), ParsingUtilities.parseTime(args[index]), zone);
-
-        // if minimum args, then ok
-        if (args.length == 3) return "";
-        index++; // 3
-
-        // if <end> fails verification, assume <end> has been omitted
-        if (VerifyUtilities.verifyTime(args[index]))
-        {
-            index++; // 4
-        }
-
-        // check remaining args
-        if (args.length > index)
-        {
-            args = Arrays.copyOfRange(args, index, args.length);
-            index = 0;
-            while (index < args.length)
+    /**
+     * the options of a create command, declared once for all invocations
+     * (package-private for the parse test)
+     */
+    static final ArgumentGrammar<Options> GRAMMAR = ArgumentGrammar.<Options>builder()
+            .value((o, args, i, head) -> date(o, args, i, head, true, true),
+                    "d", "date")
+            .value((o, args, i, head) -> date(o, args, i, head, true, false),
+                    "sd", "start date", "start-date")
+            .value((o, args, i, head) -> date(o, args, i, head, false, true),
+                    "ed", "end date", "end-date")
+            .value((o, args, i, head) ->
+            {
+                String err = VerifyUtilities.verifyRepeat(args, i, head);
+                if (err.isEmpty()) o.repeat = EventRecurrence.parseRepeat(args[i].toLowerCase());
+                return err;
+            }, "r", "repeats", "repeat")
+            .value((o, args, i, head) ->
+            {
+                String err = VerifyUtilities.verifyUrl(args, i, head);
+                if (err.isEmpty()) o.url = ParsingUtilities.parseUrl(args[i]);
+                return err;
+            }, "u", "url")
+            .value((o, args, i, head) ->
+            {
+                String err = VerifyUtilities.verifyUrl(args, i, head);
+                if (err.isEmpty()) o.image = ParsingUtilities.parseUrl(args[i]);
+                return err;
+            }, "im", "image")
+            .value((o, args, i, head) ->
+            {
+                String err = VerifyUtilities.verifyUrl(args, i, head);
+                if (err.isEmpty()) o.thumbnail = ParsingUtilities.parseUrl(args[i]);
+                return err;
+            }, "th", "thumbnail")
+            .value((o, args, i, head) ->
+            {
+                String err = VerifyUtilities.verifyExpire(args, i, head, o.zone);
+                if (err.isEmpty()) o.expire = ParsingUtilities.parseNullableDate(args[i], o.zone);
+                return err;
+            }, "ex", "expire")
+            .value((o, args, i, head) ->
             {
-                String verify;
-                switch (args[index++].toLowerCase().toLowerCase())
+                String err = VerifyUtilities.verifyDeadline(args, i, head);
+                if (err.isEmpty()) o.deadline = ParsingUtilities.parseNullableDate(args[i], o.zone);
+                return err;
+            }, "deadline", "dl")
+            .value((o, args, i, head) ->
+            {
+                String err = VerifyUtilities.verifyCount(args, i, head);
+                if (err.isEmpty()) o.count = args[i].equalsIgnoreCase("off") ? null : Integer.parseInt(args[i]);
+                return err;
+            }, "c", "co", "count")
+            .value((o, args, i, head) ->
+            {
+                String err = VerifyUtilities.verifyLocation(args, i, head);
+                if (err.isEmpty()) o.location = args[i].equalsIgnoreCase("off") ? null : args[i];
+                return err;
+            }, "lo", "location")
+            .value((o, args, i, head) ->
+            {
+                String err = VerifyUtilities.verifyColor(args, i, head);
+                if (err.isEmpty()) o.color = args[i];
+                return err;
+            }, "color")
+            .flag((o, args, i, head) ->
+            {
+                if (ZonedDateTime.of(LocalDate.now(o.zone), o.startTime, o.zone).isBefore(ZonedDateTime.now()))
                 {
-                    case "d":
-                    case "date":
-                    case "sd":
-                    case "start-date":
-                    case "ed":
-                    case "end-date":
-                        verify = VerifyUtilities.verifyDate(args, index, head, null, zone, false);
-                        if (!verify.isEmpty()) return verify;
-                        index++;
-                        break;
-
-                    case "r":
-                    case "repeats":
-                    case "repeat":
-                        verify = VerifyUtilities.verifyRepeat(args, index, head);
-                        if (!verify.isEmpty()) return verify;
-                        index++;
-                        break;
-
-                    case "im":
-                    case "image":
-                    case "th":
-                    case "thumbnail":
-                    case "u":
-                    case "url":
-                        verify = VerifyUtilities.verifyUrl(args, index, head);
-                        if (!verify.isEmpty()) return verify;
-                        index++;
-                        break;
-
-                    case "ex":
-                    case "expire":
-                        verify = VerifyUtilities.verifyExpire(args, index, head, zone);
-                        if (!verify.isEmpty()) return verify;
-                        index++;
-                        break;
-
-                    case "deadline":
-                    case "dl":
-                        verify = VerifyUtilities.verifyDeadline(args, index, head);
-                        if (!verify.isEmpty()) return verify;
-                        index++;
-                        break;
-
-                    case "co":
-                    case "count":
-                        verify = VerifyUtilities.verifyCount(args, index, head);
-                        if (!verify.isEmpty()) return verify;
-                        index++;
-                        break;
-
-                    case "lo":
-                    case "location":
-                        verify = VerifyUtilities.verifyLocation(args, index, head);
-                        if (!verify.isEmpty()) return verify;
-                        index++;
-                        break;
-
-                    case "today":
-                        if(startTime.isBefore(ZonedDateTime.now()))
-                        {
-                            return "I cannot be schedule the event for today as the start time is in the past!";
-                        }
-                        break;
-
-                    case "color":
-                        verify = VerifyUtilities.verifyColor(args, index, head);
-                        if(!verify.isEmpty()) return verify;
-                        index++;
-                        break;
-
-                    default:
-                        if(args[index-1].length() > 1024) return "Comments should not be larger than 1024 characters!";
-                        break;
+                    return "I cannot be schedule the event for today as the start time is in the past!";
                 }
-            }
-        }
+                o.startDate = ZonedDateTime.now(o.zone);
+                o.endDate = o.startDate;
+                return "";
+            }, "today")
+            .flag((o, args, i, head) ->
+            {
+                o.startDate = ZonedDateTime.now(o.zone).plusDays(1);
+                o.endDate = o.startDate;
+                return "";
+            }, "tomorrow")
+            .flag((o, args, i, head) ->
+            {
+                o.startDate = ZonedDateTime.now(o.zone).plusDays(2);
+                o.endDate = o.startDate;
+                return "";
+            }, "overmorrow")
+            .otherwise((o, args, i, head) ->
+            {
+                if (args[i].length() > 1024) return "Comments should not be larger than 1024 characters!";
+                o.comments.add(args[i]);
+                return "";
+            })
+            .build();
+
+    @Override
+    public String verify(CommandContext ctx)
+    {
+        Options options = new Options();
+        String err = this.parse(ctx, options);
+        if (!err.isEmpty()) return err;
 
         // verify that guild has not exceeded maximum entries
-        if (Main.getEntryManager().isLimitReached(event.getGuild().getId()))
+        if (Main.getEntryManager().isLimitReached(ctx.getGuild().getId()))
         {
             return "I can't allow your guild any more entries."
                     + "Please remove some entries before trying again.";
         }
 
+        ctx.setOptions(options);
         return ""; // return valid
     }
 
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
-        int index = 0;
-
-        // get schedule ID and zone information
-        String cId = args[index++].replaceAll("[^\\d]","");
-        ZoneId zone = Main.getScheduleManager().getTimeZone(cId);
-
-        // Initialize variables
-        String title;
-        LocalTime startTime;
-        // init optional variables with values;
-        LocalTime endTime       = null;
-        int repeat              = 0;
-        ZonedDateTime startDate = ZonedDateTime.now(zone).plusDays(1);
-        ZonedDateTime endDate   = null;
-        String url              = null;
-        String image            = null;
-        String thumbnail        = null;
-        ZonedDateTime expire    = null;
-        ZonedDateTime deadline  = null;
-        Integer count           = null;
-        String location         = null;
-        String color            = null;
-        ArrayList<String> comments = new ArrayList<>();
+        MessageReceivedEvent event = ctx.getEvent();
 
-        // process title
-        title = args[index];
-        index++;
-
-        // process start
-        startTime = ParsingUtilities.parseTime(args[index].trim().toUpperCase());
-        index++;
-
-        // if minimum args, then ok
-        if (args.length != 3)
+        // reuse the options parsed by verify
+        Options options = ctx.getOptions(Options.class);
+        if (options == null)
         {
-            // if <end> fails verification, assume <end> has been omitted
-            if(VerifyUtilities.verifyTime(args[index]))
-            {
-                endTime = ParsingUtilities.parseTime(args[index].trim().toUpperCase());
-                index++;
-            }
-
-            // check remaining args
-            if(args.length > index)
-            {
-                args  = Arrays.copyOfRange(args, index, args.length);
-                index = 0;
-                while(index < args.length)
-                {
-                    switch(args[index++].toLowerCase().toLowerCase())
-                    {
-                        case "d":
-                        case "date":
-                            startDate = ParsingUtilities.parseDate(args[index].toLowerCase(), zone);
-                            endDate = startDate;
-                            index++;
-                            break;
-
-                        case "sd":
-                        case "start date":
-                        case "start-date":
-                            startDate = ParsingUtilities.parseDate(args[index].toLowerCase(), zone);
-                            index++;
-                            break;
-
-                        case "ed":
-                        case "end date":
-                        case "end-date":
-                            endDate = ParsingUtilities.parseDate(args[index].toLowerCase(), zone);
-                            index++;
-                            break;
-
-                        case "r":
-                        case "repeats":
-                        case "repeat":
-                            repeat = EventRecurrence.parseRepeat(args[index].toLowerCase());
-                            index++;
-                            break;
-
-                        case "u":
-                        case "url":
-                            url = ParsingUtilities.parseUrl(args[index]);
-                            index++;
-                            break;
-
-                        case "ex":
-                        case "expire":
-                            expire = ParsingUtilities.parseNullableDate(args[index], zone);
-                            index++;
-                            break;
-
-                        case "im":
-                        case "image":
-                            image = ParsingUtilities.parseUrl(args[index]);
-                            index++;
-                            break;
-
-                        case "th":
-                        case "thumbnail":
-                            thumbnail = ParsingUtilities.parseUrl(args[index]);
-                            index++;
-                            break;
-
-                        case "deadline":
-                        case "dl":
-                            deadline = ParsingUtilities.parseNullableDate(args[index], zone);
-                            index++;
-                            break;
-
-                        case "c":
-                        case "count":
-                            count = Integer.parseInt(args[index]);
-                            index++;
-                            break;
-
-                        case "lo":
-                        case "location":
-                            if (args[index].equalsIgnoreCase("off"))
-                                location = null;
-                            else
-                                location = args[index];
-                            index++;
-                            break;
-
-                        case "today":
-                            startDate = ZonedDateTime.now(zone);
-                            endDate = ZonedDateTime.now(zone);
-                            break;
-
-                        case "tomorrow":
-                            startDate = ZonedDateTime.now(zone).plusDays(1);
-                            endDate = ZonedDateTime.now(zone).plusDays(1);
-                            break;
-
-                        case "overmorrow":
-                            startDate = ZonedDateTime.now(zone).plusDays(2);
-                            endDate = ZonedDateTime.now(zone).plusDays(2);
-                            break;
-
-                        case "color":
-                            color = args[index];
-                            index++;
-                            break;
-
-                        default:
-                            comments.add(args[index-1]);
-                            break;
-                    }
-                }
-            }
+            options = new Options();
+            this.parse(ctx, options);
         }
+        String cId = options.channelId;
+        ZoneId zone = options.zone;
+        LocalTime startTime = options.startTime;
+        LocalTime endTime = options.endTime;
+        ZonedDateTime startDate = options.startDate;
+        ZonedDateTime endDate = options.endDate;
 
         /*
          * Finalize the start and end times from
@@ -441,17 +267,17 @@ public class CreateCommand implements Command
          */
 
         // create the dummy schedule entry
-        ScheduleEntry se = (new ScheduleEntry(event.getGuild().getTextChannelById(cId), title, start, end))
-                .setComments(comments)
-                .setRepeat(repeat)
-                .setTitleUrl(url)
-                .setExpire(expire)
-                .setImageUrl(image)
-                .setThumbnailUrl(thumbnail)
-                .setCount(count)
-                .setRsvpDeadline(deadline)
-                .setLocation(location)
-                .setColor(color);
+        ScheduleEntry se = (new ScheduleEntry(event.getGuild().getTextChannelById(cId), options.title, start, end))
+                .setComments(options.comments)
+                .setRepeat(options.repeat)
+                .setTitleUrl(options.url)
+                .setExpire(options.expire)
+                .setImageUrl(options.image)
+                .setThumbnailUrl(options.thumbnail)
+                .setCount(options.count)
+                .setRsvpDeadline(options.deadline)
+                .setLocation(options.location)
+                .setColor(options.color);
 
         // finalize the schedule entry
         Integer entryId = Main.getEntryManager().newEntry(se, true);
@@ -461,4 +287,117 @@ public class CreateCommand implements Command
                 cId + ">\n" + se.toString();
         MessageUtilities.sendMsg(body, event.getChannel(), null);
     }
+
+    /**
+     * parses the command's arguments in one pass
+     * @param ctx the command invocation
+     * @param options the options to fill
+     * @return an error message for the user, or an empty string if the arguments are valid
+     */
+    private String parse(CommandContext ctx, Options options)
+    {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+
+        String head = prefix + this.name();
+        int index = 0;
+
+        // arg count check
+        if (args.length < 3)
+        {
+            return "That's not enough arguments!\n" +
+                    "Use ``" + head + " <channel> <title> <start> [<end> <extra>]``";
+        }
+
+        // schedule check
+        String cId = args[index].replaceAll("[^\\d]","");
+        if( !ctx.isSchedule(cId) )
+        {
+            return "Channel " + args[index] + " is not a schedule for your guild. " +
+                    "Use the ``" + prefix + "init`` command to create a new schedule!";
+        }
+        if( Main.getScheduleManager().isLocked(cId) )
+        {
+            return "Schedule is locked while sorting/syncing. Please try again after sort/sync finishes.";
+        }
+        options.channelId = cId;
+        options.zone = ctx.getTimeZone(cId);
+        options.startDate = ZonedDateTime.now(options.zone).plusDays(1);
+        index++; // 1
+
+        // check <title>
+        if (args[index].length() > 255)
+        {
+            return "Your title can be at most 255 characters!";
+        }
+        options.title = args[index];
+        index++; // 2
+
+        // check <start>
+        if (!VerifyUtilities.verifyTime(args[index]))
+        {
+            return "I could not understand **" + args[index] + "** as a time!\n" +
+                    "Please use the format hh:mm[am|pm].";
+        }
+        options.startTime = ParsingUtilities.parseTime(args[index].trim().toUpperCase());
+        index++; // 3
+
+        // if <end> fails verification, assume <end> has been omitted
+        if (index < args.length && VerifyUtilities.verifyTime(args[index]))
+        {
+            options.endTime = ParsingUtilities.parseTime(args[index].trim().toUpperCase());
+            index++; // 4
+        }
+
+        // check remaining args
+        return GRAMMAR.parse(options, args, index, head);
+    }
+
+    /**
+     * rule for the date options, sets the start and/or end date
+     */
+    private static String date(Options options, String[] args, int index, String head, boolean start, boolean end)
+    {
+        if(args.length-index < 1)
+        {
+            return "That's not the right number of arguments for **"+args[index-1]+"**! " +
+                    "Use ``"+head+" "+args[0]+" "+args[index-1]+" [date]``";
+        }
+        if(!VerifyUtilities.verifyDate(args[index]))
+        {
+            return "I could not understand **" + args[index] + "** as a date! Please use the format M/d.";
+        }
+        ZonedDateTime date = ParsingUtilities.parseDate(args[index].toLowerCase(), options.zone);
+        if(date.isBefore(ZonedDateTime.now()))
+        {
+            return "That date is in the past!";
+        }
+        if (start) options.startDate = date;
+        if (end) options.endDate = date;
+        return "";
+    }
+
+    /**
+     * the settings of the new event, as parsed from the command's arguments
+     */
+    static class Options
+    {
+        String channelId;
+        ZoneId zone;
+        String title;
+        LocalTime startTime;
+        LocalTime endTime = null;
+        ZonedDateTime startDate;
+        ZonedDateTime endDate = null;
+        int repeat = 0;
+        String url = null;
+        String image = null;
+        String thumbnail = null;
+        ZonedDateTime expire = null;
+        ZonedDateTime deadline = null;
+        Integer count = null;
+        String location = null;
+        String color = null;
+        ArrayList<String> comments = new ArrayList<>();
+    }
 }
@@ -3,6 +3,7 @@ package ws.nmathe.saber.commands.general;
 import net.dv8tion.jda.core.entities.Message;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.Logging;
@@ -46,8 +47,12 @@ public class DeleteCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String head = prefix + this.name();
 
         if (args.length>1)
@@ -69,7 +74,7 @@ public class DeleteCommand implements Command
         if (VerifyUtilities.verifyEntryID(args[0]))
         {
             Integer entryId = ParsingUtilities.encodeIDToInt(args[0]);
-            ScheduleEntry entry = Main.getEntryManager().getEntryFromGuild(entryId, event.getGuild().getId());
+            ScheduleEntry entry = ctx.getEntry(entryId);
             if (entry == null)
             {
                 return "The requested entry does not exist!";
@@ -78,7 +83,7 @@ public class DeleteCommand implements Command
         }
         else // arg should be a schedule id
         {
-            if(!Main.getScheduleManager().isASchedule(args[0].replaceAll("[^\\d]","")))
+            if(!ctx.isSchedule(args[0].replaceAll("[^\\d]","")))
             {
                 return "Argument ``" + args[0] + "`` is not a schedule channel or an event id!";
             }
@@ -87,8 +92,11 @@ public class DeleteCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         if(args[0].toLowerCase().equals("all"))
         {
             // delete all schedule
@@ -101,7 +109,7 @@ public class DeleteCommand implements Command
         {
             // delete single event
             Integer entryId = ParsingUtilities.encodeIDToInt(args[0]);
-            ScheduleEntry entry = Main.getEntryManager().getEntry(entryId);
+            ScheduleEntry entry = ctx.getEntry(entryId);
             Message msg = entry.getMessageObject();
             if( msg==null )
                 return;
@@ -6,6 +6,7 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import org.bson.Document;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.utils.MessageUtilities;
 
@@ -43,8 +44,10 @@ public class DiagnoseCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+
         if (args.length > 0)
         {
             if (!args[0].matches("<#\\d+>"))
@@ -56,8 +59,11 @@ public class DiagnoseCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         Member saber = event.getGuild().getMember(event.getJDA().getSelfUser());
         StringBuilder builder = new StringBuilder("```diff\n");
         if (args.length < 1)
@@ -146,7 +152,7 @@ public class DiagnoseCommand implements Command
                         .append(".\n");
 
                 // 2) is the channel a schedule?
-                boolean schedule = Main.getScheduleManager().isASchedule(channelId);
+                boolean schedule = ctx.isSchedule(channelId);
                 if (schedule)
                 {
                     builder.append("+ That channel is a schedule.\n");
@@ -2,13 +2,13 @@ package ws.nmathe.saber.commands.general;
 
 import net.dv8tion.jda.core.entities.Message;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.commands.ArgumentGrammar;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
-import ws.nmathe.saber.core.schedule.EntryManager;
 import ws.nmathe.saber.core.schedule.EventRecurrence;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
-import ws.nmathe.saber.utils.Logging;
 import ws.nmathe.saber.utils.MessageUtilities;
 import ws.nmathe.saber.utils.ParsingUtilities;
 import ws.nmathe.saber.utils.VerifyUtilities;
@@ -92,9 +92,370 @@ public class EditCommand implements Command
         return info;
     }
 
+    /**
+     * verbs of the comment option
+     */
+    private static final ArgumentGrammar<Edit> COMMENT = ArgumentGrammar.<Edit>builder()
+            .value(EditCommand::addComment, "a", "add")
+            .value(EditCommand::removeComment, "r", "remove")
+            .option(2, (e, args, i, head) ->
+            {
+                String verify = VerifyUtilities.verifyCommentSwap(args, i, head, e.se);
+                if (!verify.isEmpty()) return verify;
+
+                ArrayList<String> comments = e.se.getComments();
+                String a = comments.get(Integer.parseInt(args[i])-1);
+                String b = comments.get(Integer.parseInt(args[i+1])-1);
+                comments.set(Integer.parseInt(args[i])-1, b);
+                comments.set(Integer.parseInt(args[i+1])-1, a);
+                e.se.setComments(comments);
+                return "";
+            }, "s", "swap")
+            .option(2, (e, args, i, head) ->
+            {
+                if (args.length-i < 2)
+                {
+                    return "That's not the right number of arguments for **" + args[i-1] +"**!\n" +
+                            "Use ``" + head + " " + args[i-2] + " " + args[i-1] + " [num] [new_comment]``!";
+                }
+                if (!VerifyUtilities.verifyInteger(args[i]))
+                {
+                    return "The argument **"+args[i]+"** is not right!\n" +
+                            "This needs to be a number representing the comment number" +
+                            " you wish to replace!";
+                }
+                ArrayList<String> comments = e.se.getComments();
+                int num = Integer.parseInt(args[i]);
+                if (num < 1 || num > comments.size())
+                {
+                    return "The provided comment number must be between 1 and " + comments.size() + "!";
+                }
+                comments.set(num-1, args[i+1]);
+                e.se.setComments(comments);
+                return "";
+            }, "m", "modify", "replace", "set")
+            .otherwise((e, args, i, head) ->
+                    "The only valid options for ``comment`` are **add**, **remove**, **modify**, or **swap**!")
+            .build();
+
+    /**
+     * verbs of the announcement option
+     */
+    private static final ArgumentGrammar<Edit> ANNOUNCEMENT = ArgumentGrammar.<Edit>builder()
+            .option(3, EditCommand::addAnnouncement, "a", "add")
+            .value(EditCommand::removeAnnouncement, "r", "remove")
+            .otherwise((e, args, i, head) ->
+                    "**" + args[i] + "** is not a valid option!\n" +
+                    "You should use either *add* or *remove*!")
+            .build();
+
+    /**
+     * verbs of the add option
+     */
+    private static final ArgumentGrammar<Edit> ADD = ArgumentGrammar.<Edit>builder()
+            .option(3, EditCommand::addAnnouncement, "a", "an", "announce", "announcement", "announcements")
+            .value(EditCommand::addComment, "c", "comment", "comments")
+            .otherwise((e, args, i, head) ->
+                    "*" + args[i] + "* is not a valid option!\n" +
+                    "Please use either *comment* or **announcement*!")
+            .build();
+
+    /**
+     * verbs of the remove option
+     */
+    private static final ArgumentGrammar<Edit> REMOVE = ArgumentGrammar.<Edit>builder()
+            .value(EditCommand::removeAnnouncement, "a", "an", "announce", "announcement", "announcements")
+            .value(EditCommand::removeComment, "c", "comment", "comments")
+            .otherwise((e, args, i, head) ->
+                    "*" + args[i] + "* is not a valid option!\n" +
+                    "Please use either *comment* or **announcement*!")
+            .build();
+
+    /**
+     * the options of an edit command, declared once for all invocations
+     * each option checks it's arguments and applies them to the event in the same pass
+     */
+    private static final ArgumentGrammar<Edit> GRAMMAR = ArgumentGrammar.<Edit>builder()
+            .branch(COMMENT, (e, args, i, head) ->
+                    "That's not enough arguments for *comment*!\n" +
+                    "Use ``"+head+" "+args[0]+" "+args[i-1]+" [add|remove|swap] <arg(s)>``",
+                    "c", "comment", "comments")
+            .value((e, args, i, head) ->
+            {
+                if (args.length-i < 1)
+                {
+                    return "That's not the right number of arguments for **"+args[i-1]+"**!\n"+
+                            "Use ``" + head + " " + args[0] + " " + args[i-1] + " [description]``";
+                }
+                e.se.setDescription(args[i].toLowerCase().matches("(off)|(default)") ? "%g" : args[i]);
+                return "";
+            }, "desc", "description")
+            .value((e, args, i, head) ->
+            {
+                ScheduleEntry se = e.se;
+                if(args.length-i < 1)
+                {
+                    return "That's not the right number of arguments for **"+args[i-1]+"**!\n" +
+                            "Use ``" + head + " "+args[0]+" "+args[i-1]+" [start time]``";
+                }
+                if(!VerifyUtilities.verifyTime(args[i]))
+                {
+                    return "I could not understand **" + args[i] + "** as a time!" +
+                            "\nPlease use the format hh:mm[am|pm].";
+                }
+                ZonedDateTime newStart = ZonedDateTime.of(se.getStart().toLocalDate(),
+                        ParsingUtilities.parseTime(args[i]), se.getStart().getZone());
+                if(newStart.isBefore(ZonedDateTime.now()))
+                {
+                    return "Today's time is already past *" + args[i] + "*!\n" +
+                            "Please use a different time, or change the date for the event!";
+                }
+                if(se.hasStarted())
+                {
+                    return "You cannot modify the start time after the event has already started.";
+                }
+
+                // create new datetime and update the schedule entry object
+                se.setStart(newStart);
+                if(se.getStart().isAfter(se.getEnd()))
+                {
+                    //add a day to end if end is after start
+                    se.setEnd(se.getEnd().plusDays(1));
+
+                    // reload end reminders
+                    se.reloadEndReminders(Main.getScheduleManager().getEndReminders(se.getChannelId()));
+                }
+
+                // reload start reminders
+                se.reloadReminders(Main.getScheduleManager().getReminders(se.getChannelId()))
+                        .regenerateAnnouncementOverrides();
+                return "";
+            }, "s", "starts", "start")
+            .value((e, args, i, head) ->
+            {
+                ScheduleEntry se = e.se;
+                if (args.length-i < 1)
+                {
+                    return "That's not the right number of arguments for **"+args[i-1]+"**! " +
+                            "Use ``" + head + " "+args[0]+" "+args[i-1]+" [end time]``";
+                }
+                if (args[i].equalsIgnoreCase("off"))
+                {
+                    // if off, use start
+                    se.setEnd(se.getStart());
+                }
+                else
+                {
+                    // if time is not "off" or an invalid time, fail
+                    if (!VerifyUtilities.verifyTime(args[i]))
+                    {
+                        return "I could not understand **" + args[i] + "** as a time!\n" +
+                                "Please use the format hh:mm[am|pm].";
+                    }
+                    ZonedDateTime end = ZonedDateTime.of(se.getEnd().toLocalDate(),
+                            ParsingUtilities.parseTime(args[i]), se.getEnd().getZone());
+                    if (end.isBefore(ZonedDateTime.now()))
+                    {
+                        return "Today's time is already past *" + args[i] + "*!\n" +
+                                "Please use a different time, or change the date for the event!";
+                    }
+                    se.setEnd(end);
+                }
+
+                // add a day if the time has already passed
+                if(ZonedDateTime.now().isAfter(se.getEnd())) se.setEnd(se.getEnd().plusDays(1));
+
+                // add a day to end if end is after start
+                if(se.getStart().isAfter(se.getEnd())) se.setEnd(se.getEnd().plusDays(1));
+
+                // reload end reminders
+                se.reloadEndReminders(Main.getScheduleManager().getEndReminders(se.getChannelId()))
+                        .regenerateAnnouncementOverrides();
+                return "";
+            }, "e", "ends", "end")
+            .value((e, args, i, head) ->
+            {
+                if (args.length-i < 1)
+                {
+                    return "That's not the right number of arguments for **"+args[i-1]+"**! " +
+                            "Use ``"+head+" "+args[0]+" "+args[i-1]+" [\"title\"]``";
+                }
+                if (args[i].length() > 255)
+                {
+                    return "Your title can be at most 255 characters!";
+                }
+                e.se.setTitle(args[i]);
+                return "";
+            }, "t", "title")
+            .value((e, args, i, head) ->
+            {
+                ScheduleEntry se = e.se;
+                ZonedDateTime date = parseDate(e, args, i, head, true);
+                if (date == null) return e.error;
+                se.setStart(se.getStart()
+                        .withMonth(date.getMonthValue())
+                        .withDayOfMonth(date.getDayOfMonth())
+                        .withYear(date.getYear()));
+                se.setEnd(se.getEnd()
+                        .withMonth(date.getMonthValue())
+                        .withDayOfMonth(date.getDayOfMonth())
+                        .withYear(date.getYear()));
+
+                se.reloadReminders(Main.getScheduleManager().getReminders(se.getChannelId()))
+                        .reloadEndReminders(Main.getScheduleManager().getEndReminders(se.getChannelId()))
+                        .regenerateAnnouncementOverrides();
+                return "";
+            }, "d", "date")
+            .value((e, args, i, head) ->
+            {
+                ScheduleEntry se = e.se;
+                ZonedDateTime date = parseDate(e, args, i, head, true);
+                if (date == null) return e.error;
+                se.setStart(se.getStart()
+                        .withMonth(date.getMonthValue())
+                        .withDayOfMonth(date.getDayOfMonth())
+                        .withYear(date.getYear()));
+
+                if(se.getEnd().isBefore(se.getStart()))
+                {
+                    se.setEnd(se.getStart());
+                    se.reloadEndReminders(Main.getScheduleManager().getEndReminders(se.getChannelId()));
+                }
+
+                se.reloadReminders(Main.getScheduleManager().getReminders(se.getChannelId()))
+                        .regenerateAnnouncementOverrides();
+                return "";
+            }, "sd", "start date", "start-date")
+            .value((e, args, i, head) ->
+            {
+                ScheduleEntry se = e.se;
+                ZonedDateTime date = parseDate(e, args, i, head, false);
+                if (date == null) return e.error;
+                se.setEnd(se.getEnd()
+                        .withMonth(date.getMonthValue())
+                        .withDayOfMonth(date.getDayOfMonth())
+                        .withYear(date.getYear()));
+
+                if(se.getEnd().isBefore(se.getStart()))
+                {
+                    se.setStart(se.getEnd());
+                    se.reloadReminders(Main.getScheduleManager().getReminders(se.getChannelId()));
+                }
+
+                se.reloadEndReminders(Main.getScheduleManager().getEndReminders(se.getChannelId()))
+                        .regenerateAnnouncementOverrides();
+                return "";
+            }, "ed", "end date", "end-date")
+            .value((e, args, i, head) ->
+            {
+                String verify = VerifyUtilities.verifyRepeat(args, i, head);
+                if (verify.isEmpty()) e.se.setRepeat(EventRecurrence.parseRepeat(args[i].toLowerCase()));
+                return verify;
+            }, "r", "repeats", "repeat")
+            .value((e, args, i, head) ->
+            {
+                String verify = VerifyUtilities.verifyUrl(args, i, head);
+                if (verify.isEmpty()) e.se.setTitleUrl(ParsingUtilities.parseUrl(args[i]));
+                return verify;
+            }, "u", "url")
+            .value((e, args, i, head) ->
+            {
+                String verify = VerifyUtilities.verifyUrl(args, i, head);
+                if (verify.isEmpty()) e.se.setImageUrl(ParsingUtilities.parseUrl(args[i]));
+                return verify;
+            }, "im", "image")
+            .value((e, args, i, head) ->
+            {
+                String verify = VerifyUtilities.verifyUrl(args, i, head);
+                if (verify.isEmpty()) e.se.setThumbnailUrl(ParsingUtilities.parseUrl(args[i]));
+                return verify;
+            }, "th", "thumbnail")
+            .flag((e, args, i, head) ->
+            {
+                e.se.setQuietStart(!e.se.isQuietStart());
+                return "";
+            }, "qs", "quiet-start")
+            .flag((e, args, i, head) ->
+            {
+                e.se.setQuietEnd(!e.se.isQuietEnd());
+                return "";
+            }, "qe", "quiet-end")
+            .flag((e, args, i, head) ->
+            {
+                e.se.setQuietRemind(!e.se.isQuietRemind());
+                return "";
+            }, "qr", "quiet-remind")
+            .flag((e, args, i, head) ->
+            {
+                ScheduleEntry se = e.se;
+                boolean quiet = se.isQuietRemind() && se.isQuietEnd() && se.isQuietStart();
+                se.setQuietRemind(!quiet).setQuietEnd(!quiet).setQuietStart(!quiet);
+                return "";
+            }, "qa", "quiet-all")
+            .value((e, args, i, head) ->
+            {
+                String verify = VerifyUtilities.verifyExpire(args, i, head, e.zone);
+                if (verify.isEmpty()) e.se.setExpire(ParsingUtilities.parseNullableDate(args[i], e.zone));
+                return verify;
+            }, "ex", "expire")
+            .option(2, (e, args, i, head) ->
+            {
+                String verify = VerifyUtilities.verifyLimit(args, i, head, e.se);
+                if (!verify.isEmpty()) return verify;
+
+                Integer lim = args[i+1].equalsIgnoreCase("off") ? null : Integer.parseInt(args[i+1]);
+                e.se.setRsvpLimit(args[i], lim);
+                e.limitsChanged = true;
+                return "";
+            }, "limit", "l")
+            .value((e, args, i, head) ->
+            {
+                String verify = VerifyUtilities.verifyDeadline(args, i, head);
+                if (verify.isEmpty()) e.se.setRsvpDeadline(ParsingUtilities.parseNullableDate(args[i], e.zone));
+                return verify;
+            }, "deadline", "dl")
+            .value((e, args, i, head) ->
+            {
+                String verify = VerifyUtilities.verifyCount(args, i, head);
+                if (!verify.isEmpty()) return verify;
+
+                e.se.setCount(args[i].equalsIgnoreCase("off") ? null : Integer.parseInt(args[i]));
+                e.se.setOriginalStart(e.se.getStart());    // set the original start to the current start
+                return "";
+            }, "co", "count")
+            .value((e, args, i, head) ->
+            {
+                String verify = VerifyUtilities.verifyLocation(args, i, head);
+                if (verify.isEmpty()) e.se.setLocation(args[i].equalsIgnoreCase("off") ? null : args[i]);
+                return verify;
+            }, "lo", "location")
+            .branch(ANNOUNCEMENT, (e, args, i, head) ->
+                    "That's not the right number of arguments for **" + args[i-1] + "**!\n" +
+                    "Use ``" + head + " " + args[0] + " " + args[i-1] + " [add|remove] [#target] [time] [message]``",
+                    "an", "announce", "announcement", "announcements")
+            .branch(ADD, (e, args, i, head) ->
+                    "That's not the right number of arguments!\n" +
+                    "Use ``" + head + " " + args[0] + " " + args[i-1] + " [announcement|comment] [args]``",
+                    "a", "add")
+            .branch(REMOVE, (e, args, i, head) ->
+                    "That's not the right number of arguments!\n" +
+                    "Use ``" + head + " " + args[0] + " " + args[i-1] + " [announcement|comment] [args]``",
+                    "re", "remove")
+            .value((e, args, i, head) ->
+            {
+                String verify = VerifyUtilities.verifyColor(args, i, head);
+                if (verify.isEmpty()) e.se.setColor(args[i].toLowerCase().matches("off||null||none") ? null : args[i]);
+                return verify;
+            }, "color")
+            .build();
+
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String head = prefix + this.name();
         int index = 0;
 
@@ -110,7 +471,7 @@ public class EditCommand implements Command
         }
 
         Integer Id = ParsingUtilities.encodeIDToInt(args[index]);
-        ScheduleEntry entry = Main.getEntryManager().getEntryFromGuild( Id, event.getGuild().getId() );
+        ScheduleEntry entry = ctx.getEntry(Id);
         if(entry == null)
         {
             return "I could not find an entry with that ID!";
@@ -125,737 +486,48 @@ public class EditCommand implements Command
 
         index++; // 1
 
-        // check later args
-        ZoneId zone = Main.getScheduleManager().getTimeZone(entry.getChannelId());
-        String verify;
-        while(index < args.length)
-        {
-            switch(args[index++].toLowerCase())
-            {
-                case "c":
-                case "comment":
-                case "comments":
-                    if(args.length-index < 1)
-                    {
-                        return "That's not enough arguments for *comment*!\n" +
-                                "Use ``"+head+" "+args[0]+" "+args[index-1]+" [add|remove|swap] <arg(s)>``";
-                    }
-                    switch (args[index++].toLowerCase())
-                    {
-                        case "a":
-                        case "add":
-                            verify = VerifyUtilities.verifyCommentAdd(args, index, head);
-                            if(!verify.isEmpty()) return verify;
-                            index++;
-                            break;
-                        case "r":
-                        case "remove":
-                            verify = VerifyUtilities.verifyCommentRemove(args, index, head, entry);
-                            if(!verify.isEmpty()) return verify;
-                            index++;
-                            break;
-                        case "s":
-                        case "swap":
-                            verify = VerifyUtilities.verifyCommentSwap(args, index, head, entry);
-                            if(!verify.isEmpty()) return verify;
-                            index += 2;
-                            break;
-                        case "m":
-                        case "modify":
-                        case "replace":
-                        case "set":
-                            if (args.length-index < 2)
-                            {
-                                return "That's not the right number of arguments for **" + args[index-1] +"**!\n" +
-                                        "Use ``" + head + " " + args[index-2] + " " + args[index-1] + " [num] [new_comment]``!";
-                            }
-                            if (!VerifyUtilities.verifyInteger(args[index]))
-                            {
-                                return "The argument **"+args[index]+"** is not right!\n" +
-                                        "This needs to be a number representing the comment number" +
-                                        " you wish to replace!";
-                            }
-                            int num = Integer.parseInt(args[index]);
-                            if (entry.getComments().size() > num || num < 0)
-                            {
-                                return "The provided comment number must be between 1 and " +
-                                        entry.getComments().size() + "!";
-                            }
-                            index += 2;
-                            break;
-                        default:
-                            return "The only valid options for ``comment`` are **add**, **remove**, **modify**, or **swap**!";
-                    }
-                    break;
-
-                case "desc":
-                case "description":
-                    if (args.length-index < 1)
-                    {
-                        return "That's not the right number of arguments for **"+args[index-1]+"**!\n"+
-                                "Use ``" + head + " " + args[index-2] + " " + args[index-1] + " [description]``";
-                    }
-                    index++;
-                    break;
-
-                case "s":
-                case "starts":
-                case "start":
-                    if(args.length-index < 1)
-                    {
-                        return "That's not the right number of arguments for **"+args[index-1]+"**!\n" +
-                                "Use ``" + head + " "+args[index-2]+" "+args[index-1]+" [start time]``";
-                    }
-                    if(!VerifyUtilities.verifyTime(args[index]))
-                    {
-                        return "I could not understand **" + args[index] + "** as a time!" +
-                                "\nPlease use the format hh:mm[am|pm].";
-                    }
-                    if(ZonedDateTime.of(entry.getStart().toLocalDate(), ParsingUtilities.parseTime(args[index]), entry.getStart().getZone()).isBefore(ZonedDateTime.now()))
-                    {
-                        return "Today's time is already past *" + args[index] + "*!\n" +
-                                "Please use a different time, or change the date for the event!";
-                    }
-                    if(entry.hasStarted())
-                    {
-                        return "You cannot modify the start time after the event has already started.";
-                    }
-                    index++;
-                    break;
-
-                case "e":
-                case "ends":
-                case "end":
-                    if (args.length-index < 1)
-                    {
-                        return "That's not the right number of arguments for **"+args[index-1]+"**! " +
-                                "Use ``" + head + " "+args[0]+" "+args[index-1]+" [end time]``";
-                    }
-                    // if time is not "off" or an invalid time, fail
-                    if (!VerifyUtilities.verifyTime(args[index]) && !args[index].equalsIgnoreCase("off"))
-                    {
-                        return "I could not understand **" + args[index] + "** as a time!\n" +
-                                "Please use the format hh:mm[am|pm].";
-                    }
-                    // if time is not "off" do additional check
-                    if (!args[index].equalsIgnoreCase("off"))
-                    {
-                        ZonedDateTime end = ZonedDateTime.of(entry.getEnd().toLocalDate(),
-                                ParsingUtilities.parseTime(args[index]),
-                                entry.getEnd().getZone());
-                        if (end.isBefore(ZonedDateTime.now()))
-                        {
-                            return "Today's time is already past *" + args[index] + "*!\n" +
-                                    "Please use a different time, or change the date for the event!";
-                        }
-                    }
-                    index++;
-                    break;
-
-                case "t":
-                case "title":
-                    if (args.length-index < 1)
-                    {
-                        return "That's not the right number of arguments for **"+args[index-1]+"**! " +
-                                "Use ``"+head+" "+args[0]+" "+args[index-1]+" [\"title\"]``";
-                    }
-                    if (args[index].length() > 255)
-                    {
-                        return "Your title can be at most 255 characters!";
-                    }
-                    index++;
-                    break;
-
-                case "d":
-                case "date":
-                case "sd":
-                case "start-date":
-                    verify = VerifyUtilities.verifyDate(args, index, head, entry, zone, true);
-                    if(!verify.isEmpty()) return verify;
-                    index++;
-                    break;
-
-
-                case "ed":
-                case "end-date":
-                    verify = VerifyUtilities.verifyDate(args, index, head, entry, zone, false);
-                    if(!verify.isEmpty()) return verify;
-                    index++;
-                    break;
-
-                case "r":
-                case "repeats":
-                case "repeat":
-                    verify = VerifyUtilities.verifyRepeat(args, index, head);
-                    if (!verify.isEmpty()) return verify;
-                    index++;
-                    break;
-
-                case "im":
-                case "image":
-                case "th":
-                case "thumbnail":
-                case "u":
-                case "url":
-                    verify = VerifyUtilities.verifyUrl(args, index, head);
-                    if(!verify.isEmpty()) return verify;
-                    index++;
-                    break;
-
-                case "qs":
-                case "quiet-start":
-                case "qe":
-                case "quiet-end":
-                case "qr":
-                case "quiet-remind":
-                case "quiet-all":
-                case "qa":
-                    break;
-
-                case "ex":
-                case "expire":
-                    verify = VerifyUtilities.verifyExpire(args, index, head, zone);
-                    if(!verify.isEmpty()) return verify;
-                    index++;
-                    break;
-
-                case "limit":
-                case "l":
-                    verify = VerifyUtilities.verifyLimit(args, index, head, entry);
-                    if(!verify.isEmpty()) return verify;
-                    index+=2;
-                    break;
-
-                case "deadline":
-                case "dl":
-                    verify = VerifyUtilities.verifyDeadline(args, index, head);
-                    if(!verify.isEmpty()) return verify;
-                    index++;
-                    break;
-
-                case "co":
-                case "count":
-                    verify = VerifyUtilities.verifyCount(args, index, head);
-                    if (!verify.isEmpty()) return verify;
-                    index++;
-                    break;
-
-                case "lo":
-                case "location":
-                    verify = VerifyUtilities.verifyLocation(args, index, head);
-                    if (!verify.isEmpty()) return verify;
-                    index++;
-                    break;
-
-                case "an":
-                case "announce":
-                case "announcement":
-                case "announcements":
-                    if (args.length - index < 1)
-                    {
-                        return "That's not the right number of arguments for **" + args[index - 1] + "**!\n" +
-                                "Use ``" + head + " " + args[0] + " " + args[index - 1] + " [add|remove] [#target] [time] [message]``";
-                    }
-                    switch(args[index++].toLowerCase())
-                    {
-                        case "a":
-                        case "add":
-                            verify = VerifyUtilities.verifyAnnouncementAdd(args, index, head, event);
-                            if(!verify.isEmpty()) return verify;
-                            index += 3;
-                            break;
-
-                        case "r":
-                        case "remove":
-                            verify = VerifyUtilities.verifyAnnouncementRemove(args, index, head, entry);
-                            if(!verify.isEmpty()) return verify;
-                            index ++;
-                            break;
-
-                        default:
-                            return "**" + args[index-1] + "** is not a valid option!\n" +
-                                    "You should use either *add* or *remove*!";
-                    }
-                    break;
-
-                case "a":
-                case "add":
-                    if (args.length-index < 1)
-                    {
-                        return "That's not the right number of arguments!\n" +
-                                "Use ``" + head + " " + args[0] + " " + args[index-1] + " [announcement|comment] [args]";
-                    }
-                    switch(args[index++].toLowerCase())
-                    {
-                        case "a":
-                        case "an":
-                        case "announce":
-                        case "announcement":
-                        case "announcements":
-                            verify = VerifyUtilities.verifyAnnouncementAdd(args, index, head, event);
-                            if(!verify.isEmpty()) return verify;
-                            index += 3;
-                            break;
-
-                        case "c":
-                        case "comment":
-                        case "comments":
-                            verify = VerifyUtilities.verifyCommentAdd(args, index, head);
-                            if(!verify.isEmpty()) return verify;
-                            index++;
-                            break;
-
-                        default:
-                            return "*" + args[index-1] + "* is not a valid option!\n" +
-                                    "Please use either *comment* or **announcement*!";
-                    }
-                    break;
-
-                case "re":
-                case "remove":
-                    if (args.length-index < 1)
-                    {
-                        return "That's not the right number of arguments!\n" +
-                                "Use ``" + head + " " + args[0] + " " + args[index-1] + " [announcement|comment] [args]";
-                    }
-                    switch(args[index++].toLowerCase())
-                    {
-                        case "a":
-                        case "an":
-                        case "announce":
-                        case "announcement":
-                        case "announcements":
-                            verify = VerifyUtilities.verifyAnnouncementRemove(args, index, head, entry);
-                            if(!verify.isEmpty()) return verify;
-                            index++;
-                            break;
-
-                        case "c":
-                        case "comment":
-                        case "comments":
-                            verify = VerifyUtilities.verifyCommentRemove(args, index, head, entry);
-                            if(!verify.isEmpty()) return verify;
-                            index++;
-                            break;
-
-                        default:
-                            return "*" + args[index-1] + "* is not a valid option!\n" +
-                                    "Please use either *comment* or **announcement*!";
-                    }
-                    break;
-
-                case "color":
-                    verify = VerifyUtilities.verifyColor(args, index, head);
-                    if(!verify.isEmpty()) return verify;
-                    index++;
-                    break;
-
-                default:
-                    return "**" + args[index-1] + "** is not an option I know of!\n" +
-                            "Please use the ``help`` command to see available options!";
-            }
-        }
+        // check and apply later args to the event, the action saves the event
+        Edit edit = new Edit(entry, ctx.getTimeZone(entry.getChannelId()), event);
+        String verify = GRAMMAR.parse(edit, args, index, head);
+        if (!verify.isEmpty()) return verify;
 
+        ctx.setOptions(edit);
         return ""; // return valid
     }
 
     @Override
-    public void action(String head, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         int index = 0;
 
         Integer entryId  = ParsingUtilities.encodeIDToInt(args[index]);
-        ScheduleEntry se = Main.getEntryManager().getEntry( entryId );
+        ScheduleEntry se = ctx.getEntry(entryId);
 
         Message msg = se.getMessageObject();
         if (msg==null) return;
 
         //
-        // edit the event if command contains more arguments than the event ID,
+        // save the event if command contains more arguments than the event ID,
         // otherwise skip this and print out the event configuration
         if(args.length > 1)
         {
-            index++;    // 1
-            boolean limitsChanged = false;
-            while(index < args.length)
+            // the changes were applied to the event while verifying the command
+            Edit edit = ctx.getOptions(Edit.class);
+            if (edit == null)
             {
-                ZoneId zone = Main.getScheduleManager().getTimeZone(se.getChannelId());
-                ArrayList<String> comments;
-                switch (args[index++].toLowerCase())
-                {
-                    case "c":
-                    case "comment":
-                    case "comments":
-                        comments = se.getComments();
-                        switch( args[index++] )
-                        {
-                            case "a":
-                            case "add" :
-                                comments.add(args[index]);
-                                se.setComments(comments);
-                                index++;
-                                break;
-                            case "r":
-                            case "remove" :
-                                if(VerifyUtilities.verifyInteger(args[index]))
-                                {
-                                    comments.remove(Integer.parseInt(args[index])-1);
-                                }
-                                else
-                                {
-                                    comments.remove(args[index]);
-                                }
-                                se.setComments(comments);
-                                index++;
-                                break;
-                            case "s":
-                            case "swap":
-                                String a = comments.get(Integer.parseInt(args[index])-1);
-                                String b = comments.get(Integer.parseInt(args[index+1])-1);
-                                comments.set(Integer.parseInt(args[index])-1, b);
-                                comments.set(Integer.parseInt(args[index+1])-1, a);
-
-                                se.setComments(comments);
-                                index += 2;
-                                break;
-                            case "m":
-                            case "modify":
-                            case "replace":
-                            case "set":
-                                int no = Integer.parseInt(args[index])-1;
-                                comments.set(no, args[index+1]);
-
-                                se.setComments(comments);
-                                index += 2;
-                                break;
-                        }
-                        break;
-
-                    case "desc":
-                    case "description":
-                        String description =
-                                args[index].toLowerCase().matches("(off)|(default)") ? "%g" : args[index];
-                        se.setDescription(description);
-                        index++;
-                        break;
-
-                    case "s":
-                    case "starts":
-                    case "start":
-                        // create new datetime and update the schedule entry object
-                        ZonedDateTime newStart = ZonedDateTime.of(se.getStart().toLocalDate(),
-                                ParsingUtilities.parseTime(args[index]), se.getStart().getZone());
-                        se.setStart(newStart);
-
-                        // do some final processing on start/end times
-                        if(ZonedDateTime.now().isAfter(se.getStart()))
-                        {
-                            //add a day if the time has already passed
-                            se.setStart(se.getStart().plusDays(1));
-                        }
-                        if(se.getStart().isAfter(se.getEnd()))
-                        {
-                            //add a day to end if end is after start
-                            se.setEnd(se.getEnd().plusDays(1));
-
-                            // reload end reminders
-                            se.reloadEndReminders(Main.getScheduleManager().getEndReminders(se.getChannelId()));
-                        }
-
-                        // reload start reminders
-                        se.reloadReminders(Main.getScheduleManager().getReminders(se.getChannelId()))
-                                .regenerateAnnouncementOverrides();
-                        index++;
-                        break;
-
-                    case "e":
-                    case "ends":
-                    case "end":
-                        // if off, use start
-                        if(args[index].equalsIgnoreCase("off"))
-                        {
-                            se.setEnd(se.getStart());
-                        }
-                        else
-                        {
-                            // otherwise parse the input for a time
-                            se.setEnd(ZonedDateTime.of(se.getEnd().toLocalDate(),
-                                        ParsingUtilities.parseTime(args[index]),
-                                        se.getEnd().getZone()));
-                        }
-
-                        // add a day if the time has already passed
-                        if(ZonedDateTime.now().isAfter(se.getEnd())) se.setEnd(se.getEnd().plusDays(1));
-
-                        // add a day to end if end is after start
-                        if(se.getStart().isAfter(se.getEnd())) se.setEnd(se.getEnd().plusDays(1));
-
-                        // reload end reminders
-                        se.reloadEndReminders(Main.getScheduleManager().getEndReminders(se.getChannelId()))
-                                .regenerateAnnouncementOverrides();
-                        index++;
-                        break;
-
-                    case "t":
-                    case "title":
-                        se.setTitle(args[index]);
-                        index++;
-                        break;
-
-                    case "d":
-                    case "date":
-                        ZonedDateTime date = ParsingUtilities.parseDate(args[index].toLowerCase(), zone);
-                        se.setStart(se.getStart()
-                                .withMonth(date.getMonthValue())
-                                .withDayOfMonth(date.getDayOfMonth())
-                                .withYear(date.getYear()));
-                        se.setEnd(se.getEnd()
-                                .withMonth(date.getMonthValue())
-                                .withDayOfMonth(date.getDayOfMonth())
-                                .withYear(date.getYear()));
-
-                        se.reloadReminders(Main.getScheduleManager().getReminders(se.getChannelId()))
-                                .reloadEndReminders(Main.getScheduleManager().getEndReminders(se.getChannelId()))
-                                .regenerateAnnouncementOverrides();
-                        index++;
-                        break;
-
-                    case "sd":
-                    case "start date":
-                    case "start-date":
-                        ZonedDateTime sdate = ParsingUtilities.parseDate(args[index].toLowerCase(), zone);
-                        se.setStart(se.getStart()
-                                .withMonth(sdate.getMonthValue())
-                                .withDayOfMonth(sdate.getDayOfMonth())
-                                .withYear(sdate.getYear()));
-
-                        if(se.getEnd().isBefore(se.getStart()))
-                        {
-                            se.setEnd(se.getStart());
-                            se.reloadEndReminders(Main.getScheduleManager().getEndReminders(se.getChannelId()));
-                        }
-
-                        se.reloadReminders(Main.getScheduleManager().getReminders(se.getChannelId()))
-                                .regenerateAnnouncementOverrides();
-                        index++;
-                        break;
-
-                    case "ed":
-                    case "end date":
-                    case "end-date":
-                        ZonedDateTime edate = ParsingUtilities.parseDate(args[index].toLowerCase(), zone);
-                        se.setEnd(se.getEnd()
-                                .withMonth(edate.getMonthValue())
-                                .withDayOfMonth(edate.getDayOfMonth())
-                                .withYear(edate.getYear()));
-
-                        if(se.getEnd().isBefore(se.getStart()))
-                        {
-                            se.setStart(se.getEnd());
-                            se.reloadReminders(Main.getScheduleManager().getReminders(se.getChannelId()));
-                        }
-
-                        se.reloadEndReminders(Main.getScheduleManager().getEndReminders(se.getChannelId()))
-                                .regenerateAnnouncementOverrides();
-                        index++;
-                        break;
-
-                    case "r":
-                    case "repeats":
-                    case "repeat":
-                        se.setRepeat(EventRecurrence.parseRepeat(args[index].toLowerCase()));
-                        index++;
-                        break;
-
-                    case "u":
-                    case "url":
-                        se.setTitleUrl(ParsingUtilities.parseUrl(args[index]));
-                        index++;
-                        break;
-
-                    case "im":
-                    case "image":
-                        se.setImageUrl(ParsingUtilities.parseUrl(args[index]));
-                        index++;
-                        break;
-
-                    case "th":
-                    case "thumbnail":
-                        se.setThumbnailUrl(ParsingUtilities.parseUrl(args[index]));
-                        index++;
-                        break;
-
-                    case "ex":
-                    case "expire":
-                        se.setExpire(ParsingUtilities.parseNullableDate(args[index], zone));
-                        index++;
-                        break;
-
-                    case "deadline":
-                    case "dl":
-                        se.setRsvpDeadline(ParsingUtilities.parseNullableDate(args[index], zone));
-                        index++;
-                        break;
-
-                    case "count":
-                    case "co":
-                        Integer c = null;
-                        if (!args[index].equalsIgnoreCase("off"))
-                            c = Integer.parseInt(args[index]);
-                        se.setCount(c);
-                        se.setOriginalStart(se.getStart());    // set the original start to the current start
-                        index++;
-                        break;
-
-                    case "qs":
-                    case "quiet-start":
-                        se.setQuietStart(!se.isQuietStart());
-                        break;
-
-                    case "qe":
-                    case "quiet-end":
-                        se.setQuietEnd(!se.isQuietEnd());
-                        break;
-
-                    case "qr":
-                    case "quiet-remind":
-                        se.setQuietRemind(!se.isQuietRemind());
-                        break;
-
-                    case "qa":
-                    case "quiet-all":
-                        if(se.isQuietRemind() && se.isQuietEnd() && se.isQuietStart())
-                        {
-                            se.setQuietRemind(false).setQuietEnd(false).setQuietStart(false);
-                        }
-                        else
-                        {
-                            se.setQuietRemind(true).setQuietEnd(true).setQuietStart(true);
-                        }
-                        break;
-
-                    case "limit":
-                    case "l":
-                        Integer lim = null;
-                        if(!args[index+1].equalsIgnoreCase("off"))
-                        {
-                            lim = Integer.parseInt(args[index+1]);
-                        }
-                        se.setRsvpLimit(args[index], lim);
-                        limitsChanged = true;
-                        index += 2;
-                        break;
-
-                    case "lo":
-                    case "location":
-                        if (args[index].equalsIgnoreCase("off"))
-                            se.setLocation(null);
-                        else
-                            se.setLocation(args[index]);
-                        index++;
-                        break;
-
-                    case "an":
-                    case "announce":
-                    case "announcement":
-                    case "announcements":
-                        switch(args[index++].toLowerCase())
-                        {
-                            case "a":
-                            case "add":
-                                String target = args[index].replaceAll("[^\\d]","");
-                                String time = args[index+1];
-                                String message = args[index+2];
-                                se.addAnnouncementOverride(target, time, message);
-                                index += 3;
-                                break;
-
-                            case "r":
-                            case "remove":
-                                Integer id = Integer.parseInt(args[index].replaceAll("[^\\d]",""))-1;
-                                se.removeAnnouncementOverride(id);
-                                index++;
-                                break;
-                        }
-                        break;
-
-                    case "a":
-                    case "add":
-                        switch(args[index++].toLowerCase())
-                        {
-                            case "a":
-                            case "an":
-                            case "announce":
-                            case "announcement":
-                            case "announcements":
-                                String target = args[index].replaceAll("[^\\d]","");
-                                String time = args[index+1];
-                                String message = args[index+2];
-                                se.addAnnouncementOverride(target, time, message);
-                                index += 3;
-                                break;
-
-                            case "c":
-                            case "comment":
-                            case "comments":
-                                comments = se.getComments();
-                                comments.add( args[index] );
-                                se.setComments(comments);
-                                index++;
-                                break;
-                        }
-                        break;
-
-                    case "re":
-                    case "remove":
-                        switch(args[index++].toLowerCase())
-                        {
-                            case "a":
-                            case "an":
-                            case "announce":
-                            case "announcement":
-                            case "announcements":
-                                Integer id = Integer.parseInt(args[index].replaceAll("[^\\d]",""))-1;
-                                se.removeAnnouncementOverride(id);
-                                index++;
-                                break;
-
-                            case "c":
-                            case "comment":
-                            case "comments":
-                                comments = se.getComments();
-                                if(VerifyUtilities.verifyInteger(args[index]))
-                                {
-                                    comments.remove(Integer.parseInt(args[index])-1);
-                                }
-                                else
-                                {
-                                    comments.remove(args[index]);
-                                }
-                                se.setComments(comments);
-                                index++;
-                                break;
-                        }
-                        break;
-
-                    case "color":
-                        if (args[index].toLowerCase().matches("off||null||none"))
-                            se.setColor(null);
-                        else
-                            se.setColor(args[index]);
-                        index++;
-                        break;
-                }
+                edit = new Edit(se, ctx.getTimeZone(se.getChannelId()), event);
+                if (!GRAMMAR.parse(edit, args, index+1, ctx.getPrefix() + this.name()).isEmpty()) return;
             }
+
             Main.getEntryManager().updateEntry(se, true);
-            if (limitsChanged) // if the limits on the event was changed, reload the reactions
+            if (edit.limitsChanged) // if the limits on the event was changed, reconcile the reactions
             {
-                se.getMessageObject().clearReactions().queue(message->
-                {
-                    Map<String, String> options = Main.getScheduleManager().getRSVPOptions(se.getChannelId());
-                    String clearEmoji = Main.getScheduleManager().getRSVPClear(se.getChannelId());
-                    EntryManager.addRSVPReactions(options, clearEmoji, se.getMessageObject(), se);
-                }, failure-> Logging.exception(this.getClass(), failure));
+                Map<String, String> options = ctx.getRSVPOptions(se.getChannelId());
+                String clearEmoji = Main.getScheduleManager().getRSVPClear(se.getChannelId());
+                Main.getEntryManager().reconcileRSVPReactions(options, clearEmoji, se.getMessageObject(), se);
             }
         }
 
@@ -867,4 +539,103 @@ public class EditCommand implements Command
                 se.getChannelId() + ">\n" + se.toString();
         MessageUtilities.sendMsg(body, event.getChannel(), null);
     }
+
+    private static String addComment(Edit e, String[] args, int i, String head)
+    {
+        String verify = VerifyUtilities.verifyCommentAdd(args, i, head);
+        if (!verify.isEmpty()) return verify;
+
+        ArrayList<String> comments = e.se.getComments();
+        comments.add(args[i]);
+        e.se.setComments(comments);
+        return "";
+    }
+
+    private static String removeComment(Edit e, String[] args, int i, String head)
+    {
+        String verify = VerifyUtilities.verifyCommentRemove(args, i, head, e.se);
+        if (!verify.isEmpty()) return verify;
+
+        ArrayList<String> comments = e.se.getComments();
+        if(VerifyUtilities.verifyInteger(args[i]))
+        {
+            comments.remove(Integer.parseInt(args[i])-1);
+        }
+        else
+        {
+            comments.remove(args[i]);
+        }
+        e.se.setComments(comments);
+        return "";
+    }
+
+    private static String addAnnouncement(Edit e, String[] args, int i, String head)
+    {
+        String verify = VerifyUtilities.verifyAnnouncementAdd(args, i, head, e.event);
+        if (!verify.isEmpty()) return verify;
+
+        String target = args[i].replaceAll("[^\\d]","");
+        e.se.addAnnouncementOverride(target, args[i+1], args[i+2]);
+        return "";
+    }
+
+    private static String removeAnnouncement(Edit e, String[] args, int i, String head)
+    {
+        String verify = VerifyUtilities.verifyAnnouncementRemove(args, i, head, e.se);
+        if (!verify.isEmpty()) return verify;
+
+        Integer id = Integer.parseInt(args[i].replaceAll("[^\\d]",""))-1;
+        e.se.removeAnnouncementOverride(id);
+        return "";
+    }
+
+    /**
+     * checks and parses the argument of a date option
+     * @return the date, or null with the error left in the edit
+     */
+    private static ZonedDateTime parseDate(Edit e, String[] args, int i, String head, boolean checkStarted)
+    {
+        if(args.length-i < 1)
+        {
+            e.error = "That's not the right number of arguments for **"+args[i-1]+"**! " +
+                    "Use ``"+head+" "+args[0]+" "+args[i-1]+" [date]``";
+            return null;
+        }
+        if(!VerifyUtilities.verifyDate(args[i]))
+        {
+            e.error = "I could not understand **" + args[i] + "** as a date! Please use the format M/d.";
+            return null;
+        }
+        ZonedDateTime date = ParsingUtilities.parseDate(args[i].toLowerCase(), e.zone);
+        if(date.isBefore(ZonedDateTime.now()))
+        {
+            e.error = "That date is in the past!";
+            return null;
+        }
+        if(checkStarted && e.se.hasStarted())
+        {
+            e.error = "You cannot modify the date of events which have already started!";
+            return null;
+        }
+        return date;
+    }
+
+    /**
+     * an edit in progress, the event is changed as each option is parsed
+     */
+    private static class Edit
+    {
+        final ScheduleEntry se;
+        final ZoneId zone;
+        final MessageReceivedEvent event;
+        boolean limitsChanged = false;
+        String error;
+
+        Edit(ScheduleEntry se, ZoneId zone, MessageReceivedEvent event)
+        {
+            this.se = se;
+            this.zone = zone;
+            this.event = event;
+        }
+    }
 }
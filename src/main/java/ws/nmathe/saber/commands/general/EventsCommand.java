@@ -7,20 +7,18 @@ import net.dv8tion.jda.core.entities.*;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
-import ws.nmathe.saber.core.schedule.ScheduleEntry;
+import ws.nmathe.saber.core.schedule.EntryView;
 import ws.nmathe.saber.utils.MessageUtilities;
 import ws.nmathe.saber.utils.ParsingUtilities;
 
 import java.time.Instant;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.TextStyle;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -29,6 +27,10 @@ import java.util.stream.Collectors;
  */
 public class EventsCommand implements Command
 {
+    // events per page, and displayed title length, sized so that a page stays within the embed limit
+    private static final int PAGE_SIZE = 12;
+    private static final int MAX_TITLE = 64;
+
     @Override
     public String name()
     {
@@ -46,17 +48,19 @@ public class EventsCommand implements Command
         String cont1 = "This command will generate a list of all upcoming events for the guild.\n" +
                 "Each event is listed with a short summary detailing the event's title, ID, and start-time.\n" +
                 "The output can be filtered by channel by appending desired schedules to the command.\n" +
+                "Large listings are split into pages, a page is selected by appending \"p: [page]\" to the command.\n" +
                 "This command is non-destructive, and can be safely used by non-administrator users.";
         info.addUsageCategory(cat1, cont1);
 
         info.addUsageExample(head);
         info.addUsageExample(head+" #schedule");
+        info.addUsageExample(head+" p:2");
 
         return info;
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
         /*
         * this command is non-destructive, so it is allowable that verify never fails
@@ -67,13 +71,25 @@ public class EventsCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
-        // process any optional channel arguments
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
+        // process any optional channel and page arguments
         List<String> channelIds = new ArrayList<>();
-        for (String arg : args)
+        int page = 1;
+        for (int i=0; i<args.length; i++)
         {
-            channelIds.add(arg.replaceAll("[^\\d]", ""));
+            int parsed = ParsingUtilities.parsePage(args[i]);
+            if (parsed == 0 && i+1 < args.length)
+            {   // "p: 2" arrives as two arguments
+                parsed = ParsingUtilities.parsePage(args[i], args[i+1]);
+                if (parsed > 0) i++;
+            }
+            if (parsed > 0) page = parsed;
+            else channelIds.add(args[i].replaceAll("[^\\d]", ""));
         }
 
         Guild guild = event.getGuild();
@@ -84,91 +100,97 @@ public class EventsCommand implements Command
             scheduleIds = scheduleIds.stream().filter(channelIds::contains).collect(Collectors.toList());
         }
 
-        // build the embed body content
-        StringBuilder content = new StringBuilder();
-        String title="Events on "+guild.getName(),
-                footer="(events list continued on next page)";
-        MessageEmbed embed;
+        // collect the event listings of the schedules the caller may view
+        Map<String, List<EntryView>> listings = new LinkedHashMap<>();
         int count = 0; // total number of events
-
-        // get the caller's guild member information
-        Member caller = event.getGuild().getMember(event.getAuthor());
+        Member caller = guild.getMember(event.getAuthor());
         if (caller != null) // hide all events if null
         {
-            // list events by their schedule
             for(String sId : scheduleIds)
             {
                 // only show users events that are on schedules they can view
-                TextChannel sChannel = event.getGuild().getTextChannelById(sId);
-                List<Permission> permissions = sChannel!=null ? caller.getPermissions(sChannel) : new ArrayList();
-                if (sChannel!=null && permissions!=null && permissions.contains(Permission.MESSAGE_READ))
+                TextChannel sChannel = guild.getTextChannelById(sId);
+                if (sChannel!=null && caller.hasPermission(sChannel, Permission.MESSAGE_READ))
                 {
-                    // for each schedule, generate a list of events scheduled
-                    Collection<ScheduleEntry> entries = Main.getEntryManager().getEntriesFromChannel(sId);
-                    if(!entries.isEmpty())
+                    List<EntryView> entries = Main.getEntryManager().getListingCache().getEvents(guild.getId(), sId);
+                    if (!entries.isEmpty())
                     {
-                        if (content.length() > 1700)
-                        {
-                            // build embed and message
-                            embed = new EmbedBuilder()
-                                    .setFooter(footer, null)
-                                    .setTitle(title)
-                                    .setDescription(content.toString()).build();
-
-                            Message message = new MessageBuilder().setEmbed(embed).build();            // build message
-                            MessageUtilities.sendMsg(message, event.getTextChannel(), null);     // send message
-
-                            // adjust title and footer to reflect future messages are a continuation
-                            title = "Events on " + guild.getName() + " (continued)";
-                            footer="(events list continued on next page)";
-                        }
-                        content.append("<#").append(sId).append("> ...\n");  // start a new schedule list
-                        while(!entries.isEmpty())
-                        {
-                            // find and remove the next earliest occurring event
-                            ScheduleEntry top = entries.toArray(new ScheduleEntry[entries.size()])[0];
-                            for(ScheduleEntry se : entries)
-                            {
-                                if(se.getStart().isBefore(top.getStart())) top = se;
-                            }
-                            entries.remove(top);
-
-                            // determine time until the event begins/ends
-                            long timeTil = ZonedDateTime.now().until(top.getStart(), ChronoUnit.MINUTES);
-                            String status = "begins";
-                            if (timeTil < 0)    // adjust if event is ending
-                            {
-                                timeTil = ZonedDateTime.now().until(top.getEnd(), ChronoUnit.MINUTES);
-                                status = "ends";
-                            }
-
-                            // add the event as a single line in the content
-                            content.append(":id:``").append(ParsingUtilities.intToEncodedID(top.getId()))
-                                    .append("`` ~ **").append(top.getTitle()).append("** ").append(status).append(" in *");
-                            if(timeTil < 120)
-                                content.append(timeTil).append(" minutes*\n");
-                            else if(timeTil < 24*60)
-                                content.append(timeTil / 60).append(" hours and ").append(timeTil % 60).append(" minutes*\n");
-                            else
-                                content.append(timeTil / (60 * 24)).append(" days*\n");
-                            count++;     // iterate event counter
-                        }
-                        content.append("\n"); // end a schedule list
+                        listings.put(sId, entries);
+                        count += entries.size();
                     }
                 }
             }
         }
 
-        // final footer shows count
-        footer = count + " event(s)";
+        int pages = Math.max(1, (count + PAGE_SIZE - 1) / PAGE_SIZE);
+        page = Math.min(page, pages);
+
+        // build the embed body content from the events on the requested page
+        StringBuilder content = new StringBuilder();
+        int skip = (page - 1) * PAGE_SIZE, remaining = PAGE_SIZE;
+        Instant now = Instant.now();
+        for (Map.Entry<String, List<EntryView>> listing : listings.entrySet())
+        {
+            List<EntryView> entries = listing.getValue();
+            if (skip >= entries.size())
+            {
+                skip -= entries.size();
+                continue;
+            }
+            if (remaining <= 0) break;
+
+            content.append("<#").append(listing.getKey()).append("> ...\n");  // start a new schedule list
+            int end = Math.min(entries.size(), skip + remaining);
+            for (EntryView top : entries.subList(skip, end)) // entries are sorted by start
+            {
+                // determine time until the event begins/ends
+                long timeTil = now.until(top.getStart(), ChronoUnit.MINUTES);
+                String status = "begins";
+                if (timeTil < 0)    // adjust if event is ending
+                {
+                    timeTil = now.until(top.getEnd(), ChronoUnit.MINUTES);
+                    status = "ends";
+                }
+
+                // add the event as a single line in the content
+                content.append(":id:``").append(ParsingUtilities.intToEncodedID(top.getId()))
+                        .append("`` ~ **").append(shorten(top.getTitle())).append("** ").append(status).append(" in *");
+                if(timeTil < 120)
+                    content.append(timeTil).append(" minutes*\n");
+                else if(timeTil < 24*60)
+                    content.append(timeTil / 60).append(" hours and ").append(timeTil % 60).append(" minutes*\n");
+                else
+                    content.append(timeTil / (60 * 24)).append(" days*\n");
+            }
+            content.append("\n"); // end a schedule list
+            remaining -= end - skip;
+            skip = 0;
+        }
+
+        // footer shows count and page
+        String footer = count + " event(s)";
+        if (pages > 1)
+        {
+            footer += " - page " + page + "/" + pages;
+            if (page < pages) footer += " (use \"" + prefix + this.name() + " p:" + (page + 1) + "\" for the next page)";
+        }
 
         // build embed and message
-        embed = new EmbedBuilder()
+        MessageEmbed embed = new EmbedBuilder()
                 .setFooter(footer, null)
-                .setTitle(title)
+                .setTitle("Events on " + guild.getName())
                 .setDescription(content.toString()).build();
 
         Message message = new MessageBuilder().setEmbed(embed).build();            // build message
         MessageUtilities.sendMsg(message, event.getTextChannel(), null);     // send message
     }
+
+    /**
+     * shortens long event titles so that a full page fits in an embed
+     */
+    private static String shorten(String title)
+    {
+        if (title == null) return "";
+        return title.length() > MAX_TITLE ? title.substring(0, MAX_TITLE - 3) + "..." : title;
+    }
 }
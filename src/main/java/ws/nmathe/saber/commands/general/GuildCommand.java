@@ -5,6 +5,7 @@ import net.dv8tion.jda.core.entities.Channel;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.core.settings.GuildSettingsManager.GuildSettings;
 import ws.nmathe.saber.utils.Logging;
@@ -50,12 +51,16 @@ public class GuildCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String head = prefix + this.name();
         if(args.length > 0)
         {
-            GuildSettings guildSettings = Main.getGuildSettingsManager().getGuildSettings(event.getGuild().getId());
+            GuildSettings guildSettings = ctx.getGuildSettings();
             switch(args[0])
             {
                 case "r":
@@ -150,9 +155,12 @@ public class GuildCommand implements Command
     }
 
     @Override
-    public void action(String head, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
-        GuildSettings guildSettings = Main.getGuildSettingsManager().getGuildSettings(event.getGuild().getId());
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
+        GuildSettings guildSettings = ctx.getGuildSettings();
         if(args.length > 0)
         {
             ArrayList<String> commands;
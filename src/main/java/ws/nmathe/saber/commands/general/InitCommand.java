@@ -8,7 +8,9 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import org.bson.Document;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
 import ws.nmathe.saber.utils.Logging;
 import ws.nmathe.saber.utils.MessageUtilities;
 
@@ -57,8 +59,12 @@ public class InitCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         if(Main.getScheduleManager().isLimitReached(event.getGuild().getId()))
         {
             return "You have reached the limit for schedules! Please delete one of your guild's schedules before trying again.";
@@ -72,8 +78,7 @@ public class InitCommand implements Command
             if (args[0].matches("<#[\\d]+>")) // first arg is a discord channel link
             {
                 String chanId = args[0].replaceFirst("<#","").replaceFirst(">","");
-                String commandChannelId = Main.getGuildSettingsManager()
-                        .getGuildSettings(event.getGuild().getId()).getCommandChannelId();
+                String commandChannelId = ctx.getGuildSettings().getCommandChannelId();
                 if(chanId.equals(commandChannelId) || chanId.equals(event.getChannel().getId()))
                 {
                     return "Your guild's command channel cannot be converted to a schedule!";
@@ -109,8 +114,11 @@ public class InitCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String body;
         if(args.length > 0)
         {
@@ -136,14 +144,14 @@ public class InitCommand implements Command
             }
             else // convert the channel to a schedule
             {
-                if(Main.getScheduleManager().isASchedule(chan.getId()))
+                if(ctx.isSchedule(chan.getId()))
                 {   // clear the channel of events
                     TextChannel finalChan = chan;
                     Main.getDBDriver().getEventCollection().find(eq("channelId", chan.getId()))
                             .forEach((Consumer<? super Document>) document ->
                             {
                                 String msgId = document.getString("messageId");
-                                finalChan.deleteMessageById(msgId).complete();
+                                MessageUtilities.deleteMsg(finalChan, msgId, null, Priority.COMMAND);
                                 Main.getEntryManager().removeEntry(document.getInteger("_id"));
                             });
                     body = "The schedule <#" + chanId + "> has been cleared!";
@@ -10,6 +10,7 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import org.apache.commons.lang3.StringUtils;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.Logging;
@@ -64,8 +65,12 @@ public class ListCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String head = prefix + this.name();
         if (args.length==0)
         {
@@ -77,12 +82,12 @@ public class ListCommand implements Command
         if (VerifyUtilities.verifyEntryID(args[index]))
         {
             Integer entryId = ParsingUtilities.encodeIDToInt(args[index]);
-            entry = Main.getEntryManager().getEntryFromGuild(entryId, event.getGuild().getId());
+            entry = ctx.getEntry(entryId);
             if (entry == null)
             {
                 return "The requested entry does not exist!";
             }
-            if (!Main.getScheduleManager().isRSVPEnabled(entry.getChannelId()))
+            if (!ctx.isRSVPEnabled(entry.getChannelId()))
             {
                 return "The schedule that the entry is on is not rsvp enabled!";
             }
@@ -140,7 +145,7 @@ public class ListCommand implements Command
                 case "t":
                 case "type":
                     if(filterValue.equalsIgnoreCase("no-input")) break;
-                    Map<String, String> options = Main.getScheduleManager().getRSVPOptions(entry.getChannelId());
+                    Map<String, String> options = ctx.getRSVPOptions(entry.getChannelId());
                     if(!options.values().contains(filterValue))
                     {
                         return "Invalid ``[type]`` for type filter!" +
@@ -158,11 +163,14 @@ public class ListCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         int index = 0;
         Integer entryId = ParsingUtilities.encodeIDToInt(args[index++]);
-        ScheduleEntry se = Main.getEntryManager().getEntryFromGuild(entryId, event.getGuild().getId());
+        ScheduleEntry se = ctx.getEntry(entryId);
 
         String titleUrl = se.getTitleUrl()==null ? "https://nnmathe.ws/saber": se.getTitleUrl();
         String title = se.getTitle()+" ["+ParsingUtilities.intToEncodedID(entryId)+"]";
@@ -218,7 +226,7 @@ public class ListCommand implements Command
         int lengthCap = 1900;   // maximum number of characters before creating a new message
         int mobileLineCap = 25; // maximum number of lines until new message, in mobile mode
         Set<String> uniqueMembers = new HashSet<>();
-        Map<String, String> options = Main.getScheduleManager().getRSVPOptions(se.getChannelId());
+        Map<String, String> options = ctx.getRSVPOptions(se.getChannelId());
         for(String type : options.values())
         {
             if(!filterByType || typeFilters.contains(type))
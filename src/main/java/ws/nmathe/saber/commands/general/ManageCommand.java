@@ -3,6 +3,7 @@ package ws.nmathe.saber.commands.general;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -47,8 +48,12 @@ public class ManageCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String head = prefix + this.name();
         int index = 0;
         if (args.length < 3)
@@ -62,7 +67,7 @@ public class ManageCommand implements Command
         if (VerifyUtilities.verifyEntryID(args[index]))
         {
             Integer entryId = ParsingUtilities.encodeIDToInt(args[index]);
-            entry = Main.getEntryManager().getEntryFromGuild(entryId, event.getGuild().getId());
+            entry = ctx.getEntry(entryId);
             if (entry == null)
             {
                 return "The requested entry does not exist!";
@@ -74,7 +79,7 @@ public class ManageCommand implements Command
         }
 
         // verify the schedule has RSVP enabled
-        if (!Main.getScheduleManager().isRSVPEnabled(entry.getChannelId()))
+        if (!ctx.isRSVPEnabled(entry.getChannelId()))
         {
             return "That event is not on an RSVP enabled schedule!";
         }
@@ -96,7 +101,7 @@ public class ManageCommand implements Command
 
         // verify the group is a valid group
         index++;
-        Map<String, String> options = Main.getScheduleManager().getRSVPOptions(entry.getChannelId());
+        Map<String, String> options = ctx.getRSVPOptions(entry.getChannelId());
         if (!options.values().contains(args[index]))
         {
             return "There is no RSVP group called *" + args[index] + "* on the event!";
@@ -106,11 +111,14 @@ public class ManageCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         int index = 0;
         Integer entryId = ParsingUtilities.encodeIDToInt(args[index++]);
-        ScheduleEntry se = Main.getEntryManager().getEntryFromGuild(entryId, event.getGuild().getId());
+        ScheduleEntry se = ctx.getEntry(entryId);
         String logging = Main.getScheduleManager().getRSVPLogging(se.getChannelId());
 
         String content="", group, user;
@@ -1,12 +1,15 @@
 package ws.nmathe.saber.commands.general;
 
 import net.dv8tion.jda.core.entities.Channel;
+import net.dv8tion.jda.core.entities.Message;
 import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import org.bson.conversions.Bson;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
 import ws.nmathe.saber.core.RateLimiter;
 import ws.nmathe.saber.utils.MessageUtilities;
 
@@ -30,6 +33,12 @@ public class PurgeCommand implements Command
         return "purge";
     }
 
+    @Override
+    public boolean isLongRunning()
+    {
+        return true;
+    }
+
     @Override
     public CommandInfo info(String prefix)
     {
@@ -51,8 +60,12 @@ public class PurgeCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String head = prefix + this.name();
         int index = 0;
 
@@ -76,7 +89,7 @@ public class PurgeCommand implements Command
         }
 
         // basic protection against misuse
-        if (limiter.check(event.getGuild().getId()))
+        if (limiter.check(event.getGuild().getIdLong()))
         {
             return "The purge command has been used on your guild recently.\n" +
                     "Please wait at least one minute before reusing the command!";
@@ -92,33 +105,49 @@ public class PurgeCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         TextChannel channel = event.getGuild().getJDA().getTextChannelById(args[0].replaceAll("[^\\d]", ""));
-        Integer[] count = {100};                                // number of messages to remove
+        int count = 100;                                        // number of messages to remove
         String botId = event.getJDA().getSelfUser().getId();    // ID of bot to check messages against
+        int removed = 0;
 
         processing.put(event.getGuild().getId(), channel.getId());
-        channel.getIterableHistory().stream()
-                .filter(message -> message.getAuthor().getId().equals(botId) && (count[0]-- > 0))
-                .forEach((message ->
+        try
+        {
+            for (Message message : channel.getIterableHistory())
+            {
+                // stop once enough messages are checked, or without reporting if the command ran past it's deadline
+                if (ctx.isCancelled()) return;
+                if (count <= 0) break;
+                if (!message.getAuthor().getId().equals(botId)) continue;
+                count--;
+
+                message.getChannel().sendTyping().queue();
+
+                // sleep for half a second before continuing
+                try { Thread.sleep(500); }
+                catch (InterruptedException e) { return; }
+
+                Bson query = eq("messageId", message.getId());
+                if (Main.getDBDriver().getEventCollection().count(query) == 0)
                 {
-                    message.getChannel().sendTyping().queue();
-
-                    // sleep for half a second before continuing
-                    try { Thread.sleep(500); }
-                    catch (InterruptedException ignored) {}
-
-                    Bson query = eq("messageId", message.getId());
-                    if (Main.getDBDriver().getEventCollection().count(query) == 0)
-                    {
-                        MessageUtilities.deleteMsg(message);
-                    }
-                }));
-        processing.remove(event.getGuild().getId(), channel.getId());
+                    MessageUtilities.deleteMsg(message, null, Priority.MAINTENANCE);
+                    removed++;
+                }
+                ctx.progress("Purging <#" + channel.getId() + "> . . . " + removed + " messages removed");
+            }
+        }
+        finally
+        {
+            processing.remove(event.getGuild().getId(), channel.getId());
+        }
 
         // send success message
         String content = "Finished purging old message.";
-        MessageUtilities.sendMsg(content, event.getTextChannel(), null);
+        ctx.finish(content);
     }
 }
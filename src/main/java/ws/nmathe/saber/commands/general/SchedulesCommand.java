@@ -9,6 +9,7 @@ import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -17,12 +18,16 @@ import ws.nmathe.saber.utils.VerifyUtilities;
 
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 
 /**
  * used for generating the list of valid timezone strings
  */
 public class SchedulesCommand implements Command
 {
+    // schedules listed per page
+    private static final int PAGE_SIZE = 25;
+
     @Override
     public String name()
     {
@@ -39,39 +44,67 @@ public class SchedulesCommand implements Command
         String cat1 = "- Usage\n" + head + "";
         String cont1 = "This command will generate a list of all schedules active for the guild.\n" +
                 "Each schedule is listed with a short summary.\n" +
+                "Large listings are split into pages, a page is selected by appending \"p: [page]\" to the command.\n" +
                 "This command is non-destructive, and can be safely used by non-administrator users.";
         info.addUsageCategory(cat1, cont1);
 
         info.addUsageExample(head);
+        info.addUsageExample(head + " p:2");
 
         return info;
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
         return "";
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
+        int page = 1;
+        for (int i=0; i<args.length; i++)
+        {
+            int parsed = ParsingUtilities.parsePage(args[i]);
+            if (parsed == 0 && i+1 < args.length)
+            {   // "p: 2" arrives as two arguments
+                parsed = ParsingUtilities.parsePage(args[i], args[i+1]);
+                if (parsed > 0) i++;
+            }
+            if (parsed > 0) page = parsed;
+        }
+
         Guild guild = event.getGuild();
         List<String> scheduleIds = Main.getScheduleManager().getSchedulesForGuild(guild.getId());
+        Map<String, Integer> counts = Main.getEntryManager().getListingCache().getEventCounts(guild.getId());
+
+        int pages = Math.max(1, (scheduleIds.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+        page = Math.min(page, pages);
 
         // build output main body
         StringBuilder content = new StringBuilder();
-        for(String sId : scheduleIds)
+        int end = Math.min(scheduleIds.size(), page * PAGE_SIZE);
+        for(String sId : scheduleIds.subList((page - 1) * PAGE_SIZE, end))
         {
             content.append("<#")
                     .append(sId)
                     .append("> - has ")
-                    .append(Main.getEntryManager().getEntriesFromChannel(sId).size())
+                    .append(counts.getOrDefault(sId, 0))
                     .append(" events\n");
         }
 
         String title = "Schedules on " + guild.getName();           // title for embed
         String footer = scheduleIds.size() + " schedule(s)";   // footer for embed
+        if (pages > 1)
+        {
+            footer += " - page " + page + "/" + pages;
+            if (page < pages) footer += " (use \"" + prefix + this.name() + " p:" + (page + 1) + "\" for the next page)";
+        }
 
         // build embed
         MessageEmbed embed = new EmbedBuilder()
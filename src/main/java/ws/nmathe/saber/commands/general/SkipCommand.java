@@ -3,6 +3,7 @@ package ws.nmathe.saber.commands.general;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.Logging;
@@ -48,8 +49,12 @@ public class SkipCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String head = prefix + this.name();
         if (args.length != 1)
         {
@@ -60,7 +65,7 @@ public class SkipCommand implements Command
         if (VerifyUtilities.verifyEntryID(args[0]))
         {
             Integer entryId = ParsingUtilities.encodeIDToInt(args[0]);
-            entry = Main.getEntryManager().getEntryFromGuild(entryId, event.getGuild().getId());
+            entry = ctx.getEntry(entryId);
             if (entry == null)
             {
                 return "The requested entry does not exist!";
@@ -74,11 +79,14 @@ public class SkipCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         int index = 0;
         Integer entryId = ParsingUtilities.encodeIDToInt(args[index++]);
-        ScheduleEntry se = Main.getEntryManager().getEntryFromGuild(entryId, event.getGuild().getId());
+        ScheduleEntry se = ctx.getEntry(entryId);
 
         // send a confirmation to the channel
         String content;
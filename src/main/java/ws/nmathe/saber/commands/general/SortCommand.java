@@ -1,11 +1,10 @@
 package ws.nmathe.saber.commands.general;
 
-import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.utils.Logging;
-import ws.nmathe.saber.utils.MessageUtilities;
 
 /**
  * rearranges the events on a schedule
@@ -18,6 +17,12 @@ public class SortCommand implements Command
         return "sort";
     }
 
+    @Override
+    public boolean isLongRunning()
+    {
+        return true;
+    }
+
     @Override
     public CommandInfo info(String prefix)
     {
@@ -42,8 +47,11 @@ public class SortCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+
         String head = prefix + this.name();
         int index = 0;
 
@@ -61,7 +69,7 @@ public class SortCommand implements Command
 
         // check channel
         String cId = args[index].replaceAll("[^\\d]","");
-        if( !Main.getScheduleManager().isASchedule(cId) )
+        if( !ctx.isSchedule(cId) )
         {
             return "Channel " + args[index] + " is not on my list of schedule channels for your guild. " +
                     "Use the ``" + prefix + "init`` command to create a new schedule!";
@@ -93,21 +101,24 @@ public class SortCommand implements Command
     }
 
     @Override
-    public void action(String head, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+
         int index = 0;
         String cId = args[index].replaceAll("[^\\d]","");
 
         if(args.length <= 1 || args[1].toLowerCase().startsWith("asc"))
         {
-            Main.getScheduleManager().sortSchedule(cId, false);
+            Main.getScheduleManager().sortSchedule(cId, false, ctx);
         }
         else if(args.length > 1 && args[1].toLowerCase().startsWith("desc"))
         {
-            Main.getScheduleManager().sortSchedule(cId, true);
+            Main.getScheduleManager().sortSchedule(cId, true, ctx);
         }
+        if (ctx.isCancelled()) return;
 
         String content = "I have finished sorting <#" + cId + ">!";
-        MessageUtilities.sendMsg(content, event.getChannel(), null);
+        ctx.finish(content);
     }
 }
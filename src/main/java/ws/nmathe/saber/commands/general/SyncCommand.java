@@ -6,6 +6,7 @@ import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.core.google.GoogleAuth;
 import ws.nmathe.saber.utils.Logging;
@@ -27,6 +28,12 @@ public class SyncCommand implements Command
         return "sync";
     }
 
+    @Override
+    public boolean isLongRunning()
+    {
+        return true;
+    }
+
     @Override
     public CommandInfo info(String prefix)
     {
@@ -56,8 +63,12 @@ public class SyncCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         String head = prefix + this.name();
         int index = 0;
 
@@ -75,7 +86,7 @@ public class SyncCommand implements Command
 
         // validate the supplied channel
         String cId = args[0].replaceAll("[^\\d]","");
-        if(!Main.getScheduleManager().isASchedule(cId))
+        if(!ctx.isSchedule(cId))
         {
             return "Channel " + args[index] + " is not on my list of schedule channels for your guild.";
         }
@@ -128,8 +139,11 @@ public class SyncCommand implements Command
     }
 
     @Override
-    public void action(String head, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         // get user Google credentials (if they exist)
         Credential credential = GoogleAuth.getCredential(event.getAuthor().getId());
         Calendar service = GoogleAuth.getCalendarService(credential);
@@ -174,11 +188,12 @@ public class SyncCommand implements Command
 
         if(importFlag)
         {
-            Main.getCalendarConverter().importCalendar(address, channel, service);
+            Main.getCalendarConverter().importCalendar(address, channel, service, ctx);
+            if (ctx.isCancelled()) return;
             Main.getScheduleManager().setAddress(cId,address);
 
             String content = "I have finished syncing <#" + cId + ">!";
-            MessageUtilities.sendMsg(content, event.getChannel(), null);
+            ctx.finish(content);
         }
         else
         {
@@ -1,6 +1,7 @@
 package ws.nmathe.saber.commands.general;
 
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.utils.Logging;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -39,16 +40,22 @@ public class TimeZonesCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, MessageReceivedEvent event)
+    public String verify(CommandContext ctx)
     {
+        String prefix = ctx.getPrefix();
+        String[] args = ctx.getArgs();
+
         String head = prefix + this.name();
         return args.length==1 ? "" : "Incorrect amount of arguments!" +
                 "\nUse ``" + head + " <filter>``";
     }
 
     @Override
-    public void action(String prefix, String[] args, MessageReceivedEvent event)
+    public void action(CommandContext ctx)
     {
+        String[] args = ctx.getArgs();
+        MessageReceivedEvent event = ctx.getEvent();
+
         Set<String> zones = ZoneId.getAvailableZoneIds();
         StringBuilder msg = new StringBuilder("**Available options for time zones**\n");
         for (String zone : zones)
@@ -0,0 +1,243 @@
+package ws.nmathe.saber.core;
+
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.TextChannel;
+import com.mongodb.client.model.UpdateOptions;
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
+import ws.nmathe.saber.utils.Logging;
+import ws.nmathe.saber.utils.MessageUtilities;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Sends a message to the control channel of every guild (the admin announcement command).
+ * Each shard's guilds are worked in parallel in order of guild ID, the command channels of a batch of guilds
+ * are read in one query, and all sends share a global budget of one send per SEND_INTERVAL.
+ * Sends are queued with maintenance priority so they never hold back event announcements.
+ * Each shard's progress is persisted after every batch so a broadcast interrupted by a restart resumes where it stopped.
+ * Only the shards the broadcast was started on are resumed, and a broadcast is not resumed once it has expired.
+ */
+public class Broadcaster
+{
+    private static final String STATE_ID = "broadcast";
+    private static final int BATCH = 100;                      // guilds whose settings are read per query
+    private static final long SEND_INTERVAL = 100;             // milliseconds between any two sends
+    private static final long EXPIRY = 12*60*60*1000;          // milliseconds after which a broadcast is not resumed
+
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final AtomicLong nextSlot = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * starts a new broadcast on this process's shards
+     * @param content the message to send
+     * @param requesterId ID of the user to notify when the broadcast finishes
+     * @return false if a broadcast is still in progress
+     */
+    public synchronized boolean start(String content, String requesterId)
+    {
+        if (running.get() > 0) return false;
+
+        // the shards connected now are the broadcast's targets, shards started later do not send it
+        List<String> targets = new ArrayList<>();
+        for (JDA jda : Main.getShardManager().getShards())
+        {
+            if (jda != null) targets.add(shardKey(jda));
+        }
+
+        Date now = new Date();
+        Document state = new Document("_id", STATE_ID)
+                .append("content", content)
+                .append("requester", requesterId)
+                .append("started", now)
+                .append("expires", new Date(now.getTime() + EXPIRY))
+                .append("targets", targets)
+                .append("shards", new Document());
+        Main.getDBDriver().getStateCollection().replaceOne(eq("_id", STATE_ID), state, new UpdateOptions().upsert(true));
+
+        this.launch(state);
+        return true;
+    }
+
+    /**
+     * resumes the persisted broadcast on any of this process's shards which have not finished it
+     */
+    public synchronized void resume()
+    {
+        try
+        {
+            if (running.get() > 0) return;
+            Document state = Main.getDBDriver().getStateCollection().find(eq("_id", STATE_ID)).first();
+            if (state != null) this.launch(state);
+        }
+        catch (Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+    }
+
+    /**
+     * @return true if a broadcast is being sent
+     */
+    public boolean isRunning()
+    {
+        return running.get() > 0;
+    }
+
+    private void launch(Document state)
+    {
+        String content = state.getString("content");
+        String requesterId = state.getString("requester");
+        Document shards = (Document) state.get("shards");
+
+        // broadcasts persisted without targets or an expiry are not resumed
+        Date expires = state.getDate("expires");
+        List<?> targets = state.get("targets", List.class);
+        if (expires == null || targets == null) return;
+        if (expires.before(new Date()))
+        {
+            Logging.info(this.getClass(), "Not resuming expired broadcast", "started", state.getDate("started"));
+            return;
+        }
+
+        List<JDA> pending = new ArrayList<>();
+        for (JDA jda : Main.getShardManager().getShards())
+        {
+            if (jda == null || !targets.contains(shardKey(jda))) continue;
+            Document progress = (Document) shards.get(shardKey(jda));
+            if (progress == null || !progress.getBoolean("done", false)) pending.add(jda);
+        }
+        if (pending.isEmpty()) return;
+
+        Logging.info(this.getClass(), "Sending broadcast", "shards", pending.size());
+        running.addAndGet(pending.size());
+        for (JDA jda : pending)
+        {
+            Document progress = (Document) shards.get(shardKey(jda));
+            long cursor = progress == null ? 0 : ((Number) progress.get("cursor")).longValue();
+            workers.submit(() -> this.work(jda, content, cursor, requesterId));
+        }
+    }
+
+    /**
+     * sends the broadcast to the guilds of one shard whose IDs are after the cursor
+     */
+    private void work(JDA jda, String content, long cursor, String requesterId)
+    {
+        String key = shardKey(jda);
+        int sent = 0;
+        try
+        {
+            List<Guild> guilds = jda.getGuilds().stream()
+                    .filter(guild -> guild.getIdLong() > cursor)
+                    .sorted(Comparator.comparingLong(Guild::getIdLong))
+                    .collect(Collectors.toList());
+
+            for (int i=0; i<guilds.size(); i+=BATCH)
+            {
+                List<Guild> batch = guilds.subList(i, Math.min(i+BATCH, guilds.size()));
+                Map<String, String> channels = this.getCommandChannels(batch);
+
+                int batchSent = 0;
+                for (Guild guild : batch)
+                {
+                    for (TextChannel channel : this.getTargets(guild, channels.get(guild.getId())))
+                    {
+                        this.awaitTurn();
+                        MessageUtilities.sendMsg(content, channel, null, Priority.MAINTENANCE);
+                        batchSent++;
+                    }
+                }
+                sent += batchSent;
+
+                // persist the shard's progress
+                Main.getDBDriver().getStateCollection().updateOne(eq("_id", STATE_ID), combine(
+                        set("shards." + key + ".cursor", batch.get(batch.size()-1).getIdLong()),
+                        inc("shards." + key + ".sent", batchSent)));
+            }
+            Main.getDBDriver().getStateCollection().updateOne(eq("_id", STATE_ID),
+                    set("shards." + key + ".done", true));
+            Logging.info(this.getClass(), "Finished broadcast on shard", "shard", key, "sent", sent);
+        }
+        catch (InterruptedException ignored)
+        {
+        }
+        catch (Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+        finally
+        {
+            if (running.decrementAndGet() == 0) this.notifyRequester(jda, requesterId);
+        }
+    }
+
+    /**
+     * @return the configured command channel of each guild in the batch which has one
+     */
+    private Map<String, String> getCommandChannels(List<Guild> batch)
+    {
+        List<String> ids = batch.stream().map(Guild::getId).collect(Collectors.toList());
+        Map<String, String> channels = new HashMap<>();
+        Main.getDBDriver().getGuildCollection().find(in("_id", ids))
+                .projection(include("_id", "command_channel"))
+                .forEach((Consumer<? super Document>) document ->
+                {
+                    String channelId = document.getString("command_channel");
+                    if (channelId != null) channels.put(document.getString("_id"), channelId);
+                });
+        return channels;
+    }
+
+    /**
+     * @return the guild's configured command channel, or the channels with the default control channel name
+     */
+    private List<TextChannel> getTargets(Guild guild, String channelId)
+    {
+        if (channelId == null)
+        {
+            return guild.getTextChannelsByName(Main.getBotSettingsManager().getControlChan(), true);
+        }
+        TextChannel channel = guild.getTextChannelById(channelId);
+        return channel == null ? Collections.emptyList() : Collections.singletonList(channel);
+    }
+
+    /**
+     * blocks until the global send budget allows another send
+     */
+    private void awaitTurn() throws InterruptedException
+    {
+        long now = System.currentTimeMillis();
+        long slot = Math.max(now, nextSlot.getAndAccumulate(now, (prev, time) -> Math.max(prev, time) + SEND_INTERVAL));
+        if (slot > now) Thread.sleep(slot - now);
+    }
+
+    private void notifyRequester(JDA jda, String requesterId)
+    {
+        if (requesterId == null) return;
+        jda.retrieveUserById(requesterId).queue(user ->
+                MessageUtilities.sendPrivateMsg("Finished sending announcements to guilds!", user, null),
+                failure -> Logging.warn(this.getClass(), "Could not notify broadcast requester", "user", requesterId));
+    }
+
+    private static String shardKey(JDA jda)
+    {
+        return jda.getShardInfo() == null ? "0" : String.valueOf(jda.getShardInfo().getShardId());
+    }
+}
@@ -0,0 +1,95 @@
+package ws.nmathe.saber.core;
+
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Emote;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.events.ReconnectedEvent;
+import net.dv8tion.jda.core.events.emote.EmoteAddedEvent;
+import net.dv8tion.jda.core.events.emote.EmoteRemovedEvent;
+import net.dv8tion.jda.core.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.core.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.core.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.core.hooks.ListenerAdapter;
+import ws.nmathe.saber.Main;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the custom emotes of every guild the bot is in, mapping each emote's ID to the shard which caches it.
+ * The index is maintained from the shards' guild and emote events, so resolving an emote
+ * is one lookup rather than a search of every shard's emote cache.
+ * Emotes are resolved through the shard on each lookup since a shard replaces it's entities when it reconnects.
+ */
+public class EmoteIndex extends ListenerAdapter
+{
+    private final Map<String, JDA> shards = new ConcurrentHashMap<>();
+
+    /**
+     * @param emoteId the emote's ID
+     * @return the emote, or null if it is not an emote of any guild the bot is in
+     */
+    public Emote getEmote(String emoteId)
+    {
+        JDA shard = shards.get(emoteId);
+        Emote emote = shard == null ? null : shard.getEmoteById(emoteId);
+        if (emote != null) return emote;
+
+        // the emote may not have been indexed yet (the shard is still loading)
+        for (JDA jda : Main.getShardManager().getShards())
+        {
+            if (jda == null) continue;
+            emote = jda.getEmoteById(emoteId);
+            if (emote != null)
+            {
+                shards.put(emoteId, jda);
+                return emote;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onGuildReady(GuildReadyEvent event)
+    {
+        this.add(event.getGuild());
+    }
+
+    @Override
+    public void onGuildJoin(GuildJoinEvent event)
+    {
+        this.add(event.getGuild());
+    }
+
+    @Override
+    public void onGuildLeave(GuildLeaveEvent event)
+    {
+        event.getGuild().getEmotes().forEach(emote -> shards.remove(emote.getId()));
+    }
+
+    @Override
+    public void onReconnect(ReconnectedEvent event)
+    {
+        event.getJDA().getGuilds().forEach(this::add);
+    }
+
+    @Override
+    public void onEmoteAdded(EmoteAddedEvent event)
+    {
+        shards.put(event.getEmote().getId(), event.getJDA());
+    }
+
+    @Override
+    public void onEmoteRemoved(EmoteRemovedEvent event)
+    {
+        shards.remove(event.getEmote().getId());
+    }
+
+    private void add(Guild guild)
+    {
+        for (Emote emote : guild.getEmotes())
+        {
+            shards.put(emote.getId(), guild.getJDA());
+        }
+    }
+}
@@ -10,6 +10,8 @@ import net.dv8tion.jda.core.exceptions.PermissionException;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
+import ws.nmathe.saber.core.metrics.Metrics;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.core.settings.GuildSettingsManager;
 import ws.nmathe.saber.utils.*;
@@ -19,7 +21,6 @@ import net.dv8tion.jda.core.events.guild.GuildLeaveEvent;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.core.hooks.ListenerAdapter;
 
-import java.util.Collection;
 import java.util.function.Consumer;
 
 import static com.mongodb.client.model.Filters.eq;
@@ -51,7 +52,7 @@ public class EventListener extends ListenerAdapter
         if(userId.equals(event.getJDA().getSelfUser().getId())) return;
 
         // leave the guild if the message author is blacklisted
-        if(Main.getBotSettingsManager().getBlackList().contains(userId))
+        if(Main.getBotSettingsManager().isBlacklisted(event.getAuthor().getIdLong()))
         {
             if (event.isFromType(ChannelType.TEXT)) event.getGuild().leave().queue();
             return;
@@ -84,15 +85,8 @@ public class EventListener extends ListenerAdapter
         // stop processing if the event is not from a guild text channel
         if (!event.isFromType(ChannelType.TEXT)) return;
 
-        // leave the guild if the message author is black listed
-        if(Main.getBotSettingsManager().getBlackList().contains(userId))
-        {
-            event.getGuild().leave().queue();
-            return;
-        }
-
         // leave guild if the guild is blacklisted
-        if(Main.getBotSettingsManager().getBlackList().contains(event.getGuild().getId()))
+        if(Main.getBotSettingsManager().isBlacklisted(event.getGuild().getIdLong()))
         {
             event.getGuild().leave().queue();
             return;
@@ -104,7 +98,7 @@ public class EventListener extends ListenerAdapter
             // delete all other user's messages
             if (!userId.equals(event.getJDA().getSelfUser().getId()))
             {
-                MessageUtilities.deleteMsg(event.getMessage(), null);
+                MessageUtilities.deleteMsg(event.getMessage(), null, Priority.MAINTENANCE);
                 return;
             }
         }
@@ -173,7 +167,7 @@ public class EventListener extends ListenerAdapter
     public void onGuildJoin( GuildJoinEvent event )
     {
         // leave guild if guild is blacklisted
-        if(Main.getBotSettingsManager().getBlackList().contains(event.getGuild().getId()))
+        if(Main.getBotSettingsManager().isBlacklisted(event.getGuild().getIdLong()))
         {
             event.getGuild().leave().queue();
             return;
@@ -226,8 +220,18 @@ public class EventListener extends ListenerAdapter
     @Override
     public void onMessageDelete( MessageDeleteEvent event )
     {
+        // ignore messages which are certainly not event messages
+        if (!Main.getEntryManager().getMessageFilter().mightContain(event.getMessageIdLong())) return;
+
         // delete the event if the delete message was an event message
-        Main.getDBDriver().getEventCollection().findOneAndDelete(eq("messageId", event.getMessageId()));
+        Document doc = Main.getDBDriver().getEventCollection().findOneAndDelete(eq("messageId", event.getMessageId()));
+        if (doc != null)
+        {
+            Main.getEntryManager().getMessageFilter().remove();
+            Main.getEntryManager().removeRoles(doc);
+            Main.getEntryManager().getListingCache().invalidate(doc.getString("guildId"));
+            Main.getDBDriver().getCounters().incEvents(doc.getString("guildId"), -1);
+        }
     }
 
     @Override
@@ -238,37 +242,23 @@ public class EventListener extends ListenerAdapter
         // if the deleted channel was a schedule, clear the db entries
         if(Main.getScheduleManager().isASchedule(cId))
         {
-            Main.getDBDriver().getEventCollection().deleteMany(eq("channelId", cId));
-            Main.getDBDriver().getScheduleCollection().deleteOne(eq("_id", cId));
+            String guildId = event.getGuild().getId();
+            Main.getEntryManager().removeRolesOf(eq("channelId", cId));
+            long events = Main.getDBDriver().getEventCollection().deleteMany(eq("channelId", cId)).getDeletedCount();
+            long schedules = Main.getDBDriver().getScheduleCollection().deleteOne(eq("_id", cId)).getDeletedCount();
+            Main.getDBDriver().getCounters().incEvents(guildId, -events);
+            Main.getDBDriver().getCounters().incSchedules(guildId, -schedules);
+            Main.getEntryManager().getListingCache().invalidate(guildId);
         }
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void onGuildMemberLeave(GuildMemberLeaveEvent event)
     {
         String memberId = event.getMember().getUser().getId();
 
         // remove user from any events they have rsvp'ed to
-        Collection<ScheduleEntry> entries = Main.getEntryManager().getEntriesFromGuild(event.getGuild().getId());
-        for(ScheduleEntry se : entries)
-        {
-            boolean updateFlag = false;
-            // check each rsvp group on the entry
-            for(String key : se.getRsvpMembers().keySet())
-            {
-                if(se.getRsvpMembersOfType(key).contains(memberId))
-                {
-                    // remove the user and flag the entry for updating
-                    se.getRsvpMembersOfType(key).remove(memberId);
-                    updateFlag = true;
-                }
-            }
-            if(updateFlag)
-            {
-                Main.getEntryManager().updateEntry(se, false);
-            }
-        }
+        Main.getEntryManager().getRSVPIndex().removeUser(event.getGuild().getId(), memberId);
     }
 
     @Override
@@ -284,7 +274,10 @@ public class EventListener extends ListenerAdapter
         // don't process reactions added by the bot
         if(event.getUser().getId().equals(event.getJDA().getSelfUser().getId())) return;
 
-        if(reactionLimiter.check(event.getUser().getId())) return;
+        // ignore reactions on messages which are certainly not event messages
+        if(!Main.getEntryManager().getMessageFilter().mightContain(event.getMessageIdLong())) return;
+
+        if(reactionLimiter.check(event.getUser().getIdLong())) return;
 
         // if the schedule is rsvp enabled and the user added an rsvp emoji to the event
         // add the user to the appropriate rsvp list and remove the emoji
@@ -295,6 +288,7 @@ public class EventListener extends ListenerAdapter
 
             if(doc != null)
             {
+                Metrics.RSVP_REACTIONS.inc();
                 ScheduleEntry se = new ScheduleEntry(doc);
                 boolean removeReaction = se.handleRSVPReaction(event);
                 if (removeReaction)
@@ -0,0 +1,376 @@
+package ws.nmathe.saber.core;
+
+import net.dv8tion.jda.core.entities.MessageChannel;
+import net.dv8tion.jda.core.requests.RestAction;
+import ws.nmathe.saber.core.metrics.Metrics;
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Orders the bot's outbound message requests before they are handed to JDA.
+ * Requests wait in one queue ordered by priority class (then by age), and are released to JDA only while their
+ * route (the channel's message bucket) has room, so a large backlog of low priority edits never sits in JDA's
+ * per-route queue ahead of an announcement to the same channel.
+ * Each route is allowed ROUTE_IN_FLIGHT requests at a time and ROUTE_LIMIT requests per ROUTE_WINDOW
+ * (discord's message bucket), and no more than GLOBAL_IN_FLIGHT requests are in flight altogether.
+ * An edit of a message which already has an edit waiting replaces the waiting edit, the replaced edit's
+ * callbacks receive the result of the newer edit.
+ */
+public class OutboundScheduler
+{
+    /**
+     * priority classes, most urgent first
+     */
+    public enum Priority
+    {
+        ANNOUNCEMENT,   // event start/end announcements and reminders
+        COMMAND,        // replies to commands
+        RSVP,           // rsvp confirmations, logs, and display updates
+        REFRESH,        // timer refreshes of event displays
+        MAINTENANCE     // sorts, purges, syncs, expiry, and broadcasts
+    }
+
+    private static final int GLOBAL_IN_FLIGHT = 25;
+    private static final int ROUTE_IN_FLIGHT = 2;
+    private static final int ROUTE_LIMIT = 5;           // requests per route per window
+    private static final long ROUTE_WINDOW = 5000;      // milliseconds
+
+    private final Map<String, TreeSet<Task>> pending = new HashMap<>();   // waiting requests, by route
+    private final TreeSet<Task> heads = new TreeSet<>();                 // the first waiting request of each route
+    private final Map<String, Task> edits = new HashMap<>();       // waiting edits, by message ID
+    private final Map<String, Route> routes = new HashMap<>();
+    private final int[] depth = new int[Priority.values().length];
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private int inFlight = 0;
+    private long wakeAt = Long.MAX_VALUE;
+    private long sequence = 0;
+
+    public OutboundScheduler()
+    {
+        for (Priority priority : Priority.values())
+        {
+            Metrics.QUEUE_DEPTH.set(() -> this.getPending(priority), "outbound_" + priority.name().toLowerCase());
+        }
+    }
+
+    /**
+     * @return the route of message creates and edits in a channel
+     */
+    public static String route(MessageChannel channel)
+    {
+        return channel.getId();
+    }
+
+    /**
+     * @return the route of message deletes in a channel (discord buckets deletes separately)
+     */
+    public static String deleteRoute(MessageChannel channel)
+    {
+        return "delete:" + channel.getId();
+    }
+
+    /**
+     * @return the route of reaction requests on a channel's messages
+     */
+    public static String reactionRoute(MessageChannel channel)
+    {
+        return "reaction:" + channel.getId();
+    }
+
+    /**
+     * queues a request
+     * @param priority the request's priority class
+     * @param route the request's route
+     * @param editOf ID of the message the request edits, or null if the request is not an edit
+     * @param action the request
+     * @param success consumer of the result (may be null)
+     * @param failure consumer of a failure (may be null)
+     */
+    public <T> void submit(Priority priority, String route, String editOf, RestAction<T> action,
+                           Consumer<? super T> success, Consumer<? super Throwable> failure)
+    {
+        Task task = new Task(priority, route, editOf, action);
+        task.onSuccess(success);
+        task.onFailure(failure);
+        this.enqueue(task);
+        this.dispatch();
+    }
+
+    /**
+     * queues a request and blocks until it completes
+     * @return the request's result, or null if the thread was interrupted while waiting
+     * @throws RuntimeException the request's failure
+     */
+    public <T> T complete(Priority priority, String route, String editOf, RestAction<T> action)
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        this.submit(priority, route, editOf, action, future::complete, future::completeExceptionally);
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    /**
+     * @return number of requests of a priority class waiting to be sent
+     */
+    public synchronized int getPending(Priority priority)
+    {
+        return depth[priority.ordinal()];
+    }
+
+    private synchronized void enqueue(Task task)
+    {
+        task.sequence = sequence++;
+        if (task.editOf != null)
+        {   // the newer edit takes the place of a waiting edit of the same message
+            Task stale = edits.put(task.editOf, task);
+            if (stale != null && this.remove(stale))
+            {
+                depth[stale.priority.ordinal()]--;
+                task.absorb(stale);
+            }
+        }
+        this.add(task);
+        depth[task.priority.ordinal()]++;
+    }
+
+    /**
+     * adds a request to it's route's queue, must be called while holding the scheduler's lock
+     */
+    private void add(Task task)
+    {
+        TreeSet<Task> queue = pending.computeIfAbsent(task.route, key -> new TreeSet<>());
+        Task head = queue.isEmpty() ? null : queue.first();
+        queue.add(task);
+        if (head == null || task.compareTo(head) < 0)
+        {
+            if (head != null) heads.remove(head);
+            heads.add(task);
+        }
+    }
+
+    /**
+     * removes a waiting request from it's route's queue, must be called while holding the scheduler's lock
+     * @return false if the request was not waiting
+     */
+    private boolean remove(Task task)
+    {
+        TreeSet<Task> queue = pending.get(task.route);
+        if (queue == null || !queue.remove(task)) return false;
+        if (heads.remove(task) && !queue.isEmpty()) heads.add(queue.first());
+        if (queue.isEmpty()) pending.remove(task.route);
+        return true;
+    }
+
+    /**
+     * releases waiting requests to JDA, most urgent first, while their routes and the global limit have room,
+     * only the first waiting request of each route is considered as a route's requests are released in order
+     */
+    private void dispatch()
+    {
+        List<Task> released = new ArrayList<>();
+        synchronized (this)
+        {
+            long now = System.currentTimeMillis();
+            long wake = Long.MAX_VALUE;
+
+            Task head = heads.isEmpty() ? null : heads.first();
+            while (inFlight < GLOBAL_IN_FLIGHT && head != null)
+            {
+                Task task = head;
+                head = heads.higher(task);
+
+                Route route = routes.computeIfAbsent(task.route, key -> new Route());
+                if (route.inFlight >= ROUTE_IN_FLIGHT) continue;
+
+                long free = route.freeAt(now);
+                if (free > now)
+                {
+                    wake = Math.min(wake, free);
+                    continue;
+                }
+
+                // the route's following request takes the released request's place among the heads,
+                // as it orders after the released request it is still reached by this pass
+                this.remove(task);
+                head = heads.higher(task);
+                if (task.editOf != null) edits.remove(task.editOf, task);
+                depth[task.priority.ordinal()]--;
+                route.inFlight++;
+                route.sent.add(now);
+                inFlight++;
+                released.add(task);
+            }
+
+            // forget idle routes
+            if (routes.size() > 1000)
+            {
+                routes.values().removeIf(route -> route.inFlight == 0 && route.freeAt(now) <= now && route.sent.isEmpty());
+            }
+
+            // retry once the earliest blocked route's window has room
+            if (wake < wakeAt)
+            {
+                wakeAt = wake;
+                timer.schedule(() ->
+                {
+                    synchronized (this) { wakeAt = Long.MAX_VALUE; }
+                    this.dispatch();
+                }, wake - now, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        for (Task task : released)
+        {
+            this.send(task);
+        }
+    }
+
+    private void send(Task task)
+    {
+        try
+        {
+            task.action.queue(result ->
+            {
+                this.release(task);
+                task.succeed(result);
+            }, failure ->
+            {
+                this.release(task);
+                task.fail(failure);
+            });
+        }
+        catch (Exception e)
+        {
+            this.release(task);
+            task.fail(e);
+        }
+    }
+
+    private void release(Task task)
+    {
+        synchronized (this)
+        {
+            inFlight--;
+            Route route = routes.get(task.route);
+            if (route != null) route.inFlight--;
+        }
+        this.dispatch();
+    }
+
+    /**
+     * a route's requests in flight and recent send times
+     */
+    private static class Route
+    {
+        int inFlight = 0;
+        final Deque<Long> sent = new ArrayDeque<>();
+
+        /**
+         * @return the time at which the route's window has room for another request
+         */
+        long freeAt(long now)
+        {
+            while (!sent.isEmpty() && sent.peekFirst() <= now - ROUTE_WINDOW) sent.pollFirst();
+            return sent.size() < ROUTE_LIMIT ? now : sent.peekFirst() + ROUTE_WINDOW;
+        }
+    }
+
+    /**
+     * a queued request and the callbacks waiting on it
+     */
+    @SuppressWarnings("unchecked")
+    private static class Task implements Comparable<Task>
+    {
+        Priority priority;
+        final String route;
+        final String editOf;
+        final RestAction<Object> action;
+        final List<Consumer> successes = new ArrayList<>(1);
+        final List<Consumer> failures = new ArrayList<>(1);
+        long sequence;
+
+        Task(Priority priority, String route, String editOf, RestAction<?> action)
+        {
+            this.priority = priority;
+            this.route = route;
+            this.editOf = editOf;
+            this.action = (RestAction<Object>) action;
+        }
+
+        void onSuccess(Consumer consumer)
+        {
+            if (consumer != null) successes.add(consumer);
+        }
+
+        void onFailure(Consumer consumer)
+        {
+            if (consumer != null) failures.add(consumer);
+        }
+
+        /**
+         * takes over the callbacks, priority, and queue position of a replaced edit
+         */
+        void absorb(Task stale)
+        {
+            successes.addAll(stale.successes);
+            failures.addAll(stale.failures);
+            if (stale.priority.compareTo(priority) <= 0)
+            {
+                priority = stale.priority;
+                sequence = stale.sequence;
+            }
+        }
+
+        void succeed(Object result)
+        {
+            for (Consumer consumer : successes)
+            {
+                try
+                {
+                    consumer.accept(result);
+                }
+                catch (Exception e)
+                {
+                    Logging.exception(OutboundScheduler.class, e);
+                }
+            }
+        }
+
+        void fail(Throwable failure)
+        {
+            for (Consumer consumer : failures)
+            {
+                try
+                {
+                    consumer.accept(failure);
+                }
+                catch (Exception e)
+                {
+                    Logging.exception(OutboundScheduler.class, e);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Task other)
+        {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
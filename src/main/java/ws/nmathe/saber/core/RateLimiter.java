@@ -1,9 +1,8 @@
 package ws.nmathe.saber.core;
 
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.ConcurrentLongLongMap;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -18,8 +17,8 @@ public class RateLimiter
     private long startThreshold = Main.getBotSettingsManager().getCooldownThreshold();
     private long maxThreshold   = 10*60*1000; // 10 minute default
     private int scaleFactor     = 2; // doubles
-    private Map<String, Long> timestampMap = new ConcurrentHashMap<>();
-    private Map<String, Long> thresholdMap = new ConcurrentHashMap<>();
+    private ConcurrentLongLongMap timestampMap = new ConcurrentLongLongMap();
+    private ConcurrentLongLongMap thresholdMap = new ConcurrentLongLongMap();
 
     public RateLimiter()
     {
@@ -43,10 +42,10 @@ public class RateLimiter
             // remove entity's whose most recent timestamp needs to no
             // longer be tracked for rate-limiting purposes
             long now = System.currentTimeMillis();
-            for (String key : this.timestampMap.keySet())
+            for (long key : this.timestampMap.keys())
             {
-                long time = this.timestampMap.get(key);
-                long threshold = this.thresholdMap.get(key);
+                long time = this.timestampMap.get(key, now);
+                long threshold = this.thresholdMap.get(key, 0);
                 if (time + threshold <= now)
                 {
                     this.timestampMap.remove(key);
@@ -58,26 +57,26 @@ public class RateLimiter
 
     /**
      * determine if an action should be ignored due to exceeded rate limit
-     * @param entityId unique identifier for entity to monitor
+     * @param entityId unique snowflake identifier for entity to monitor
      * @return true if last command was sent within the cool-down threshold
      */
-    public boolean check(String entityId)
+    public boolean check(long entityId)
     {
         long now = System.currentTimeMillis(); // current time
         if(timestampMap.containsKey(entityId))
         {
-            long time = timestampMap.get(entityId); // time entity was last seen
-            timestampMap.replace(entityId, now);    // update last seen value
+            long time = timestampMap.get(entityId, now); // time entity was last seen
+            timestampMap.put(entityId, now);             // update last seen value
             if (now - time <= startThreshold)
             {   // increase the entity's cool-down threshold & return true (is on cool-down)
-                long newThreshold = this.scaleFactor * this.thresholdMap.get(entityId);
+                long newThreshold = this.scaleFactor * this.thresholdMap.get(entityId, this.startThreshold);
                 if (newThreshold <= maxThreshold)
-                    thresholdMap.replace(entityId, newThreshold);
+                    thresholdMap.put(entityId, newThreshold);
                 return true;
             }
             else
             {   // reset the entity's cool-down threshold & return false (not on cool-down)
-                thresholdMap.replace(entityId, this.startThreshold);
+                thresholdMap.put(entityId, this.startThreshold);
                 return false;
             }
         }
@@ -14,6 +14,7 @@ import net.dv8tion.jda.core.utils.MiscUtil;
 import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.metrics.RestMetricsInterceptor;
 import ws.nmathe.saber.utils.HttpUtilities;
 import ws.nmathe.saber.utils.Logging;
 
@@ -34,6 +35,7 @@ public class ShardManager
     private JDA jda = null;                                      // used only when unsharded
 
     private Iterator<String> games;
+    private final EmoteIndex emoteIndex = new EmoteIndex();
 
     private Integer primaryPoolSize = 15;    // used by the jda responsible for handling DMs
     private Integer secondaryPoolSize = 6;   // used by all other shards
@@ -61,7 +63,8 @@ public class ShardManager
                     .connectTimeout(queryTimeout, TimeUnit.MILLISECONDS)
                     .readTimeout(queryTimeout, TimeUnit.MILLISECONDS)
                     .writeTimeout(queryTimeout, TimeUnit.MILLISECONDS)
-                    .retryOnConnectionFailure(true);
+                    .retryOnConnectionFailure(true)
+                    .addInterceptor(new RestMetricsInterceptor());
 
             // custom web socket factory
             WebSocketFactory webSocketFactory = new WebSocketFactory().setConnectionTimeout(queryTimeout);
@@ -70,7 +73,7 @@ public class ShardManager
             this.builder = new JDABuilder(AccountType.BOT)
                     .setToken(Main.getBotSettingsManager().getToken())
                     .setStatus(OnlineStatus.ONLINE)
-                    .addEventListener(new EventListener())
+                    .addEventListener(new EventListener(), emoteIndex)
                     .setHttpClientBuilder(httpBuilder)
                     .setWebsocketFactory(webSocketFactory)
                     .setAutoReconnect(true);
@@ -134,6 +137,7 @@ public class ShardManager
 
                         Main.getEntryManager().init();
                         Main.getCommandHandler().init();
+                        Main.getBroadcaster().resume();
 
                         executor.shutdown();
                     }
@@ -156,6 +160,7 @@ public class ShardManager
 
                 Main.getEntryManager().init();
                 Main.getCommandHandler().init();
+                Main.getBroadcaster().resume();
             }
         }
         catch( Exception e )
@@ -223,6 +228,14 @@ public class ShardManager
     }
 
 
+    /**
+     * @return index of the custom emotes of all guilds on the managed shards
+     */
+    public EmoteIndex getEmoteIndex()
+    {
+        return this.emoteIndex;
+    }
+
     /**
      * Retrieves all the JDA shards managed by this ShardManager
      * Should not be used when sharding is disabled
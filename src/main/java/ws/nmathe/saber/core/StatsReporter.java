@@ -0,0 +1,281 @@
+package ws.nmathe.saber.core;
+
+import net.dv8tion.jda.core.JDA;
+import org.json.JSONObject;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.metrics.Metrics;
+import ws.nmathe.saber.utils.HttpUtilities;
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Reports the bot's guild counts to bot listing sites.
+ * Guild joins and leaves only mark their shard's stats as dirty, a background timer then posts the
+ * current counts of each dirty shard to every registered endpoint, so a burst of joins results in one post
+ * per shard per REPORT_INTERVAL and no HTTP request is ever made on a JDA event thread.
+ * A failed post leaves the shard dirty and the endpoint backs off (doubling up to MAX_BACKOFF) before retrying.
+ */
+public class StatsReporter
+{
+    static final long REPORT_INTERVAL = 60;                    // seconds between posts for a shard
+    private static final long TIMEOUT = 10;                    // seconds to wait on a post
+    static final long MAX_BACKOFF = 30*60;                     // seconds
+
+    static final int UNSHARDED = -1;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final List<Reporter> reporters = new CopyOnWriteArrayList<>();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+
+    // sources of the bot's ID, the stats of a shard, and the time, and the receiver of failed posts (replaced by tests)
+    private final Supplier<String> botId;
+    private final IntFunction<Stats> stats;
+    private final LongSupplier clock;
+    private final FailureListener onFailure;
+
+    public StatsReporter()
+    {
+        this(StatsReporter::getBotId, StatsReporter::getStats, System::currentTimeMillis, StatsReporter::logFailure);
+        Metrics.QUEUE_DEPTH.set(dirty::size, "stats");
+    }
+
+    /**
+     * @param botId returns the bot's user ID, or null if no shard is connected
+     * @param stats returns the stats of a shard, or null if the shard is not connected
+     * @param clock returns the current time in milliseconds
+     * @param onFailure receives each failed post
+     */
+    StatsReporter(Supplier<String> botId, IntFunction<Stats> stats, LongSupplier clock, FailureListener onFailure)
+    {
+        this.botId = botId;
+        this.stats = stats;
+        this.clock = clock;
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * registers the configured listing sites and starts the report timer
+     */
+    public void init()
+    {
+        String auth = Main.getBotSettingsManager().getWebToken();
+        if (auth != null)
+        {
+            this.register(new ListingEndpoint("bots.discord.pw", "https://bots.discord.pw/api/bots/%s/stats", auth));
+        }
+        timer.scheduleWithFixedDelay(this::report, REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * adds an endpoint which is sent every future report
+     */
+    public void register(Endpoint endpoint)
+    {
+        reporters.add(new Reporter(endpoint, clock, onFailure));
+    }
+
+    /**
+     * marks the stats of a shard as changed, they are posted with the next report
+     * @param shardId the shard's ID, or null if the bot is not sharding
+     */
+    public void markDirty(Integer shardId)
+    {
+        if (reporters.isEmpty()) return;
+        dirty.add(shardId == null ? UNSHARDED : shardId);
+    }
+
+    /**
+     * posts the stats of each dirty shard to the endpoints which are not backing off
+     */
+    void report()
+    {
+        try
+        {
+            if (dirty.isEmpty()) return;
+
+            Set<Integer> shards = new HashSet<>(dirty);
+            dirty.removeAll(shards);
+
+            String botId = this.botId.get();
+            if (botId == null)
+            {
+                dirty.addAll(shards);
+                return;
+            }
+            for (Integer shardId : shards)
+            {
+                Stats stats = this.stats.apply(shardId);
+                if (stats == null) continue;
+
+                for (Reporter reporter : reporters)
+                {
+                    if (!reporter.post(botId, stats)) dirty.add(shardId);  // retry with a later report
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+    }
+
+    /**
+     * @return the bot's user ID, or null if no shard is connected
+     */
+    private static String getBotId()
+    {
+        if (Main.getShardManager() == null) return null;
+
+        // the primary shard may be on another host, use any local shard
+        JDA local = Main.getShardManager().getShards().stream().filter(Objects::nonNull).findFirst().orElse(null);
+        return local == null ? null : local.getSelfUser().getId();
+    }
+
+    /**
+     * @return the current stats of a shard, or null if the shard is not connected
+     */
+    private static Stats getStats(int shardId)
+    {
+        if (shardId == UNSHARDED || !Main.getShardManager().isSharding())
+        {
+            return new Stats(null, 0, Main.getShardManager().getGuilds().size());
+        }
+        JDA shard = Main.getShardManager().getShard(shardId);
+        if (shard == null) return null;
+        return new Stats(shardId, Main.getBotSettingsManager().getShardTotal(), shard.getGuilds().size());
+    }
+
+    /**
+     * logs a failed post
+     */
+    private static void logFailure(String endpoint, Stats stats, long backoff, Exception e)
+    {
+        Logging.warn(StatsReporter.class, "Failed to post stats", "endpoint", endpoint,
+                "shard", stats.shardId, "retry", backoff + "s", "error", e.getMessage());
+    }
+
+    /**
+     * receives the posts which failed
+     */
+    interface FailureListener
+    {
+        /**
+         * @param endpoint name of the endpoint
+         * @param stats the stats which were not sent
+         * @param backoff seconds until the endpoint is tried again
+         * @param e the reason the post failed
+         */
+        void failed(String endpoint, Stats stats, long backoff, Exception e);
+    }
+
+    /**
+     * the guild count of a shard (or of the whole bot if it is not sharding)
+     */
+    public static class Stats
+    {
+        public final Integer shardId;      // null if not sharding
+        public final int shardTotal;
+        public final int guilds;
+
+        Stats(Integer shardId, int shardTotal, int guilds)
+        {
+            this.shardId = shardId;
+            this.shardTotal = shardTotal;
+            this.guilds = guilds;
+        }
+    }
+
+    /**
+     * a destination for the bot's stats
+     */
+    public interface Endpoint
+    {
+        String name();
+
+        /**
+         * sends the stats, throwing on failure
+         * @param botId the bot's user ID
+         * @param stats stats to send
+         */
+        void post(String botId, Stats stats) throws Exception;
+    }
+
+    /**
+     * endpoint of a listing site which takes the common server_count/shard_id/shard_count json body
+     */
+    public static class ListingEndpoint implements Endpoint
+    {
+        private final String name;
+        private final String url;          // with %s in place of the bot's ID
+        private final String auth;
+
+        public ListingEndpoint(String name, String url, String auth)
+        {
+            this.name = name;
+            this.url = url;
+            this.auth = auth;
+        }
+
+        @Override
+        public String name()
+        {
+            return this.name;
+        }
+
+        @Override
+        public void post(String botId, Stats stats) throws Exception
+        {
+            JSONObject json = new JSONObject().put("server_count", stats.guilds);
+            if (stats.shardId != null)
+            {   // if the bot is sharding send shard information
+                json.put("shard_count", stats.shardTotal).put("shard_id", stats.shardId);
+            }
+            HttpUtilities.postJson(String.format(url, botId), auth, json, TIMEOUT);
+        }
+    }
+
+    /**
+     * posts to one endpoint, tracking the endpoint's backoff
+     */
+    private static class Reporter
+    {
+        private final Endpoint endpoint;
+        private final LongSupplier clock;
+        private final FailureListener onFailure;
+        private long backoff = 0;          // seconds
+        private long retryAt = 0;          // milliseconds
+
+        Reporter(Endpoint endpoint, LongSupplier clock, FailureListener onFailure)
+        {
+            this.endpoint = endpoint;
+            this.clock = clock;
+            this.onFailure = onFailure;
+        }
+
+        /**
+         * @return false if the stats were not sent and should be reported again
+         */
+        boolean post(String botId, Stats stats)
+        {
+            if (clock.getAsLong() < retryAt) return false;
+            try
+            {
+                endpoint.post(botId, stats);
+                backoff = 0;
+                return true;
+            }
+            catch (Exception e)
+            {
+                backoff = Math.min(MAX_BACKOFF, backoff == 0 ? REPORT_INTERVAL : backoff*2);
+                retryAt = clock.getAsLong() + backoff*1000;
+                onFailure.failed(endpoint.name(), stats, backoff, e);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package ws.nmathe.saber.core.command;
+
+import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
+import ws.nmathe.saber.core.metrics.Metrics;
+import ws.nmathe.saber.utils.Logging;
+import ws.nmathe.saber.utils.MessageUtilities;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the actions of verified commands on two fixed pools of workers, one for ordinary commands and one for
+ * long running commands (see Command.isLongRunning) so that syncs, purges, and sorts never hold up other commands.
+ * Each pool takes work from a fair queue: a guild may only have a few commands running at once, and the next
+ * command run is taken from the waiting guild which has used the least worker time, so a few busy guilds cannot
+ * starve the rest. Every command has a deadline, a command which runs past it is cancelled (see
+ * CommandContext.isCancelled) and stops at it's next check, it's worker is never interrupted so a command
+ * is not stopped partway through a write.
+ */
+class CommandExecutor
+{
+    private static final int POOL_SIZE = 16;
+    private static final int LONG_POOL_SIZE = 4;
+    private static final int GUILD_CONCURRENCY = 2;        // commands of one guild running at once
+    private static final int GUILD_LONG_CONCURRENCY = 1;   // ^^ but for long running commands
+    private static final int GUILD_QUEUE_LIMIT = 10;       // commands of one guild waiting to run
+    private static final long DEADLINE = 60;               // seconds
+    private static final long LONG_DEADLINE = 15*60;       // seconds
+    private static final long IDLE_EXPIRY = 10*60*1000;    // milliseconds an idle guild's virtual time is kept
+
+    private final FairQueue standard = new FairQueue(GUILD_CONCURRENCY);
+    private final FairQueue longRunning = new FairQueue(GUILD_LONG_CONCURRENCY);
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+
+    CommandExecutor()
+    {
+        this.start(standard, POOL_SIZE, DEADLINE);
+        this.start(longRunning, LONG_POOL_SIZE, LONG_DEADLINE);
+        Metrics.QUEUE_DEPTH.set(standard::getWaiting, "commands");
+        Metrics.QUEUE_DEPTH.set(longRunning::getWaiting, "commands_long");
+    }
+
+    /**
+     * queues a command's action
+     * @param name the command's invoking name
+     * @param command the command
+     * @param ctx the command's invocation context
+     * @param action runs the command's action
+     * @return false if the guild already has too many commands waiting to run
+     */
+    boolean submit(String name, Command command, CommandContext ctx, Runnable action)
+    {
+        String key = ctx.getGuild() == null ? "user:" + ctx.getEvent().getAuthor().getId() : ctx.getGuild().getId();
+        Job job = new Job(key, name, ctx, action);
+
+        if (!command.isLongRunning()) return standard.add(job);
+
+        if (!longRunning.add(job)) return false;
+        if (longRunning.getRunning() + longRunning.getWaiting() > LONG_POOL_SIZE)
+        {
+            String content = "The **" + name + "** command is queued behind other long running commands, " +
+                    "it will start once they finish.";
+            MessageUtilities.sendMsg(content, ctx.getEvent().getChannel(), null);
+        }
+        return true;
+    }
+
+    private void start(FairQueue queue, int size, long deadline)
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(size);
+        for (int i=0; i<size; i++)
+        {
+            pool.submit(() -> this.work(queue, deadline));
+        }
+    }
+
+    /**
+     * worker loop, runs the queue's next command under a deadline
+     */
+    private void work(FairQueue queue, long deadline)
+    {
+        while (true)
+        {
+            Job job;
+            try
+            {
+                job = queue.take();
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+
+            ScheduledFuture<?> timeout = watchdog.schedule(() -> this.expire(job), deadline, TimeUnit.SECONDS);
+            long start = System.nanoTime();
+            try
+            {
+                job.action.run();
+            }
+            catch (Exception e)
+            {
+                Logging.exception(this.getClass(), e);
+            }
+            finally
+            {
+                timeout.cancel(false);
+                synchronized (job)
+                {
+                    job.done = true;
+                }
+                queue.finish(job, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+    }
+
+    /**
+     * cancels a command which has run past it's deadline
+     */
+    private void expire(Job job)
+    {
+        synchronized (job)
+        {
+            if (job.done) return;
+            job.ctx.cancel();
+        }
+        Metrics.COMMAND_ERRORS.inc(job.name);
+        Logging.warn(this.getClass(), "Command passed it's deadline", "command", job.name, "guildId", job.key);
+        String content = "**Error** : The **" + job.name + "** command took too long and was stopped.";
+        MessageUtilities.sendMsg(content, job.ctx.getEvent().getChannel(), null);
+    }
+
+    /**
+     * a queued command
+     */
+    private static class Job
+    {
+        final String key;       // guild ID, or the user ID of commands sent by DM
+        final String name;
+        final CommandContext ctx;
+        final Runnable action;
+        boolean done = false;
+
+        Job(String key, String name, CommandContext ctx, Runnable action)
+        {
+            this.key = key;
+            this.name = name;
+            this.ctx = ctx;
+            this.action = action;
+        }
+    }
+
+    /**
+     * the waiting and running commands of one guild, and the worker time the guild has been charged
+     */
+    private static class GuildQueue
+    {
+        final Queue<Job> jobs = new ArrayDeque<>();
+        int running = 0;
+        long virtualTime = 0;
+        long idleSince = 0;     // milliseconds
+    }
+
+    /**
+     * queue of commands shared fairly between guilds
+     * a guild's virtual time advances by the milliseconds of worker time it's commands use,
+     * and the guild with the lowest virtual time (which is below it's concurrency cap) runs next
+     * a guild which goes idle keeps it's virtual time for a while, so that a guild which used more than it's share
+     * cannot clear it's charge by pausing between commands
+     */
+    private static class FairQueue
+    {
+        private final int concurrency;
+        private final Map<String, GuildQueue> guilds = new HashMap<>();     // guilds with waiting or running commands
+        private final Map<String, GuildQueue> idle = new HashMap<>();       // guilds which recently went idle
+        private long virtualTime = 0;      // virtual time of the guild which last started a command
+        private long lastExpiry = 0;       // milliseconds
+        private int waiting = 0;
+        private int running = 0;
+
+        FairQueue(int concurrency)
+        {
+            this.concurrency = concurrency;
+        }
+
+        synchronized boolean add(Job job)
+        {
+            GuildQueue guild = guilds.get(job.key);
+            if (guild == null)
+            {
+                guild = idle.remove(job.key);
+                if (guild == null) guild = new GuildQueue();
+                guilds.put(job.key, guild);
+            }
+            if (guild.jobs.size() >= GUILD_QUEUE_LIMIT) return false;
+
+            // a guild which was idle starts level with the others rather than ahead of them
+            if (guild.jobs.isEmpty() && guild.running == 0)
+            {
+                guild.virtualTime = Math.max(guild.virtualTime, virtualTime);
+            }
+            guild.jobs.add(job);
+            waiting++;
+            this.notifyAll();
+            return true;
+        }
+
+        synchronized Job take() throws InterruptedException
+        {
+            while (true)
+            {
+                GuildQueue next = null;
+                for (GuildQueue guild : guilds.values())
+                {
+                    if (guild.jobs.isEmpty() || guild.running >= concurrency) continue;
+                    if (next == null || guild.virtualTime < next.virtualTime) next = guild;
+                }
+                if (next != null)
+                {
+                    virtualTime = next.virtualTime;
+                    next.virtualTime++;     // so that guilds with equal time take turns
+                    next.running++;
+                    waiting--;
+                    running++;
+                    return next.jobs.poll();
+                }
+                this.wait();
+            }
+        }
+
+        synchronized void finish(Job job, long elapsed)
+        {
+            GuildQueue guild = guilds.get(job.key);
+            guild.running--;
+            guild.virtualTime += elapsed;
+            running--;
+            if (guild.running == 0 && guild.jobs.isEmpty())
+            {
+                guilds.remove(job.key);
+                guild.idleSince = System.currentTimeMillis();
+                idle.put(job.key, guild);
+                this.expireIdle(guild.idleSince);
+            }
+            this.notifyAll();
+        }
+
+        /**
+         * forgets idle guilds which have been idle too long, or whose virtual time the queue has caught up to
+         * (such a guild would be leveled with the others when it next adds a command)
+         */
+        private void expireIdle(long now)
+        {
+            if (now - lastExpiry < IDLE_EXPIRY/10) return;
+            lastExpiry = now;
+            idle.values().removeIf(guild -> guild.virtualTime <= virtualTime || now - guild.idleSince > IDLE_EXPIRY);
+        }
+
+        synchronized int getWaiting()
+        {
+            return waiting;
+        }
+
+        synchronized int getRunning()
+        {
+            return running;
+        }
+    }
+}
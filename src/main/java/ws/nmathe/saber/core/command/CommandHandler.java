@@ -4,8 +4,10 @@ import net.dv8tion.jda.core.entities.ChannelType;
 import net.dv8tion.jda.core.entities.User;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
+import ws.nmathe.saber.commands.CommandContext;
 import ws.nmathe.saber.commands.admin.*;
 import ws.nmathe.saber.core.RateLimiter;
+import ws.nmathe.saber.core.metrics.Metrics;
 import ws.nmathe.saber.utils.MessageUtilities;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.commands.general.*;
@@ -13,8 +15,6 @@ import ws.nmathe.saber.utils.Logging;
 
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Handles MessageEvents which contain user commands
@@ -22,7 +22,7 @@ import java.util.concurrent.Executors;
 public class CommandHandler
 {
     private final CommandParser commandParser = new CommandParser();      // parses command strings into containers
-    private final ExecutorService executor = Executors.newCachedThreadPool(); // thread pool for running commands
+    private final CommandExecutor executor = new CommandExecutor();          // runs command actions fairly between guilds
     private final RateLimiter rateLimiter = new RateLimiter();
     private final HashMap<String, Command> commands;         // maps Command to invoke string
     private final HashMap<String, Command> adminCommands;    // ^^ but for admin commands
@@ -100,7 +100,7 @@ public class CommandHandler
         CommandParser.CommandContainer cc = commandParser.parse(event, prefix);
         if (type == 0)
         {
-            if (rateLimiter.check(event.getAuthor().getId()))
+            if (rateLimiter.check(event.getAuthor().getIdLong()))
             {
                 String alert;
                 if (event.getChannelType().equals(ChannelType.PRIVATE))
@@ -146,27 +146,40 @@ public class CommandHandler
         {
             try // catch any errors which occur while parsing user input
             {
-                String err = commands.get(cc.invoke).verify(cc.prefix, cc.args, cc.event);
+                CommandContext ctx = new CommandContext(cc.prefix, cc.args, cc.event);
+                String err = commands.get(cc.invoke).verify(ctx);
                 // do command action if valid arguments
                 if(err.isEmpty())
                 {
-                    executor.submit( () ->
+                    boolean queued = executor.submit(cc.invoke, commands.get(cc.invoke), ctx, () ->
                     {
+                        long start = System.nanoTime();
                         try
                         {
-                            commands.get(cc.invoke).action(cc.prefix, cc.args, cc.event);
+                            commands.get(cc.invoke).action(ctx);
+                            Metrics.COMMANDS.inc(cc.invoke);
+                            Metrics.COMMAND_LATENCY.observeSince(start, cc.invoke);
 
-                            String info = "Executed command [" + cc.event.getMessage().getContentRaw() +
-                                    "] by " + cc.event.getAuthor().getName() + " [" + cc.event.getMessage().getAuthor().getId()+ "]";
-                            if(cc.event.getGuild() != null)
-                                info += " on " + cc.event.getGuild().getName()+ " [" + cc.event.getGuild().getId() + "]";
-                            Logging.cmd(this.getClass(), info);
+                            if(Logging.isEnabled(3))
+                            {
+                                Logging.cmd(this.getClass(), "Executed command [" + cc.event.getMessage().getContentRaw() + "]",
+                                        "user", cc.event.getAuthor().getName(),
+                                        "userId", cc.event.getAuthor().getId(),
+                                        "guildId", cc.event.getGuild()==null ? null : cc.event.getGuild().getId());
+                            }
                         }
                         catch(Exception e)
                         {
+                            Metrics.COMMAND_ERRORS.inc(cc.invoke);
                             Logging.exception(commands.get(cc.invoke).getClass(), e);
                         }
                     });
+                    if(!queued)
+                    {
+                        String msg = "**Error** : Too many commands are waiting to run on your guild, " +
+                                "please wait for them to finish and try again.";
+                        MessageUtilities.sendMsg(msg, cc.event.getChannel(), null);
+                    }
                 }
                 // otherwise send error message
                 else
@@ -203,22 +216,29 @@ public class CommandHandler
         {
             try // catch any errors which occur while parsing user input
             {
-                String err = adminCommands.get(cc.invoke).verify(cc.prefix + cc.invoke, cc.args, cc.event);
+                CommandContext ctx = new CommandContext(cc.prefix + cc.invoke, cc.args, cc.event);
+                String err = adminCommands.get(cc.invoke).verify(ctx);
 
                 // do command action if valid arguments
                 if (err.equals(""))
                 {
-                    executor.submit( () ->
+                    boolean queued = executor.submit(cc.invoke, adminCommands.get(cc.invoke), ctx, () ->
                     {
                         try
                         {
-                            adminCommands.get(cc.invoke).action(cc.prefix + cc.invoke, cc.args, cc.event);
+                            adminCommands.get(cc.invoke).action(ctx);
                         }
                         catch(Exception e)
                         {
                             Logging.exception(adminCommands.get(cc.invoke).getClass(), e);
                         }
                     });
+                    if(!queued)
+                    {
+                        String msg = "**Error** : Too many commands are waiting to run, " +
+                                "please wait for them to finish and try again.";
+                        MessageUtilities.sendMsg(msg, cc.event.getChannel(), null);
+                    }
                 }
             }
             catch(Exception e)
@@ -1,26 +1,59 @@
 package ws.nmathe.saber.core.database;
 
 import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoClientURI;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import org.bson.Document;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.metrics.MongoMetricsListener;
 
 import java.util.concurrent.*;
 
 public class Driver
 {
     private MongoDatabase db;
+    private GuildCounters counters = new GuildCounters();
+    private Pruner pruner = new Pruner(counters);
 
     public void init()
     {
-        MongoClient mongoClient = new MongoClient(new MongoClientURI(Main.getBotSettingsManager().getMongoURI()));
+        // record the latency of all database operations
+        MongoClientOptions.Builder options = MongoClientOptions.builder()
+                .addCommandListener(new MongoMetricsListener());
+
+        MongoClient mongoClient = new MongoClient(new MongoClientURI(Main.getBotSettingsManager().getMongoURI(), options));
         db = mongoClient.getDatabase("saberDB");
 
-        // schedule a thread to prune disconnected guild, schedules, and events from the database
+        // schedule a thread to incrementally prune disconnected guild, schedules, and events from the database
+        pruner.setThrottle(Main.getBotSettingsManager().getPrunerThrottle());
         ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
-        executor.scheduleAtFixedRate(new Pruner(), 12*60*60, 12*60*60, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(pruner, 60, 30, TimeUnit.SECONDS);
+
+        // periodically recount the guild counters to repair any drift
+        executor.scheduleWithFixedDelay(counters, 10, 6*60, TimeUnit.MINUTES);
+    }
+
+    public Pruner getPruner()
+    {
+        return pruner;
+    }
+
+    public GuildCounters getCounters()
+    {
+        return counters;
+    }
+
+    /**
+     * @return the number of documents in a collection as recorded by the collection's statistics,
+     *         which may be slightly off but does not scan the collection
+     */
+    public long getEstimatedCount(MongoCollection<Document> collection)
+    {
+        Document stats = db.runCommand(new Document("collStats", collection.getNamespace().getCollectionName()));
+        Object count = stats.get("count");
+        return count instanceof Number ? ((Number) count).longValue() : 0;
     }
 
     public MongoCollection<Document> getScheduleCollection()
@@ -37,4 +70,14 @@ public class Driver
     {
         return db.getCollection("guilds");
     }
+
+    public MongoCollection<Document> getCounterCollection()
+    {
+        return db.getCollection("guild_counters");
+    }
+
+    public MongoCollection<Document> getStateCollection()
+    {
+        return db.getCollection("state");
+    }
 }
@@ -0,0 +1,242 @@
+package ws.nmathe.saber.core.database;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static com.mongodb.client.model.Accumulators.sum;
+import static com.mongodb.client.model.Aggregates.group;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.inc;
+
+/**
+ * Number of events and schedules each guild has, kept in the guild_counters collection.
+ * Counters are adjusted with $inc wherever events or schedules are created or removed and are cached
+ * in memory, so that limit checks do not count the guild's documents on every command.
+ * A guild's counter is seeded by counting it's documents the first time it is read, and all counters are
+ * periodically recounted (the reconciliation job) to repair drift from removals made outside of the bot.
+ */
+public class GuildCounters implements Runnable
+{
+    private static final String EVENTS = "events";
+    private static final String SCHEDULES = "schedules";
+
+    private final Map<String, Counts> cache = new ConcurrentHashMap<>();
+
+    /**
+     * reconciliation job, recounts the events and schedules of every guild
+     */
+    @Override
+    public void run()
+    {
+        try
+        {
+            this.reconcile();
+        }
+        catch (Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+    }
+
+    /**
+     * @param guildId guild ID
+     * @return number of events on the guild's schedules
+     */
+    public long getEvents(String guildId)
+    {
+        return this.get(guildId).events;
+    }
+
+    /**
+     * @param guildId guild ID
+     * @return number of schedules on the guild
+     */
+    public long getSchedules(String guildId)
+    {
+        return this.get(guildId).schedules;
+    }
+
+    /**
+     * adjusts the number of events of a guild
+     * @param guildId guild ID
+     * @param delta events added (or removed, if negative)
+     */
+    public void incEvents(String guildId, long delta)
+    {
+        this.inc(guildId, EVENTS, delta);
+    }
+
+    /**
+     * adjusts the number of schedules of a guild
+     * @param guildId guild ID
+     * @param delta schedules added (or removed, if negative)
+     */
+    public void incSchedules(String guildId, long delta)
+    {
+        this.inc(guildId, SCHEDULES, delta);
+    }
+
+    /**
+     * recounts the events and schedules of some guilds, after removals whose size per guild is not known
+     * @param guildIds guild IDs
+     */
+    public void recount(Collection<String> guildIds)
+    {
+        for (String guildId : guildIds)
+        {
+            if (guildId == null) continue;
+            Counts counts = this.count(guildId);
+            this.getCollection().replaceOne(eq("_id", guildId), counts.toDocument(guildId), new UpdateOptions().upsert(true));
+            cache.put(guildId, counts);
+        }
+    }
+
+    /**
+     * drops the counters of guilds which were removed from the database
+     * @param guildIds guild IDs
+     */
+    public void remove(Collection<String> guildIds)
+    {
+        if (guildIds.isEmpty()) return;
+        this.getCollection().deleteMany(in("_id", guildIds));
+        guildIds.forEach(cache::remove);
+    }
+
+    /**
+     * recounts every guild's events and schedules with one aggregation per collection
+     */
+    private void reconcile()
+    {
+        Map<String, Counts> counted = new HashMap<>();
+        this.group(Main.getDBDriver().getEventCollection(), (guildId, n) ->
+                counted.computeIfAbsent(guildId, id -> new Counts()).events = n);
+        this.group(Main.getDBDriver().getScheduleCollection(), (guildId, n) ->
+                counted.computeIfAbsent(guildId, id -> new Counts()).schedules = n);
+
+        // counters of guilds with neither events nor schedules are removed
+        List<String> stale = new ArrayList<>();
+        this.getCollection().find().projection(include("_id")).forEach((Consumer<? super Document>) document ->
+        {
+            String guildId = document.getString("_id");
+            if (!counted.containsKey(guildId)) stale.add(guildId);
+        });
+
+        List<ReplaceOneModel<Document>> writes = new ArrayList<>();
+        counted.forEach((guildId, counts) -> writes.add(new ReplaceOneModel<>(eq("_id", guildId),
+                counts.toDocument(guildId), new UpdateOptions().upsert(true))));
+        if (!writes.isEmpty())
+        {
+            this.getCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        }
+        this.remove(stale);
+
+        cache.clear();
+        Logging.info(this.getClass(), "Reconciled counters", "guilds", counted.size(), "removed", stale.size());
+    }
+
+    private void group(MongoCollection<Document> collection, CountConsumer consumer)
+    {
+        collection.aggregate(Collections.singletonList(group("$guildId", sum("count", 1))))
+                .forEach((Consumer<? super Document>) document ->
+                {
+                    String guildId = document.getString("_id");
+                    if (guildId != null) consumer.accept(guildId, document.getInteger("count", 0));
+                });
+    }
+
+    private void inc(String guildId, String field, long delta)
+    {
+        if (guildId == null || delta == 0) return;
+        try
+        {
+            // a counter which does not yet exist is seeded by the next read
+            Counts counts = cache.get(guildId);
+            if (counts == null && this.getCollection().find(eq("_id", guildId)).first() == null) return;
+
+            this.getCollection().updateOne(eq("_id", guildId), inc(field, delta));
+            if (counts != null)
+            {
+                synchronized (counts)
+                {
+                    if (field.equals(EVENTS)) counts.events = Math.max(0, counts.events + delta);
+                    else counts.schedules = Math.max(0, counts.schedules + delta);
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+    }
+
+    private Counts get(String guildId)
+    {
+        return cache.computeIfAbsent(guildId, id ->
+        {
+            Document document = this.getCollection().find(eq("_id", id)).first();
+            if (document != null)
+            {
+                Counts counts = new Counts();
+                counts.events = number(document.get(EVENTS));
+                counts.schedules = number(document.get(SCHEDULES));
+                return counts;
+            }
+
+            // seed the counter
+            Counts counts = this.count(id);
+            this.getCollection().replaceOne(eq("_id", id), counts.toDocument(id), new UpdateOptions().upsert(true));
+            return counts;
+        });
+    }
+
+    private static long number(Object value)
+    {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private Counts count(String guildId)
+    {
+        Counts counts = new Counts();
+        counts.events = Main.getDBDriver().getEventCollection().count(eq("guildId", guildId));
+        counts.schedules = Main.getDBDriver().getScheduleCollection().count(eq("guildId", guildId));
+        return counts;
+    }
+
+    private MongoCollection<Document> getCollection()
+    {
+        return Main.getDBDriver().getCounterCollection();
+    }
+
+    @FunctionalInterface
+    private interface CountConsumer
+    {
+        void accept(String guildId, long count);
+    }
+
+    /**
+     * the cached counters of one guild
+     */
+    private static class Counts
+    {
+        volatile long events;
+        volatile long schedules;
+
+        Document toDocument(String guildId)
+        {
+            return new Document("_id", guildId)
+                    .append(EVENTS, events)
+                    .append(SCHEDULES, schedules);
+        }
+    }
+}
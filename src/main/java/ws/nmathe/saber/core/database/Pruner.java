@@ -1,151 +1,371 @@
 package ws.nmathe.saber.core.database;
 
+import com.mongodb.client.model.UpdateOptions;
 import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.Permission;
-import net.dv8tion.jda.core.entities.Guild;
-import net.dv8tion.jda.core.entities.MessageChannel;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.MessageHistory;
 import net.dv8tion.jda.core.entities.TextChannel;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.utils.Logging;
 
-import java.util.Collection;
-import java.util.function.Consumer;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.*;
 
-import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.*;
 import static com.mongodb.client.model.Projections.fields;
 import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Sorts.ascending;
 
 /**
- * Removes entries of guilds, schedules, and events that are unreachable
+ * Removes entries of guilds, schedules, and events that are unreachable.
+ * The pruner is run as an incremental job, each tick processes a limited batch of documents
+ * (ordered by _id) and persists it's cursor to the database so that a pass may resume after a restart.
+ * Event messages are verified by paging through the schedule channel's history rather than
+ * requesting each message individually, and history requests are spaced by a throttle.
  */
 public class Pruner implements Runnable
 {
+    private static final String STATE_ID = "pruner";
+    private static final long PASS_INTERVAL = 12*60*60*1000;  // time between the end of a pass and the start of the next
+    private static final int DOC_BUDGET = 500;                // guild and schedule documents per tick
+    private static final int CHANNEL_BUDGET = 10;             // schedule channels to verify events for per tick
+    private static final int MAX_PAGES = 10;                  // history pages to retrieve per channel
+
+    private enum Phase { GUILDS, SCHEDULES, EVENTS, IDLE }
+
+    private volatile long throttle = 1000;     // milliseconds to wait between channel history requests
+    private final GuildCounters counters;
+
+    // job state, persisted after every tick
+    private boolean loaded = false;
+    private volatile Phase phase = Phase.IDLE;
+    private Object cursor = null;
+    private Date passStart = null;
+    private Date passEnd = null;
+    private volatile int processed = 0;
+    private volatile int prunedGuilds = 0;
+    private volatile int prunedSchedules = 0;
+    private volatile int prunedEvents = 0;
+
+    Pruner(GuildCounters counters)
+    {
+        this.counters = counters;
+    }
+
     @Override
     public void run()
     {
-        Logging.info(this.getClass(), "Running database pruner. . .");
+        try
+        {
+            if (!loaded) this.loadState();
+            if (phase == Phase.IDLE)
+            {
+                if (passEnd != null && System.currentTimeMillis() - passEnd.getTime() < PASS_INTERVAL) return;
+                this.startPass();
+            }
 
-        // purge guild setting entries for any guild not connected to the bot
-        Bson query = new Document();
-        Main.getDBDriver().getGuildCollection().find(query)
+            switch (phase)
+            {
+                case GUILDS:
+                    this.pruneGuilds();
+                    break;
+                case SCHEDULES:
+                    this.pruneSchedules();
+                    break;
+                case EVENTS:
+                    this.pruneEvents();
+                    break;
+            }
+            this.saveState();
+        }
+        catch (Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+    }
+
+    /**
+     * @return a description of the pruner's current pass
+     */
+    public String getProgress()
+    {
+        String status = phase == Phase.IDLE ? "idle" : phase.name().toLowerCase() + " (" + processed + " processed)";
+        return status + ", pruned " + prunedGuilds + " guilds, " + prunedSchedules + " schedules, " + prunedEvents + " events" +
+                (passEnd == null ? "" : ", last pass finished " + passEnd) + ", throttle " + throttle + "ms";
+    }
+
+    /**
+     * sets the minimum time between channel history requests (the pruner_throttle bot setting)
+     * @param millis milliseconds
+     */
+    public void setThrottle(long millis)
+    {
+        this.throttle = Math.max(0, millis);
+    }
+
+    /**
+     * purge guild setting entries for any guild not connected to the bot
+     */
+    private void pruneGuilds()
+    {
+        List<Document> batch = Main.getDBDriver().getGuildCollection().find(this.cursorFilter())
                 .projection(fields(include("_id")))
-                .forEach((Consumer<? super Document>) document ->
-                {
-                    try
-                    {
-                        // identify which shard is responsible for the schedule
-                        String guildId = document.getString("_id");
-                        JDA jda = Main.getShardManager().getShard(guildId);
-
-                        // if the shard is not connected, do not prune
-                        if(jda == null) return;
-                        if(JDA.Status.valueOf("CONNECTED") != jda.getStatus()) return;
-
-                        Guild guild = jda.getGuildById(guildId);
-                        if(guild == null)
-                        {
-                            Main.getDBDriver().getGuildCollection().deleteOne(eq("_id", guildId));
-                            Main.getDBDriver().getEventCollection().deleteMany(eq("guildId", guildId));
-                            Main.getDBDriver().getScheduleCollection().deleteMany(eq("guildId", guildId));
-                            Logging.info(this.getClass(), "Pruned guild with ID: " + guildId);
-                        }
-                    }
-                    catch(Exception e)
-                    {
-                        Logging.exception(this.getClass(), e);
-                    }
-                });
-
-        // purge schedules that the bot cannot connect to
-        query = new Document();
-        Main.getDBDriver().getScheduleCollection().find(query)
+                .sort(ascending("_id"))
+                .limit(DOC_BUDGET)
+                .into(new ArrayList<>());
+
+        List<String> pruned = new ArrayList<>();
+        for (Document document : batch)
+        {
+            String guildId = document.getString("_id");
+            JDA jda = this.connectedShard(guildId);
+            if (jda != null && jda.getGuildById(guildId) == null)
+            {
+                pruned.add(guildId);
+            }
+        }
+
+        if (!pruned.isEmpty())
+        {
+            Main.getDBDriver().getGuildCollection().deleteMany(in("_id", pruned));
+            // the bot is no longer in these guilds, so their events' rsvp roles are already out of reach
+            Main.getDBDriver().getEventCollection().deleteMany(in("guildId", pruned));
+            Main.getDBDriver().getScheduleCollection().deleteMany(in("guildId", pruned));
+            counters.remove(pruned);
+            prunedGuilds += pruned.size();
+            Logging.info(this.getClass(), "Pruned guilds with IDs: " + pruned);
+        }
+        this.advance(batch, DOC_BUDGET);
+    }
+
+    /**
+     * purge schedules that the bot cannot connect to
+     */
+    private void pruneSchedules()
+    {
+        List<Document> batch = Main.getDBDriver().getScheduleCollection().find(this.cursorFilter())
                 .projection(fields(include("_id", "guildId")))
-                .forEach((Consumer<? super Document>) document ->
-                {
-                    try
-                    {
-                        // identify which shard is responsible for the schedule
-                        String guildId = document.getString("guildId");
-                        JDA jda = Main.getShardManager().getShard(guildId);
-
-                        // if the shard is not connected, do not prune
-                        if(jda == null) return;
-                        if(JDA.Status.valueOf("CONNECTED") != jda.getStatus()) return;
-
-                        String chanId = document.getString("_id");
-                        MessageChannel channel = jda.getTextChannelById(chanId);
-                        if(channel == null)
-                        {
-                            Main.getDBDriver().getEventCollection().deleteMany(eq("channeldId", chanId));
-                            Main.getDBDriver().getScheduleCollection().deleteMany(eq("_id", chanId));
-                            Logging.info(this.getClass(), "Pruned schedule with channel ID: " + chanId);
-                        }
-                    }
-                    catch(Exception e)
-                    {
-                        Logging.exception(this.getClass(), e);
-                    }
-                });
-
-
-        // purge events for which the bot cannot access the message
-        query = new Document();
-        Main.getDBDriver().getEventCollection().find(query)
-                .projection(fields(include("_id", "messageId", "channelId", "guildId")))
-                .forEach((Consumer<? super Document>) document ->
+                .sort(ascending("_id"))
+                .limit(DOC_BUDGET)
+                .into(new ArrayList<>());
+
+        List<String> pruned = new ArrayList<>();
+        Set<String> guilds = new HashSet<>();
+        for (Document document : batch)
+        {
+            JDA jda = this.connectedShard(document.getString("guildId"));
+            String chanId = document.getString("_id");
+            if (jda != null && jda.getTextChannelById(chanId) == null)
+            {
+                pruned.add(chanId);
+                guilds.add(document.getString("guildId"));
+            }
+        }
+
+        if (!pruned.isEmpty())
+        {
+            Main.getEntryManager().removeRolesOf(in("channelId", pruned));
+            Main.getDBDriver().getEventCollection().deleteMany(in("channelId", pruned));
+            Main.getDBDriver().getScheduleCollection().deleteMany(in("_id", pruned));
+            counters.recount(guilds);
+            prunedSchedules += pruned.size();
+            Logging.info(this.getClass(), "Pruned schedules with channel IDs: " + pruned);
+        }
+        this.advance(batch, DOC_BUDGET);
+    }
+
+    /**
+     * purge events for which the schedule channel no longer contains the event's message,
+     * events are processed by schedule so that one walk of the channel's history verifies all events
+     */
+    private void pruneEvents()
+    {
+        List<Document> batch = Main.getDBDriver().getScheduleCollection().find(this.cursorFilter())
+                .projection(fields(include("_id", "guildId")))
+                .sort(ascending("_id"))
+                .limit(CHANNEL_BUDGET)
+                .into(new ArrayList<>());
+
+        for (Document document : batch)
+        {
+            try
+            {
+                JDA jda = this.connectedShard(document.getString("guildId"));
+                if (jda == null) continue;
+
+                // only do event pruning in this loop
+                TextChannel channel = jda.getTextChannelById(document.getString("_id"));
+                if (channel == null) continue;
+                if (!channel.getGuild().getSelfMember().hasPermission(channel, Permission.MESSAGE_HISTORY)) continue;
+
+                List<Integer> pruned = this.findMissingEvents(channel);
+                if (!pruned.isEmpty())
                 {
-                    try
-                    {
-                        // identify which shard is responsible for the schedule
-                        String guildId = document.getString("guildId");
-                        JDA jda = Main.getShardManager().getShard(guildId);
-
-                        // if the shard is not connected, do not prune
-                        if(jda == null) return;
-                        if(JDA.Status.valueOf("CONNECTED") != jda.getStatus()) return;
-
-                        // validate message id
-                        Integer eventId = document.getInteger("_id");
-                        String messageId = document.getString("messageId");
-                        if(messageId == null)
-                        {
-                            Main.getDBDriver().getEventCollection().deleteOne(eq("_id", eventId));
-                            Logging.info(this.getClass(), "Pruned event with ID: " + eventId);
-                            return;
-                        }
-
-                        // validate channel id
-                        String channelId = document.getString("channelId");
-                        TextChannel channel = jda.getTextChannelById(channelId);
-                        if(channel==null)
-                        {   // only do event pruning in this loop
-                            return;
-                        }
-
-                        // attempt to retrieve the message so as to verify it's existence
-                        channel.getMessageById(messageId).queue(
-                                message ->
-                                {
-                                    if(message == null)
-                                    {
-                                        Main.getDBDriver().getEventCollection().deleteOne(eq("_id", eventId));
-                                        Logging.info(this.getClass(), "Pruned event with ID: " + eventId + " on channel with ID: " + channelId);
-                                    }
-                                },
-                                throwable ->
-                                {
-                                    Main.getDBDriver().getEventCollection().deleteOne(eq("_id", eventId));
-                                    Logging.info(this.getClass(), "Pruned event with ID: " + eventId + " on channel with ID: " + channelId);
-                                });
-                    }
-                    catch(Exception e)
-                    {
-                        Logging.exception(this.getClass(), e);
-                    }
-            });
+                    Main.getEntryManager().removeRolesOf(in("_id", pruned));
+                    long deleted = Main.getDBDriver().getEventCollection().deleteMany(in("_id", pruned)).getDeletedCount();
+                    counters.incEvents(channel.getGuild().getId(), -deleted);
+                    pruned.forEach(id -> Main.getEntryManager().getMessageFilter().remove());
+                    prunedEvents += pruned.size();
+                    Logging.info(this.getClass(), "Pruned events with IDs: " + pruned + " on channel with ID: " + channel.getId());
+                }
+            }
+            catch (Exception e)
+            {
+                Logging.exception(this.getClass(), e);
+            }
+        }
+        this.advance(batch, CHANNEL_BUDGET);
+    }
+
+    /**
+     * pages through a schedule channel's history to identify the events whose messages are missing
+     * @param channel the schedule channel
+     * @return list of event IDs to prune
+     */
+    private List<Integer> findMissingEvents(TextChannel channel) throws InterruptedException
+    {
+        List<Document> events = Main.getDBDriver().getEventCollection().find(eq("channelId", channel.getId()))
+                .projection(fields(include("_id", "messageId")))
+                .into(new ArrayList<>());
+        if (events.isEmpty()) return new ArrayList<>();
+
+        Set<String> expected = new HashSet<>();
+        for (Document event : events)
+        {
+            if (event.getString("messageId") != null) expected.add(event.getString("messageId"));
+        }
+
+        // retrieve history pages until all event messages are found or the history is exhausted
+        Set<String> found = new HashSet<>();
+        long oldest = Long.MAX_VALUE;
+        boolean exhausted = false;
+        MessageHistory history = channel.getHistory();
+        for (int page=0; page<MAX_PAGES && found.size()<expected.size(); page++)
+        {
+            Thread.sleep(throttle);
+            List<Message> messages = history.retrievePast(100).complete();
+            for (Message message : messages)
+            {
+                if (expected.contains(message.getId())) found.add(message.getId());
+                oldest = Math.min(oldest, message.getIdLong());
+            }
+            if (messages.size() < 100)
+            {
+                exhausted = true;
+                break;
+            }
+        }
+
+        // a message is missing if it is not found within the range of history that was retrieved
+        List<Integer> missing = new ArrayList<>();
+        for (Document event : events)
+        {
+            String messageId = event.getString("messageId");
+            if (messageId == null)
+            {
+                missing.add(event.getInteger("_id"));
+            }
+            else if (!found.contains(messageId) && (exhausted || Long.parseLong(messageId) > oldest))
+            {
+                missing.add(event.getInteger("_id"));
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * @return the shard responsible for the guild if it is connected, otherwise null
+     */
+    private JDA connectedShard(String guildId)
+    {
+        if (guildId == null) return null;
+        JDA jda = Main.getShardManager().getJDA(guildId);
+        if (jda == null || jda.getStatus() != JDA.Status.CONNECTED) return null;
+        return jda;
+    }
+
+    private Bson cursorFilter()
+    {
+        return cursor == null ? new Document() : gt("_id", cursor);
+    }
+
+    /**
+     * moves the cursor past the processed batch, or on to the next phase if the batch was the last
+     */
+    private void advance(List<Document> batch, int budget)
+    {
+        processed += batch.size();
+        if (batch.size() < budget)
+        {
+            cursor = null;
+            switch (phase)
+            {
+                case GUILDS:
+                    phase = Phase.SCHEDULES;
+                    break;
+                case SCHEDULES:
+                    phase = Phase.EVENTS;
+                    break;
+                default:
+                    phase = Phase.IDLE;
+                    passEnd = new Date();
+                    Logging.info(this.getClass(), "Finished database pruning pass: " + this.getProgress());
+            }
+        }
+        else
+        {
+            cursor = batch.get(batch.size()-1).get("_id");
+        }
+    }
+
+    private void startPass()
+    {
+        Logging.info(this.getClass(), "Running database pruner. . .");
+        phase = Phase.GUILDS;
+        cursor = null;
+        passStart = new Date();
+        processed = 0;
+        prunedGuilds = 0;
+        prunedSchedules = 0;
+        prunedEvents = 0;
+    }
+
+    private void loadState()
+    {
+        Document state = Main.getDBDriver().getStateCollection().find(eq("_id", STATE_ID)).first();
+        if (state != null)
+        {
+            phase = Phase.valueOf(state.getString("phase"));
+            cursor = state.get("cursor");
+            passStart = state.getDate("pass_start");
+            passEnd = state.getDate("pass_end");
+            processed = state.getInteger("processed", 0);
+            prunedGuilds = state.getInteger("pruned_guilds", 0);
+            prunedSchedules = state.getInteger("pruned_schedules", 0);
+            prunedEvents = state.getInteger("pruned_events", 0);
+        }
+        else
+        {   // delay the first pass as the pruner previously did
+            passEnd = new Date();
+            this.saveState();
+        }
+        loaded = true;
+    }
+
+    private void saveState()
+    {
+        Document state = new Document("_id", STATE_ID)
+                .append("phase", phase.name())
+                .append("cursor", cursor)
+                .append("pass_start", passStart)
+                .append("pass_end", passEnd)
+                .append("processed", processed)
+                .append("pruned_guilds", prunedGuilds)
+                .append("pruned_schedules", prunedSchedules)
+                .append("pruned_events", prunedEvents);
+        Main.getDBDriver().getStateCollection()
+                .replaceOne(eq("_id", STATE_ID), state, new UpdateOptions().upsert(true));
     }
 }
@@ -10,20 +10,18 @@ import net.dv8tion.jda.core.entities.TextChannel;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.commands.CommandContext;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
 import ws.nmathe.saber.core.schedule.EntryManager;
 import ws.nmathe.saber.core.schedule.EventRecurrence;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.MessageUtilities;
-import ws.nmathe.saber.utils.ParsingUtilities;
 import ws.nmathe.saber.utils.Logging;
-import ws.nmathe.saber.utils.VerifyUtilities;
 import java.io.IOException;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static com.mongodb.client.model.Filters.*;
 
@@ -173,6 +171,16 @@ public class CalendarConverter
      * @param service connected calendar service with user credentials
      */
     public void importCalendar(String address, TextChannel channel, Calendar service)
+    {
+        this.importCalendar(address, channel, service, null);
+    }
+
+    /**
+     * version used by the sync command, which reports the sync's progress and stops between events
+     * if the command is cancelled
+     * @param command the invocation of the sync command, may be null
+     */
+    public void importCalendar(String address, TextChannel channel, Calendar service, CommandContext command)
     {
         // sanity checks
         if(channel == null || address == null) return;
@@ -219,8 +227,16 @@ public class CalendarConverter
             HashSet<String> uniqueEvents = new HashSet<>();
 
             // process events
-            for(Event event : events.getItems())
+            List<Event> items = events.getItems();
+            for(int i=0; i<items.size(); i++)
             {
+                Event event = items.get(i);
+                if(command != null)
+                {
+                    // the events not yet processed would be purged, so a cancelled sync stops without purging
+                    if(command.isCancelled()) return;
+                    command.progress("Syncing <#" + channel.getId() + "> . . . " + i + "/" + items.size());
+                }
                 channel.sendTyping().queue();   // continue to send 'is typing'
 
                 // if the unique google event ID does not appear in the already processed events
@@ -232,15 +248,8 @@ public class CalendarConverter
                     // declare and initialize event parameters
                     ZonedDateTime start, end;
                     String title;
-                    ArrayList<String> comments      = new ArrayList<>();
                     int repeat                      = 0;
                     ZonedDateTime expire            = null;
-                    String imageUrl                 = null;
-                    String thumbnailUrl             = null;
-                    ZonedDateTime rsvpDeadline      = null;
-                    String titleUrl                 = null;
-                    Map<String, Integer> rsvpLimits = new HashMap<>();
-
 
                     if(event.getStart().getDateTime() == null)
                     {   /* parse start and end dates for all day events */
@@ -265,85 +274,14 @@ public class CalendarConverter
                     else title = event.getSummary();
 
                     // process event description into event comments or other settings
-                    if (event.getDescription() != null)
-                    {
-                        // process the description line by line
-                        String description = HTMLStripper.cleanDescription(
-                                event.getDescription().replace("\n", "<br>"));
-                        for (String comment : description.split("\n"))
-                        {
-                            comment = comment.trim();
-                            String lowerCase = comment.toLowerCase();
-
-                            // image
-                            if (lowerCase.startsWith("image:"))
-                            {
-                                String[] tmp = comment.split(":",2); // split to limit:
-                                if(tmp.length > 1)
-                                {
-                                    imageUrl = tmp[1].trim().replaceAll(" ","");
-                                    if (!VerifyUtilities.verifyUrl(imageUrl)) imageUrl = null;
-                                }
-                            }
-                            // thumbnail
-                            else if (lowerCase.startsWith("thumbnail:"))
-                            {
-                                String[] tmp = comment.split(":",2);
-                                if(tmp.length > 1)
-                                {
-                                    thumbnailUrl = tmp[1].trim().trim().replaceAll(" ","");
-                                    if(!VerifyUtilities.verifyUrl(thumbnailUrl)) thumbnailUrl = null;
-                                }
-                            }
-                            // limit
-                            else if (lowerCase.startsWith("limit:"))
-                            {
-                                String[] tmp = comment.split(":",2); // split to limit:
-                                if(tmp.length > 1)
-                                {
-                                    String[] str = tmp[1].trim().split("[^\\S\n\r]+"); // split into white space separated segments
-                                    if(str.length >= 2)
-                                    {
-                                        // rebuild the rsvp group name
-                                        StringBuilder name = new StringBuilder();
-                                        for(int i=0; i<str.length-1; i++)
-                                        {
-                                            name.append(str[i]);
-                                            if(i != str.length-2) name.append(" ");
-                                        }
-
-                                        // parse the limit
-                                        Integer limit = -1;
-                                        if(VerifyUtilities.verifyInteger(str[str.length-1]))
-                                            limit = Integer.parseInt(str[str.length-1]);
-
-                                        rsvpLimits.put(name.toString(), limit);
-                                    }
-                                }
-
-                            }
-                            // title url
-                            else if (lowerCase.startsWith("url:"))
-                            {
-                                String[] tmp = comment.split(":",2);
-                                if(tmp.length > 1 && VerifyUtilities.verifyUrl(tmp[1].trim().replaceAll(" ","")))
-                                    titleUrl = tmp[1].trim().replaceAll(" ","");
-                            }
-                            // deadline
-                            else if (lowerCase.startsWith("deadline:"))
-                            {
-                                String tmp = lowerCase.replace("deadline:","")
-                                        .trim().replaceAll(" ","");
-                                if(VerifyUtilities.verifyDate(tmp))
-                                    rsvpDeadline = ParsingUtilities.parseDate(tmp, zone);
-                            }
-                            // plaintext comment
-                            else if(!comment.trim().isEmpty())
-                            {
-                                comments.add(comment);
-                            }
-                        }
-                    }
+                    EventDescription description = event.getDescription() == null ?
+                            new EventDescription() : EventDescription.parse(event.getDescription(), zone);
+                    ArrayList<String> comments      = description.comments;
+                    String imageUrl                 = description.imageUrl;
+                    String thumbnailUrl             = description.thumbnailUrl;
+                    ZonedDateTime rsvpDeadline      = description.rsvpDeadline;
+                    String titleUrl                 = description.titleUrl;
+                    Map<String, Integer> rsvpLimits = description.rsvpLimits;
 
                     // get the event recurrence information
                     List<String> recurrence = event.getRecurrence();
@@ -445,7 +383,7 @@ public class CalendarConverter
                         if( msg==null ) return;
 
                         Main.getEntryManager().removeEntry((Integer) document.get("_id"));
-                        MessageUtilities.deleteMsg(msg, null);
+                        MessageUtilities.deleteMsg(msg, null, Priority.MAINTENANCE);
                     });
 
             // set channel topic
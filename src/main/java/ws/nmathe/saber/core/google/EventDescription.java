@@ -0,0 +1,120 @@
+package ws.nmathe.saber.core.google;
+
+import ws.nmathe.saber.utils.ParsingUtilities;
+import ws.nmathe.saber.utils.VerifyUtilities;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Holds the saber event settings parsed out of a google calendar event's description.
+ * Lines beginning with 'image:', 'thumbnail:', 'limit:', 'url:', or 'deadline:' are
+ * interpreted as event settings, all other non-empty lines are kept as event comments.
+ */
+class EventDescription
+{
+    private static final Pattern WHITESPACE = Pattern.compile("[^\\S\n\r]+");
+
+    ArrayList<String> comments      = new ArrayList<>();
+    String imageUrl                 = null;
+    String thumbnailUrl             = null;
+    String titleUrl                 = null;
+    ZonedDateTime rsvpDeadline      = null;
+    Map<String, Integer> rsvpLimits = new HashMap<>();
+
+    /**
+     * strips the description of HTML and extracts event settings in a single pass
+     * @param description the google calendar event's description (may contain HTML)
+     * @param zone the zone to use when parsing the rsvp deadline
+     * @return the parsed event description
+     */
+    static EventDescription parse(String description, ZoneId zone)
+    {
+        EventDescription parsed = new EventDescription();
+        HTMLStripper.forEachLine(description, line -> parsed.processLine(line.trim(), zone));
+        return parsed;
+    }
+
+    /**
+     * processes a single (trimmed) line of the description
+     */
+    private void processLine(String comment, ZoneId zone)
+    {
+        if (comment.isEmpty()) return;
+
+        // image
+        if (startsWithIgnoreCase(comment, "image:"))
+        {
+            imageUrl = stripSpaces(comment.substring(6));
+            if (!VerifyUtilities.verifyUrl(imageUrl)) imageUrl = null;
+        }
+        // thumbnail
+        else if (startsWithIgnoreCase(comment, "thumbnail:"))
+        {
+            thumbnailUrl = stripSpaces(comment.substring(10));
+            if (!VerifyUtilities.verifyUrl(thumbnailUrl)) thumbnailUrl = null;
+        }
+        // limit
+        else if (startsWithIgnoreCase(comment, "limit:"))
+        {
+            String[] str = WHITESPACE.split(comment.substring(6).trim()); // split into white space separated segments
+            if (str.length >= 2)
+            {
+                // rebuild the rsvp group name
+                StringBuilder name = new StringBuilder();
+                for (int i=0; i<str.length-1; i++)
+                {
+                    name.append(str[i]);
+                    if (i != str.length-2) name.append(" ");
+                }
+
+                // parse the limit
+                Integer limit = -1;
+                if (VerifyUtilities.verifyInteger(str[str.length-1]))
+                    limit = Integer.parseInt(str[str.length-1]);
+
+                rsvpLimits.put(name.toString(), limit);
+            }
+        }
+        // title url
+        else if (startsWithIgnoreCase(comment, "url:"))
+        {
+            String url = stripSpaces(comment.substring(4));
+            if (VerifyUtilities.verifyUrl(url)) titleUrl = url;
+        }
+        // deadline
+        else if (startsWithIgnoreCase(comment, "deadline:"))
+        {
+            String tmp = stripSpaces(comment.substring(9).toLowerCase());
+            if (VerifyUtilities.verifyDate(tmp))
+                rsvpDeadline = ParsingUtilities.parseDate(tmp, zone);
+        }
+        // plaintext comment
+        else
+        {
+            comments.add(comment);
+        }
+    }
+
+    private static boolean startsWithIgnoreCase(String str, String prefix)
+    {
+        return str.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    /** removes all space characters from a string */
+    private static String stripSpaces(String str)
+    {
+        if (str.indexOf(' ') < 0) return str;
+        StringBuilder builder = new StringBuilder(str.length());
+        for (int i=0; i<str.length(); i++)
+        {
+            char c = str.charAt(i);
+            if (c != ' ') builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -1,16 +1,25 @@
 package ws.nmathe.saber.core.google;
 
-import org.jsoup.Jsoup;
-import org.jsoup.helper.StringUtil;
-import org.jsoup.nodes.Node;
-import org.jsoup.nodes.TextNode;
-import org.jsoup.select.NodeTraversor;
-import org.jsoup.select.NodeVisitor;
+import org.jsoup.parser.Parser;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  *  Recent versions of Google Calendar embed HTML tags into the
  *  descriptions of events. These tags must be removed for parsing
  *  by the CalendarConverter class.
+ *
+ *  The stripper is a single-pass tokenizer which reproduces the plaintext
+ *  produced by the previous jsoup DOM traversal (whitespace normalized text nodes,
+ *  list bullets, and block element line breaks) without building a document tree.
+ *  Character references in text are decoded with jsoup's entity table.
+ *  Literal newline characters in the description are treated as <br> tags.
  */
 public class HTMLStripper
 {
@@ -21,47 +30,456 @@ public class HTMLStripper
      */
     public static String cleanDescription(String description)
     {
-        FormattingVisitor formatter = new FormattingVisitor();
-        new NodeTraversor(formatter).traverse(Jsoup.parse(description));
-        return formatter.toString();
+        StringBuilder accum = new StringBuilder(description.length());
+        new Tokenizer(description, accum, null).run();
+        return accum.toString();
     }
 
     /**
-     * HTML Node traversal scheme to reduce an html page into plaintext
-     *
-     * Refer to:
+     * strips HTML tags from a google calendar event's description and passes each
+     * resulting line of plaintext to a consumer, lines are not trimmed
+     * @param description an event description possibly containing HTML tags
+     * @param lineConsumer consumer to process each line
+     */
+    public static void forEachLine(String description, Consumer<String> lineConsumer)
+    {
+        // fast path, plaintext descriptions only need to be split and whitespace normalized
+        if (description.indexOf('<') < 0 && description.indexOf('&') < 0)
+        {
+            StringBuilder line = new StringBuilder();
+            int start = 0;
+            for (int i=0; i<=description.length(); i++)
+            {
+                if (i == description.length() || description.charAt(i) == '\n')
+                {
+                    line.setLength(0);
+                    appendNormalised(line, description, start, i);
+                    lineConsumer.accept(line.toString());
+                    start = i+1;
+                }
+            }
+            return;
+        }
+
+        StringBuilder line = new StringBuilder();
+        new Tokenizer(description, line, lineConsumer).run();
+        lineConsumer.accept(line.toString());
+    }
+
+    /**
+     * appends a region of text to a builder, collapsing all runs of whitespace into a single space
+     */
+    private static void appendNormalised(StringBuilder accum, CharSequence text, int start, int end)
+    {
+        boolean lastWasWhite = false;
+        for (int i=start; i<end; i++)
+        {
+            char c = text.charAt(i);
+            if (isWhitespace(c))
+            {
+                if (!lastWasWhite) accum.append(' ');
+                lastWasWhite = true;
+            }
+            else
+            {
+                accum.append(c);
+                lastWasWhite = false;
+            }
+        }
+    }
+
+    private static boolean isWhitespace(char c)
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00A0';
+    }
+
+    /**
+     * Streaming HTML reduction scheme, mirrors the formatting of:
      * https://github.com/jhy/jsoup/blob/master/src/main/java/org/jsoup/examples/HtmlToPlainText.java
+     * Elements are opened and closed following the parts of jsoup's tree building which change the text
+     * (implied end tags, scoping of end tags, raw text elements), so that no document tree is needed.
      */
-    private static class FormattingVisitor implements NodeVisitor
+    private static class Tokenizer
     {
-        private StringBuilder accum = new StringBuilder(); // holds the accumulated text
+        // elements which never have content
+        private static final Set<String> VOID = set("area", "base", "basefont", "bgsound", "br", "col", "embed",
+                "frame", "hr", "img", "input", "keygen", "link", "meta", "param", "source", "track", "wbr");
+
+        // elements whose start closes an open paragraph
+        private static final Set<String> CLOSES_P = set("address", "article", "aside", "blockquote", "center",
+                "details", "dir", "div", "dl", "fieldset", "figcaption", "figure", "footer", "header", "hgroup",
+                "menu", "nav", "ol", "p", "section", "summary", "ul", "h1", "h2", "h3", "h4", "h5", "h6", "pre",
+                "listing", "form", "plaintext", "hr", "li", "dd", "dt", "xmp", "table");
+
+        private static final Set<String> HEADINGS = set("h1", "h2", "h3", "h4", "h5", "h6");
 
-        // hit when the node is first seen
-        public void head(Node node, int i)
+        // elements which bound the scope searched by an end tag
+        private static final Set<String> SCOPE = set("applet", "caption", "html", "table", "td", "th",
+                "marquee", "object", "button");
+
+        // elements an end tag of an ordinary (inline or unknown) element does not close
+        private static final Set<String> SPECIAL = set("address", "applet", "area", "article", "aside", "base",
+                "basefont", "bgsound", "blockquote", "body", "br", "button", "caption", "center", "col", "colgroup",
+                "command", "dd", "details", "dir", "div", "dl", "dt", "embed", "fieldset", "figcaption", "figure",
+                "footer", "form", "frame", "frameset", "h1", "h2", "h3", "h4", "h5", "h6", "head", "header",
+                "hgroup", "hr", "html", "iframe", "img", "input", "isindex", "li", "link", "listing", "marquee",
+                "menu", "meta", "nav", "noembed", "noframes", "noscript", "object", "ol", "p", "param", "plaintext",
+                "pre", "script", "section", "select", "style", "summary", "table", "tbody", "td", "textarea",
+                "tfoot", "th", "thead", "title", "tr", "ul", "wbr", "xmp");
+
+        private final String html;
+        private final StringBuilder accum;          // holds the accumulated text (or the current line)
+        private final Consumer<String> lineConsumer; // if not null, receives each completed line
+        private final StringBuilder text = new StringBuilder(); // holds the current text node
+        private final Deque<String> open = new ArrayDeque<>();  // open elements, innermost first
+        private int pos = 0;
+
+        Tokenizer(String html, StringBuilder accum, Consumer<String> lineConsumer)
+        {
+            this.html = html;
+            this.accum = accum;
+            this.lineConsumer = lineConsumer;
+        }
+
+        void run()
+        {
+            while (pos < html.length())
+            {
+                char c = html.charAt(pos);
+                if (c == '<' && pos+1 < html.length() && isTagStart(html.charAt(pos+1)))
+                {
+                    flushText(true);
+                    readTag();
+                }
+                else if (c == '\n')
+                {   // raw newlines are treated as line breaks
+                    flushText(true);
+                    newline();
+                    pos++;
+                }
+                else
+                {
+                    text.append(c);
+                    pos++;
+                }
+            }
+            flushText(true);
+
+            // close any elements left open by the description
+            while (!open.isEmpty())
+            {
+                tail(open.pop());
+            }
+        }
+
+        private static boolean isTagStart(char c)
         {
-            String name = node.nodeName();
-            if (node instanceof TextNode)
-                accum.append(((TextNode) node).text()); // TextNodes carry all user-readable text in the DOM.
-            else if (name.equals("li"))
-                accum.append("\n * ");
+            return Character.isLetter(c) || c == '/' || c == '!' || c == '?';
+        }
+
+        /**
+         * appends the current text node after normalizing it's whitespace
+         * @param decode whether to decode the text's character references
+         */
+        private void flushText(boolean decode)
+        {
+            if (text.length() == 0) return;
+            if (!decode || text.indexOf("&") < 0)
+            {
+                appendNormalised(accum, text, 0, text.length());
+            }
+            else
+            {   // jsoup's entity table, including the entities it accepts without a trailing semicolon
+                String decoded = Parser.unescapeEntities(text.toString(), false);
+                appendNormalised(accum, decoded, 0, decoded.length());
+            }
+            text.setLength(0);
+        }
+
+        private void newline()
+        {
+            if (lineConsumer == null)
+            {
+                accum.append('\n');
+            }
+            else
+            {
+                lineConsumer.accept(accum.toString());
+                accum.setLength(0);
+            }
+        }
+
+        /** processes a tag, comment, or other markup starting at the current position */
+        private void readTag()
+        {
+            // comments produce no text
+            if (html.startsWith("<!--", pos))
+            {
+                int end;
+                if (html.startsWith(">", pos+4)) end = pos+4;           // <!-->
+                else if (html.startsWith("->", pos+4)) end = pos+5;     // <!--->
+                else
+                {
+                    end = html.indexOf("-->", pos+4);
+                    end = end < 0 ? html.length() : end+2;
+                }
+                pos = end+1;
+                return;
+            }
+
+            // doctypes, processing instructions, and malformed end tags are bogus comments up to the next '>'
+            char next = html.charAt(pos+1);
+            if (next == '!' || next == '?' || (next == '/' && (pos+2 >= html.length() || !Character.isLetter(html.charAt(pos+2)))))
+            {
+                int end = html.indexOf('>', pos);
+                pos = end < 0 ? html.length() : end+1;
+                return;
+            }
+
+            boolean closing = next == '/';
+            int nameStart = pos + (closing ? 2 : 1);
+            int nameEnd = nameStart;
+            while (nameEnd < html.length() && !isNameEnd(html.charAt(nameEnd))) nameEnd++;
+            String name = html.substring(nameStart, nameEnd).toLowerCase(Locale.ENGLISH);
+
+            // a tag left unterminated by the end of the description is dropped
+            int end = tagEnd(nameEnd);
+            if (end < 0)
+            {
+                pos = html.length();
+                return;
+            }
+            boolean selfClosing = !closing && end > nameEnd && html.charAt(end-1) == '/';
+            pos = end+1;
+
+            if (closing)
+            {
+                this.end(name);
+                return;
+            }
+            this.start(name);
+            if (selfClosing && !VOID.contains(name)) this.end(name);
+        }
+
+        private static boolean isNameEnd(char c)
+        {
+            return isWhitespace(c) || c == '/' || c == '>';
+        }
+
+        /**
+         * @param from index after the tag's name
+         * @return index of the '>' ending the tag, skipping quoted attribute values, or -1 if the tag is unterminated
+         */
+        private int tagEnd(int from)
+        {
+            int i = from;
+            while (i < html.length())
+            {
+                char c = html.charAt(i++);
+                if (c == '>') return i-1;
+                if (c != '=') continue;
+
+                // an attribute value, which is quoted or runs to the next whitespace or '>'
+                while (i < html.length() && isWhitespace(html.charAt(i))) i++;
+                if (i == html.length()) return -1;
+                char quote = html.charAt(i);
+                if (quote == '"' || quote == '\'')
+                {
+                    int close = html.indexOf(quote, i+1);
+                    if (close < 0) return -1;
+                    i = close+1;
+                }
+                else
+                {
+                    while (i < html.length() && !isWhitespace(html.charAt(i)) && html.charAt(i) != '>') i++;
+                }
+            }
+            return -1;
+        }
+
+        private void start(String name)
+        {
+            // the document structure elements are implied
+            if (name.equals("html") || name.equals("head") || name.equals("body")) return;
+
+            if (CLOSES_P.contains(name) && this.inScope("p")) this.close("p");
+            if (name.equals("li"))
+            {
+                this.closeItem("li");
+            }
+            else if (name.equals("dd") || name.equals("dt"))
+            {
+                this.closeItem("dd", "dt");
+            }
+            else if (HEADINGS.contains(name) && HEADINGS.contains(open.peek()))
+            {   // headings do not nest
+                tail(open.pop());
+            }
+
+            head(name);
+            if (name.equals("br"))
+            {
+                newline();
+            }
+            else if (!VOID.contains(name))
+            {
+                open.push(name);
+                this.rawText(name);
+            }
+        }
+
+        private void end(String name)
+        {
+            if (name.equals("br"))
+            {   // </br> is treated as <br>
+                head(name);
+                newline();
+            }
+            else if (name.equals("p") && !this.inScope("p"))
+            {   // a stray </p> is an empty paragraph
+                head(name);
+                tail(name);
+            }
+            else if (HEADINGS.contains(name))
+            {   // a heading end tag closes whichever heading is open
+                for (String element : open)
+                {
+                    if (HEADINGS.contains(element))
+                    {
+                        this.close(element);
+                        return;
+                    }
+                    if (SCOPE.contains(element)) return;
+                }
+            }
+            else if (SPECIAL.contains(name))
+            {
+                if (this.inScope(name)) this.close(name);
+            }
+            else
+            {   // an ordinary end tag closes it's element unless a special element is open inside of it
+                for (String element : open)
+                {
+                    if (element.equals(name))
+                    {
+                        this.close(name);
+                        return;
+                    }
+                    if (SPECIAL.contains(element)) return;
+                }
+            }
+        }
+
+        /**
+         * handles the contents of elements which are not parsed as markup,
+         * script and style contents are data, the contents of others are text
+         */
+        private void rawText(String name)
+        {
+            boolean data = name.equals("script") || name.equals("style");
+            boolean rawText = name.equals("xmp") || name.equals("iframe") || name.equals("noembed") || name.equals("noframes");
+            boolean rcData = name.equals("textarea") || name.equals("title");
+            if (!data && !rawText && !rcData) return;
+
+            int close = this.findEndTag(name);
+            if (!data)
+            {
+                text.append(html, pos, close);
+                flushText(rcData);
+            }
+            pos = close;
+        }
+
+        /**
+         * @return index of the end tag closing a raw text element, or the end of the description if there is none
+         */
+        private int findEndTag(String name)
+        {
+            int i = pos;
+            while ((i = html.indexOf("</", i)) >= 0)
+            {
+                int nameEnd = i+2+name.length();
+                if (html.regionMatches(true, i+2, name, 0, name.length())
+                        && (nameEnd == html.length() || isNameEnd(html.charAt(nameEnd))))
+                {
+                    return i;
+                }
+                i += 2;
+            }
+            return html.length();
+        }
+
+        /**
+         * @return true if the element is open, and not hidden by an element bounding the scope
+         */
+        private boolean inScope(String name)
+        {
+            for (String element : open)
+            {
+                if (element.equals(name)) return true;
+                if (SCOPE.contains(element)) return false;
+            }
+            return false;
+        }
+
+        /**
+         * closes an open list item or definition before a new one starts
+         */
+        private void closeItem(String... names)
+        {
+            for (String element : open)
+            {
+                if (in(element, names))
+                {
+                    this.close(element);
+                    return;
+                }
+                if (SPECIAL.contains(element) && !in(element, "address", "div", "p")) return;
+            }
+        }
+
+        /**
+         * closes an open element, and any elements opened inside of it
+         */
+        private void close(String name)
+        {
+            String top;
+            do { top = open.pop(); tail(top); } while (!top.equals(name));
+        }
+
+        // hit when the element is first seen
+        private void head(String name)
+        {
+            if (name.equals("li"))
+            {
+                newline();
+                accum.append(" * ");
+            }
             else if (name.equals("dt"))
                 accum.append("  ");
-            else if (StringUtil.in(name, "p", "h1", "h2", "h3", "h4", "h5", "tr"))
-                accum.append("\n");
+            else if (in(name, "p", "h1", "h2", "h3", "h4", "h5", "tr"))
+                newline();
+        }
+
+        // hit when the element is closed
+        private void tail(String name)
+        {
+            if (in(name, "dd", "dt", "p", "h1", "h2", "h3", "h4", "h5"))
+                newline();
         }
 
-        // hit when all of the node's children (if any) have been visited
-        public void tail(Node node, int depth)
+        private static boolean in(String name, String... names)
         {
-            String name = node.nodeName();
-            if (StringUtil.in(name, "br", "dd", "dt", "p", "h1", "h2", "h3", "h4", "h5"))
-                accum.append("\n");
+            for (String n : names)
+            {
+                if (n.equals(name)) return true;
+            }
+            return false;
         }
 
-        @Override
-        public String toString()
+        private static Set<String> set(String... names)
         {
-            return accum.toString();
+            return new HashSet<>(Arrays.asList(names));
         }
     }
 }
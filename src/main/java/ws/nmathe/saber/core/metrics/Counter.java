@@ -0,0 +1,46 @@
+package ws.nmathe.saber.core.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count, partitioned by label values
+ */
+public class Counter extends Metric
+{
+    private final Map<List<String>, LongAdder> values = new ConcurrentHashMap<>();
+
+    Counter(String name, String help, String... labelNames)
+    {
+        super(name, help, labelNames);
+    }
+
+    /**
+     * increments the count for a set of label values
+     * @param labelValues one value for each of the counter's label names
+     */
+    public void inc(String... labelValues)
+    {
+        this.add(1, labelValues);
+    }
+
+    public void add(long amount, String... labelValues)
+    {
+        values.computeIfAbsent(Arrays.asList(labelValues), k -> new LongAdder()).add(amount);
+    }
+
+    @Override
+    String type()
+    {
+        return "counter";
+    }
+
+    @Override
+    void write(StringBuilder builder)
+    {
+        values.forEach((labels, value) -> sample(builder, name, labels, null, null, value.sum()));
+    }
+}
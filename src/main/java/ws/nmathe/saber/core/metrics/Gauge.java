@@ -0,0 +1,55 @@
+package ws.nmathe.saber.core.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value which may go up or down, sampled from suppliers when the metrics are scraped
+ */
+public class Gauge extends Metric
+{
+    private final Map<List<String>, DoubleSupplier> suppliers = new ConcurrentHashMap<>();
+
+    Gauge(String name, String help, String... labelNames)
+    {
+        super(name, help, labelNames);
+    }
+
+    /**
+     * registers the supplier of the gauge's value for a set of label values
+     * @param supplier supplies the current value
+     * @param labelValues one value for each of the gauge's label names
+     */
+    public Gauge set(DoubleSupplier supplier, String... labelValues)
+    {
+        suppliers.put(Arrays.asList(labelValues), supplier);
+        return this;
+    }
+
+    @Override
+    String type()
+    {
+        return "gauge";
+    }
+
+    @Override
+    void write(StringBuilder builder)
+    {
+        suppliers.forEach((labels, supplier) ->
+        {
+            double value;
+            try
+            {
+                value = supplier.getAsDouble();
+            }
+            catch (Exception e)
+            {
+                return;
+            }
+            sample(builder, name, labels, null, null, value);
+        });
+    }
+}
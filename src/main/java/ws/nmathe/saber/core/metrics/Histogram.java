@@ -0,0 +1,111 @@
+package ws.nmathe.saber.core.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observations (ie. latencies in seconds) into fixed cumulative buckets, partitioned by label values
+ */
+public class Histogram extends Metric
+{
+    /** default latency buckets, in seconds */
+    static final double[] LATENCY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+    private final double[] buckets;
+    private final Map<List<String>, Child> children = new ConcurrentHashMap<>();
+
+    Histogram(String name, String help, double[] buckets, String... labelNames)
+    {
+        super(name, help, labelNames);
+        this.buckets = buckets;
+    }
+
+    /**
+     * records an observation
+     * @param value the observed value
+     * @param labelValues one value for each of the histogram's label names
+     */
+    public void observe(double value, String... labelValues)
+    {
+        children.computeIfAbsent(Arrays.asList(labelValues), k -> new Child(buckets.length)).observe(buckets, value);
+    }
+
+    /**
+     * records the time elapsed since a System.nanoTime() timestamp, in seconds
+     */
+    public void observeSince(long startNanos, String... labelValues)
+    {
+        this.observe((System.nanoTime() - startNanos) / 1e9, labelValues);
+    }
+
+    /**
+     * @return the counts of each bucket (non-cumulative) followed by the count of observations
+     *         above the largest bucket, for a set of label values
+     */
+    public long[] getCounts(String... labelValues)
+    {
+        Child child = children.get(Arrays.asList(labelValues));
+        long[] counts = new long[buckets.length+1];
+        if (child != null)
+        {
+            for (int i=0; i<counts.length; i++) counts[i] = child.counts[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @return the upper bounds of the buckets
+     */
+    public double[] getBuckets()
+    {
+        return buckets.clone();
+    }
+
+    @Override
+    String type()
+    {
+        return "histogram";
+    }
+
+    @Override
+    void write(StringBuilder builder)
+    {
+        children.forEach((labels, child) ->
+        {
+            long cumulative = 0;
+            for (int i=0; i<buckets.length; i++)
+            {
+                cumulative += child.counts[i].sum();
+                sample(builder, name + "_bucket", labels, "le", Double.toString(buckets[i]), cumulative);
+            }
+            cumulative += child.counts[buckets.length].sum();
+            sample(builder, name + "_bucket", labels, "le", "+Inf", cumulative);
+            sample(builder, name + "_sum", labels, null, null, child.sum.sum());
+            sample(builder, name + "_count", labels, null, null, cumulative);
+        });
+    }
+
+    private static class Child
+    {
+        private final LongAdder[] counts;
+        private final DoubleAdder sum = new DoubleAdder();
+
+        Child(int bucketCount)
+        {
+            counts = new LongAdder[bucketCount+1];
+            for (int i=0; i<counts.length; i++) counts[i] = new LongAdder();
+        }
+
+        void observe(double[] buckets, double value)
+        {
+            int i = 0;
+            while (i < buckets.length && value > buckets[i]) i++;
+            counts[i].increment();
+            sum.add(value);
+        }
+    }
+}
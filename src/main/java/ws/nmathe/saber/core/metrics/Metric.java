@@ -0,0 +1,72 @@
+package ws.nmathe.saber.core.metrics;
+
+import java.util.List;
+
+/**
+ * Base of all metric types, handles rendering of the Prometheus text exposition format
+ */
+abstract class Metric
+{
+    final String name;
+    final String help;
+    final String[] labelNames;
+
+    Metric(String name, String help, String... labelNames)
+    {
+        this.name = name;
+        this.help = help;
+        this.labelNames = labelNames;
+    }
+
+    /** the Prometheus metric type */
+    abstract String type();
+
+    /** appends the metric's samples */
+    abstract void write(StringBuilder builder);
+
+    /** appends the metric's help, type, and samples */
+    void expose(StringBuilder builder)
+    {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(this.type()).append('\n');
+        this.write(builder);
+    }
+
+    /**
+     * appends a single sample line
+     * @param extraLabel an additional label name (ie. 'le' for histogram buckets), may be null
+     */
+    void sample(StringBuilder builder, String sampleName, List<String> labelValues,
+                String extraLabel, String extraValue, double value)
+    {
+        builder.append(sampleName);
+        if (labelNames.length > 0 || extraLabel != null)
+        {
+            builder.append('{');
+            for (int i=0; i<labelNames.length; i++)
+            {
+                if (i > 0) builder.append(',');
+                String labelValue = i < labelValues.size() ? labelValues.get(i) : "";
+                builder.append(labelNames[i]).append("=\"").append(escape(labelValue)).append('"');
+            }
+            if (extraLabel != null)
+            {
+                if (labelNames.length > 0) builder.append(',');
+                builder.append(extraLabel).append("=\"").append(extraValue).append('"');
+            }
+            builder.append('}');
+        }
+        builder.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value))
+            builder.append((long) value);
+        else
+            builder.append(value);
+        builder.append('\n');
+    }
+
+    private static String escape(String value)
+    {
+        if (value == null) return "";
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,91 @@
+package ws.nmathe.saber.core.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the bot's metrics, rendered in the Prometheus text exposition format by the MetricsServer
+ */
+public class Metrics
+{
+    private static final List<Metric> registry = new CopyOnWriteArrayList<>();
+
+    /*
+     * metrics recorded by the bot
+     */
+
+    public static final Counter COMMANDS = counter("saber_commands_total",
+            "Commands executed", "command");
+    public static final Counter COMMAND_ERRORS = counter("saber_command_errors_total",
+            "Commands which threw an exception", "command");
+    public static final Histogram COMMAND_LATENCY = histogram("saber_command_duration_seconds",
+            "Time taken to execute a command's action", Histogram.LATENCY_BUCKETS, "command");
+
+    public static final Counter RSVP_REACTIONS = counter("saber_rsvp_reactions_total",
+            "Reactions processed on event messages");
+
+    public static final Histogram MONGO_LATENCY = histogram("saber_mongo_duration_seconds",
+            "Database operation latency", Histogram.LATENCY_BUCKETS, "collection", "method");
+    public static final Counter MONGO_ERRORS = counter("saber_mongo_errors_total",
+            "Failed database operations", "collection", "method");
+
+    public static final Histogram REST_LATENCY = histogram("saber_discord_rest_duration_seconds",
+            "Discord REST request latency", Histogram.LATENCY_BUCKETS, "method", "route");
+    public static final Counter REST_RATE_LIMITED = counter("saber_discord_rest_429_total",
+            "Discord REST requests which were rate limited", "method", "route");
+
+    public static final Histogram ANNOUNCEMENT_LATENESS = histogram("saber_announcement_lateness_seconds",
+            "Time between an event's scheduled start/end and the processing of the announcement",
+            new double[]{1, 5, 15, 30, 60, 120, 300, 600, 900}, "shard", "type");
+    public static final Counter ANNOUNCEMENTS_SKIPPED = counter("saber_announcements_skipped_total",
+            "Announcements not sent because the event was processed too late", "type");
+
+    public static final Histogram PROCESSOR_DURATION = histogram("saber_entry_processor_duration_seconds",
+            "Duration of an entry processor pass", Histogram.LATENCY_BUCKETS, "type");
+
+    public static final Gauge QUEUE_DEPTH = gauge("saber_queue_depth",
+            "Number of items waiting in internal queues", "queue");
+
+    /**
+     * creates and registers a new counter
+     */
+    public static Counter counter(String name, String help, String... labelNames)
+    {
+        Counter counter = new Counter(name, help, labelNames);
+        registry.add(counter);
+        return counter;
+    }
+
+    /**
+     * creates and registers a new gauge
+     */
+    public static Gauge gauge(String name, String help, String... labelNames)
+    {
+        Gauge gauge = new Gauge(name, help, labelNames);
+        registry.add(gauge);
+        return gauge;
+    }
+
+    /**
+     * creates and registers a new histogram
+     */
+    public static Histogram histogram(String name, String help, double[] buckets, String... labelNames)
+    {
+        Histogram histogram = new Histogram(name, help, buckets, labelNames);
+        registry.add(histogram);
+        return histogram;
+    }
+
+    /**
+     * @return all metrics in the Prometheus text exposition format
+     */
+    public static String scrape()
+    {
+        StringBuilder builder = new StringBuilder(4096);
+        for (Metric metric : registry)
+        {
+            metric.expose(builder);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package ws.nmathe.saber.core.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import ws.nmathe.saber.utils.Logging;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the bot's metrics on a local HTTP endpoint (/metrics) for a Prometheus style scraper
+ */
+public class MetricsServer
+{
+    private HttpServer server;
+
+    /**
+     * starts the server on the loopback interface
+     * @param port port to listen on, the server is not started if the port is not positive
+     */
+    public void start(int port)
+    {
+        if (port <= 0) return;
+        try
+        {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+            server.createContext("/metrics", exchange ->
+            {
+                byte[] body = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody())
+                {
+                    out.write(body);
+                }
+            });
+            server.setExecutor(Executors.newSingleThreadExecutor());
+            server.start();
+            Logging.info(this.getClass(), "Serving metrics on http://127.0.0.1:" + port + "/metrics");
+        }
+        catch (IOException e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+    }
+}
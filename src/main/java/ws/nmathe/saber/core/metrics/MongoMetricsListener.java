@@ -0,0 +1,43 @@
+package ws.nmathe.saber.core.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonValue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency of database operations by collection and command
+ */
+public class MongoMetricsListener implements CommandListener
+{
+    private final Map<Integer, String> collections = new ConcurrentHashMap<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event)
+    {
+        // the collection name is the value of the command's first key
+        BsonValue value = event.getCommand().get(event.getCommandName());
+        String collection = value != null && value.isString() ? value.asString().getValue() : "";
+        collections.put(event.getRequestId(), collection);
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event)
+    {
+        String collection = collections.remove(event.getRequestId());
+        Metrics.MONGO_LATENCY.observe(event.getElapsedTime(TimeUnit.NANOSECONDS) / 1e9,
+                collection == null ? "" : collection, event.getCommandName());
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event)
+    {
+        String collection = collections.remove(event.getRequestId());
+        Metrics.MONGO_ERRORS.inc(collection == null ? "" : collection, event.getCommandName());
+    }
+}
@@ -0,0 +1,47 @@
+package ws.nmathe.saber.core.metrics;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Records the latency and rate limit responses of the Discord REST requests made by JDA, by route.
+ * Snowflakes in the request path are collapsed so that routes aggregate across guilds and channels.
+ */
+public class RestMetricsInterceptor implements Interceptor
+{
+    private static final Pattern SNOWFLAKE = Pattern.compile("/\\d{6,}");
+    private static final Pattern API_VERSION = Pattern.compile("^/api(/v\\d+)?");
+
+    @Override
+    public Response intercept(Chain chain) throws IOException
+    {
+        Request request = chain.request();
+        String route = route(request.url().encodedPath());
+        long start = System.nanoTime();
+
+        Response response = chain.proceed(request);
+        Metrics.REST_LATENCY.observeSince(start, request.method(), route);
+        if (response.code() == 429)
+        {
+            Metrics.REST_RATE_LIMITED.inc(request.method(), route);
+        }
+        return response;
+    }
+
+    /**
+     * collapses a request path into it's route template
+     */
+    static String route(String path)
+    {
+        // reaction paths include the emoji, which is truncated
+        int reactions = path.indexOf("/reactions/");
+        if (reactions >= 0) path = path.substring(0, reactions + "/reactions".length());
+
+        path = API_VERSION.matcher(path).replaceFirst("");
+        return SNOWFLAKE.matcher(path).replaceAll("/{id}");
+    }
+}
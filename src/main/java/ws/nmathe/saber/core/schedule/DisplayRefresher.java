@@ -0,0 +1,292 @@
+package ws.nmathe.saber.core.schedule;
+
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.TextChannel;
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
+import ws.nmathe.saber.core.metrics.Metrics;
+import ws.nmathe.saber.utils.Logging;
+import ws.nmathe.saber.utils.MessageUtilities;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Projections.exclude;
+
+/**
+ * Refreshes the displays of events in bulk for the entry processor's timer passes.
+ * Due events are grouped by channel, each channel's edits are made one at a time and spaced to
+ * the channel's message edit bucket, and channels are worked in parallel up to a global request budget.
+ * Both the channels and the events within a channel are ordered by urgency (the soonest start or end first).
+ * An event submitted again while still waiting replaces the earlier submission.
+ * Events are read again just before they are drawn, so a refresh never overwrites a newer edit of the event.
+ */
+class DisplayRefresher
+{
+    // milliseconds between edits in one channel (discord allows 5 edits per 5 seconds per channel)
+    private static final long CHANNEL_INTERVAL = 1200;
+
+    // number of channels refreshed in parallel, and milliseconds between any two edits
+    private static final int WORKERS = 8;
+    private static final long GLOBAL_INTERVAL = 25;
+
+    // age after which a new render context is created
+    private static final long CONTEXT_AGE = 30*1000;
+
+    private final Map<String, ChannelQueue> channels = new ConcurrentHashMap<>();
+    private final PriorityBlockingQueue<ChannelQueue> ready =
+            new PriorityBlockingQueue<>(64, Comparator.comparingLong(queue -> queue.priority));
+    private final ScheduledExecutorService pacer = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+
+    private final AtomicLong nextSlot = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private volatile RenderContext context = new RenderContext();
+    private volatile long contextTime = System.currentTimeMillis();
+
+    DisplayRefresher()
+    {
+        for (int i=0; i<WORKERS; i++)
+        {
+            workers.submit(this::work);
+        }
+        Metrics.QUEUE_DEPTH.set(pending::get, "display_refresh");
+    }
+
+    /**
+     * queues an event's display to be refreshed
+     * @param document the event's document, only it's IDs and start/end times are used
+     */
+    void submit(Document document)
+    {
+        String channelId = document.getString("channelId");
+        Integer entryId = document.getInteger("_id");
+        if (channelId == null || entryId == null) return;
+
+        boolean schedule;
+        while (true)
+        {
+            ChannelQueue queue = channels.computeIfAbsent(channelId, ChannelQueue::new);
+            synchronized (queue)
+            {
+                // the queue emptied and was dropped from the map after it was looked up
+                if (queue.removed) continue;
+
+                if (queue.put(entryId, document)) pending.incrementAndGet();
+                schedule = !queue.active;
+                if (schedule)
+                {
+                    queue.active = true;
+                    queue.priority = queue.peekUrgency();
+                }
+            }
+            if (schedule) ready.add(queue);
+            return;
+        }
+    }
+
+    /**
+     * @return number of event displays waiting to be refreshed
+     */
+    int getPending()
+    {
+        return pending.get();
+    }
+
+    /**
+     * worker loop, takes the most urgent channel and refreshes it's most urgent event
+     */
+    private void work()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            try
+            {
+                ChannelQueue queue = ready.take();
+                Document document;
+                synchronized (queue)
+                {
+                    document = queue.poll();
+                    if (document == null)
+                    {
+                        this.release(queue);
+                        continue;
+                    }
+                }
+                pending.decrementAndGet();
+
+                try
+                {
+                    this.awaitSlot();
+                    this.refresh(queue.channelId, document);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                catch (Exception e)
+                {
+                    Logging.exception(this.getClass(), e);
+                }
+                finally
+                {   // a failed refresh must not leave the channel marked active with no worker to run it
+                    this.requeue(queue);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+            catch (Exception e)
+            {
+                Logging.exception(this.getClass(), e);
+            }
+        }
+    }
+
+    /**
+     * returns the channel to the ready queue once it's edit bucket allows, or releases it if emptied
+     */
+    private void requeue(ChannelQueue queue)
+    {
+        synchronized (queue)
+        {
+            if (queue.isEmpty())
+            {
+                this.release(queue);
+                return;
+            }
+            queue.priority = queue.peekUrgency();
+        }
+        pacer.schedule(() -> ready.add(queue), CHANNEL_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * marks an emptied channel idle and drops it from the map, so channels refreshed once do not stay held
+     * must be called while holding the queue's lock
+     */
+    private void release(ChannelQueue queue)
+    {
+        queue.active = false;
+        queue.removed = true;
+        channels.remove(queue.channelId, queue);
+    }
+
+    /**
+     * blocks until the global request budget allows another edit
+     */
+    private void awaitSlot() throws InterruptedException
+    {
+        long now = System.currentTimeMillis();
+        long slot = Math.max(now, nextSlot.getAndAccumulate(now, (prev, time) -> Math.max(prev, time) + GLOBAL_INTERVAL));
+        if (slot > now) Thread.sleep(slot - now);
+    }
+
+    /**
+     * renders the event and edits it's message
+     * @param queued the document the event was queued with, which may be older than the event
+     */
+    private void refresh(String channelId, Document queued)
+    {
+        // the shard may have disconnected since the event was queued
+        JDA jda = Main.getShardManager().getJDA(queued.getString("guildId"));
+        if (jda == null || jda.getStatus() != JDA.Status.CONNECTED) return;
+
+        TextChannel channel = jda.getTextChannelById(channelId);
+        if (channel == null) return;
+
+        // the event may have been edited or removed while it waited
+        Document document = Main.getDBDriver().getEventCollection()
+                .find(eq("_id", queued.getInteger("_id")))
+                .projection(exclude(RSVPIndex.FIELD))
+                .first();
+        if (document == null || !channelId.equals(document.getString("channelId"))) return;
+
+        String messageId = document.getString("messageId");
+        if (messageId == null) return;
+
+        RenderContext ctx = this.getContext();
+        ScheduleEntry se = new ScheduleEntry(document, ctx.getSchedule(channelId).zone);
+        MessageUtilities.editMsgBlocking(MessageGenerator.generate(se, ctx), channel, messageId, Priority.REFRESH);
+    }
+
+    /**
+     * @return a render context shared by refreshes made close together
+     */
+    private RenderContext getContext()
+    {
+        long now = System.currentTimeMillis();
+        if (now - contextTime > CONTEXT_AGE)
+        {
+            context = new RenderContext();
+            contextTime = now;
+        }
+        return context;
+    }
+
+    /**
+     * events waiting to be refreshed in a channel, ordered by urgency
+     */
+    private static class ChannelQueue
+    {
+        final String channelId;
+        final Map<Integer, Document> documents = new HashMap<>();
+        final TreeSet<long[]> order = new TreeSet<>((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        final Map<Integer, long[]> keys = new HashMap<>();
+
+        boolean active = false; // queued for or being worked by a worker
+        boolean removed = false;// dropped from the channel map once emptied, a new queue replaces it
+        long priority;          // urgency of the channel when it was last queued
+
+        ChannelQueue(String channelId)
+        {
+            this.channelId = channelId;
+        }
+
+        /**
+         * @return true if the event was not already waiting
+         */
+        boolean put(Integer entryId, Document document)
+        {
+            long[] key = keys.remove(entryId);
+            if (key != null) order.remove(key);
+
+            key = new long[]{urgency(document), entryId};
+            keys.put(entryId, key);
+            order.add(key);
+            return documents.put(entryId, document) == null;
+        }
+
+        Document poll()
+        {
+            long[] key = order.pollFirst();
+            if (key == null) return null;
+            keys.remove((int) key[1]);
+            return documents.remove((int) key[1]);
+        }
+
+        long peekUrgency()
+        {
+            return order.isEmpty() ? Long.MAX_VALUE : order.first()[0];
+        }
+
+        boolean isEmpty()
+        {
+            return order.isEmpty();
+        }
+
+        /**
+         * @return the time of the event's next start or end
+         */
+        private static long urgency(Document document)
+        {
+            Date date = document.getBoolean("hasStarted", false) ? document.getDate("end") : document.getDate("start");
+            return date == null ? Long.MAX_VALUE : date.getTime();
+        }
+    }
+}
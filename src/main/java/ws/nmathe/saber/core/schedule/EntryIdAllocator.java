@@ -0,0 +1,102 @@
+package ws.nmathe.saber.core.schedule;
+
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.setOnInsert;
+
+/**
+ * Hands out event IDs without reading the events collection.
+ * IDs are taken from blocks of a sequence which are reserved with an atomic $inc on a document in the
+ * state collection, so concurrent creators (and shards) never receive the same sequence number.
+ * Each sequence number is scrambled by a keyed permutation of the 31 bit non-negative integers,
+ * so IDs look random and stay at most six characters when encoded, yet never repeat.
+ * The permutation's keys are created with the sequence document and so are fixed for the database.
+ */
+class EntryIdAllocator
+{
+    private static final String STATE_ID = "entry_ids";
+    private static final int BLOCK = 64;       // sequence numbers reserved per database round trip
+    private static final int ROUNDS = 4;       // feistel rounds of the permutation
+
+    private int[] keys;
+    private long next = 0;     // next sequence number of the reserved block
+    private long end = 0;      // end (exclusive) of the reserved block
+
+    /**
+     * @return a new event ID
+     */
+    synchronized int next()
+    {
+        if (next >= end) this.reserve();
+        return permute(next++, keys);
+    }
+
+    /**
+     * reserves the next block of the sequence, creating the sequence document if it does not exist
+     */
+    private void reserve()
+    {
+        List<Integer> newKeys = new ArrayList<>();
+        SecureRandom random = new SecureRandom();
+        for (int i=0; i<ROUNDS; i++) newKeys.add(random.nextInt());
+
+        Document state = Main.getDBDriver().getStateCollection().findOneAndUpdate(eq("_id", STATE_ID),
+                combine(inc("next", (long) BLOCK), setOnInsert("keys", newKeys)),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+
+        if (keys == null)
+        {
+            List<?> stored = (List<?>) state.get("keys");
+            keys = new int[ROUNDS];
+            for (int i=0; i<ROUNDS; i++) keys[i] = ((Number) stored.get(i)).intValue();
+        }
+        end = ((Number) state.get("next")).longValue();
+        next = end - BLOCK;
+    }
+
+    /**
+     * bijection on [0, 2^31), a feistel network over 32 bits with cycle walking to stay within 31 bits
+     */
+    static int permute(long value, int[] keys)
+    {
+        long x = value & 0x7FFFFFFFL;
+        do
+        {
+            x = feistel(x, keys);
+        }
+        while (x > Integer.MAX_VALUE);
+        return (int) x;
+    }
+
+    private static long feistel(long x, int[] keys)
+    {
+        int left = (int) (x >>> 16) & 0xFFFF;
+        int right = (int) x & 0xFFFF;
+        for (int key : keys)
+        {
+            int mixed = left ^ round(right, key);
+            left = right;
+            right = mixed;
+        }
+        return ((long) left << 16) | right;
+    }
+
+    private static int round(int half, int key)
+    {
+        int h = (half ^ key) * 0x9E3779B1;
+        h ^= h >>> 15;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h & 0xFFFF;
+    }
+}
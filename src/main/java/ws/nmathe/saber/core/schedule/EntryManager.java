@@ -2,24 +2,26 @@ package ws.nmathe.saber.core.schedule;
 
 import com.mongodb.MongoException;
 import com.mongodb.client.MongoIterable;
-import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
-import com.vdurmont.emoji.EmojiManager;
 import net.dv8tion.jda.core.JDA;
-import net.dv8tion.jda.core.entities.Emote;
 import net.dv8tion.jda.core.entities.TextChannel;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
 import ws.nmathe.saber.utils.Logging;
 import ws.nmathe.saber.utils.MessageUtilities;
 import net.dv8tion.jda.core.entities.Message;
-import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Projections.include;
 import static com.mongodb.client.model.Updates.set;
 
 
@@ -31,32 +33,32 @@ import static com.mongodb.client.model.Updates.set;
  */
 public class EntryManager
 {
-    private Random generator;
+    private EntryIdAllocator idAllocator = new EntryIdAllocator();
+    private RSVPIndex rsvpIndex = new RSVPIndex();
+    private MessageFilter messageFilter = new MessageFilter();
+    private LatenessMonitor latenessMonitor = new LatenessMonitor();
+    private ListingCache listingCache = new ListingCache();
+    private ReactionReconciler reactionReconciler = new ReactionReconciler();
     public enum type { FILL, EMPTY, UPDATE1, UPDATE2, UPDATE3 }
 
-    /** construct EntryManager and seed random from OS random source */
-    public EntryManager()
-    {
-        this.generator = new Random(new SecureRandom().nextLong()); // not cryptographically secure, which is fine
-    }
-
     /**
      * creates the scheduledExecutor thread pool and starts schedule timers which
      * check for expired entry timers and adjust the message display timer
      */
     public void init()
     {
+        // prepare the rsvp member index and event message filter
+        rsvpIndex.init();
+        messageFilter.rebuild();
+
         /* thread to fill announcement queues and thread to empty announcement queues,
          share the same scheduler to avoid collisions (as only one thread can be running at any given time) */
         ScheduledExecutorService announcementScheduler = Executors.newSingleThreadScheduledExecutor();
-        // fill
-        announcementScheduler.scheduleWithFixedDelay(
-                new EntryProcessor(type.FILL),
-                30, 30, TimeUnit.SECONDS);
-        // empty
-        announcementScheduler.scheduleWithFixedDelay(
-                new EntryProcessor(type.EMPTY),
-                15, 20, TimeUnit.SECONDS);
+        // fill and empty, the delays between runs are shortened while announcements are catching up
+        scheduleAdaptive(announcementScheduler, new EntryProcessor(type.FILL),
+                30, latenessMonitor::getFillDelay);
+        scheduleAdaptive(announcementScheduler, new EntryProcessor(type.EMPTY),
+                15, latenessMonitor::getEmptyDelay);
 
         // scheduler for threads to adjust entry display timers
         ScheduledExecutorService updateDisplayScheduler = Executors.newSingleThreadScheduledExecutor();
@@ -74,6 +76,26 @@ public class EntryManager
                 60*4+30, 60*3, TimeUnit.SECONDS);
     }
 
+    /**
+     * schedules a task to run repeatedly, re-reading the delay to wait after each run
+     * @param delay supplies the number of seconds to wait before the next run
+     */
+    private static void scheduleAdaptive(ScheduledExecutorService scheduler, Runnable task,
+                                         long initialDelay, LongSupplier delay)
+    {
+        scheduler.schedule(() ->
+        {
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                scheduleAdaptive(scheduler, task, delay.getAsLong(), delay);
+            }
+        }, initialDelay, TimeUnit.SECONDS);
+    }
+
     /**
      * Create a new entry on a schedule
      * @param se (ScheduleEntry) the base ScheduleEntry object to use
@@ -112,8 +134,8 @@ public class EntryManager
             }
         }
 
-        // generate event display message
-        se.setId(this.newId());
+        // generate event display message, the ID is final before it is drawn or returned
+        se.setId(this.allocateId());
         Message message = MessageGenerator.generate(se);
 
         // send message to schedule
@@ -128,7 +150,7 @@ public class EntryManager
                 if( Main.getScheduleManager().isRSVPEnabled(channelId) )
                 {
                     Map<String, String> map = Main.getScheduleManager().getRSVPOptions(channelId);
-                    addRSVPReactions(map, Main.getScheduleManager().getRSVPClear(channelId), msg, se);
+                    reconcileRSVPReactions(map, Main.getScheduleManager().getRSVPClear(channelId), msg, se);
                 }
 
                 // add new document
@@ -147,6 +169,7 @@ public class EntryManager
                                 .append("channelId", se.getChannelId())
                                 .append("googleId", se.getGoogleId())
                                 .append("rsvp_members", se.getRsvpMembers())
+                                .append(RSVPIndex.FIELD, RSVPIndex.flatten(se.getRsvpMembers()))
                                 .append("rsvp_limits", se.getRsvpLimits())
                                 .append("image", se.getImageUrl())
                                 .append("thumbnail", se.getThumbnailUrl())
@@ -163,6 +186,9 @@ public class EntryManager
                                 .append("color", se.getColor());
 
                 Main.getDBDriver().getEventCollection().insertOne(entryDocument);
+                Main.getDBDriver().getCounters().incEvents(guildId, 1);
+                messageFilter.add(msg.getId());
+                listingCache.invalidate(guildId);
 
                 // auto-sort
                 autoSort(sort, channelId);
@@ -184,6 +210,17 @@ public class EntryManager
      * @return true if successful, otherwise false
      */
     public boolean updateEntry(ScheduleEntry se, boolean sort)
+    {
+        return this.updateEntry(se, sort, Priority.COMMAND);
+    }
+
+    /**
+     * Update an entry with a new configuration, editing it's display with the given priority
+     * @param se (ScheduleEntry) the new schedule entry object
+     * @param priority the priority class of the display edit
+     * @return true if successful, otherwise false
+     */
+    public boolean updateEntry(ScheduleEntry se, boolean sort, Priority priority)
     {
         Message origMessage = se.getMessageObject();
         if(origMessage == null) return false;
@@ -209,17 +246,16 @@ public class EntryManager
         Date finalExpire = expire;
         Date finalDeadline = deadline;
 
-        Message msg = MessageUtilities.editMsg(message, origMessage);
+        Message msg = MessageUtilities.editMsgBlocking(message, origMessage, priority);
         if (msg == null) return false;
         try
         {
             String guildId = msg.getGuild().getId();
             String channelId = msg.getChannel().getId();
 
-            // replace whole document
+            // update every field but the rsvp roles, which are written by the role fanout
             Document entryDocument =
-                    new Document("_id", se.getId())
-                            .append("title", se.getTitle())
+                    new Document("title", se.getTitle())
                             .append("start", Date.from(se.getStart().toInstant()))
                             .append("end", Date.from(se.getEnd().toInstant()))
                             .append("comments", se.getComments())
@@ -232,6 +268,7 @@ public class EntryManager
                             .append("channelId", channelId)
                             .append("googleId", se.getGoogleId())
                             .append("rsvp_members", se.getRsvpMembers())
+                            .append(RSVPIndex.FIELD, RSVPIndex.flatten(se.getRsvpMembers()))
                             .append("rsvp_limits", se.getRsvpLimits())
                             .append("start_disabled", se.isQuietStart())
                             .append("end_disabled", se.isQuietEnd())
@@ -253,8 +290,10 @@ public class EntryManager
                             .append("color", se.getColor());
 
             UpdateResult res = Main.getDBDriver().getEventCollection()
-                    .replaceOne(eq("_id", se.getId()), entryDocument);
+                    .updateOne(eq("_id", se.getId()), new Document("$set", entryDocument));
             if (!res.wasAcknowledged()) return false; // return false, might result in skipped announcement or other issues
+            messageFilter.add(msg.getId());
+            listingCache.invalidate(guildId);
 
             // auto-sort
             autoSort(sort, channelId);
@@ -288,51 +327,24 @@ public class EntryManager
     }
 
     /**
-     * adds rsvp reactions to a message
+     * brings the rsvp reactions of a message in line with the event's rsvp options,
+     * only the missing reactions are added and the bot's reactions which are no longer options removed
      * @param options (Map) mapping of rsvp emojis to rsvp names
      * @param clearEmoji unicode emoji to use for the clear action (empty if clear is disabled)
      * @param message (Message) discord message object
      * @param se the schedule entry object
      */
-    public static void addRSVPReactions
-    (Map<String, String> options, String clearEmoji, Message message, ScheduleEntry se)
+    public void reconcileRSVPReactions(Map<String, String> options, String clearEmoji, Message message, ScheduleEntry se)
     {
-        for(String emoji : options.keySet())
-        {
-            // don't add the reaction for categories with 0 limit
-            if (se.getRsvpLimit(options.get(emoji)) != 0)
-                addRSVPReaction(emoji, message);
-        }
-        if(!clearEmoji.isEmpty())
-        {
-            addRSVPReaction(clearEmoji, message);
-        }
+        reactionReconciler.reconcile(message, ReactionReconciler.desired(options, clearEmoji, se));
     }
 
     /**
-     * helper to addRSVPReactions(..)
-     * @param emoji string emoticon, or emote ID
-     * @param message message object to react to
+     * @return the reconciler which paces the rsvp reactions of event messages
      */
-    private static void addRSVPReaction(String emoji, Message message)
+    public ReactionReconciler getReactionReconciler()
     {
-        if(EmojiManager.isEmoji(emoji))
-        {
-            message.addReaction(emoji).queue();
-        }
-        else
-        {
-            Emote emote;
-            for(JDA shard : Main.getShardManager().getShards())
-            {
-                emote = shard.getEmoteById(emoji);
-                if(emote != null)
-                {
-                    message.addReaction(emote).queue();
-                    break;
-                }
-            }
-        }
+        return this.reactionReconciler;
     }
 
 
@@ -358,14 +370,58 @@ public class EntryManager
     }
 
     /**
-     * removes an entry by id from the db
+     * removes an entry by id from the db, and deletes the event's RSVP roles
      * @param entryId (Integer) ID of event entry
      * @return true if the remove was acknowledged (safe), otherwise false
      */
     public boolean removeEntry( Integer entryId )
     {
-        DeleteResult res = Main.getDBDriver().getEventCollection().deleteOne(eq("_id", entryId));
-        return res.wasAcknowledged();
+        try
+        {
+            Document removed = Main.getDBDriver().getEventCollection().findOneAndDelete(eq("_id", entryId));
+            if (removed != null)
+            {
+                messageFilter.remove();
+                listingCache.invalidate(removed.getString("guildId"));
+                Main.getDBDriver().getCounters().incEvents(removed.getString("guildId"), -1);
+            }
+            if (removed != null) this.removeRoles(removed);
+            return true;
+        }
+        catch(MongoException e)
+        {
+            Logging.exception(this.getClass(), e);
+            return false;
+        }
+    }
+
+    /**
+     * deletes the RSVP roles of an event which has been removed from the db
+     * @param removed the removed event's document
+     */
+    @SuppressWarnings("unchecked")
+    public void removeRoles(Document removed)
+    {
+        if (removed.get("rsvp_roles") == null) return;
+        RoleFanout.deleteRoles(removed.getString("guildId"), (Map<String, String>) removed.get("rsvp_roles"));
+    }
+
+    /**
+     * deletes the RSVP roles of all events matching a query, should be used before the events are removed from the db
+     * @param query filter of the events to be removed
+     */
+    public void removeRolesOf(Bson query)
+    {
+        try
+        {
+            Main.getDBDriver().getEventCollection().find(and(query, exists("rsvp_roles")))
+                    .projection(include("guildId", "rsvp_roles"))
+                    .forEach((Consumer<? super Document>) this::removeRoles);
+        }
+        catch(MongoException e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
     }
 
     /**
@@ -380,22 +436,18 @@ public class EntryManager
     }
 
     /**
-     * generates a new ID randomly from a 32bit space
-     * @return (Integer) new, unused id
+     * allocates the ID of a new event, allocated IDs never repeat but may collide with an ID randomly
+     * chosen before the allocator was introduced, so an ID is only used once no event is found holding it
+     * @return an unused event ID
      */
-    private Integer newId()
+    private int allocateId()
     {
-        // try first to use the requested Id
-        Integer ID;
-        ID = (int) Math.ceil(generator.nextDouble() * (Math.pow(2, 32) - 1));
-
-        // if the Id is in use, generate a new one until a free one is found
-        while (Main.getDBDriver().getEventCollection().find(eq("_id", ID)).first() != null)
+        while (true)
         {
-            ID = (int) Math.ceil(generator.nextDouble() * (Math.pow(2, 32) - 1));
+            int id = idAllocator.next();
+            if (Main.getDBDriver().getEventCollection().count(eq("_id", id)) == 0) return id;
+            Logging.warn(this.getClass(), "Allocated event ID is in use", "id", id);
         }
-
-        return ID;
     }
 
     /**
@@ -466,6 +518,51 @@ public class EntryManager
         return entries.into(new ArrayList<>());
     }
 
+    /**
+     * Finds events as lazily decoded views, reading only the projected fields
+     * @param query the events to find
+     * @param projection the fields to read, see EntryView
+     * @return iterable of the matching events
+     */
+    public MongoIterable<EntryView> getEntryViews(Bson query, Bson projection)
+    {
+        return Main.getDBDriver().getEventCollection()
+                .withDocumentClass(RawBsonDocument.class)
+                .find(query).projection(projection).map(EntryView::new);
+    }
+
+    /**
+     * @return the cache of event listings used by the events and schedules commands
+     */
+    public ListingCache getListingCache()
+    {
+        return this.listingCache;
+    }
+
+    /**
+     * @return the index of users to the events they have rsvp'ed to
+     */
+    public RSVPIndex getRSVPIndex()
+    {
+        return this.rsvpIndex;
+    }
+
+    /**
+     * @return the filter of message IDs which belong to events
+     */
+    public MessageFilter getMessageFilter()
+    {
+        return this.messageFilter;
+    }
+
+    /**
+     * @return the tracker of announcement lateness
+     */
+    public LatenessMonitor getLatenessMonitor()
+    {
+        return this.latenessMonitor;
+    }
+
     /**
      * has a guild reached it's maximum event limit?
      * @param gId (String) guild ID
@@ -473,7 +570,7 @@ public class EntryManager
      */
     public boolean isLimitReached(String gId)
     {
-        long count = Main.getDBDriver().getEventCollection().count(eq("guildId",gId));
+        long count = Main.getDBDriver().getCounters().getEvents(gId);
         return Main.getBotSettingsManager().getMaxEntries() < count;
     }
 }
@@ -4,17 +4,21 @@ import net.dv8tion.jda.core.JDA;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
+import ws.nmathe.saber.core.metrics.Metrics;
+import ws.nmathe.saber.utils.ConcurrentIntSet;
 import ws.nmathe.saber.utils.Logging;
 import ws.nmathe.saber.utils.MessageUtilities;
 
 import java.time.ZonedDateTime;
-import java.util.Collections;
 import java.util.Date;
-import java.util.Set;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
 
 import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Projections.include;
 
 /**
  * Used by the Main scheduler timer, a new thread is executed every minute/5minutes/1hour/1day.
@@ -24,22 +28,36 @@ import static com.mongodb.client.model.Filters.*;
  */
 class EntryProcessor implements Runnable
 {
-    // thread pool used to reload displays of events
-    private static ExecutorService timerExecutor = Executors.newCachedThreadPool();
+    // refreshes the displays of events, grouped and paced by channel
+    private static DisplayRefresher displayRefresher = new DisplayRefresher();
 
-    // thread pool used to process events when emptying the announcement sets
-    private static ExecutorService setExecutor = Executors.newCachedThreadPool();
+    // thread pool used to process events when emptying the announcement sets, resized on each pass
+    // from the number of waiting announcements and the LatenessMonitor's catch-up mode
+    private static ThreadPoolExecutor setExecutor = new ThreadPoolExecutor(
+            LatenessMonitor.NORMAL_CONCURRENCY, LatenessMonitor.NORMAL_CONCURRENCY,
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
 
     private enum SetType {END_SET, START_SET, REMIND_SET, SPECIAL_SET}
     private EntryManager.type type;
-    private static Set<Integer> endSet      = Collections.newSetFromMap(new ConcurrentHashMap<>()); // event-end announcements
-    private static Set<Integer> startSet    = Collections.newSetFromMap(new ConcurrentHashMap<>()); // event-start announcements
-    private static Set<Integer> remindSet   = Collections.newSetFromMap(new ConcurrentHashMap<>()); // reminders
-    private static Set<Integer> specialSet  = Collections.newSetFromMap(new ConcurrentHashMap<>()); // event-specific announcements
+    private static ConcurrentIntSet endSet      = new ConcurrentIntSet(); // event-end announcements
+    private static ConcurrentIntSet startSet    = new ConcurrentIntSet(); // event-start announcements
+    private static ConcurrentIntSet remindSet   = new ConcurrentIntSet(); // reminders
+    private static ConcurrentIntSet specialSet  = new ConcurrentIntSet(); // event-specific announcements
 
     // this set is used to track which events are currently being processed and should be ignored
     // if they appear in later database queries
-    private static Set<Integer> processing  = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static ConcurrentIntSet processing  = new ConcurrentIntSet();
+
+    static
+    {
+        Metrics.QUEUE_DEPTH.set(endSet::size, "end_set")
+                .set(startSet::size, "start_set")
+                .set(remindSet::size, "remind_set")
+                .set(specialSet::size, "special_set")
+                .set(processing::size, "processing")
+                .set(() -> setExecutor.getQueue().size(), "announcement_executor");
+        setExecutor.allowCoreThreadTimeOut(true);
+    }
 
     /** construct the entry processor with type */
     EntryProcessor(EntryManager.type type)
@@ -50,6 +68,7 @@ class EntryProcessor implements Runnable
     @SuppressWarnings("unchecked")
     public void run()
     {
+        long startTime = System.nanoTime();
         try
         {
             /* Fills the sets which events which have announcements that should be processed */
@@ -87,86 +106,17 @@ class EntryProcessor implements Runnable
             else if(type == EntryManager.type.EMPTY)
             {
                 Logging.info(this.getClass(), "Processing entries: Emptying queues. . .");
-                endSet.forEach(entryId ->
-                {
-                    if (!processing.contains(entryId))
-                    {
-                        setExecutor.submit(() ->
-                        {
-                            try
-                            {
-                                processing.add(entryId);
-                                Main.getEntryManager().getEntry(entryId).end();
-                                endSet.remove(entryId);
-                                processing.remove(entryId);
-                            }
-                            catch (Exception e)
-                            {
-                                Logging.exception(this.getClass(), e);
-                            }
-                        });
-                    }
-                });
-                startSet.forEach(entryId ->
-                {
-                    if (!processing.contains(entryId))
-                    {
-                        setExecutor.submit(() ->
-                        {
-                            try
-                            {
-                                processing.add(entryId);
-                                Main.getEntryManager().getEntry(entryId).start();
-                                startSet.remove(entryId);
-                                processing.remove(entryId);
-                            }
-                            catch (Exception e)
-                            {
-                                Logging.exception(this.getClass(), e);
-                            }
-                        });
-                    }
-                });
-                remindSet.forEach(entryId ->
-                {
-                    if (!processing.contains(entryId))
-                    {
-                        setExecutor.submit(() ->
-                        {
-                            try
-                            {
-                                processing.add(entryId);
-                                Main.getEntryManager().getEntry(entryId).remind();
-                                remindSet.remove(entryId);
-                                processing.remove(entryId);
-                            }
-                            catch (Exception e)
-                            {
-                                Logging.exception(this.getClass(), e);
-                            }
-                        });
-                    }
-                });
-                specialSet.forEach(entryId ->
-                {
-                    if (!processing.contains(entryId))
-                    {
-                        setExecutor.submit(() ->
-                        {
-                            try
-                            {
-                                processing.add(entryId);
-                                Main.getEntryManager().getEntry(entryId).announce();
-                                specialSet.remove(entryId);
-                                processing.remove(entryId);
-                            }
-                            catch (Exception e)
-                            {
-                                Logging.exception(this.getClass(), e);
-                            }
-                        });
-                    }
-                });
+
+                // adapt to how late recent announcements have been, and to how many are waiting
+                LatenessMonitor monitor = Main.getEntryManager().getLatenessMonitor();
+                monitor.evaluate();
+                setConcurrency(monitor.getConcurrency(
+                        endSet.size() + startSet.size() + remindSet.size() + specialSet.size()));
+
+                drainSet(endSet, ScheduleEntry::end);
+                drainSet(startSet, ScheduleEntry::start);
+                drainSet(remindSet, ScheduleEntry::remind);
+                drainSet(specialSet, ScheduleEntry::announce);
                 //Logging.info(this.getClass(), "Finished emptying queues.");
             }
             else /* Updates the 'starts in x minutes' timer on events */
@@ -200,14 +150,22 @@ class EntryProcessor implements Runnable
                 {   // purge expiring events
                     query = lte("expire", Date.from(ZonedDateTime.now().plusDays(1).toInstant()));
 
-                    //delete message objects
-                    Main.getDBDriver().getEventCollection().find(query).forEach((Consumer<? super Document>) document ->
+                    //delete message objects, tallying the events removed from each guild
+                    Map<String, Long> expired = new HashMap<>();
+                    Main.getEntryManager().getEntryViews(query, EntryView.MESSAGE).forEach((Consumer<? super EntryView>) view ->
                     {
-                        MessageUtilities.deleteMsg((new ScheduleEntry(document)).getMessageObject(), null);
+                        MessageUtilities.deleteMsg(view.getMessageObject(), null, Priority.MAINTENANCE);
+                        expired.merge(view.getGuildId(), 1L, Long::sum);
                     });
 
-                    // bulk delete entries from the database
+                    // bulk delete entries (and their rsvp roles) from the database
+                    Main.getEntryManager().removeRolesOf(query);
                     Main.getDBDriver().getEventCollection().deleteMany(query);
+                    expired.forEach((guildId, n) ->
+                    {
+                        Main.getDBDriver().getCounters().incEvents(guildId, -n);
+                        Main.getEntryManager().getListingCache().invalidate(guildId);
+                    });
 
                     // adjust timers
                     query = or(and(
@@ -236,8 +194,10 @@ class EntryProcessor implements Runnable
 
                 }
 
-                // reload entries based on the appropriate query
+                // queue the displays of the entries to be refreshed,
+                // the refresher reads each event again when it's turn comes
                 Main.getDBDriver().getEventCollection().find(query)
+                        .projection(include("_id", "channelId", "guildId", "hasStarted", "start", "end"))
                         .forEach((Consumer<? super Document>) document ->
                         {
                             // identify which shard is responsible for the schedule
@@ -248,17 +208,7 @@ class EntryProcessor implements Runnable
                             if(jda == null) return;
                             if(JDA.Status.valueOf("CONNECTED") != jda.getStatus()) return;
 
-                            timerExecutor.execute(() ->
-                            {
-                                try
-                                {   // convert to scheduleEntry object and update display
-                                    (new ScheduleEntry(document)).reloadDisplay();
-                                }
-                                catch(Exception e)
-                                {
-                                    Logging.exception(this.getClass(), e);
-                                }
-                            });
+                            displayRefresher.submit(document);
                         });
 
                 Logging.info(this.getClass(), "Finished processing entries. . .");
@@ -268,6 +218,55 @@ class EntryProcessor implements Runnable
         {
             Logging.exception(this.getClass(), e);
         }
+        Metrics.PROCESSOR_DURATION.observeSince(startTime, type.name().toLowerCase());
+    }
+
+    /**
+     * submits each event in an announcement set to the announcement thread pool,
+     * events are marked as processing when queued so that later passes do not queue them again
+     * @param set the announcement set to empty
+     * @param action the ScheduleEntry operation to perform
+     */
+    private void drainSet(ConcurrentIntSet set, Consumer<ScheduleEntry> action)
+    {
+        set.forEach(entryId ->
+        {
+            if (!processing.contains(entryId))
+            {
+                processing.add(entryId);
+                setExecutor.submit(() ->
+                {
+                    try
+                    {
+                        action.accept(Main.getEntryManager().getEntry(entryId));
+                        set.remove(entryId);
+                        processing.remove(entryId);
+                    }
+                    catch (Exception e)
+                    {
+                        Logging.exception(this.getClass(), e);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * resizes the announcement thread pool
+     */
+    private static void setConcurrency(int threads)
+    {
+        if (threads == setExecutor.getMaximumPoolSize()) return;
+        if (threads > setExecutor.getMaximumPoolSize())
+        {
+            setExecutor.setMaximumPoolSize(threads);
+            setExecutor.setCorePoolSize(threads);
+        }
+        else
+        {
+            setExecutor.setCorePoolSize(threads);
+            setExecutor.setMaximumPoolSize(threads);
+        }
     }
 
     /**
@@ -277,12 +276,12 @@ class EntryProcessor implements Runnable
      */
     private void processAndQueueEvents(SetType setIdentifier, Bson query)
     {
-        Main.getDBDriver().getEventCollection().find(query)
-                .forEach((Consumer<? super Document>) document ->
+        // only the fields needed to locate the event's message are read
+        Main.getEntryManager().getEntryViews(query, EntryView.SUMMARY)
+                .forEach((Consumer<? super EntryView>) se ->
                 {
                     // identify which shard is responsible for the schedule
-                    String guildId = document.getString("guildId");
-                    JDA jda = Main.getShardManager().getJDA(guildId);
+                    JDA jda = Main.getShardManager().getJDA(se.getGuildId());
 
                     // if the shard is not connected, do process the event
                     if(jda == null) return;
@@ -290,7 +289,6 @@ class EntryProcessor implements Runnable
 
                     try
                     {
-                        ScheduleEntry se = (new ScheduleEntry(document));
                         if (se.getMessageObject() == null) return; // don't add to sets
                         switch(setIdentifier)
                         {
@@ -298,32 +296,32 @@ class EntryProcessor implements Runnable
                                 if(!endSet.contains(se.getId()))
                                 {
                                     endSet.add(se.getId());
-                                    Logging.info(this.getClass(), "Added \"" + se.getTitle() +
-                                    "\" ["+se.getId()+"] to the end set");
+                                    Logging.info(this.getClass(), "Added event to the end set",
+                                            "entryId", se.getId(), "title", se.getTitle());
                                 }
                                 break;
                             case REMIND_SET:
                                 if(!remindSet.contains(se.getId()))
                                 {
                                     remindSet.add(se.getId());
-                                    Logging.info(this.getClass(), "Added \"" + se.getTitle() +
-                                    "\" ["+se.getId()+"] to the remind set");
+                                    Logging.info(this.getClass(), "Added event to the remind set",
+                                            "entryId", se.getId(), "title", se.getTitle());
                                 }
                                 break;
                             case START_SET:
                                 if(!startSet.contains(se.getId()))
                                 {
                                     startSet.add(se.getId());
-                                    Logging.info(this.getClass(), "Added \"" + se.getTitle() +
-                                    "\" ["+se.getId()+"] to the start set");
+                                    Logging.info(this.getClass(), "Added event to the start set",
+                                            "entryId", se.getId(), "title", se.getTitle());
                                 }
                                 break;
                             case SPECIAL_SET:
                                 if(!specialSet.contains(se.getId()))
                                 {
                                     specialSet.add(se.getId());
-                                    Logging.info(this.getClass(), "Added \"" + se.getTitle() +
-                                    "\" ["+se.getId()+"] to the announce set");
+                                    Logging.info(this.getClass(), "Added event to the announce set",
+                                            "entryId", se.getId(), "title", se.getTitle());
                                 }
                                 break;
                         }
@@ -0,0 +1,159 @@
+package ws.nmathe.saber.core.schedule;
+
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.TextChannel;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
+import ws.nmathe.saber.Main;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static com.mongodb.client.model.Projections.include;
+
+/**
+ * A read-only view of an event document as it was returned by the database.
+ * The document is kept in it's raw BSON form and a field is only decoded when it is first read,
+ * so sweeps and listings which look at a handful of fields do not pay to build a full ScheduleEntry
+ * (nor the schedule lookup it's constructor makes). Use toEntry() when the event is to be modified.
+ */
+public class EntryView
+{
+    /** fields needed to identify, list, and locate the message of an event */
+    public static final Bson SUMMARY = include("_id", "title", "channelId", "guildId", "messageId",
+            "start", "end", "hasStarted");
+
+    /** fields needed to list an event */
+    public static final Bson LISTING = include("_id", "title", "start", "end", "hasStarted");
+
+    /** fields needed to locate the message of an event */
+    public static final Bson MESSAGE = include("_id", "channelId", "guildId", "messageId");
+
+    private final RawBsonDocument document;
+
+    // decoded on first use
+    private Integer id;
+    private String title;
+    private String channelId;
+    private String guildId;
+    private String messageId;
+    private Boolean started;
+    private Instant start;
+    private Instant end;
+
+    public EntryView(RawBsonDocument document)
+    {
+        this.document = document;
+    }
+
+    public int getId()
+    {
+        if (id == null) id = document.getInt32("_id").getValue();
+        return id;
+    }
+
+    public String getTitle()
+    {
+        if (title == null) title = this.string("title");
+        return title;
+    }
+
+    public String getChannelId()
+    {
+        if (channelId == null) channelId = this.string("channelId");
+        return channelId;
+    }
+
+    public String getGuildId()
+    {
+        if (guildId == null) guildId = this.string("guildId");
+        return guildId;
+    }
+
+    public String getMessageId()
+    {
+        if (messageId == null) messageId = this.string("messageId");
+        return messageId;
+    }
+
+    public boolean hasStarted()
+    {
+        if (started == null)
+        {
+            BsonValue value = document.get("hasStarted");
+            started = value != null && value.isBoolean() && value.asBoolean().getValue();
+        }
+        return started;
+    }
+
+    public Instant getStart()
+    {
+        if (start == null) start = this.instant("start");
+        return start;
+    }
+
+    public Instant getEnd()
+    {
+        if (end == null) end = this.instant("end");
+        return end;
+    }
+
+    public ZonedDateTime getStart(ZoneId zone)
+    {
+        return ZonedDateTime.ofInstant(this.getStart(), zone);
+    }
+
+    public ZonedDateTime getEnd(ZoneId zone)
+    {
+        return ZonedDateTime.ofInstant(this.getEnd(), zone);
+    }
+
+    /**
+     * retrieves the event's message from discord
+     * @return the message, or null if the shard, channel, or message is not available
+     */
+    public Message getMessageObject()
+    {
+        try
+        {
+            JDA jda = Main.getShardManager().getJDA(this.getGuildId());
+            TextChannel channel = jda.getTextChannelById(this.getChannelId());
+            return channel.getMessageById(this.getMessageId()).complete();
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * decodes the whole document into a ScheduleEntry,
+     * the view must not have been read with a projection
+     */
+    public ScheduleEntry toEntry()
+    {
+        return new ScheduleEntry(this.toDocument());
+    }
+
+    public Document toDocument()
+    {
+        return document.decode(new DocumentCodec());
+    }
+
+    private String string(String key)
+    {
+        BsonValue value = document.get(key);
+        return value != null && value.isString() ? value.asString().getValue() : null;
+    }
+
+    private Instant instant(String key)
+    {
+        BsonValue value = document.get(key);
+        return value != null && value.isDateTime() ? Instant.ofEpochMilli(value.asDateTime().getValue()) : Instant.EPOCH;
+    }
+}
@@ -2,14 +2,8 @@ package ws.nmathe.saber.core.schedule;
 
 import java.time.*;
 import java.time.format.DateTimeFormatter;
-import java.time.format.TextStyle;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
-
-import static java.time.temporal.TemporalAdjusters.firstDayOfMonth;
-import static java.time.temporal.TemporalAdjusters.nextOrSame;
 
 public class EventRecurrence
 {
@@ -26,12 +20,12 @@ public class EventRecurrence
      *  monthly by date     - mode = 6
      *  unused              - mode = 7
      */
-    private static final int DAILY_MODE  = 0;
-    private static final int MINUTE_MODE = 2;
-    private static final int YEAR_MODE   = 3;
-    private static final int WEEK_MODE   = 4;
-    private static final int MONTH1_MODE = 5;
-    private static final int MONTH2_MODE = 6;
+    static final int DAILY_MODE  = 0;
+    static final int MINUTE_MODE = 2;
+    static final int YEAR_MODE   = 3;
+    static final int WEEK_MODE   = 4;
+    static final int MONTH1_MODE = 5;
+    static final int MONTH2_MODE = 6;
 
     /**
      * The recurrence int should be interpreted in it's binary representation:
@@ -58,6 +52,9 @@ public class EventRecurrence
      */
     private Integer recurrence;
 
+    /** the decoded recurrence rule */
+    private RecurrenceRule rule;
+
     /** the remaining number of times the event should repeat */
     private Integer count;
 
@@ -71,6 +68,7 @@ public class EventRecurrence
     public EventRecurrence(ZonedDateTime dtStart)
     {
         this.recurrence  = 0;
+        this.rule        = RecurrenceRule.compile(0);
         this.expire      = null;
         this.count       = null;
         this.startDate   = dtStart;
@@ -79,6 +77,7 @@ public class EventRecurrence
     public EventRecurrence(int recurrence, ZonedDateTime dtStart)
     {
         this.recurrence  = recurrence;
+        this.rule        = RecurrenceRule.compile(recurrence);
         this.expire      = null;
         this.count       = null;
         this.startDate   = dtStart;
@@ -93,6 +92,7 @@ public class EventRecurrence
     public EventRecurrence(List<String> rfc5545, ZonedDateTime dtstart)
     {
         this.recurrence  = 0;
+        this.rule        = RecurrenceRule.compile(0);
         this.expire      = null;
         this.count       = null;
         this.startDate   = dtstart;
@@ -162,6 +162,7 @@ public class EventRecurrence
                         break;
                 }
                 this.recurrence = mode | data<<3;
+                this.rule = RecurrenceRule.compile(this.recurrence);
 
                 // parse out the end date of recurrence
                 if(rule.contains("UNTIL="))
@@ -274,116 +275,7 @@ public class EventRecurrence
      */
     public String toString()
     {
-        // useful string constants
-        String[] spellout = {"one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten"};
-        String[] prefixes = {"th", "st", "nd", "rd", "th", "th", "th", "th", "th", "th"};
-
-        StringBuilder str = new StringBuilder();
-        int mode = recurrence & 0b111;
-        int data = recurrence >> 3;
-
-        // no repeat
-        if (recurrence == 0)
-            return "once";
-
-        // every day
-        if ((mode == WEEK_MODE && data == 0b1111111)
-                || (mode==DAILY_MODE && data==1))
-            return "every day";
-
-        // on interval days
-        if (mode == DAILY_MODE)
-        {
-            if (data == 7)
-                return "every week";
-            return "every "+(data>spellout.length ? data : spellout[data-1])+" days";
-        }
-
-        // minute repeat
-        if (mode == MINUTE_MODE)
-        {
-            if (data%60 == 0)
-            {
-                int hours = data/60;
-                if (data == 60) return "every hour";
-                else return "every "+(hours<=spellout.length ? spellout[hours-1]:hours)+" hours";
-            }
-            else
-            {
-                return "every "+data+" minutes";
-            }
-        }
-
-        // yearly
-        if (mode == YEAR_MODE && data == 1)
-            return "every year";
-
-
-        // monthly on weekday
-        if (mode == MONTH1_MODE)
-        {
-            DayOfWeek dayOfWeek = DayOfWeek.of(data&0b111);
-            int nth = (data>>3)&0b111;
-            int monthInterval = data>>6;
-            if (monthInterval>1)
-            {
-                return nth+prefixes[nth]+" " +
-                        dayOfWeek.getDisplayName(TextStyle.FULL, Locale.getDefault())+
-                        " of every " + monthInterval+prefixes[monthInterval%10]+" months";
-            }
-            else
-            {
-                return nth+prefixes[nth] + " " +
-                        dayOfWeek.getDisplayName(TextStyle.FULL, Locale.getDefault()) +
-                        " of every month";
-            }
-        }
-        // monthly on day of month
-        if (mode == MONTH2_MODE)
-        {
-            int dayOfMonth    = data&0b11111;
-            int monthInterval = data>>5;
-            if (monthInterval>1)
-            {
-                return "every " + (monthInterval > spellout.length ? monthInterval : spellout[monthInterval-1]) +
-                        " months" + (dayOfMonth>0 ? " on the "+dayOfMonth+prefixes[dayOfMonth%10]:"");
-            }
-            else
-            {
-                return "every month"+(dayOfMonth>0 ? " on the "+dayOfMonth+prefixes[dayOfMonth%10]:"");
-            }
-        }
-
-        // on certain weekday
-        if (mode == WEEK_MODE)
-        {
-            int weeks = data>>7;
-            data &= 0b1111111;
-            if (weeks>1)
-            {
-                str = new StringBuilder("every "+(weeks>spellout.length ? weeks+"":spellout[weeks-1])+" weeks on ");
-            }
-            else
-            {
-                str = new StringBuilder("weekly on ");
-            }
-            for(int j=0; data!=0; j++, data>>=1)
-            {
-                String full;
-                String narrow;
-                if ((data&0b1)==1)
-                {
-                    full   = DayOfWeek.of(j+1).getDisplayName(TextStyle.FULL, Locale.getDefault());
-                    narrow = DayOfWeek.of(j+1).getDisplayName(TextStyle.SHORT, Locale.getDefault());
-                    if (data==1)
-                        return str + full;
-                    str.append(narrow);
-                    if ((data>>1) != 0 )
-                        str.append(", ");
-                }
-            }
-        }
-        return str.toString();
+        return this.rule.toString();
     }
 
     /**
@@ -392,7 +284,7 @@ public class EventRecurrence
      */
     public boolean shouldRepeat(ZonedDateTime now)
     {
-        if (this.recurrence == 0)
+        if (!this.rule.repeats())
         {
             return false;
         }
@@ -413,68 +305,37 @@ public class EventRecurrence
      */
     public ZonedDateTime next(ZonedDateTime date)
     {
-        if (this.recurrence == 0) return date;
+        return this.rule.next(date);
+    }
 
-        /// determine mode
-        int mode = this.recurrence & 0b111; // separate out mode
-        int data = this.recurrence >>3;     // shift off mode bits
-        switch(mode)
-        {
-            // interval repeat
-            case DAILY_MODE:
-                return date.plusDays(data);
-            case MINUTE_MODE:
-                return date.plusMinutes(data);
-            case YEAR_MODE:
-                return date.plusYears(data);
-
-            // repeat weekly by day of week
-            case WEEK_MODE:
-                int day   = 1<<(date.getDayOfWeek().getValue()-1);  // represent current day of week as int
-                int weeks = (data>>7)==0 ? 1:data>>7;               // number of weeks to shouldRepeat
-                data = data & 0b1111111;                            // integer representing weekdays
-
-                if (data == 0)
-                    return date.plusWeeks(weeks);
-                if (day == data)
-                    return date.plusWeeks(weeks);
-
-                int count = 1;
-                if (day<(1<<6)) day<<=1;
-                else { day = 1; date = date.plusWeeks(weeks-1); }
-                while (day != (data&day))
-                {
-                    if (day<(1<<6)) day<<=1;
-                    else { day = 1; date = date.plusWeeks(weeks-1); }
-                    count++;
-                }
-                return date.plusDays(count);
-
-            // repeat on nth week day every mth month
-            case MONTH1_MODE:
-                DayOfWeek dayOfWeek = DayOfWeek.of(data&0b111);
-                int nth = (data>>3)&0b111;
-                date = date.with(firstDayOfMonth())
-                        .plusMonths((data>>6)>1 ? (data>>6) : 1)
-                        .with(nextOrSame(dayOfWeek));
-                while(nth>1)
-                {
-                   date = date.plusDays(1).with(nextOrSame(dayOfWeek));
-                   nth--;
-                }
-                return date;
-
-            // repeat on n day of every mth month
-            case MONTH2_MODE:
-                int dayOfMonth    = data&0b11111;
-                int monthInterval = data>>5;
-                if (dayOfMonth > 0) return date.plusMonths(monthInterval).withDayOfMonth(dayOfMonth);
-                else return date.plusMonths(monthInterval);
-
-            // something went wrong
-            default:
-                return date;
-        }
+    /**
+     * determine the time of the event after a number of occurrences
+     * @param date the date of the previous start/end of the event
+     * @param steps number of occurrences to advance
+     * @return the start of the event after the number of occurrences
+     */
+    public ZonedDateTime next(ZonedDateTime date, long steps)
+    {
+        return this.rule.next(date, steps);
+    }
+
+    /**
+     * determine how many occurrences an event must be advanced by to reach the present
+     * @param date the date of the previous start/end of the event
+     * @param now the current time
+     * @return number of occurrences (at least one) after which the event is not before now
+     */
+    public long stepsUntil(ZonedDateTime date, ZonedDateTime now)
+    {
+        return this.rule.stepsUntil(date, now);
+    }
+
+    /**
+     * @return iterator over the epoch seconds of the event's occurrences, beginning with the original start
+     */
+    public RecurrenceRule.OccurrenceIterator occurrences()
+    {
+        return this.rule.iterator(this.startDate);
     }
 
     /**
@@ -485,51 +346,8 @@ public class EventRecurrence
     public List<String> toRFC5545()
     {
         List<String> rules = new ArrayList<>();
-        if (this.recurrence == 0) return rules;
-
-        String rule = "RRULE:";
-        int mode = this.recurrence & 0b111;
-        int data = this.recurrence >> 3;
-        switch (mode)
-        {
-            // daily interval
-            case DAILY_MODE:
-                rule += "FREQ=DAILY;INTERVAL="+data+";";
-                break;
-
-            // yearly
-            case YEAR_MODE:
-                rule += "FREQ=YEARLY;INTERVAL="+data+";";
-                break;
-
-            // by weekday
-            case WEEK_MODE:
-                rule += "FREQ=WEEKLY;BYDAY=";
-                List<String> days = new ArrayList<>();
-                if((data&0b0000001) == 0b0000001) days.add("SU");
-                if((data&0b0000010) == 0b0000010) days.add("MO");
-                if((data&0b0000100) == 0b0000100) days.add("TU");
-                if((data&0b0001000) == 0b0001000) days.add("WE");
-                if((data&0b0010000) == 0b0010000) days.add("TH");
-                if((data&0b0100000) == 0b0100000) days.add("FR");
-                if((data&0b1000000) == 0b1000000) days.add("SA");
-                rule += String.join(",",days) + ";";
-                rule += "INTERVAL="+(data>>7)+";";
-                break;
-
-            // on nth week day every mth month
-            case MONTH1_MODE:
-                DayOfWeek dayOfWeek = DayOfWeek.of(data&0b111);
-                int nth = (data>>3)&0b111;
-                rule += "FREQ=MONTHLY;BYDAY="+nth+dayOfWeek+";INTERVAL="+(data>>6==0 ? 1:data>>6)+";";
-                break;
-
-            // on n day of every mth month
-            case MONTH2_MODE:
-                int dayOfMonth = data&0b11111;
-                rule += "FREQ=MONTHLY;BYMONTHDAY="+dayOfMonth+";INTERVAL="+(data>>5==0 ? 1:data>>5)+";";
-                break;
-        }
+        String rule = this.rule.getRRule();
+        if (rule == null) return rules;
         if (expire != null)
         {
             rule += "UNTIL="+
@@ -558,51 +376,7 @@ public class EventRecurrence
             return count;  // no events have occurred yet
 
         // determine remaining event occurrences
-        int mode = this.recurrence & 0b111;
-        int data = this.recurrence >> 3;
-        switch (mode)
-        {
-            case DAILY_MODE:     // daily
-                long days = startDate.until(now, ChronoUnit.DAYS);
-                return count - ((int) days/(data==0?1:data));
-
-            case MINUTE_MODE:     // minutely
-                long minutes = startDate.until(now, ChronoUnit.MINUTES);
-                return count - ((int) minutes/(data==0?1:data));
-
-            case YEAR_MODE:     // yearly
-                long years = startDate.until(now, ChronoUnit.YEARS);
-                return count - ((int) years/(data==0?1:data));
-
-            case WEEK_MODE:     // weekly
-                int weeks = (int) (startDate.until(now, ChronoUnit.WEEKS)/((data>>7)==0?1:(data>>7)));
-
-                // calculate the number of days of the week the event repeats on
-                int c = 0;                      // count of weekdays event repeats on
-                for (int tmp=(data&0b1111111); tmp>0; tmp>>=1) { if ((tmp&0b1)==1) c++; }
-                int rem = count - c*weeks;      // how many events have past
-
-                // process the remaining portion of the week
-                ZonedDateTime cur = startDate.plusWeeks(weeks);
-                for (int j=cur.getDayOfWeek().getValue(); j<=7 && now.isAfter(cur); j++)
-                {   // for each day of last remaining week
-                    // if day of week is set, decrement rem count
-                    if (((data&0b1111111) & (1<<(j-1))) == 1) rem--;
-                    cur = cur.plusDays(1);
-                }
-                return rem;
-
-            case MONTH1_MODE:     // mo by day
-                long months = startDate.until(now, ChronoUnit.MONTHS);
-                return count - ((int) months/((data>>6)==0?1:(data>>5)));
-
-            case MONTH2_MODE:     // mo by date
-                months = startDate.until(now, ChronoUnit.MONTHS);
-                return count - ((int) months/((data>>5)==0?1:(data>>5)));
-
-            default:    // something went wrong!
-                return null;
-        }
+        return count - (int) this.rule.countAfter(startDate, now);
     }
 
     public ZonedDateTime getExpire()
@@ -634,6 +408,7 @@ public class EventRecurrence
     public EventRecurrence setRepeat(Integer repeat)
     {
         this.recurrence = repeat;
+        this.rule = RecurrenceRule.compile(repeat == null ? 0 : repeat);
         return this;
     }
 
@@ -0,0 +1,225 @@
+package ws.nmathe.saber.core.schedule;
+
+import net.dv8tion.jda.core.JDA;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.metrics.Metrics;
+import ws.nmathe.saber.utils.Logging;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks how late event announcements are delivered relative to their scheduled time.
+ * Each processed announcement is recorded into the exported lateness histogram and into a short
+ * sliding window kept per shard. When the windowed p99 lateness crosses CATCH_UP_THRESHOLD the
+ * EntryProcessor is switched into catch-up mode (more announcement threads and shorter polling delays)
+ * until the p99 falls back under CAUGHT_UP_THRESHOLD.
+ * Outside of catch-up mode the announcement threads are sized from the number of announcements waiting,
+ * so that bursts (ie. the top of the hour) are spread over more threads before they have a chance to run late.
+ */
+public class LatenessMonitor
+{
+    // length of the sliding window, in minutes
+    private static final int WINDOW = 5;
+
+    // p99 lateness (in seconds) at which to enter and leave catch-up mode
+    private static final double CATCH_UP_THRESHOLD = 60;
+    private static final double CAUGHT_UP_THRESHOLD = 15;
+
+    // announcement threads and polling delays (in seconds) for the normal and catch-up modes,
+    // in normal mode a thread is added for every ANNOUNCEMENTS_PER_THREAD waiting announcements
+    static final int NORMAL_CONCURRENCY = 8;
+    static final int CATCH_UP_CONCURRENCY = 32;
+    private static final int ANNOUNCEMENTS_PER_THREAD = 4;
+    private static final long NORMAL_FILL_DELAY = 30;
+    private static final long CATCH_UP_FILL_DELAY = 10;
+    private static final long NORMAL_EMPTY_DELAY = 20;
+    private static final long CATCH_UP_EMPTY_DELAY = 5;
+
+    private final double[] buckets = Metrics.ANNOUNCEMENT_LATENESS.getBuckets();
+    private final Map<Integer, Window> shards = new ConcurrentHashMap<>();
+    private volatile boolean catchingUp = false;
+
+    /**
+     * records the delivery of an announcement
+     * @param guildId guild of the event, used to identify the shard
+     * @param type the type of announcement (start, end)
+     * @param scheduled the time the announcement was scheduled for
+     */
+    void record(String guildId, String type, ZonedDateTime scheduled)
+    {
+        double lateness = Math.max(0, Duration.between(scheduled, ZonedDateTime.now()).toMillis()/1000.0);
+        int shardId = shardOf(guildId);
+
+        Metrics.ANNOUNCEMENT_LATENESS.observe(lateness, Integer.toString(shardId), type);
+        shards.computeIfAbsent(shardId, k -> new Window(buckets.length+1)).add(bucketOf(lateness));
+    }
+
+    /**
+     * re-evaluates the windowed lateness and switches the catch-up mode if a threshold was crossed,
+     * called by the EntryProcessor on each pass over the announcement queues
+     * @return true if catching up
+     */
+    boolean evaluate()
+    {
+        double p99 = this.getPercentile(0.99);
+        if (!catchingUp && p99 > CATCH_UP_THRESHOLD)
+        {
+            catchingUp = true;
+            Logging.warn(this.getClass(), "Announcements are running late, entering catch-up mode", "p99", p99);
+        }
+        else if (catchingUp && p99 < CAUGHT_UP_THRESHOLD)
+        {
+            catchingUp = false;
+            Logging.info(this.getClass(), "Announcements have caught up, leaving catch-up mode", "p99", p99);
+        }
+        return catchingUp;
+    }
+
+    public boolean isCatchingUp()
+    {
+        return catchingUp;
+    }
+
+    /**
+     * @param backlog number of announcements waiting to be processed
+     * @return number of threads the EntryProcessor should use to process announcements
+     */
+    int getConcurrency(int backlog)
+    {
+        if (catchingUp) return CATCH_UP_CONCURRENCY;
+        int threads = (backlog + ANNOUNCEMENTS_PER_THREAD - 1) / ANNOUNCEMENTS_PER_THREAD;
+        return Math.max(NORMAL_CONCURRENCY, Math.min(CATCH_UP_CONCURRENCY, threads));
+    }
+
+    /**
+     * @return seconds to wait between filling the announcement queues
+     */
+    long getFillDelay()
+    {
+        return catchingUp ? CATCH_UP_FILL_DELAY : NORMAL_FILL_DELAY;
+    }
+
+    /**
+     * @return seconds to wait between emptying the announcement queues
+     */
+    long getEmptyDelay()
+    {
+        return catchingUp ? CATCH_UP_EMPTY_DELAY : NORMAL_EMPTY_DELAY;
+    }
+
+    /**
+     * @param q quantile between 0 and 1
+     * @return the upper bound (in seconds) of the bucket containing the quantile of recent lateness
+     *         across all shards, infinite if beyond the largest bucket
+     */
+    public double getPercentile(double q)
+    {
+        long[] counts = new long[buckets.length+1];
+        long minute = currentMinute();
+        for (Window window : shards.values())
+        {
+            window.sum(minute, counts);
+        }
+        return this.percentile(counts, q);
+    }
+
+    /**
+     * @return a short description of the recent lateness of a shard's announcements
+     */
+    public String getSummary(int shardId)
+    {
+        long[] counts = new long[buckets.length+1];
+        Window window = shards.get(shardId);
+        if (window != null) window.sum(currentMinute(), counts);
+
+        long total = 0;
+        for (long count : counts) total += count;
+        if (total == 0) return "no announcements in the last " + WINDOW + " min";
+
+        return "p50 " + this.format(this.percentile(counts, 0.5)) +
+                ", p99 " + this.format(this.percentile(counts, 0.99)) +
+                " (" + total + " in " + WINDOW + " min)" +
+                (catchingUp ? " [catching up]" : "");
+    }
+
+    private double percentile(long[] counts, double q)
+    {
+        long total = 0;
+        for (long count : counts) total += count;
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(q * total);
+        long cumulative = 0;
+        for (int i=0; i<buckets.length; i++)
+        {
+            cumulative += counts[i];
+            if (cumulative >= rank) return buckets[i];
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    private int bucketOf(double value)
+    {
+        int i = 0;
+        while (i < buckets.length && value > buckets[i]) i++;
+        return i;
+    }
+
+    private String format(double seconds)
+    {
+        return Double.isInfinite(seconds) ? ">" + (long) buckets[buckets.length-1] + "s" : "<=" + (long) seconds + "s";
+    }
+
+    private static long currentMinute()
+    {
+        return System.currentTimeMillis() / 60000;
+    }
+
+    private static int shardOf(String guildId)
+    {
+        JDA jda = Main.getShardManager().getJDA(guildId);
+        if (jda == null || jda.getShardInfo() == null) return 0;
+        return jda.getShardInfo().getShardId();
+    }
+
+    /**
+     * ring of per-minute bucket counts
+     */
+    private static class Window
+    {
+        private final long[][] slots;
+        private final long[] minutes = new long[WINDOW];
+
+        Window(int bucketCount)
+        {
+            slots = new long[WINDOW][bucketCount];
+        }
+
+        synchronized void add(int bucket)
+        {
+            long minute = currentMinute();
+            int i = (int) (minute % WINDOW);
+            if (minutes[i] != minute)
+            {   // slot holds an expired minute
+                minutes[i] = minute;
+                Arrays.fill(slots[i], 0);
+            }
+            slots[i][bucket]++;
+        }
+
+        synchronized void sum(long minute, long[] counts)
+        {
+            for (int i=0; i<WINDOW; i++)
+            {
+                if (minutes[i] > minute - WINDOW)
+                {
+                    for (int j=0; j<counts.length; j++) counts[j] += slots[i][j];
+                }
+            }
+        }
+    }
+}
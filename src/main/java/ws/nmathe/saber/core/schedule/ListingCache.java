@@ -0,0 +1,107 @@
+package ws.nmathe.saber.core.schedule;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import ws.nmathe.saber.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static com.mongodb.client.model.Accumulators.sum;
+import static com.mongodb.client.model.Aggregates.group;
+import static com.mongodb.client.model.Aggregates.match;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Sorts.ascending;
+
+/**
+ * Short lived cache of the event listings shown by the events and schedules commands.
+ * Listings are read sorted and projected by the database and are held per guild for TTL milliseconds,
+ * so that paging through a guild's events does not re-read the schedules on every page.
+ * A guild's listings are dropped whenever one of it's events is created, updated, removed, expired, or sorted.
+ */
+public class ListingCache
+{
+    private static final long TTL = 30*1000;
+
+    private final Map<String, GuildListing> guilds = new ConcurrentHashMap<>();
+
+    /**
+     * @param guildId the guild of the schedule
+     * @param channelId the schedule's channel ID
+     * @return summaries of the events on the schedule, earliest starting first
+     */
+    public List<EntryView> getEvents(String guildId, String channelId)
+    {
+        return this.getGuild(guildId).events.computeIfAbsent(channelId, id ->
+                Collections.unmodifiableList(Main.getDBDriver().getEventCollection()
+                        .withDocumentClass(RawBsonDocument.class)
+                        .find(eq("channelId", id)).projection(EntryView.LISTING).sort(ascending("start"))
+                        .map(EntryView::new).into(new ArrayList<>())));
+    }
+
+    /**
+     * @param guildId the guild
+     * @return the number of events on each of the guild's schedules, schedules without events are absent
+     */
+    public Map<String, Integer> getEventCounts(String guildId)
+    {
+        GuildListing listing = this.getGuild(guildId);
+        Map<String, Integer> counts = listing.counts;
+        if (counts == null)
+        {
+            Map<String, Integer> result = new ConcurrentHashMap<>();
+            Main.getDBDriver().getEventCollection()
+                    .aggregate(Arrays.asList(match(eq("guildId", guildId)), group("$channelId", sum("count", 1))))
+                    .forEach((Consumer<? super Document>) document ->
+                    {
+                        String channelId = document.getString("_id");
+                        if (channelId != null) result.put(channelId, document.getInteger("count", 0));
+                    });
+            counts = Collections.unmodifiableMap(result);
+            listing.counts = counts;
+        }
+        return counts;
+    }
+
+    /**
+     * drops the cached listings of a guild
+     */
+    public void invalidate(String guildId)
+    {
+        if (guildId != null) guilds.remove(guildId);
+    }
+
+    private GuildListing getGuild(String guildId)
+    {
+        long now = System.currentTimeMillis();
+        GuildListing listing = guilds.get(guildId);
+        if (listing == null || now - listing.created > TTL)
+        {
+            // drop any other expired listings while here
+            guilds.values().removeIf(other -> now - other.created > TTL);
+            listing = new GuildListing(now);
+            guilds.put(guildId, listing);
+        }
+        return listing;
+    }
+
+    /**
+     * the listings of one guild
+     */
+    private static class GuildListing
+    {
+        final long created;
+        final Map<String, List<EntryView>> events = new ConcurrentHashMap<>();
+        volatile Map<String, Integer> counts;
+
+        GuildListing(long created)
+        {
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package ws.nmathe.saber.core.schedule;
+
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+
+/**
+ * Bloom filter over the message IDs of all event messages.
+ * Used to reject message deletions and reactions on messages which are not events without
+ * a database round trip, a positive result must still be confirmed against the database.
+ * Bloom filters do not support removal, instead removals are counted and the filter is
+ * rebuilt from the database once enough of it's contents have gone stale (or it has grown
+ * past it's sized capacity).
+ * The filter fails open while no build has completed, a failed build is retried with an increasing delay.
+ */
+public class MessageFilter
+{
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_CAPACITY = 1<<16;
+    private static final long RETRY_DELAY = 30;            // seconds before the first retry of a failed build
+    private static final long MAX_RETRY_DELAY = 30*60;     // seconds
+
+    private ScheduledExecutorService rebuildExecutor = Executors.newSingleThreadScheduledExecutor();
+    private AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private long retryDelay = RETRY_DELAY;  // only used by the rebuild thread
+
+    private volatile Bits current = null;   // null until the first build completes
+    private volatile Bits pending = null;   // the filter being built, receives adds during a rebuild
+    private AtomicInteger removed = new AtomicInteger(0);
+
+    /**
+     * @param messageId snowflake ID of a message
+     * @return false if the message is definitely not an event message
+     */
+    public boolean mightContain(long messageId)
+    {
+        Bits bits = current;
+        return bits == null || bits.mightContain(messageId);
+    }
+
+    /**
+     * records a message ID as belonging to an event,
+     * should be called after the database has been written
+     */
+    void add(String messageId)
+    {
+        long id;
+        try
+        {
+            id = Long.parseLong(messageId);
+        }
+        catch (NumberFormatException e)
+        {
+            return;
+        }
+
+        Bits bits = current;
+        if (bits != null && bits.put(id) > bits.capacity) rebuild();
+        Bits next = pending;
+        if (next != null) next.put(id);
+    }
+
+    /**
+     * records that an event message is no longer tracked
+     */
+    public void remove()
+    {
+        Bits bits = current;
+        if (bits != null && removed.incrementAndGet() > bits.capacity/4) rebuild();
+    }
+
+    /**
+     * asynchronously rebuilds the filter from the event collection
+     */
+    void rebuild()
+    {
+        if (!rebuilding.compareAndSet(false, true)) return;
+        rebuildExecutor.execute(() ->
+        {
+            try
+            {
+                long count = Main.getDBDriver().getEventCollection().count();
+                Bits bits = new Bits((int) Math.max(MIN_CAPACITY, count*2));
+                pending = bits;
+                removed.set(0);
+
+                Main.getDBDriver().getEventCollection().find()
+                        .projection(fields(include("messageId")))
+                        .forEach((Consumer<? super Document>) document ->
+                        {
+                            String messageId = document.getString("messageId");
+                            if (messageId == null) return;
+                            try
+                            {
+                                bits.put(Long.parseLong(messageId));
+                            }
+                            catch (NumberFormatException ignored)
+                            {}
+                        });
+
+                current = bits;
+                retryDelay = RETRY_DELAY;
+                Logging.info(this.getClass(), "Rebuilt event message filter with " + bits.count.get() + " messages.");
+            }
+            catch (Exception e)
+            {
+                current = null; // fail open until a retry succeeds
+                Logging.exception(this.getClass(), e);
+                Logging.warn(this.getClass(), "Retrying event message filter rebuild", "seconds", retryDelay);
+                rebuildExecutor.schedule(this::rebuild, retryDelay, TimeUnit.SECONDS);
+                retryDelay = Math.min(retryDelay*2, MAX_RETRY_DELAY);
+            }
+            finally
+            {
+                pending = null;
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    /**
+     * fixed size bloom filter bit array, uses double hashing to derive the probe positions
+     */
+    private static class Bits
+    {
+        private final AtomicLongArray words;
+        private final long numBits;
+        private final int numHashes;
+        private final int capacity;
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        Bits(int capacity)
+        {
+            this.capacity = capacity;
+            long m = (long) Math.ceil(-capacity * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) ((m + 63) >>> 6));
+            this.numBits = (long) words.length() << 6;
+            this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * Math.log(2)));
+        }
+
+        /**
+         * values which the filter already (might) contain are not counted, so re-adding the message ID
+         * of an updated event does not move the filter closer to a rebuild
+         * @return the number of values added
+         */
+        int put(long value)
+        {
+            long hash = mix(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            boolean added = false;
+            for (int i=1; i<=numHashes; i++)
+            {
+                long bit = ((h1 + i*h2) & Integer.MAX_VALUE) % numBits;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long old;
+                do
+                {
+                    old = words.get(word);
+                    if ((old & mask) != 0) break;
+                } while (!words.compareAndSet(word, old, old | mask));
+                added |= (old & mask) == 0;
+            }
+            return added ? count.incrementAndGet() : count.get();
+        }
+
+        boolean mightContain(long value)
+        {
+            long hash = mix(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i=1; i<=numHashes; i++)
+            {
+                long bit = ((h1 + i*h2) & Integer.MAX_VALUE) % numBits;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        /** murmur3 64bit finalizer, spreads the low entropy bits of snowflakes */
+        private static long mix(long value)
+        {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            value ^= value >>> 33;
+            value *= 0xc4ceb9fe1a85ec53L;
+            value ^= value >>> 33;
+            return value;
+        }
+    }
+}
@@ -32,6 +32,17 @@ public class MessageGenerator
      * @return the message to be used to display the event in it's associated Discord channel
      */
     public static Message generate(ScheduleEntry se)
+    {
+        return generate(se, new RenderContext());
+    }
+
+    /**
+     * generates the message for an event using a render context shared with other events
+     * @param se (ScheduleEntry) to generate a message display
+     * @param ctx the render context of the current pass
+     * @return the message to be used to display the event in it's associated Discord channel
+     */
+    public static Message generate(ScheduleEntry se, RenderContext ctx)
     {
         // prepare title
         String titleUrl = (se.getTitleUrl() != null && VerifyUtilities.verifyUrl(se.getTitleUrl())) ?
@@ -39,21 +50,21 @@ public class MessageGenerator
         String titleImage = ICON_URL;
 
         // generate the footer
-        String footerStr = generateFooter(se);
+        String footerStr = generateFooter(se, ctx);
 
         // determine the embed color
         Color embedColor = generateColor(se);
 
         // generate the body of the embed
         String bodyContent;
-        String style = Main.getScheduleManager().getStyle(se.getChannelId());
-        if(style.equalsIgnoreCase("narrow"))
+        RenderContext.ScheduleSettings settings = ctx.getSchedule(se.getChannelId());
+        if(settings.style.equalsIgnoreCase("narrow"))
         {
-            bodyContent = generateBodyNarrow(se);
+            bodyContent = generateBodyNarrow(se, ctx, settings);
         }
         else
         {
-            bodyContent = generateBodyFull(se);
+            bodyContent = generateBodyFull(se, ctx, settings);
         }
 
         // prepare the embed
@@ -84,14 +95,14 @@ public class MessageGenerator
      * @param se the ScheduleEntry Object represented by the display
      * @return the body content as a string
      */
-    private static String generateBodyFull(ScheduleEntry se)
+    private static String generateBodyFull(ScheduleEntry se, RenderContext ctx, RenderContext.ScheduleSettings settings)
     {
         StringBuilder msg = new StringBuilder();
 
         //
         // create the upper code block
         //
-        String timeLines = generateTimeLines(se);
+        String timeLines = generateTimeLines(se, settings);
         String repeatLine = "> repeats " + se.getRecurrence().toString() + "\n";
         String expirationLine = generateExpirationLine(se);
         String locationLine = se.getLocation() == null ? "" : "<Location: " + se.getLocation() + ">\n";
@@ -107,20 +118,20 @@ public class MessageGenerator
         //
         // insert the event description
         //
-        msg.append(ParsingUtilities.processText(se.getDescription(), se, true))
+        msg.append(ParsingUtilities.processText(se.getDescription(), se, true, settings.clockFormat))
                 .append("\n");
 
         //
         // generate the lower code block
         //
-        String timerLine = generateTimerLine(se);
+        String timerLine = generateTimerLine(se, ctx, settings);
 
         // if rsvp is enabled, show the number of rsvp
         StringBuilder rsvpLine = new StringBuilder();
-        if(Main.getScheduleManager().isRSVPEnabled(se.getChannelId()))
+        if(settings.rsvpEnabled)
         {
             rsvpLine.append("- ");
-            Map<String, String> options = Main.getScheduleManager().getRSVPOptions(se.getChannelId());
+            Map<String, String> options = settings.rsvpOptions;
             for(String emoji : options.keySet()) // I iterate over the keys rather than the values to keep a order consistent with reactions
             {
                 String type = options.get(emoji);
@@ -161,15 +172,15 @@ public class MessageGenerator
      * @param se the ScheduleEntry Object represented by the display
      * @return the body content as a string
      */
-    private static String generateBodyNarrow(ScheduleEntry se)
+    private static String generateBodyNarrow(ScheduleEntry se, RenderContext ctx, RenderContext.ScheduleSettings settings)
     {
         // create the first line of the body
-        String timeLines = generateTimeLines(se);
+        String timeLines = generateTimeLines(se, settings);
 
         // timezone and repeat information
         StringBuilder repeatLine = new StringBuilder()
                 .append("[")
-                .append(se.getStart().getZone().getDisplayName(TextStyle.SHORT, Locale.ENGLISH))
+                .append(RenderContext.getShortName(se.getStart().getZone()))
                 .append("](")
                 .append(se.getRecurrence().toString())
                 .append(")\n");
@@ -179,9 +190,9 @@ public class MessageGenerator
 
         // if rsvp is enabled, show the number of rsvps
         StringBuilder rsvpLine = new StringBuilder();
-        if(Main.getScheduleManager().isRSVPEnabled(se.getChannelId()))
+        if(settings.rsvpEnabled)
         {
-            Map<String, String> options = Main.getScheduleManager().getRSVPOptions(se.getChannelId());
+            Map<String, String> options = settings.rsvpOptions;
             // iterate over the keys rather than the values to keep
             // the order consistent with the order reactions are displayed
             for(String emoji : options.keySet())
@@ -230,26 +241,19 @@ public class MessageGenerator
      * @param se the ScheduleEntry
      * @return display lines containing the start/end information
      */
-    private static String generateTimeLines(ScheduleEntry se)
+    private static String generateTimeLines(ScheduleEntry se, RenderContext.ScheduleSettings settings)
     {
         StringBuilder timeLines = new StringBuilder();
-        List<ZoneId> altZones = Main.getScheduleManager().getAltZones(se.getChannelId());
-        if (!altZones.isEmpty())
-        {
-            altZones.add(se.getStart().getZone());  // add primary zone to list
-            altZones.sort((zoneId, t1) -> {         // sort list by zone offset
-                Instant now = Instant.now();
-                return t1.getRules().getOffset(now)
-                        .compareTo(zoneId.getRules().getOffset(now));
-            });
-            for (ZoneId zone : altZones)
+        if (settings.hasAltZones())
+        {   // primary and alternate zones, sorted by zone offset
+            for (ZoneId zone : settings.getTimeZones(se.getStart().getZone()))
             {
-                timeLines.append(generateTimeLine(se, zone));
+                generateTimeLine(se, zone, settings.clock, timeLines);
             }
         }
         else
         {
-            timeLines.append(generateTimeLine(se, null));
+            generateTimeLine(se, null, settings.clock, timeLines);
         }
         return timeLines.toString();
     }
@@ -258,28 +262,24 @@ public class MessageGenerator
      * Generates the line of text which indicates the time the event begins and ends
      * Used by both generateBody...() methods
      * @param se the ScheduleEntry Object represented by the display
-     * @return the body content as a string
+     * @param zone the zone to display the times in, null for the event's zone
+     * @param timeFormatter formatter for the schedule's clock format
+     * @param timeLine the string that should be built onto
      */
-    private static String generateTimeLine(ScheduleEntry se, ZoneId zone)
+    private static void generateTimeLine(ScheduleEntry se, ZoneId zone, DateTimeFormatter timeFormatter, StringBuilder timeLine)
     {
-        String timeFormatter;
-        if(Main.getScheduleManager().getClockFormat(se.getChannelId()).equals("24"))
-            timeFormatter = "H:mm";
-        else
-            timeFormatter = "h:mm a";
-
         // adjust start and end if necessary
         ZonedDateTime start = (zone == null) ? se.getStart() : se.getStart().withZoneSameInstant(zone);
         ZonedDateTime end   = (zone == null) ? se.getEnd() : se.getEnd().withZoneSameInstant(zone);
 
         String dash = "\u2014";
-        StringBuilder timeLine = new StringBuilder("< " + start.format(DateTimeFormatter.ofPattern("MMM d")));
+        timeLine.append("< ").append(start.format(RenderContext.DATE_FORMAT));
 
         // event starts and ends at the same time
         if (start.until(end, ChronoUnit.SECONDS)==0)
         {
             timeLine.append(", ")
-                    .append(start.format(DateTimeFormatter.ofPattern(timeFormatter)));
+                    .append(start.format(timeFormatter));
         }
         // time span is greater than 1 day
         else if (start.until(end, ChronoUnit.DAYS)>=1)
@@ -291,41 +291,40 @@ public class MessageGenerator
                 timeLine.append(" ")
                         .append(dash)
                         .append(" ")
-                        .append(end.format(DateTimeFormatter.ofPattern("MMM d")));
+                        .append(end.format(RenderContext.DATE_FORMAT));
             }
             else // all other events
             {
                 timeLine.append(", ")
-                        .append(start.format(DateTimeFormatter.ofPattern(timeFormatter)))
+                        .append(start.format(timeFormatter))
                         .append(" ")
                         .append(dash)
                         .append(" ")
-                        .append(end.format(DateTimeFormatter.ofPattern("MMM d")))
+                        .append(end.format(RenderContext.DATE_FORMAT))
                         .append(", ")
-                        .append(end.format(DateTimeFormatter.ofPattern(timeFormatter)));
+                        .append(end.format(timeFormatter));
             }
         }
         // time span is within 1 day
         else
         {
             timeLine.append(", ")
-                    .append(start.format(DateTimeFormatter.ofPattern(timeFormatter)))
+                    .append(start.format(timeFormatter))
                     .append(" ")
                     .append(dash)
                     .append(" ")
-                    .append(end.format(DateTimeFormatter.ofPattern(timeFormatter)));
+                    .append(end.format(timeFormatter));
         }
         timeLine.append("> ");
         // add zone information
         if (zone != null)
         {
             timeLine.append("<")
-                    .append(zone.getDisplayName(TextStyle.SHORT, Locale.getDefault()))
+                    .append(RenderContext.getLocalShortName(zone))
                     .append(">");
         }
-        // append newline character & return full string
+        // append newline character
         timeLine.append("\n");
-        return timeLine.toString();
     }
 
 
@@ -333,25 +332,24 @@ public class MessageGenerator
      * @param se the ScheduleEntry object
      * @return String representing the line containing the time until
      */
-    private static String generateTimerLine(ScheduleEntry se)
+    private static String generateTimerLine(ScheduleEntry se, RenderContext ctx, RenderContext.ScheduleSettings settings)
     {
         StringBuilder line = new StringBuilder();
-        List<ZoneId> altZones = Main.getScheduleManager().getAltZones(se.getChannelId());
-        if (altZones.isEmpty())
+        if (!settings.hasAltZones())
         {
             line.append("[")
-                    .append(se.getStart().getZone().getDisplayName(TextStyle.FULL, Locale.ENGLISH))
+                    .append(RenderContext.getFullName(se.getStart().getZone()))
                     .append("]");
             if (!se.hasStarted())
             {
                 line.append("(begins ");
-                genTimerHelper(se.getStart(), line);
+                genTimerHelper(se.getStart(), ctx, line);
                 line.append(")");
             }
             else
             {
                 line.append("(ends ");
-                genTimerHelper(se.getEnd(), line);
+                genTimerHelper(se.getEnd(), ctx, line);
                 line.append(")");
             }
         }
@@ -361,13 +359,13 @@ public class MessageGenerator
             if (!se.hasStarted())
             {
                 line.append("begins ");
-                genTimerHelper(se.getStart(), line);
+                genTimerHelper(se.getStart(), ctx, line);
                 line.append("](---");
             }
             else
             {
                 line.append("in-progress](ends ");
-                genTimerHelper(se.getEnd(), line);
+                genTimerHelper(se.getEnd(), ctx, line);
             }
             line.append(")");
         }
@@ -379,11 +377,12 @@ public class MessageGenerator
     /**
      * used by generateTimeLine() to reduce code repetition
      * @param time the start or end time of the event
+     * @param ctx the render context
      * @param timer the string that should be built onto
      */
-    private static void genTimerHelper(ZonedDateTime time, StringBuilder timer)
+    private static void genTimerHelper(ZonedDateTime time, RenderContext ctx, StringBuilder timer)
     {
-        long timeTil = ZonedDateTime.now().until(time, ChronoUnit.SECONDS);
+        long timeTil = ctx.getNow().until(time, ChronoUnit.SECONDS);
         if (timeTil < 60 * 60)
         {
             int minutesTil = (int)Math.ceil((double)timeTil/(60));
@@ -415,7 +414,7 @@ public class MessageGenerator
         else
         {
             int daysTil = (int) ChronoUnit.DAYS.between(
-                    ZonedDateTime.now().truncatedTo(ChronoUnit.DAYS),
+                    ctx.getToday(),
                     time.truncatedTo(ChronoUnit.DAYS));
             if (daysTil <= 1)
             {
@@ -434,7 +433,7 @@ public class MessageGenerator
      * @param se ScheduleEntry object
      * @return fully generated footer String
      */
-    private static String generateFooter(ScheduleEntry se)
+    private static String generateFooter(ScheduleEntry se, RenderContext ctx)
     {
         // initialize footer with ID information
         StringBuilder footerStr = new StringBuilder("ID: " + ParsingUtilities.intToEncodedID(se.getId()));
@@ -455,7 +454,7 @@ public class MessageGenerator
         if (!reminders.isEmpty())
         {
             footerStr.append(" | remind in ");
-            long minutes = Instant.now().until(reminders.get(0).toInstant(), ChronoUnit.MINUTES);
+            long minutes = ctx.getInstant().until(reminders.get(0).toInstant(), ChronoUnit.MINUTES);
             if(minutes<=120)
             {
                 footerStr.append(" ")
@@ -470,7 +469,7 @@ public class MessageGenerator
             }
             for (int i=1; i<reminders.size()-1; i++)
             {
-                minutes = Instant.now().until(reminders.get(i).toInstant(), ChronoUnit.MINUTES);
+                minutes = ctx.getInstant().until(reminders.get(i).toInstant(), ChronoUnit.MINUTES);
                 if(minutes<=120)
                 {
                     footerStr.append(", ")
@@ -486,7 +485,7 @@ public class MessageGenerator
             }
             if (reminders.size()>1)
             {
-                minutes = Instant.now().until(reminders.get(reminders.size()-1).toInstant(), ChronoUnit.MINUTES);
+                minutes = ctx.getInstant().until(reminders.get(reminders.size()-1).toInstant(), ChronoUnit.MINUTES);
                 footerStr.append(" and ");
                 if(minutes<=120)
                 {
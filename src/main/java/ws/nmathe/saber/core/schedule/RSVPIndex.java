@@ -0,0 +1,153 @@
+package ws.nmathe.saber.core.schedule;
+
+import com.mongodb.client.model.Indexes;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.pull;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Reverse index from user ID to the events the user has RSVP'ed to.
+ * Each event document carries a flattened 'rsvp_users' array of every user in any of it's rsvp groups,
+ * which is maintained by the EntryManager whenever the event is written and indexed by the database.
+ * Removing a user from all events in a guild is then a single indexed update, and the affected event
+ * displays are refreshed together after a short delay so that bursts of removals coalesce.
+ */
+public class RSVPIndex
+{
+    static final String FIELD = "rsvp_users";
+
+    // seconds to wait for more removals before refreshing affected event displays
+    private static final int REFRESH_DELAY = 15;
+
+    private ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor();
+    private Set<Integer> pendingRefresh = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+
+    /**
+     * ensures the database index exists and backfills events written before the index was introduced
+     */
+    @SuppressWarnings("unchecked")
+    void init()
+    {
+        refreshScheduler.execute(() ->
+        {
+            try
+            {
+                Main.getDBDriver().getEventCollection().createIndex(Indexes.ascending(FIELD));
+
+                int[] count = {0};
+                Main.getDBDriver().getEventCollection()
+                        .find(exists(FIELD, false))
+                        .projection(include("rsvp_members"))
+                        .forEach((Consumer<? super Document>) document ->
+                        {
+                            Main.getDBDriver().getEventCollection().updateOne(eq("_id", document.get("_id")),
+                                    set(FIELD, flatten((Map) document.get("rsvp_members"))));
+                            count[0]++;
+                        });
+                if (count[0] > 0)
+                {
+                    Logging.info(this.getClass(), "Backfilled the rsvp index for " + count[0] + " events.");
+                }
+            }
+            catch (Exception e)
+            {
+                Logging.exception(this.getClass(), e);
+            }
+        });
+    }
+
+    /**
+     * flattens an event's rsvp groups into the list of distinct users which have rsvp'ed to the event
+     * @param rsvpMembers mapping of rsvp group to group members
+     * @return list of user IDs
+     */
+    @SuppressWarnings("unchecked")
+    static List<String> flatten(Map<String, List<String>> rsvpMembers)
+    {
+        if (rsvpMembers == null) return new ArrayList<>();
+        Set<String> users = new LinkedHashSet<>();
+        for (List<String> members : rsvpMembers.values())
+        {
+            if (members != null) users.addAll(members);
+        }
+        return new ArrayList<>(users);
+    }
+
+    /**
+     * removes a user from every rsvp group of every event in a guild,
+     * displays of the affected events are refreshed after a short delay
+     * @param guildId ID of the guild
+     * @param userId ID of the user to remove
+     */
+    @SuppressWarnings("unchecked")
+    public void removeUser(String guildId, String userId)
+    {
+        Bson query = and(eq("guildId", guildId), eq(FIELD, userId));
+
+        // identify the affected events and the rsvp groups present on them
+        List<Integer> affected = new ArrayList<>();
+        Set<String> groups = new HashSet<>();
+        Main.getDBDriver().getEventCollection()
+                .find(query)
+                .projection(include("_id", "rsvp_members"))
+                .forEach((Consumer<? super Document>) document ->
+                {
+                    affected.add(document.getInteger("_id"));
+                    Map<String, Object> members = (Map<String, Object>) document.get("rsvp_members");
+                    if (members != null) groups.addAll(members.keySet());
+                });
+        if (affected.isEmpty()) return;
+
+        // pull the user from all groups in one update
+        List<Bson> updates = new ArrayList<>();
+        updates.add(pull(FIELD, userId));
+        for (String group : groups)
+        {
+            updates.add(pull("rsvp_members." + group, userId));
+        }
+        Main.getDBDriver().getEventCollection().updateMany(query, combine(updates));
+
+        pendingRefresh.addAll(affected);
+        if (refreshScheduled.compareAndSet(false, true))
+        {
+            refreshScheduler.schedule(this::refresh, REFRESH_DELAY, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * reloads the displays of all events which have had users removed
+     */
+    private void refresh()
+    {
+        refreshScheduled.set(false);
+        List<Integer> entryIds = new ArrayList<>(pendingRefresh);
+        pendingRefresh.removeAll(entryIds);
+        for (Integer entryId : entryIds)
+        {
+            try
+            {
+                Main.getEntryManager().reloadEntry(entryId);
+            }
+            catch (Exception e)
+            {
+                Logging.exception(this.getClass(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ws.nmathe.saber.core.schedule;
+
+import com.vdurmont.emoji.EmojiManager;
+import net.dv8tion.jda.core.entities.Emote;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.MessageReaction;
+import net.dv8tion.jda.core.requests.RestAction;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.metrics.Metrics;
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Brings the bot's reactions on an event message in line with the reactions the event should have.
+ * The message's current reactions are compared to the desired set of emoji and only the difference is
+ * requested, adds and removes are spaced to the channel's reaction bucket rather than fired all at once.
+ */
+public class ReactionReconciler
+{
+    // milliseconds between reaction requests in one channel (discord allows about 1 per 250ms per channel)
+    private static final long REACTION_INTERVAL = 250;
+
+    private final ScheduledExecutorService pacer = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, Long> nextSlot = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    ReactionReconciler()
+    {
+        Metrics.QUEUE_DEPTH.set(pending::get, "reactions");
+    }
+
+    /**
+     * @param options mapping of rsvp emoji to rsvp group
+     * @param clearEmoji emoji of the clear action (empty if clear is disabled)
+     * @param se the event
+     * @return the emoji the event's message should be reacted with, in display order
+     */
+    public static List<String> desired(Map<String, String> options, String clearEmoji, ScheduleEntry se)
+    {
+        List<String> emoji = new ArrayList<>();
+        for (Map.Entry<String, String> option : options.entrySet())
+        {
+            // don't add the reaction for categories with 0 limit
+            if (se.getRsvpLimit(option.getValue()) != 0) emoji.add(option.getKey());
+        }
+        if (!clearEmoji.isEmpty()) emoji.add(clearEmoji);
+        return emoji;
+    }
+
+    /**
+     * adds the desired reactions the message is missing and removes the bot's other reactions
+     * @param message the message, with it's reactions as currently retrieved
+     * @param desired emoji (unicode, or the ID of a custom emote) the message should have
+     */
+    public void reconcile(Message message, List<String> desired)
+    {
+        if (message == null) return;
+
+        Set<String> present = new HashSet<>();
+        List<RestAction<Void>> actions = new ArrayList<>();
+        for (MessageReaction reaction : message.getReactions())
+        {
+            if (!reaction.isSelf()) continue;
+            String key = key(reaction.getReactionEmote());
+            if (desired.contains(key)) present.add(key);
+            else actions.add(reaction.removeReaction());
+        }
+        for (String emoji : desired)
+        {
+            if (present.contains(emoji)) continue;
+            RestAction<Void> action = this.addReaction(emoji, message);
+            if (action != null) actions.add(action);
+        }
+
+        for (RestAction<Void> action : actions)
+        {
+            this.submit(message.getChannel().getId(), action);
+        }
+    }
+
+    /**
+     * @return number of reaction requests waiting to be sent
+     */
+    public int getPending()
+    {
+        return pending.get();
+    }
+
+    private RestAction<Void> addReaction(String emoji, Message message)
+    {
+        if (EmojiManager.isEmoji(emoji))
+        {
+            return message.addReaction(emoji);
+        }
+        Emote emote = Main.getShardManager().getEmoteIndex().getEmote(emoji);
+        return emote == null ? null : message.addReaction(emote);
+    }
+
+    /**
+     * schedules a request at the channel's next free reaction slot
+     */
+    private void submit(String channelId, RestAction<Void> action)
+    {
+        long now = System.currentTimeMillis();
+        long slot = nextSlot.merge(channelId, now, (prev, time) -> Math.max(prev + REACTION_INTERVAL, time));
+
+        // forget channels whose slots have passed
+        if (nextSlot.size() > 1000) nextSlot.values().removeIf(time -> time < now - REACTION_INTERVAL);
+
+        pending.incrementAndGet();
+        pacer.schedule(() ->
+        {
+            pending.decrementAndGet();
+            action.queue(null, failure -> Logging.warn(this.getClass(), "Reaction request failed",
+                    "channel", channelId, "error", failure.getMessage()));
+        }, slot - now, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the key an rsvp option uses for the reaction's emoji
+     */
+    private static String key(MessageReaction.ReactionEmote emote)
+    {
+        return emote.isEmote() ? emote.getId() : emote.getName();
+    }
+}
@@ -0,0 +1,536 @@
+package ws.nmathe.saber.core.schedule;
+
+import java.time.*;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.time.temporal.TemporalAdjusters.firstDayOfMonth;
+import static java.time.temporal.TemporalAdjusters.nextOrSame;
+
+/**
+ * Immutable, decoded form of the bit-packed recurrence integer (see EventRecurrence for the layout).
+ * Rules are compiled once per distinct recurrence value and shared, the human readable description
+ * and the RFC5545 rule are derived when the rule is compiled.
+ *
+ * Interval modes (minutes, days, months, years) compute the nth occurrence directly,
+ * weekly and nth-weekday rules step from occurrence to occurrence in local time.
+ */
+public final class RecurrenceRule
+{
+    private static final Map<Integer, RecurrenceRule> cache = new ConcurrentHashMap<>();
+
+    private final int recurrence;
+    private final int mode;
+    private final int interval;         // minutes, days, weeks, months or years between occurrences
+    private final int weekdays;         // WEEK_MODE: bit 0 is monday, bit 6 sunday
+    private final DayOfWeek dayOfWeek;  // MONTH1_MODE
+    private final int nth;              // MONTH1_MODE
+    private final int dayOfMonth;       // MONTH2_MODE, 0 to keep the day of the previous occurrence
+
+    private final String text;
+    private final String rrule;
+
+    /**
+     * @param recurrence the bit-packed recurrence integer
+     * @return the compiled rule
+     */
+    public static RecurrenceRule compile(int recurrence)
+    {
+        RecurrenceRule rule = cache.get(recurrence);
+        if (rule == null)
+        {
+            rule = new RecurrenceRule(recurrence);
+            cache.putIfAbsent(recurrence, rule);
+        }
+        return rule;
+    }
+
+    private RecurrenceRule(int recurrence)
+    {
+        this.recurrence = recurrence;
+        int data = recurrence >> 3;
+        this.mode = recurrence==0 ? -1 : recurrence & 0b111;
+        switch (this.mode)
+        {
+            case EventRecurrence.WEEK_MODE:
+                this.weekdays   = data & 0b1111111;
+                this.interval   = Math.max(1, data>>7);
+                this.dayOfWeek  = null;
+                this.nth        = 0;
+                this.dayOfMonth = 0;
+                break;
+            case EventRecurrence.MONTH1_MODE:
+                this.dayOfWeek  = DayOfWeek.of((data&0b111)==0 ? 1 : data&0b111);
+                this.nth        = Math.max(1, (data>>3)&0b111);
+                this.interval   = Math.max(1, data>>6);
+                this.weekdays   = 0;
+                this.dayOfMonth = 0;
+                break;
+            case EventRecurrence.MONTH2_MODE:
+                this.dayOfMonth = data & 0b11111;
+                this.interval   = Math.max(1, data>>5);
+                this.weekdays   = 0;
+                this.dayOfWeek  = null;
+                this.nth        = 0;
+                break;
+            default:
+                this.interval   = Math.max(1, data);
+                this.weekdays   = 0;
+                this.dayOfWeek  = null;
+                this.nth        = 0;
+                this.dayOfMonth = 0;
+                break;
+        }
+        this.text  = describe(recurrence);
+        this.rrule = this.buildRRule();
+    }
+
+    /**
+     * @return true if the rule produces any occurrences beyond the first
+     */
+    public boolean repeats()
+    {
+        switch (this.mode)
+        {
+            case EventRecurrence.DAILY_MODE:
+            case EventRecurrence.MINUTE_MODE:
+            case EventRecurrence.YEAR_MODE:
+            case EventRecurrence.WEEK_MODE:
+            case EventRecurrence.MONTH1_MODE:
+            case EventRecurrence.MONTH2_MODE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the bit-packed recurrence integer the rule was compiled from
+     */
+    public int getRecurrence()
+    {
+        return this.recurrence;
+    }
+
+    /**
+     * determine the next time for the event
+     * @param date the date of the previous start/end of the event
+     * @return the next occurrence
+     */
+    public ZonedDateTime next(ZonedDateTime date)
+    {
+        switch (this.mode)
+        {
+            case EventRecurrence.DAILY_MODE:
+                return date.plusDays(interval);
+            case EventRecurrence.MINUTE_MODE:
+                return date.plusMinutes(interval);
+            case EventRecurrence.YEAR_MODE:
+                return date.plusYears(interval);
+            case EventRecurrence.MONTH2_MODE:
+                return this.onDayOfMonth(date, interval);
+            case EventRecurrence.MONTH1_MODE:
+                return this.onNthWeekday(date, interval);
+
+            case EventRecurrence.WEEK_MODE:
+                if (weekdays == 0) return date.plusWeeks(interval);
+
+                // find the next day of the week which is set, skipping the weeks
+                // between intervals if the search passes sunday
+                int today = date.getDayOfWeek().getValue();
+                for (int i=1; i<=7; i++)
+                {
+                    int day = (today+i-1)%7;
+                    if ((weekdays & (1<<day)) != 0)
+                    {
+                        return date.plusDays(today+i > 7 ? i + 7*(interval-1) : i);
+                    }
+                }
+                return date; // unreachable
+
+            default:
+                return date;
+        }
+    }
+
+    /**
+     * determine the nth next occurrence, directly for interval rules
+     * @param date an occurrence of the event
+     * @param n number of occurrences to advance
+     * @return the nth occurrence after the date
+     */
+    public ZonedDateTime next(ZonedDateTime date, long n)
+    {
+        if (n <= 0) return date;
+        switch (this.mode)
+        {
+            case EventRecurrence.DAILY_MODE:
+                return date.plusDays(n*interval);
+            case EventRecurrence.MINUTE_MODE:
+                return date.plusMinutes(n*interval);
+            case EventRecurrence.YEAR_MODE:
+                return date.plusYears(n*interval);
+            case EventRecurrence.MONTH2_MODE:
+                return this.onDayOfMonth(date, n*interval);
+            case EventRecurrence.MONTH1_MODE:
+                if (nth <= 4) return this.onNthWeekday(date, n*interval);
+            default:
+                LocalDateTime local = date.toLocalDateTime();
+                for (long i=0; i<n; i++) local = this.nextLocal(local);
+                return ZonedDateTime.ofLocal(local, date.getZone(), date.getOffset());
+        }
+    }
+
+    /**
+     * steps a local date-time to the next occurrence, so that an occurrence shifted by a daylight savings
+     * gap does not shift the occurrences stepped to from it
+     */
+    private LocalDateTime nextLocal(LocalDateTime local)
+    {
+        return this.next(local.atZone(ZoneOffset.UTC)).toLocalDateTime();
+    }
+
+    /**
+     * @param date an occurrence of the event
+     * @param now the time to advance to
+     * @return the least number of occurrences (at least one) to advance the date by such that
+     *         the resulting occurrence is not before now, 0 if the rule does not repeat
+     */
+    public long stepsUntil(ZonedDateTime date, ZonedDateTime now)
+    {
+        if (!this.repeats()) return 0;
+
+        ChronoUnit unit = this.unit();
+        if (unit == null)
+        {
+            long n = 1;
+            for (ZonedDateTime cur = this.next(date); cur.isBefore(now); cur = this.next(cur)) n++;
+            return n;
+        }
+
+        long n = Math.max(1, date.until(now, unit)/interval);
+        while (n > 1 && !this.next(date, n-1).isBefore(now)) n--;
+        while (this.next(date, n).isBefore(now)) n++;
+        return n;
+    }
+
+    /**
+     * @param first an occurrence of the event
+     * @param until the time to count up to
+     * @return the number of occurrences after first, up to and including until
+     */
+    public long countAfter(ZonedDateTime first, ZonedDateTime until)
+    {
+        if (!this.repeats() || !until.isAfter(first)) return 0;
+
+        ChronoUnit unit = this.unit();
+        if (unit == null)
+        {
+            long end = until.toEpochSecond();
+            OccurrenceIterator occurrences = this.iterator(first);
+            occurrences.nextLong(); // skip the first occurrence
+
+            long n = 0;
+            while (occurrences.nextLong() <= end) n++;
+            return n;
+        }
+
+        long n = Math.max(0, first.until(until, unit)/interval);
+        while (n > 0 && this.next(first, n).isAfter(until)) n--;
+        while (!this.next(first, n+1).isAfter(until)) n++;
+        return n;
+    }
+
+    /**
+     * @param first the first occurrence of the event
+     * @return iterator over the epoch seconds of the event's occurrences, starting with first
+     */
+    public OccurrenceIterator iterator(ZonedDateTime first)
+    {
+        return new OccurrenceIterator(this, first);
+    }
+
+    /**
+     * @return the time unit between occurrences of interval rules, null if occurrences must be stepped through
+     */
+    private ChronoUnit unit()
+    {
+        switch (this.mode)
+        {
+            case EventRecurrence.DAILY_MODE:
+                return ChronoUnit.DAYS;
+            case EventRecurrence.MINUTE_MODE:
+                return ChronoUnit.MINUTES;
+            case EventRecurrence.YEAR_MODE:
+                return ChronoUnit.YEARS;
+            case EventRecurrence.MONTH2_MODE:
+                return ChronoUnit.MONTHS;
+            case EventRecurrence.MONTH1_MODE:
+                return nth <= 4 ? ChronoUnit.MONTHS : null;
+            default:
+                return null;
+        }
+    }
+
+    /*
+     * the month rules do their arithmetic on the local date-time and resolve the zone once,
+     * so that intermediate dates falling in a daylight savings gap do not shift the time of day
+     */
+
+    /**
+     * advances a date by a number of months to the rule's day of month, clamped to the length of the month
+     */
+    private ZonedDateTime onDayOfMonth(ZonedDateTime date, long months)
+    {
+        LocalDateTime local = date.toLocalDateTime().plusMonths(months);
+        if (dayOfMonth > 0)
+        {
+            local = local.withDayOfMonth(Math.min(dayOfMonth, local.toLocalDate().lengthOfMonth()));
+        }
+        return ZonedDateTime.ofLocal(local, date.getZone(), date.getOffset());
+    }
+
+    /**
+     * advances a date by a number of months to the rule's nth weekday of the month
+     */
+    private ZonedDateTime onNthWeekday(ZonedDateTime date, long months)
+    {
+        LocalDateTime local = date.toLocalDateTime()
+                .with(firstDayOfMonth())
+                .plusMonths(months)
+                .with(nextOrSame(dayOfWeek))
+                .plusWeeks(nth-1);
+        return ZonedDateTime.ofLocal(local, date.getZone(), date.getOffset());
+    }
+
+    /**
+     * @return the RFC5545 RRULE for the rule, without any UNTIL or COUNT parts
+     */
+    String getRRule()
+    {
+        return this.rrule;
+    }
+
+    private String buildRRule()
+    {
+        switch (this.mode)
+        {
+            case EventRecurrence.DAILY_MODE:
+                return "RRULE:FREQ=DAILY;INTERVAL="+interval+";";
+            case EventRecurrence.MINUTE_MODE:
+                return "RRULE:FREQ=MINUTELY;INTERVAL="+interval+";";
+            case EventRecurrence.YEAR_MODE:
+                return "RRULE:FREQ=YEARLY;INTERVAL="+interval+";";
+            case EventRecurrence.WEEK_MODE:
+                List<String> days = new ArrayList<>();
+                for (int i=0; i<7; i++)
+                {
+                    if ((weekdays & (1<<i)) != 0) days.add(DayOfWeek.of(i+1).toString().substring(0, 2));
+                }
+                return "RRULE:FREQ=WEEKLY;" + (days.isEmpty() ? "" : "BYDAY="+String.join(",", days)+";") +
+                        "INTERVAL="+interval+";";
+            case EventRecurrence.MONTH1_MODE:
+                return "RRULE:FREQ=MONTHLY;BYDAY="+nth+dayOfWeek.toString().substring(0, 2)+";INTERVAL="+interval+";";
+            case EventRecurrence.MONTH2_MODE:
+                return "RRULE:FREQ=MONTHLY;" + (dayOfMonth>0 ? "BYMONTHDAY="+dayOfMonth+";" : "") +
+                        "INTERVAL="+interval+";";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return a string describing the recurrence
+     */
+    @Override
+    public String toString()
+    {
+        return this.text;
+    }
+
+    /**
+     * Generated a string describing the recurrence settings of an event
+     */
+    private static String describe(int recurrence)
+    {
+        // useful string constants
+        String[] spellout = {"one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten"};
+        String[] prefixes = {"th", "st", "nd", "rd", "th", "th", "th", "th", "th", "th"};
+
+        StringBuilder str = new StringBuilder();
+        int mode = recurrence & 0b111;
+        int data = recurrence >> 3;
+
+        // no repeat
+        if (recurrence == 0)
+            return "once";
+
+        // every day
+        if ((mode == EventRecurrence.WEEK_MODE && data == 0b1111111)
+                || (mode == EventRecurrence.DAILY_MODE && data==1))
+            return "every day";
+
+        // on interval days
+        if (mode == EventRecurrence.DAILY_MODE)
+        {
+            if (data == 7)
+                return "every week";
+            return "every "+(data>spellout.length ? data : spellout[data-1])+" days";
+        }
+
+        // minute repeat
+        if (mode == EventRecurrence.MINUTE_MODE)
+        {
+            if (data%60 == 0 && data > 0)
+            {
+                int hours = data/60;
+                if (data == 60) return "every hour";
+                else return "every "+(hours<=spellout.length ? spellout[hours-1]:hours)+" hours";
+            }
+            else
+            {
+                return "every "+data+" minutes";
+            }
+        }
+
+        // yearly
+        if (mode == EventRecurrence.YEAR_MODE && data == 1)
+            return "every year";
+
+        // monthly on weekday
+        if (mode == EventRecurrence.MONTH1_MODE)
+        {
+            DayOfWeek dayOfWeek = DayOfWeek.of((data&0b111)==0 ? 1 : data&0b111);
+            int nth = (data>>3)&0b111;
+            int monthInterval = data>>6;
+            if (monthInterval>1)
+            {
+                return nth+prefixes[nth]+" " +
+                        dayOfWeek.getDisplayName(TextStyle.FULL, Locale.getDefault())+
+                        " of every " + monthInterval+prefixes[monthInterval%10]+" months";
+            }
+            else
+            {
+                return nth+prefixes[nth] + " " +
+                        dayOfWeek.getDisplayName(TextStyle.FULL, Locale.getDefault()) +
+                        " of every month";
+            }
+        }
+        // monthly on day of month
+        if (mode == EventRecurrence.MONTH2_MODE)
+        {
+            int dayOfMonth    = data&0b11111;
+            int monthInterval = data>>5;
+            if (monthInterval>1)
+            {
+                return "every " + (monthInterval > spellout.length ? monthInterval : spellout[monthInterval-1]) +
+                        " months" + (dayOfMonth>0 ? " on the "+dayOfMonth+prefixes[dayOfMonth%10]:"");
+            }
+            else
+            {
+                return "every month"+(dayOfMonth>0 ? " on the "+dayOfMonth+prefixes[dayOfMonth%10]:"");
+            }
+        }
+
+        // on certain weekday
+        if (mode == EventRecurrence.WEEK_MODE)
+        {
+            int weeks = data>>7;
+            data &= 0b1111111;
+            if (weeks>1)
+            {
+                str = new StringBuilder("every "+(weeks>spellout.length ? weeks+"":spellout[weeks-1])+" weeks on ");
+            }
+            else
+            {
+                str = new StringBuilder("weekly on ");
+            }
+            for(int j=0; data!=0; j++, data>>=1)
+            {
+                String full;
+                String narrow;
+                if ((data&0b1)==1)
+                {
+                    full   = DayOfWeek.of(j+1).getDisplayName(TextStyle.FULL, Locale.getDefault());
+                    narrow = DayOfWeek.of(j+1).getDisplayName(TextStyle.SHORT, Locale.getDefault());
+                    if (data==1)
+                        return str + full;
+                    str.append(narrow);
+                    if ((data>>1) != 0 )
+                        str.append(", ");
+                }
+            }
+        }
+        return str.toString();
+    }
+
+    /**
+     * Iterates the epoch seconds of an event's occurrences in the zone of the first occurrence.
+     * Minute interval rules are stepped arithmetically without allocating date-time objects.
+     */
+    public static final class OccurrenceIterator implements PrimitiveIterator.OfLong
+    {
+        private final RecurrenceRule rule;
+        private final ZonedDateTime first;
+        private ZonedDateTime cursor;
+        private LocalDateTime local;        // local date-time of the cursor, before resolving it in the zone
+        private long epochSecond;
+        private long index = 0;
+
+        private OccurrenceIterator(RecurrenceRule rule, ZonedDateTime first)
+        {
+            this.rule = rule;
+            this.first = first;
+            this.cursor = first;
+            this.local = first.toLocalDateTime();
+            this.epochSecond = first.toEpochSecond();
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return index == 0 || rule.repeats();
+        }
+
+        @Override
+        public long nextLong()
+        {
+            if (!this.hasNext()) throw new NoSuchElementException();
+            if (index > 0)
+            {
+                if (rule.mode == EventRecurrence.MINUTE_MODE)
+                {
+                    epochSecond += rule.interval*60L;
+                }
+                else if (rule.unit() != null)
+                {   // interval rules are computed from the first occurrence so they do not drift
+                    cursor = rule.next(first, index);
+                    epochSecond = cursor.toEpochSecond();
+                }
+                else
+                {
+                    local = rule.nextLocal(local);
+                    cursor = ZonedDateTime.ofLocal(local, first.getZone(), cursor.getOffset());
+                    epochSecond = cursor.toEpochSecond();
+                }
+            }
+            index++;
+            return epochSecond;
+        }
+
+        /**
+         * @return number of occurrences returned so far
+         */
+        public long getIndex()
+        {
+            return index;
+        }
+    }
+}
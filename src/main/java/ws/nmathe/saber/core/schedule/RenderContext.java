@@ -0,0 +1,150 @@
+package ws.nmathe.saber.core.schedule;
+
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * State shared by all event displays generated in one pass (ie. a timer refresh sweep).
+ * The current time is captured once when the context is created and each schedule's display
+ * settings are read from the database once, on first use. Formatters and zone display names
+ * do not depend on the pass and are shared by all contexts.
+ */
+public class RenderContext
+{
+    static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMM d");
+    private static final DateTimeFormatter CLOCK_24 = DateTimeFormatter.ofPattern("H:mm");
+    private static final DateTimeFormatter CLOCK_12 = DateTimeFormatter.ofPattern("h:mm a");
+
+    // zone display names: full english, short english, and short in the default locale
+    private static final Map<ZoneId, String[]> zoneNames = new ConcurrentHashMap<>();
+
+    private final ZonedDateTime now;
+    private final ZonedDateTime today;
+    private final Map<String, ScheduleSettings> schedules = new ConcurrentHashMap<>();
+
+    /**
+     * creates a context for the current time
+     */
+    public RenderContext()
+    {
+        this(ZonedDateTime.now());
+    }
+
+    RenderContext(ZonedDateTime now)
+    {
+        this.now = now;
+        this.today = now.truncatedTo(ChronoUnit.DAYS);
+    }
+
+    ZonedDateTime getNow()
+    {
+        return this.now;
+    }
+
+    Instant getInstant()
+    {
+        return this.now.toInstant();
+    }
+
+    /**
+     * @return the current time truncated to the start of the day
+     */
+    ZonedDateTime getToday()
+    {
+        return this.today;
+    }
+
+    /**
+     * @param channelId the schedule's channel ID
+     * @return the schedule's display settings, read on first use
+     */
+    ScheduleSettings getSchedule(String channelId)
+    {
+        return schedules.computeIfAbsent(channelId, id ->
+                new ScheduleSettings(Main.getDBDriver().getScheduleCollection().find(eq("_id", id)).first()));
+    }
+
+    static String getFullName(ZoneId zone)
+    {
+        return names(zone)[0];
+    }
+
+    static String getShortName(ZoneId zone)
+    {
+        return names(zone)[1];
+    }
+
+    static String getLocalShortName(ZoneId zone)
+    {
+        return names(zone)[2];
+    }
+
+    private static String[] names(ZoneId zone)
+    {
+        return zoneNames.computeIfAbsent(zone, z -> new String[]{
+                z.getDisplayName(TextStyle.FULL, Locale.ENGLISH),
+                z.getDisplayName(TextStyle.SHORT, Locale.ENGLISH),
+                z.getDisplayName(TextStyle.SHORT, Locale.getDefault())});
+    }
+
+    /**
+     * the display settings of a schedule
+     */
+    class ScheduleSettings
+    {
+        final ZoneId zone;
+        final String style;
+        final String clockFormat;
+        final DateTimeFormatter clock;
+        final boolean rsvpEnabled;
+        final Map<String, String> rsvpOptions;
+        private final List<ZoneId> altZones;
+        private final Map<ZoneId, List<ZoneId>> timeZones = new ConcurrentHashMap<>();
+
+        private ScheduleSettings(Document settings)
+        {
+            this.zone        = ScheduleManager.getTimeZone(settings);
+            this.style       = ScheduleManager.getStyle(settings);
+            this.clockFormat = ScheduleManager.getClockFormat(settings);
+            this.clock       = clockFormat.equals("24") ? CLOCK_24 : CLOCK_12;
+            this.rsvpEnabled = ScheduleManager.isRSVPEnabled(settings);
+            this.rsvpOptions = Collections.unmodifiableMap(ScheduleManager.getRSVPOptions(settings));
+            this.altZones    = ScheduleManager.getAltZones(settings);
+        }
+
+        boolean hasAltZones()
+        {
+            return !altZones.isEmpty();
+        }
+
+        /**
+         * @param primary the zone of the event
+         * @return the alternate zones and the primary zone ordered by their current offset,
+         *         empty if the schedule has no alternate zones
+         */
+        List<ZoneId> getTimeZones(ZoneId primary)
+        {
+            if (altZones.isEmpty()) return altZones;
+            return timeZones.computeIfAbsent(primary, key ->
+            {
+                Instant instant = getInstant();
+                List<ZoneId> zones = new ArrayList<>(altZones);
+                zones.add(key);
+                zones.sort((zoneId, t1) -> t1.getRules().getOffset(instant)
+                        .compareTo(zoneId.getRules().getOffset(instant)));
+                return Collections.unmodifiableList(zones);
+            });
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package ws.nmathe.saber.core.schedule;
+
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.Role;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+import static com.mongodb.client.model.Filters.or;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Synchronizes the membership of an event's RSVP group role with the group's RSVP list.
+ * Role assignments are queued with JDA rather than completed one at a time, allowing the requester
+ * to pipeline the requests through the guild's rate-limit bucket without holding a thread.
+ * The role is persisted on the event (under it's own key of rsvp_roles, which only the fanout writes) and reused
+ * for later announcements, so only members who have joined or left the group since the last fanout need to be updated.
+ * Announcements which mention a group's role (%{role group}) are sent from the fanout's completion consumer.
+ */
+class RoleFanout
+{
+    // maximum time to wait for role assignments before continuing with the announcement
+    private static final int TIME_BUDGET = 60;
+
+    // time to keep a role created for an event which was removed before the role was persisted
+    private static final int ORPHAN_LIFETIME = 5*60;
+
+    // used to enforce the time budget on in-flight fanouts
+    private static ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final Guild guild;
+    private final Role role;
+    private final Consumer<Role> onComplete;
+
+    private final AtomicInteger pending = new AtomicInteger(1); // hold one count until all requests are queued
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private final AtomicInteger failures = new AtomicInteger(0);
+
+    private RoleFanout(Guild guild, Role role, Consumer<Role> onComplete)
+    {
+        this.guild = guild;
+        this.role = role;
+        this.onComplete = onComplete;
+    }
+
+    /**
+     * retrieves (or creates) the RSVP group role for an event and synchronizes it's members with the
+     * group's RSVP list, the consumer is invoked once the fanout completes or the time budget elapses
+     * @param se the schedule entry
+     * @param group the rsvp group
+     * @param members the members of the rsvp group
+     * @param onComplete consumer to run with the synchronized role, or with null if the role is unavailable
+     */
+    static void spawn(ScheduleEntry se, String group, List<String> members, Consumer<Role> onComplete)
+    {
+        JDA jda = Main.getShardManager().getJDA(se.getGuildId());
+        Guild guild = jda==null ? null : jda.getGuildById(se.getGuildId());
+        if (guild == null)
+        {
+            onComplete.accept(null);
+            return;
+        }
+
+        String roleId = se.getRsvpRoles().get(group);
+        Role role = roleId==null ? null : guild.getRoleById(roleId);
+        if (role != null)
+        {
+            new RoleFanout(guild, role, onComplete).start(members);
+            return;
+        }
+
+        // create the event RSVP role and persist it to the event
+        guild.getController().createRole()
+                .setName(group)
+                .setMentionable(true)
+                .setColor(Color.ORANGE)
+                .queue(newRole ->
+                {
+                    // only the group's own key is written, and only if no other fanout has already
+                    // replaced the missing (or deleted) role
+                    String key = "rsvp_roles." + group;
+                    Bson unset = roleId==null ? exists(key, false) : or(exists(key, false), eq(key, roleId));
+                    long matched = Main.getDBDriver().getEventCollection()
+                            .updateOne(and(eq("_id", se.getId()), unset), set(key, newRole.getId()))
+                            .getMatchedCount();
+                    if (matched > 0)
+                    {
+                        synchronized (se.getRsvpRoles())
+                        {
+                            se.getRsvpRoles().put(group, newRole.getId());
+                        }
+                        new RoleFanout(guild, newRole, onComplete).start(members);
+                        return;
+                    }
+
+                    Document event = Main.getDBDriver().getEventCollection()
+                            .find(eq("_id", se.getId())).projection(include("rsvp_roles")).first();
+                    Object roles = event==null ? null : event.get("rsvp_roles");
+                    String existingId = roles instanceof Document ? ((Document) roles).getString(group) : null;
+                    Role existing = existingId==null ? null : guild.getRoleById(existingId);
+                    if (existing != null)
+                    {   // a concurrent fanout created the group's role first, use it in place of the duplicate
+                        newRole.delete().queue(null, failure -> {});
+                        synchronized (se.getRsvpRoles())
+                        {
+                            se.getRsvpRoles().put(group, existingId);
+                        }
+                        new RoleFanout(guild, existing, onComplete).start(members);
+                    }
+                    else
+                    {   // the event has since been removed, keep the role only long enough to be mentioned
+                        newRole.delete().queueAfter(ORPHAN_LIFETIME, TimeUnit.SECONDS, null, failure -> {});
+                        new RoleFanout(guild, newRole, onComplete).start(members);
+                    }
+                },
+                failure ->
+                {
+                    Logging.warn(RoleFanout.class,
+                            "Unable to create RSVP role for event ["+se.getId()+"]: " + failure.getMessage());
+                    onComplete.accept(null);
+                });
+    }
+
+    /**
+     * deletes the RSVP roles of an event
+     * @param guildId ID of the event's guild
+     * @param roles mapping of rsvp group to role ID
+     */
+    static void deleteRoles(String guildId, Map<String, String> roles)
+    {
+        if (roles == null || roles.isEmpty()) return;
+        JDA jda = Main.getShardManager().getJDA(guildId);
+        Guild guild = jda==null ? null : jda.getGuildById(guildId);
+        if (guild == null) return;
+
+        for (String roleId : roles.values())
+        {
+            Role role = guild.getRoleById(roleId);
+            if (role != null) role.delete().queue(null, failure -> {});
+        }
+    }
+
+    /**
+     * queues role additions for members missing the role and role removals for members no longer in the group
+     */
+    private void start(List<String> members)
+    {
+        Set<String> desired = new HashSet<>(members);
+
+        // remove the role from members who have since left the group
+        for (Member member : guild.getMembersWithRoles(role))
+        {
+            if (!desired.remove(member.getUser().getId()))
+            {
+                pending.incrementAndGet();
+                guild.getController().removeSingleRoleFromMember(member, role)
+                        .reason("member is no longer in the event's RSVP group")
+                        .queue(success -> countDown(), failure -> fail());
+            }
+        }
+
+        // add the role to members who have joined the group
+        for (String memberId : desired)
+        {
+            if (!memberId.matches("\\d+")) continue;
+            Member member = guild.getMemberById(memberId);
+            if (member == null) continue;
+
+            pending.incrementAndGet();
+            guild.getController().addSingleRoleToMember(member, role)
+                    .reason("dynamic RSVP role for event announcement")
+                    .queue(success -> countDown(), failure -> fail());
+        }
+
+        timeoutScheduler.schedule(() ->
+        {
+            if (pending.get() > 0)
+            {
+                Logging.warn(this.getClass(), "RSVP role fanout for \"" + role.getName() + "\" exceeded " +
+                        TIME_BUDGET + " seconds with " + pending.get() + " assignments pending");
+            }
+            finish();
+        }, TIME_BUDGET, TimeUnit.SECONDS);
+
+        countDown(); // release the count held while queueing
+    }
+
+    private void fail()
+    {
+        failures.incrementAndGet();
+        countDown();
+    }
+
+    private void countDown()
+    {
+        if (pending.decrementAndGet() == 0) finish();
+    }
+
+    /** runs the completion consumer exactly once */
+    private void finish()
+    {
+        if (!finished.compareAndSet(false, true)) return;
+        if (failures.get() > 0)
+        {
+            Logging.warn(this.getClass(), failures.get() + " role assignments failed for RSVP role \"" + role.getName() + "\"");
+        }
+        try
+        {
+            onComplete.accept(role);
+        }
+        catch (Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+    }
+}
@@ -5,17 +5,19 @@ import net.dv8tion.jda.core.entities.*;
 import net.dv8tion.jda.core.events.message.react.MessageReactionAddEvent;
 import org.bson.Document;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
+import ws.nmathe.saber.core.metrics.Metrics;
 import ws.nmathe.saber.utils.MessageUtilities;
 import ws.nmathe.saber.utils.ParsingUtilities;
 import ws.nmathe.saber.utils.Logging;
 
-import java.awt.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A ScheduleEntry object represents a currently scheduled entry is either waiting to start or has already started
@@ -24,6 +26,9 @@ import java.util.concurrent.TimeUnit;
  */
 public class ScheduleEntry
 {
+    // delimits the placeholder rsvp group role mentions (%{role group}) are rendered to until the role is ready
+    private static final String ROLE_PLACEHOLDER = "\u0000";
+
     // identifiers
     private Integer entryId;                      // 16 bit identifier
     private String msgId;
@@ -47,6 +52,7 @@ public class ScheduleEntry
     private Map<String, List<String>> rsvpMembers;
     private Map<String, Integer> rsvpLimits;
     private ZonedDateTime rsvpDeadline;
+    private Map<String, String> rsvpRoles;  // maps rsvp group to the group's role ID
 
     // urls
     private String titleUrl;
@@ -100,6 +106,7 @@ public class ScheduleEntry
         this.rsvpMembers  = new LinkedHashMap<>();
         this.rsvpLimits   = new LinkedHashMap<>();
         this.rsvpDeadline = null;
+        this.rsvpRoles    = new HashMap<>();
 
         // toggles
         this.quietStart  = false;
@@ -129,8 +136,18 @@ public class ScheduleEntry
      * Constructor for a fully initialized ScheduleEntry
      * @param entryDocument (Document) taken from the events collection in the database backing the bot
      */
-    @SuppressWarnings("unchecked")
     public ScheduleEntry(Document entryDocument)
+    {
+        this(entryDocument, Main.getScheduleManager().getTimeZone(entryDocument.getString("channelId")));
+    }
+
+    /**
+     * Constructor for a fully initialized ScheduleEntry, when the schedule's zone is already known
+     * @param entryDocument (Document) taken from the events collection in the database backing the bot
+     * @param zone the time zone of the event's schedule
+     */
+    @SuppressWarnings("unchecked")
+    public ScheduleEntry(Document entryDocument, ZoneId zone)
     {
         // identifiers
         this.entryId  = entryDocument.getInteger("_id");
@@ -139,9 +156,6 @@ public class ScheduleEntry
         this.guildId  = (String) entryDocument.get("guildId");
         this.googleId = (String) entryDocument.get("googleId");
 
-        // entry zone information
-        ZoneId zone = Main.getScheduleManager().getTimeZone(this.chanId);
-
         // main parameters
         this.title       = entryDocument.getString("title");
         this.start       = ZonedDateTime.ofInstant((entryDocument.getDate("start")).toInstant(), zone);
@@ -180,6 +194,8 @@ public class ScheduleEntry
                 new LinkedHashMap<>() : entryDocument.get("rsvp_limits"));
         this.rsvpDeadline = entryDocument.get("deadline") == null ?
                 null : ZonedDateTime.ofInstant(entryDocument.getDate("deadline").toInstant(), zone);
+        this.rsvpRoles = entryDocument.get("rsvp_roles") == null ?
+                new HashMap<>() : (Map<String, String>) entryDocument.get("rsvp_roles");
 
         // toggles
         this.quietStart = (boolean) (entryDocument.get("start_disabled") != null ?
@@ -243,7 +259,7 @@ public class ScheduleEntry
         // send announcements
         expired.forEach(key->
         {
-            String message = ParsingUtilities.processText(this.aMessages.get(key), this, true);
+            Announcement message = this.renderAnnouncement(this.aMessages.get(key));
             String target = this.aTargets.get(key);
             announcementHelper(msg, message, target);
             Logging.event(this.getClass(), "Sent special announcement for event " +
@@ -273,7 +289,7 @@ public class ScheduleEntry
         if(!this.quietRemind)
         {
             // parse message and get the target channels
-            String remindMsg = ParsingUtilities.processText(Main.getScheduleManager().getReminderFormat(this.chanId), this, true);
+            Announcement remindMsg = this.renderAnnouncement(Main.getScheduleManager().getReminderFormat(this.chanId));
             String identifier = Main.getScheduleManager().getReminderChan(this.chanId);
             if(identifier != null)
             {
@@ -290,9 +306,10 @@ public class ScheduleEntry
     {
         Message msg = this.getMessageObject();
         if( msg == null ) return;
+        Main.getEntryManager().getLatenessMonitor().record(this.guildId, "start", this.start);
 
         // create start message and grab identifier before modifying entry
-        String startMsg = ParsingUtilities.processText(Main.getScheduleManager().getStartAnnounceFormat(this.chanId), this, true);
+        Announcement startMsg = this.renderAnnouncement(Main.getScheduleManager().getStartAnnounceFormat(this.chanId));
         String identifier = Main.getScheduleManager().getStartAnnounceChan(this.chanId);
 
         // do database updates before sending announcement
@@ -328,6 +345,7 @@ public class ScheduleEntry
             }
             else
             {
+                Metrics.ANNOUNCEMENTS_SKIPPED.inc("start");
                 Logging.warn(this.getClass(), "Late event start: "+this.title +" ["+this.entryId+"] "+this.start);
             }
         }
@@ -340,10 +358,10 @@ public class ScheduleEntry
     {
         Message msg = this.getMessageObject();
         if(msg == null) return;
+        Main.getEntryManager().getLatenessMonitor().record(this.guildId, "end", this.end);
 
         // create the announcement message before modifying event
-        String endMsg = ParsingUtilities.processText(Main.getScheduleManager()
-                .getEndAnnounceFormat(this.chanId), this, true);
+        Announcement endMsg = this.renderAnnouncement(Main.getScheduleManager().getEndAnnounceFormat(this.chanId));
         String identifier = Main.getScheduleManager().getEndAnnounceChan(this.chanId);
 
         // attempt to adjust the database entry per repeat settings
@@ -366,6 +384,7 @@ public class ScheduleEntry
             }
             else
             {
+                Metrics.ANNOUNCEMENTS_SKIPPED.inc("end");
                 Logging.warn(this.getClass(), "Late event end: "+this.title +" ["+this.entryId+"] "+this.end);
             }
         }
@@ -389,7 +408,7 @@ public class ScheduleEntry
             if(expire != null && expire.isBefore(this.getStart()))
             {
                 Main.getEntryManager().removeEntry(this.entryId);
-                MessageUtilities.deleteMsg(msg, null);
+                MessageUtilities.deleteMsg(msg, null, Priority.MAINTENANCE);
                 return true;
             }
 
@@ -408,7 +427,7 @@ public class ScheduleEntry
         }
         else // otherwise remove entry and delete the message
         {
-            MessageUtilities.deleteMsg(msg, null);
+            MessageUtilities.deleteMsg(msg, null, Priority.MAINTENANCE);
             int count = 15;
             while (!Main.getEntryManager().removeEntry(this.entryId)
                     && (count>0)) {count--;}
@@ -433,7 +452,7 @@ public class ScheduleEntry
                 TextChannel channel = message.getGuild().getTextChannelById(targetIdentifier);
                 if(channel != null)
                 {
-                    MessageUtilities.sendMsg(content, channel, null);
+                    MessageUtilities.sendMsg(content, channel, null, Priority.ANNOUNCEMENT);
                     success = true;
                 }
             }
@@ -447,7 +466,7 @@ public class ScheduleEntry
             List<TextChannel> channels = message.getGuild().getTextChannelsByName(targetIdentifier, true);
             for( TextChannel chan : channels )
             {
-                MessageUtilities.sendMsg(content, chan, null);
+                MessageUtilities.sendMsg(content, chan, null, Priority.ANNOUNCEMENT);
             }
         }
     }
@@ -458,47 +477,96 @@ public class ScheduleEntry
      * the entry is scheduled to begin/end
      */
     void reloadDisplay()
+    {
+        this.reloadDisplay(new RenderContext());
+    }
+
+    /**
+     * reloads the displayed Message using a render context shared with other events
+     */
+    void reloadDisplay(RenderContext ctx)
     {
         Message msg = this.getMessageObject();
         if (msg == null) return;
-        MessageUtilities.editMsg(MessageGenerator.generate(this), msg, null);
+        MessageUtilities.editMsg(MessageGenerator.generate(this, ctx), msg, null, Priority.REFRESH);
     }
 
 
     /**
-     * generates a temporary RSVP group role for dynamic user mentioning
-     * the role will last for some time before being removed
-     * @param group the rsvp group
-     * @return the newly created Role
+     * renders an announcement format, each rsvp group role mention (%{role group}) is rendered to a placeholder
+     * which is filled in once the group's role has been synchronized with the group's current members
+     * @param format the announcement format
+     * @return the rendered announcement
      */
-    public Role spawnRole(String group)
+    private Announcement renderAnnouncement(String format)
     {
-        List<String> members = this.rsvpMembers.get(group);
-        JDA jda = Main.getShardManager().getJDA(this.guildId);
-        Guild guild = jda.getGuildById(guildId);
-
-        // create the event RSVP role
-        Role role = guild.getController().createRole()
-                .setName(group)
-                .setMentionable(true)
-                .setColor(Color.ORANGE)
-                //.setColor((int) (Math.random()*Integer.MAX_VALUE+1)) // use a random color
-                .complete();
-
-        // add all RSVP'ed members to the role
-        members.forEach(memberId ->
+        Map<String, List<String>> roles = new LinkedHashMap<>();
+        Map<String, String>[] options = new Map[1]; // the schedule's rsvp options, read only if a role is mentioned
+        String content = ParsingUtilities.processText(format, this, true,
+                Main.getScheduleManager().getClockFormat(this.chanId), group ->
+                {
+                    if (options[0] == null) options[0] = Main.getScheduleManager().getRSVPOptions(this.chanId);
+                    if (!options[0].containsValue(group)) return null;
+                    if (!roles.containsKey(group))
+                    {   // members are taken now, as the event's rsvp lists may be cleared before the announcement is sent
+                        roles.put(group, this.getRsvpMembersOfType(group));
+                    }
+                    return placeholder(new ArrayList<>(roles.keySet()).indexOf(group));
+                });
+        return new Announcement(content, roles);
+    }
+
+    /**
+     * @return the placeholder a role mention is rendered to, the placeholder holds the index of the rsvp group
+     *         rather than the group's name so that no characters of the name are parsed as format tokens
+     */
+    private static String placeholder(int index)
+    {
+        return ROLE_PLACEHOLDER + index + ROLE_PLACEHOLDER;
+    }
+
+    /**
+     * sends a rendered announcement, if the announcement mentions rsvp group roles it is sent once the
+     * roles' members have been assigned (or the role fanout's time budget has elapsed)
+     */
+    private void announcementHelper(Message message, Announcement announcement, String targetIdentifier)
+    {
+        if (announcement.roles.isEmpty())
+        {
+            this.announcementHelper(message, announcement.content, targetIdentifier);
+            return;
+        }
+
+        Map<String, String> mentions = new ConcurrentHashMap<>();
+        AtomicInteger remaining = new AtomicInteger(announcement.roles.size());
+        announcement.roles.forEach((group, members) -> RoleFanout.spawn(this, group, members, role ->
         {
-            if (memberId.matches("\\d+"))
+            if (role != null) mentions.put(group, role.getAsMention());
+            if (remaining.decrementAndGet() > 0) return;
+
+            String content = announcement.content;
+            int index = 0;
+            for (String key : announcement.roles.keySet())
             {
-                Member member = guild.getMemberById(memberId);
-                guild.getController().addSingleRoleToMember(member, role)
-                        .reason("dynamic RSVP role for event announcement").complete();
+                content = content.replace(placeholder(index++), mentions.getOrDefault(key, ""));
             }
-        });
+            this.announcementHelper(message, content, targetIdentifier);
+        }));
+    }
+
+    /**
+     * an announcement's text, and the members of each rsvp group whose role the announcement mentions
+     */
+    private static class Announcement
+    {
+        final String content;
+        final Map<String, List<String>> roles;
 
-        // automatically remove the role after 5 minutes
-        role.delete().queueAfter(60*5, TimeUnit.SECONDS);
-        return role;
+        Announcement(String content, Map<String, List<String>> roles)
+        {
+            this.content = content;
+            this.roles = roles;
+        }
     }
 
     /**
@@ -558,7 +626,7 @@ public class ScheduleEntry
                     if (Main.getScheduleManager().isRSVPConfirmationsEnabled(chanId))
                     {
                         String content = "You have rescinded your RSVP(s) for **" + this.getTitle() + "**";
-                        MessageUtilities.sendPrivateMsg(content, event.getUser(), null);
+                        MessageUtilities.sendPrivateMsg(content, event.getUser(), null, Priority.RSVP);
                     }
 
                     // log the rsvp action
@@ -566,10 +634,10 @@ public class ScheduleEntry
                     {
                         String content = "<@" + event.getUser().getId() + "> has rescinded their RSVP(s) for **" +
                                 this.getTitle() + "** - :id: **" + ParsingUtilities.intToEncodedID(this.getId()) + "**";
-                        MessageUtilities.sendMsg(content, event.getJDA().getTextChannelById(logging), null);
+                        MessageUtilities.sendMsg(content, event.getJDA().getTextChannelById(logging), null, Priority.RSVP);
                     }
 
-                    Main.getEntryManager().updateEntry(this, false);
+                    Main.getEntryManager().updateEntry(this, false, Priority.RSVP);
                 }
             }
             else
@@ -611,7 +679,7 @@ public class ScheduleEntry
                         {
                             String content = "You " + (hasChangedRSVP ? "have changed your RSVP to":"have RSVPed") +
                                     " ``" + name + "`` for **" + this.getTitle() + "**";
-                            MessageUtilities.sendPrivateMsg(content, event.getUser(), null);
+                            MessageUtilities.sendPrivateMsg(content, event.getUser(), null, Priority.RSVP);
                         }
 
                         // log the rsvp action
@@ -620,10 +688,10 @@ public class ScheduleEntry
                             String content = "<@" + event.getUser().getId() + "> " +
                                     (hasChangedRSVP ? "has changed their RSVP to":"has RSVPed") +" ``" + name + "`` for **" +
                                     this.getTitle() + "** - :id: **" + ParsingUtilities.intToEncodedID(this.getId()) + "**";
-                            MessageUtilities.sendMsg(content, event.getJDA().getTextChannelById(logging), null);
+                            MessageUtilities.sendMsg(content, event.getJDA().getTextChannelById(logging), null, Priority.RSVP);
                         }
 
-                        Main.getEntryManager().updateEntry(this, false);
+                        Main.getEntryManager().updateEntry(this, false, Priority.RSVP);
                     }
                 }
             }
@@ -642,17 +710,10 @@ public class ScheduleEntry
     {
         ZonedDateTime now = ZonedDateTime.now();
 
-        // update to next occurrence
-        this.start = this.recurrence.next(this.start);
-        this.end   = this.recurrence.next(this.end);
-
-        // keep updating the date times until the next
-        // occurrence is in the future
-        while (this.start.isBefore(now))
-        {
-            this.start = this.recurrence.next(this.start);
-            this.end   = this.recurrence.next(this.end);
-        }
+        // advance to the first occurrence which is not in the past
+        long steps = this.recurrence.stepsUntil(this.start, now);
+        this.start = this.recurrence.next(this.start, steps);
+        this.end   = this.recurrence.next(this.end, steps);
         return this;
     }
 
@@ -807,6 +868,14 @@ public class ScheduleEntry
         return new HashMap<>(this.rsvpMembers);
     }
 
+    /**
+     * retrieves the mapping of rsvp groups to their persistent role IDs
+     */
+    public Map<String, String> getRsvpRoles()
+    {
+        return this.rsvpRoles;
+    }
+
     /**
      * retrieves full map of rsvp limits
      */
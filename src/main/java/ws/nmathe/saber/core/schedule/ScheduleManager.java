@@ -1,15 +1,18 @@
 package ws.nmathe.saber.core.schedule;
 
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
 import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.Permission;
 import net.dv8tion.jda.core.entities.Guild;
-import net.dv8tion.jda.core.entities.Message;
-import net.dv8tion.jda.core.entities.MessageChannel;
 import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.exceptions.PermissionException;
 import org.bson.Document;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.commands.CommandContext;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
 import ws.nmathe.saber.utils.Logging;
+import ws.nmathe.saber.utils.MessageUtilities;
 
 import java.time.*;
 import java.time.temporal.ChronoUnit;
@@ -22,6 +25,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
 import static com.mongodb.client.model.Projections.fields;
 import static com.mongodb.client.model.Projections.include;
 import static com.mongodb.client.model.Updates.set;
@@ -32,6 +36,7 @@ import static com.mongodb.client.model.Updates.set;
 public class ScheduleManager
 {
     private Set<String> locks = new HashSet<>(); // locks channels from running multiple sorts simultaneously
+    private ScheduleRerenderer rerenderer = new ScheduleRerenderer(); // redraws schedules after config changes
 
     public void initScheduleSync()
     {
@@ -108,6 +113,7 @@ public class ScheduleManager
                         .append("rsvp_options", default_rsvp);
 
         Main.getDBDriver().getScheduleCollection().insertOne(schedule);
+        Main.getDBDriver().getCounters().incSchedules(gId, 1);
     }
 
 
@@ -172,6 +178,7 @@ public class ScheduleManager
                         .append("rsvp_options", default_rsvp);
 
         Main.getDBDriver().getScheduleCollection().insertOne(schedule);
+        Main.getDBDriver().getCounters().incSchedules(channel.getGuild().getId(), 1);
     }
 
     /**
@@ -201,8 +208,22 @@ public class ScheduleManager
             Logging.exception(this.getClass(), e);
         }
 
-        Main.getDBDriver().getEventCollection().deleteMany(eq("channelId", cId));
-        Main.getDBDriver().getScheduleCollection().deleteOne(eq("_id", cId));
+        rerenderer.cancel(cId);
+        String guildId = doc.getString("guildId");
+        Main.getEntryManager().removeRolesOf(eq("channelId", cId));
+        long events = Main.getDBDriver().getEventCollection().deleteMany(eq("channelId", cId)).getDeletedCount();
+        long schedules = Main.getDBDriver().getScheduleCollection().deleteOne(eq("_id", cId)).getDeletedCount();
+        Main.getDBDriver().getCounters().incEvents(guildId, -events);
+        Main.getDBDriver().getCounters().incSchedules(guildId, -schedules);
+        Main.getEntryManager().getListingCache().invalidate(guildId);
+    }
+
+    /**
+     * @return the engine which redraws a schedule's events after a configuration change
+     */
+    public ScheduleRerenderer getRerenderer()
+    {
+        return this.rerenderer;
     }
 
     /**
@@ -223,15 +244,10 @@ public class ScheduleManager
      */
     public boolean isLimitReached(String gId)
     {
-        long count = Main.getDBDriver().getScheduleCollection().count(eq("guildId",gId));
+        long count = Main.getDBDriver().getCounters().getSchedules(gId);
         return Main.getBotSettingsManager().getMaxSchedules() < count;
     }
 
-    private long getScheduleSize(String cId)
-    {
-        return Main.getDBDriver().getScheduleCollection().count(eq("channelId",cId));
-    }
-
     /**
      * check to see if the channel is locked
      * @param cId (String) channel ID
@@ -268,13 +284,25 @@ public class ScheduleManager
 
     /**
      * Reorders the schedule so that entries are displayed by start datetime ascending order in
-     * the discord schedule channel
+     * the discord schedule channel.
+     * Messages are ordered by their snowflake IDs (which encode their creation time), so no messages
+     * are fetched. The event at each position is moved onto the message at that position, the moves
+     * are written in one bulk write, and only the messages which received a different event are redrawn.
      * @param cId schedule ID
      * @param reverseOrder (boolean) whether or not to reverse the sort order
      */
     public void sortSchedule(String cId, boolean reverseOrder)
     {
-        if(this.getScheduleSize(cId) > 15) return;
+        this.sortSchedule(cId, reverseOrder, null);
+    }
+
+    /**
+     * version used by the sort command, which reports the sort's progress and stops before any events
+     * are moved if the command is cancelled
+     * @param command the invocation of the sort command, may be null
+     */
+    public void sortSchedule(String cId, boolean reverseOrder, CommandContext command)
+    {
         if(this.isLocked(cId)) return;
 
         this.lock(cId); // lock the channel
@@ -289,60 +317,69 @@ public class ScheduleManager
                     .projection(fields(include("guildId")))
                     .first();
             JDA jda = Main.getShardManager().getJDA(doc.getString("guildId"));
-
-            // find the message channel and send the 'is typing' while processing
-            MessageChannel chan = jda.getTextChannelById(cId);
-            chan.sendTyping().queue();
+            TextChannel chan = jda.getTextChannelById(cId);
+            if (chan == null) return;
 
             int sortOrder = 1;
             if(reverseOrder)
                 sortOrder = -1;
 
-            LinkedList<ScheduleEntry> unsortedEntries = new LinkedList<>();
+            // event IDs in display order and their current message IDs
+            List<Integer> entryIds = new ArrayList<>();
+            List<String> messageIds = new ArrayList<>();
             Main.getDBDriver().getEventCollection().find(eq("channelId", cId))
-                    .sort(new Document("start", sortOrder))
-                    .forEach((Consumer<? super Document>) document -> unsortedEntries.add(new ScheduleEntry(document)));
-
-            // selection sort the entries by timestamp
-            while (!unsortedEntries.isEmpty())
+                    .projection(fields(include("_id", "messageId")))
+                    .sort(new Document("start", sortOrder).append("_id", 1))
+                    .forEach((Consumer<? super Document>) document ->
+                    {
+                        String messageId = document.getString("messageId");
+                        if (messageId == null) return;
+                        entryIds.add(document.getInteger("_id"));
+                        messageIds.add(messageId);
+                    });
+
+            // messages from oldest to newest, the oldest message is displayed first
+            List<String> positions = new ArrayList<>(messageIds);
+            positions.sort(Comparator.comparingLong(Long::parseUnsignedLong));
+
+            // move each event that is not already on the message at it's position
+            List<UpdateOneModel<Document>> moves = new ArrayList<>();
+            Map<Integer, String> moved = new HashMap<>();
+            for (int i=0; i<entryIds.size(); i++)
             {
-                chan.sendTyping().queue();   // continue to send 'is typing'
-
-                ScheduleEntry top = unsortedEntries.pop();
-                ScheduleEntry min = top;
-                for (ScheduleEntry cur : unsortedEntries)
+                if (!positions.get(i).equals(messageIds.get(i)))
                 {
-                    Message minMsg = min.getMessageObject();
-                    Message topMsg = cur.getMessageObject();
-                    if(minMsg!=null && topMsg!=null)
+                    moves.add(new UpdateOneModel<>(eq("_id", entryIds.get(i)), set("messageId", positions.get(i))));
+                    moved.put(entryIds.get(i), positions.get(i));
+                }
+            }
+            if (moves.isEmpty()) return;
+
+            // once the events are moved their messages must be redrawn, so this is the last point to stop at
+            if (command != null && command.isCancelled()) return;
+
+            chan.sendTyping().queue();
+            Main.getDBDriver().getEventCollection().bulkWrite(moves, new BulkWriteOptions().ordered(false));
+            Main.getEntryManager().getListingCache().invalidate(doc.getString("guildId"));
+
+            // redraw the messages which now display a different event
+            RenderContext ctx = new RenderContext();
+            ZoneId zone = ctx.getSchedule(cId).zone;
+            int[] redrawn = {0};
+            Main.getDBDriver().getEventCollection().find(in("_id", moved.keySet()))
+                    .forEach((Consumer<? super Document>) document ->
                     {
-                        OffsetDateTime a = minMsg.getCreationTime();
-                        OffsetDateTime b = topMsg.getCreationTime();
-                        if (a.isAfter(b))
+                        // a deleted message is left for the pruner to clean up
+                        ScheduleEntry se = new ScheduleEntry(document, zone);
+                        MessageUtilities.editMsgBlocking(MessageGenerator.generate(se, ctx), chan,
+                                moved.get(se.getId()), Priority.MAINTENANCE);
+
+                        redrawn[0]++;
+                        if (command != null)
                         {
-                            min = cur;
+                            command.progress("Sorting <#" + cId + "> . . . " + redrawn[0] + "/" + moved.size());
                         }
-                    }
-
-                }
-                // swap messages and update db
-                if(!(min==top))
-                {
-                    Message tmp = top.getMessageObject();
-                    top.setMessageObject(min.getMessageObject());
-                    Main.getDBDriver().getEventCollection().updateOne(
-                            eq("_id", top.getId()),
-                            new Document("$set", new Document("messageId", min.getMessageObject().getId())));
-
-                    min.setMessageObject(tmp);
-                    Main.getDBDriver().getEventCollection().updateOne(
-                            eq("_id", min.getId()),
-                            new Document("$set", new Document("messageId", tmp.getId())));
-                }
-
-                // reload display
-                top.reloadDisplay();
-            }
+                    });
         }
         catch(PermissionException e)
         {
@@ -369,6 +406,14 @@ public class ScheduleManager
     public boolean isRSVPEnabled(String cId)
     {
         Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        return isRSVPEnabled(settings);
+    }
+
+    /**
+     * @param settings the schedule's settings document, may be null
+     */
+    public static boolean isRSVPEnabled(Document settings)
+    {
         if( settings == null )
         {
             return false;
@@ -518,6 +563,14 @@ public class ScheduleManager
     public String getClockFormat(String cId)
     {
         Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        return getClockFormat(settings);
+    }
+
+    /**
+     * @param settings the schedule's settings document, may be null
+     */
+    static String getClockFormat(Document settings)
+    {
         if( settings == null )
         {
             return Main.getBotSettingsManager().getClockFormat();
@@ -533,6 +586,14 @@ public class ScheduleManager
     public ZoneId getTimeZone(String cId)
     {
         Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        return getTimeZone(settings);
+    }
+
+    /**
+     * @param settings the schedule's settings document, may be null
+     */
+    public static ZoneId getTimeZone(Document settings)
+    {
         if( settings == null )
         {
             return ZoneId.of(Main.getBotSettingsManager().getTimeZone());
@@ -548,6 +609,14 @@ public class ScheduleManager
     public List<ZoneId> getAltZones(String cId)
     {
         Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        return getAltZones(settings);
+    }
+
+    /**
+     * @param settings the schedule's settings document, may be null
+     */
+    static List<ZoneId> getAltZones(Document settings)
+    {
         if(settings == null)
         {
             return new ArrayList<>();
@@ -647,6 +716,14 @@ public class ScheduleManager
     public String getStyle(String cId)
     {
         Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        return getStyle(settings);
+    }
+
+    /**
+     * @param settings the schedule's settings document, may be null
+     */
+    static String getStyle(Document settings)
+    {
         if(settings == null)
         {
             return "FULL";
@@ -711,6 +788,14 @@ public class ScheduleManager
     public Map<String, String> getRSVPOptions(String cId)
     {
         Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        return getRSVPOptions(settings);
+    }
+
+    /**
+     * @param settings the schedule's settings document, may be null
+     */
+    public static Map<String, String> getRSVPOptions(Document settings)
+    {
         if(settings == null)
         {
             return new HashMap<>();
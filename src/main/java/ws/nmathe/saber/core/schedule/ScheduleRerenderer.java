@@ -0,0 +1,296 @@
+package ws.nmathe.saber.core.schedule;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import net.dv8tion.jda.core.MessageBuilder;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.MessageChannel;
+import net.dv8tion.jda.core.entities.TextChannel;
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
+import ws.nmathe.saber.utils.Logging;
+import ws.nmathe.saber.utils.MessageUtilities;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Projections.exclude;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Redraws every event of a schedule after a change to the schedule's configuration.
+ * A job reads the schedule's events in one query, corrects their end dates in memory and writes the
+ * corrections in one bulk write, then edits the event messages one at a time, spaced to the channel's
+ * edit bucket. Each event is read again just before it is drawn, so the job never overwrites a newer edit. Progress of long jobs is reported in the channel the change was made from.
+ * Submitting a job for a schedule cancels the schedule's running job, which stops before it's next edit,
+ * and the new job takes over the work the cancelled job may have left undone.
+ */
+public class ScheduleRerenderer
+{
+    // milliseconds between edits (discord allows 5 edits per 5 seconds per channel)
+    private static final long EDIT_INTERVAL = 1200;
+
+    // jobs with more events than this report their progress, at most once per PROGRESS_INTERVAL milliseconds
+    private static final int PROGRESS_THRESHOLD = 10;
+    private static final long PROGRESS_INTERVAL = 5000;
+
+    // age after which a job creates a new render context
+    private static final long CONTEXT_AGE = 30*1000;
+
+    /** what to do with the rsvp reactions of each event message, RESET and ADD both reconcile to the rsvp options */
+    public enum Reactions { KEEP, ADD, RESET, CLEAR }
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * redraws the events of a schedule, leaving their reactions
+     * @param channelId the schedule's channel ID
+     * @param control the channel to report progress to
+     */
+    public void submit(String channelId, MessageChannel control)
+    {
+        this.submit(channelId, control, false, Reactions.KEEP);
+    }
+
+    /**
+     * redraws the events of a schedule, superseding any job running for the schedule
+     * @param channelId the schedule's channel ID
+     * @param control the channel to report progress to
+     * @param correctEnds whether to move ends that fall before their start to the next day (after a zone change)
+     * @param reactions what to do with the rsvp reactions of each event
+     */
+    public void submit(String channelId, MessageChannel control, boolean correctEnds, Reactions reactions)
+    {
+        Job[] superseded = new Job[1];
+        Job job = jobs.compute(channelId, (id, previous) ->
+        {
+            superseded[0] = previous;
+            if (previous == null || previous.done.getCount() == 0)
+            {
+                return new Job(id, control, correctEnds, reactions);
+            }
+            // the cancelled job may not have reached every event, so this job does it's work as well
+            return new Job(id, control, correctEnds || previous.correctEnds, merge(previous.reactions, reactions));
+        });
+        Job previous = superseded[0];
+        if (previous != null) previous.cancelled = true;
+
+        executor.submit(() ->
+        {
+            try
+            {
+                // the superseded job must stop before this job edits the same messages
+                if (previous != null) previous.done.await();
+                job.run();
+            }
+            catch (InterruptedException ignored)
+            {
+            }
+            catch (Exception e)
+            {
+                Logging.exception(this.getClass(), e);
+            }
+            finally
+            {
+                jobs.remove(channelId, job);
+                job.done.countDown();
+            }
+        });
+    }
+
+    /**
+     * @return the reaction handling of a job which supersedes a job with the previous handling,
+     *         the newer handling is taken unless it leaves the reactions as they are
+     */
+    private static Reactions merge(Reactions previous, Reactions next)
+    {
+        return next == Reactions.KEEP ? previous : next;
+    }
+
+    /**
+     * cancels the job running for a schedule, if any
+     * @param channelId the schedule's channel ID
+     */
+    public void cancel(String channelId)
+    {
+        Job job = jobs.get(channelId);
+        if (job != null) job.cancelled = true;
+    }
+
+    /**
+     * @return true if a job is running for the schedule
+     */
+    public boolean isRunning(String channelId)
+    {
+        return jobs.containsKey(channelId);
+    }
+
+    private static class Job
+    {
+        final String channelId;
+        final MessageChannel control;
+        final boolean correctEnds;
+        final Reactions reactions;
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean cancelled = false;
+
+        private Message progress;
+        private long lastReport;
+        private int failed;                 // events whose message could not be edited
+
+        Job(String channelId, MessageChannel control, boolean correctEnds, Reactions reactions)
+        {
+            this.channelId = channelId;
+            this.control = control;
+            this.correctEnds = correctEnds;
+            this.reactions = reactions;
+        }
+
+        void run() throws InterruptedException
+        {
+            TextChannel channel = control.getJDA().getTextChannelById(channelId);
+            if (channel == null || cancelled) return;
+
+            RenderContext ctx = new RenderContext();
+            long contextTime = System.currentTimeMillis();
+            String clearEmoji = Main.getScheduleManager().getRSVPClear(channelId);
+
+            // events are read again before they are drawn, so only their IDs are needed unless ends are corrected
+            List<Document> documents = Main.getDBDriver().getEventCollection()
+                    .find(eq("channelId", channelId))
+                    .projection(correctEnds ? exclude(RSVPIndex.FIELD) : include("_id"))
+                    .into(new ArrayList<>());
+
+            if (correctEnds) this.correctEnds(documents, ctx.getSchedule(channelId));
+
+            int total = documents.size();
+            if (total > PROGRESS_THRESHOLD)
+            {
+                progress = MessageUtilities.sendMsg(new MessageBuilder()
+                        .append(this.status("Updating", 0, total)).build(), control);
+                lastReport = System.currentTimeMillis();
+            }
+
+            for (int i=0; i<total; i++)
+            {
+                if (cancelled)
+                {
+                    this.report("Stopped updating the events on <#" + channelId + "> at " + i + "/" + total +
+                            ", a newer change to the schedule replaced it.");
+                    return;
+                }
+
+                // the render context holds the current time, so is renewed as the job runs
+                if (System.currentTimeMillis() - contextTime > CONTEXT_AGE)
+                {
+                    ctx = new RenderContext();
+                    contextTime = System.currentTimeMillis();
+                }
+
+                try
+                {
+                    if (!this.redraw(channel, documents.get(i).getInteger("_id"), ctx, clearEmoji)) continue;
+                }
+                catch (Exception e)
+                {   // one event failing to draw does not stop the job
+                    Logging.exception(this.getClass(), e);
+                    failed++;
+                }
+
+                if (progress != null && System.currentTimeMillis() - lastReport > PROGRESS_INTERVAL)
+                {
+                    this.report(this.status("Updating", i+1, total));
+                    lastReport = System.currentTimeMillis();
+                }
+                Thread.sleep(EDIT_INTERVAL);
+            }
+            this.report("Updated the " + (total-failed) + " events on <#" + channelId + ">" +
+                    (failed > 0 ? ", " + failed + " events could not be updated." : "."));
+        }
+
+        /**
+         * reads an event and edits it's message, the event is read just before it is drawn so that
+         * an edit made to the event since the job started is not overwritten
+         * @return false if the event was removed, moved, or has no message, and so was not edited
+         */
+        private boolean redraw(TextChannel channel, Integer entryId, RenderContext ctx, String clearEmoji)
+        {
+            Document document = Main.getDBDriver().getEventCollection()
+                    .find(eq("_id", entryId))
+                    .projection(exclude(RSVPIndex.FIELD))
+                    .first();
+            if (document == null || !channelId.equals(document.getString("channelId"))) return false;
+
+            String messageId = document.getString("messageId");
+            if (messageId == null) return false;
+
+            RenderContext.ScheduleSettings settings = ctx.getSchedule(channelId);
+            ScheduleEntry se = new ScheduleEntry(document, settings.zone);
+            Message message = MessageUtilities.editMsgBlocking(MessageGenerator.generate(se, ctx),
+                    channel, messageId, Priority.MAINTENANCE);
+            if (message == null) failed++;  // the message was deleted or the bot may no longer edit in the channel
+            else this.react(message, se, settings, clearEmoji);
+            return true;
+        }
+
+        /**
+         * moves ends which fall before their start to the following day, in memory and in one bulk write
+         */
+        private void correctEnds(List<Document> documents, RenderContext.ScheduleSettings settings)
+        {
+            List<UpdateOneModel<Document>> updates = new ArrayList<>();
+            for (Document document : documents)
+            {
+                ScheduleEntry se = new ScheduleEntry(document, settings.zone);
+                if (se.getStart().isAfter(se.getEnd()))
+                {
+                    Date end = Date.from(se.getEnd().plusDays(1).toInstant());
+                    document.put("end", end);
+                    updates.add(new UpdateOneModel<>(eq("_id", se.getId()), set("end", end)));
+                }
+            }
+            if (!updates.isEmpty())
+            {
+                Main.getDBDriver().getEventCollection().bulkWrite(updates, new BulkWriteOptions().ordered(false));
+            }
+        }
+
+        private void react(Message message, ScheduleEntry se, RenderContext.ScheduleSettings settings, String clearEmoji)
+        {
+            switch (reactions)
+            {
+                case CLEAR:
+                    MessageUtilities.clearReactions(message, Priority.MAINTENANCE);
+                    break;
+                case RESET:
+                case ADD:
+                    Main.getEntryManager().reconcileRSVPReactions(settings.rsvpOptions, clearEmoji, message, se);
+                    break;
+            }
+        }
+
+        private String status(String verb, int count, int total)
+        {
+            return verb + " the events on <#" + channelId + "> . . . " + count + "/" + total;
+        }
+
+        /**
+         * edits the progress message, if the job reports progress
+         */
+        private void report(String content)
+        {
+            if (progress == null) return;
+            MessageUtilities.editMsg(new MessageBuilder().append(content).build(), progress, null, Priority.MAINTENANCE);
+        }
+    }
+}
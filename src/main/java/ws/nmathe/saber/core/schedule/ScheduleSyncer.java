@@ -7,6 +7,7 @@ import net.dv8tion.jda.core.entities.TextChannel;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
 import ws.nmathe.saber.core.google.GoogleAuth;
 import ws.nmathe.saber.core.settings.GuildSettingsManager;
 import ws.nmathe.saber.utils.Logging;
@@ -91,7 +92,7 @@ class ScheduleSyncer implements Runnable
                         TextChannel control = Main.getShardManager().getJDA(guildId).getTextChannelById(gs.getCommandChannelId());
                         String content = "**Warning:** I failed to auto-sync <#" + scheduleId + "> to *" + address + "*!\n" +
                                 "Please make sure that the calendar address is still correct and that the calendar privacy settings have not changed!";
-                        MessageUtilities.sendMsg(content, control, null);
+                        MessageUtilities.sendMsg(content, control, null, Priority.MAINTENANCE);
 
                         Logging.warn(this.getClass(), "Failed to synchronize schedule #" + channel.getName() + " [" +
                                 document.getString("_id") + "] on '" + channel.getGuild().getName() + "' [" +
@@ -2,6 +2,7 @@ package ws.nmathe.saber.core.settings;
 
 import com.moandjiezana.toml.Toml;
 import com.moandjiezana.toml.TomlWriter;
+import ws.nmathe.saber.utils.ConcurrentLongSet;
 import ws.nmathe.saber.utils.Logging;
 
 import java.io.*;
@@ -19,6 +20,7 @@ public class BotSettingsManager
 {
     private static final String FILENAME = "saber.toml";
     private BotSettings settings;
+    private ConcurrentLongSet blacklist = new ConcurrentLongSet();
 
     /**
      * attempts to read the settings file,
@@ -31,6 +33,7 @@ public class BotSettingsManager
         {
             input = new FileInputStream("./" + FILENAME);
             settings = (new Toml()).read(input).to(BotSettings.class);
+            blacklist = ConcurrentLongSet.fromSnowflakes(settings.blacklist);
         }
         catch (IOException ex)
         {
@@ -98,6 +101,8 @@ public class BotSettingsManager
         {
             input = new FileInputStream("./" + FILENAME);
             settings = (new Toml()).read(input).to(BotSettings.class);
+            blacklist = ConcurrentLongSet.fromSnowflakes(settings.blacklist);
+            Logging.configure(this.getLogSinks());
         }
         catch (Exception e)
         {
@@ -140,12 +145,15 @@ public class BotSettingsManager
         List<String> nowplaying_list;
         Set<String> blacklist;
         long cooldown_threshold;
+        long pruner_throttle;
         String rsvp_yes;
         String rsvp_no;
         String rsvp_clear;
         String google_service_key;
         String google_oauth_secret;
         int log_level;
+        List<String> log_sinks;
+        int metrics_port;
         List<Integer> shards;
         int shard_total;
 
@@ -157,6 +165,9 @@ public class BotSettingsManager
             google_oauth_secret = "./oath2-secret";
             mongodb = "mongodb://localhost:27017/?w=majority";
             log_level = 4;
+            log_sinks = new ArrayList<>();
+            log_sinks.add("console");
+            metrics_port = 0;
 
             shards = new ArrayList<>();
             shard_total = 0;
@@ -176,6 +187,7 @@ public class BotSettingsManager
             nowplaying_list = new ArrayList<>();
             blacklist = new HashSet<>();
             cooldown_threshold = 1000;
+            pruner_throttle = 1000;
 
             rsvp_yes = "\u2705";
             rsvp_no = "\u274c";
@@ -253,9 +265,13 @@ public class BotSettingsManager
         return settings.nowplaying_list;
     }
 
-    public Set<String> getBlackList()
+    /**
+     * @param id snowflake ID of a user or guild
+     * @return true if the user or guild is blacklisted
+     */
+    public boolean isBlacklisted(long id)
     {
-        return settings.blacklist;
+        return blacklist.contains(id);
     }
 
     public long getCooldownThreshold()
@@ -263,6 +279,14 @@ public class BotSettingsManager
         return settings.cooldown_threshold;
     }
 
+    /**
+     * @return milliseconds the database pruner waits between channel history requests
+     */
+    public long getPrunerThrottle()
+    {   // settings files written before the option existed leave it unset
+        return settings.pruner_throttle > 0 ? settings.pruner_throttle : 1000;
+    }
+
     public int getMaxSchedules()
     {
         return settings.max_schedules;
@@ -298,6 +322,22 @@ public class BotSettingsManager
         return settings.log_level;
     }
 
+    public int getMetricsPort()
+    {
+        return settings.metrics_port;
+    }
+
+    public List<String> getLogSinks()
+    {
+        if (settings.log_sinks == null || settings.log_sinks.isEmpty())
+        {
+            List<String> sinks = new ArrayList<>();
+            sinks.add("console");
+            return sinks;
+        }
+        return settings.log_sinks;
+    }
+
     public List<Integer> getShards()
     {
         return settings.shards;
@@ -0,0 +1,60 @@
+package ws.nmathe.saber.utils;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A concurrent set of primitive ints, backed by a ConcurrentLongSet
+ */
+public class ConcurrentIntSet
+{
+    private final ConcurrentLongSet set;
+
+    public ConcurrentIntSet()
+    {
+        this.set = new ConcurrentLongSet();
+    }
+
+    public ConcurrentIntSet(int expectedSize)
+    {
+        this.set = new ConcurrentLongSet(expectedSize);
+    }
+
+    /** @return true if the value was not already present */
+    public boolean add(int value)
+    {
+        return set.add(value);
+    }
+
+    public boolean contains(int value)
+    {
+        return set.contains(value);
+    }
+
+    /** @return true if the value was present */
+    public boolean remove(int value)
+    {
+        return set.remove(value);
+    }
+
+    public int size()
+    {
+        return set.size();
+    }
+
+    public boolean isEmpty()
+    {
+        return set.isEmpty();
+    }
+
+    /**
+     * runs an action for each value in a snapshot of the set,
+     * the set may be safely modified by the action
+     */
+    public void forEach(IntConsumer action)
+    {
+        for (long value : set.toArray())
+        {
+            action.accept((int) value);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package ws.nmathe.saber.utils;
+
+import java.util.Arrays;
+
+/**
+ * A concurrent map of primitive long keys to primitive long values.
+ * Keys are spread over a fixed number of lock-striped segments, each an open-addressing
+ * hash table with linear probing, so no boxing or per-entry node allocation is needed.
+ * Intended for the small, hot maps keyed by discord snowflakes or entry IDs.
+ */
+public class ConcurrentLongLongMap
+{
+    private static final int SEGMENT_BITS = 4;
+    private static final int MIN_CAPACITY = 8;
+
+    private final Segment[] segments = new Segment[1<<SEGMENT_BITS];
+
+    public ConcurrentLongLongMap()
+    {
+        this(64);
+    }
+
+    /**
+     * @param expectedSize number of entries the map should hold without resizing
+     */
+    public ConcurrentLongLongMap(int expectedSize)
+    {
+        int perSegment = (expectedSize >> SEGMENT_BITS) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity*3/4 < perSegment) capacity <<= 1;
+        for (int i=0; i<segments.length; i++)
+        {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * @return the value mapped to the key, or defaultValue if the key is not present
+     */
+    public long get(long key, long defaultValue)
+    {
+        return segmentFor(key).get(key, defaultValue);
+    }
+
+    public boolean containsKey(long key)
+    {
+        return segmentFor(key).containsKey(key);
+    }
+
+    /**
+     * maps a key to a value, replacing any previous value
+     */
+    public void put(long key, long value)
+    {
+        segmentFor(key).put(key, value, true);
+    }
+
+    /**
+     * maps a key to a value only if the key is not already present
+     * @return true if the key was added
+     */
+    public boolean putIfAbsent(long key, long value)
+    {
+        return segmentFor(key).put(key, value, false);
+    }
+
+    /**
+     * @return true if the key was present and has been removed
+     */
+    public boolean remove(long key)
+    {
+        return segmentFor(key).remove(key);
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (Segment segment : segments)
+        {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size() == 0;
+    }
+
+    public void clear()
+    {
+        for (Segment segment : segments)
+        {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return a snapshot of the keys held by the map (weakly consistent across segments)
+     */
+    public long[] keys()
+    {
+        long[][] parts = new long[segments.length][];
+        int total = 0;
+        for (int i=0; i<segments.length; i++)
+        {
+            parts[i] = segments[i].keys();
+            total += parts[i].length;
+        }
+
+        long[] keys = new long[total];
+        int pos = 0;
+        for (long[] part : parts)
+        {
+            System.arraycopy(part, 0, keys, pos, part.length);
+            pos += part.length;
+        }
+        return keys;
+    }
+
+    private Segment segmentFor(long key)
+    {
+        return segments[(int) (mix(key) >>> (64-SEGMENT_BITS))];
+    }
+
+    /** murmur3 64bit finalizer, snowflakes share most of their high bits and must be spread */
+    private static long mix(long key)
+    {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * open-addressing table, a key of zero marks an empty slot so the zero key is stored separately
+     */
+    private static final class Segment
+    {
+        private long[] keys;
+        private long[] values;
+        private int mask;
+        private int size;
+
+        private boolean hasZero;
+        private long zeroValue;
+
+        Segment(int capacity)
+        {
+            this.keys = new long[capacity];
+            this.values = new long[capacity];
+            this.mask = capacity-1;
+        }
+
+        private int slot(long key)
+        {
+            int i = (int) mix(key) & mask;
+            while (keys[i] != 0 && keys[i] != key)
+            {
+                i = (i+1) & mask;
+            }
+            return i;
+        }
+
+        synchronized long get(long key, long defaultValue)
+        {
+            if (key == 0) return hasZero ? zeroValue : defaultValue;
+            int i = slot(key);
+            return keys[i] == key ? values[i] : defaultValue;
+        }
+
+        synchronized boolean containsKey(long key)
+        {
+            if (key == 0) return hasZero;
+            return keys[slot(key)] == key;
+        }
+
+        synchronized boolean put(long key, long value, boolean replace)
+        {
+            if (key == 0)
+            {
+                boolean added = !hasZero;
+                if (added || replace) zeroValue = value;
+                hasZero = true;
+                if (added) size++;
+                return added;
+            }
+
+            int i = slot(key);
+            if (keys[i] == key)
+            {
+                if (replace) values[i] = value;
+                return false;
+            }
+
+            keys[i] = key;
+            values[i] = value;
+            size++;
+            if (size*4 > keys.length*3) resize();
+            return true;
+        }
+
+        synchronized boolean remove(long key)
+        {
+            if (key == 0)
+            {
+                if (!hasZero) return false;
+                hasZero = false;
+                zeroValue = 0;
+                size--;
+                return true;
+            }
+
+            int i = slot(key);
+            if (keys[i] == 0) return false;
+
+            // backward shift deletion, moves later entries of the probe sequence into the hole
+            int j = i;
+            while (true)
+            {
+                j = (j+1) & mask;
+                if (keys[j] == 0) break;
+                int home = (int) mix(keys[j]) & mask;
+                boolean inRange = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (inRange) continue;
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+            keys[i] = 0;
+            values[i] = 0;
+            size--;
+            return true;
+        }
+
+        synchronized int size()
+        {
+            return size;
+        }
+
+        synchronized void clear()
+        {
+            Arrays.fill(keys, 0);
+            Arrays.fill(values, 0);
+            hasZero = false;
+            zeroValue = 0;
+            size = 0;
+        }
+
+        synchronized long[] keys()
+        {
+            long[] copy = new long[size];
+            int pos = 0;
+            if (hasZero) copy[pos++] = 0;
+            for (long key : keys)
+            {
+                if (key != 0) copy[pos++] = key;
+            }
+            return copy;
+        }
+
+        private void resize()
+        {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length*2];
+            values = new long[oldValues.length*2];
+            mask = keys.length-1;
+            for (int i=0; i<oldKeys.length; i++)
+            {
+                if (oldKeys[i] != 0)
+                {
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ws.nmathe.saber.utils;
+
+import java.util.Collection;
+import java.util.function.LongConsumer;
+
+/**
+ * A concurrent set of primitive longs, backed by a ConcurrentLongLongMap
+ */
+public class ConcurrentLongSet
+{
+    private final ConcurrentLongLongMap map;
+
+    public ConcurrentLongSet()
+    {
+        this.map = new ConcurrentLongLongMap();
+    }
+
+    public ConcurrentLongSet(int expectedSize)
+    {
+        this.map = new ConcurrentLongLongMap(expectedSize);
+    }
+
+    /**
+     * creates a set from a collection of snowflake strings, entries which are not numeric are ignored
+     */
+    public static ConcurrentLongSet fromSnowflakes(Collection<String> snowflakes)
+    {
+        ConcurrentLongSet set = new ConcurrentLongSet(snowflakes==null ? 0 : snowflakes.size());
+        if (snowflakes == null) return set;
+        for (String snowflake : snowflakes)
+        {
+            try
+            {
+                set.add(Long.parseLong(snowflake.trim()));
+            }
+            catch (NumberFormatException ignored)
+            {}
+        }
+        return set;
+    }
+
+    /** @return true if the value was not already present */
+    public boolean add(long value)
+    {
+        return map.putIfAbsent(value, 0);
+    }
+
+    public boolean contains(long value)
+    {
+        return map.containsKey(value);
+    }
+
+    /** @return true if the value was present */
+    public boolean remove(long value)
+    {
+        return map.remove(value);
+    }
+
+    public int size()
+    {
+        return map.size();
+    }
+
+    public boolean isEmpty()
+    {
+        return map.isEmpty();
+    }
+
+    public void clear()
+    {
+        map.clear();
+    }
+
+    /** @return a snapshot of the values held by the set */
+    public long[] toArray()
+    {
+        return map.keys();
+    }
+
+    /**
+     * runs an action for each value in a snapshot of the set,
+     * the set may be safely modified by the action
+     */
+    public void forEach(LongConsumer action)
+    {
+        for (long value : map.keys())
+        {
+            action.accept(value);
+        }
+    }
+}
@@ -1,68 +1,60 @@
 package ws.nmathe.saber.utils;
 
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.JsonNode;
 import com.mashape.unirest.http.Unirest;
-import com.mashape.unirest.http.exceptions.UnirestException;
 import org.json.JSONObject;
 import ws.nmathe.saber.Main;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  */
 public class HttpUtilities
 {
-    private static LocalDateTime lastUpdate = LocalDateTime.MIN;
-
     /**
-     * Updates bot metrics for any connected metric tracking services
+     * Updates bot metrics for any connected metric tracking services,
+     * the stats are posted in the background by the stats reporter
      */
     public static void updateStats(Integer shardId)
     {
-        String auth = Main.getBotSettingsManager().getWebToken();
-        if (auth != null)
-        {
-            HttpUtilities.updateStats_abal(auth, shardId);
-        }
+        Main.getStatsReporter().markDirty(shardId);
     }
 
-
     /**
-     * updates bot metrics for bots.discord.pw tracking
-     * @param auth the abal authentication token for the bot
+     * posts a json body, blocking until the response is received
+     * @param url the url
+     * @param auth the Authorization header value
+     * @param json the request body
+     * @param timeout seconds to wait for the response
+     * @throws IOException if the response status is not 2xx
+     * @throws TimeoutException if no response was received within the timeout
+     * @throws ExecutionException if the request failed
+     * @throws InterruptedException if interrupted while waiting for the response
      */
-    private static void updateStats_abal(String auth, Integer shardId)
+    public static void postJson(String url, String auth, JSONObject json, long timeout)
+            throws IOException, TimeoutException, ExecutionException, InterruptedException
     {
-        if (lastUpdate.until(LocalDateTime.now(), ChronoUnit.SECONDS) > 60)
+        Future<HttpResponse<JsonNode>> future = Unirest.post(url)
+                .header("Authorization", auth)
+                .header("Content-Type", "application/json")
+                .body(json).asJsonAsync();
+        try
         {
-            JSONObject json;
-            if (Main.getShardManager().isSharding() && shardId != null)
-            {   // if the bot is sharding send shard information
-                int count = Main.getShardManager().getShard(shardId).getGuilds().size();
-                int total = Main.getBotSettingsManager().getShardTotal();
-                json = new JSONObject().put("shard_count", total).put("shard_id", shardId).put("server_count", count);
-            }
-            else
-            {   // otherwise send only the server count
-                int count = Main.getShardManager().getGuilds().size();
-                json = new JSONObject().put("server_count", count);
-            }
-
-            try
-            {   // send the API request
-                Unirest.post("https://bots.discord.pw/api/bots/" + Main.getShardManager().getJDA().getSelfUser().getId() + "/stats")
-                        .header("Authorization", auth)
-                        .header("Content-Type", "application/json")
-                        .body(json).asJson();
-            }
-            catch (UnirestException e)
-            {
-                Logging.warn(HttpUtilities.class, e.getMessage());
-            }
-            catch (Exception e)
+            HttpResponse<JsonNode> response = future.get(timeout, TimeUnit.SECONDS);
+            if (response.getStatus() < 200 || response.getStatus() >= 300)
             {
-                Logging.exception(HttpUtilities.class, e);
+                throw new IOException("HTTP " + response.getStatus() + " " + response.getStatusText());
             }
         }
+        catch (TimeoutException e)
+        {
+            future.cancel(true);
+            throw e;
+        }
     }
 }
@@ -1,34 +1,63 @@
 package ws.nmathe.saber.utils;
 
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.logging.*;
+import ws.nmathe.saber.utils.logging.LogRecord.Level;
 
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * used for logging information to the console
+ * used for logging information to the console (and other configured sinks)
+ * log calls only capture a record and hand it off to the async logger's writer thread,
+ * formatting and I/O happen off the calling thread
+ *
+ * optional key/value pairs (ie. "guildId", id, "entryId", id) may be passed to
+ * attach structured fields to a record
  */
 public class Logging
 {
-    public static final String ANSI_RESET = "\u001B[0m";
-    public static final String ANSI_BLACK = "\u001B[30m";
-    public static final String ANSI_RED = "\u001B[31m";
-    public static final String ANSI_GREEN = "\u001B[32m";
-    public static final String ANSI_YELLOW = "\u001B[33m";
-    public static final String ANSI_BLUE = "\u001B[34m";
-    public static final String ANSI_PURPLE = "\u001B[35m";
-    public static final String ANSI_CYAN = "\u001B[36m";
-    public static final String ANSI_WHITE = "\u001B[37m";
+    private static final AsyncLogger logger = new AsyncLogger();
+    static
+    {
+        logger.setSinks(Collections.singletonList(new ConsoleSink()));
+    }
+
+    /**
+     * configures the sinks used by the logger
+     * @param sinks list of sink descriptors: 'console', 'file:[path]', or 'json:[path]'
+     */
+    public static void configure(List<String> sinks)
+    {
+        List<LogSink> list = new ArrayList<>();
+        for (String sink : sinks)
+        {
+            if (sink.equalsIgnoreCase("console"))
+            {
+                list.add(new ConsoleSink());
+            }
+            else if (sink.startsWith("file:"))
+            {
+                list.add(RollingFileSink.text(sink.substring(5)));
+            }
+            else if (sink.startsWith("json:"))
+            {
+                list.add(RollingFileSink.json(sink.substring(5)));
+            }
+        }
+        if (list.isEmpty()) list.add(new ConsoleSink());
+        logger.setSinks(list);
+    }
 
-    public static final String ANSI_BLACK_BACKGROUND = "\u001B[40m";
-    public static final String ANSI_RED_BACKGROUND = "\u001B[41m";
-    public static final String ANSI_GREEN_BACKGROUND = "\u001B[42m";
-    public static final String ANSI_YELLOW_BACKGROUND = "\u001B[43m";
-    public static final String ANSI_BLUE_BACKGROUND = "\u001B[44m";
-    public static final String ANSI_PURPLE_BACKGROUND = "\u001B[45m";
-    public static final String ANSI_CYAN_BACKGROUND = "\u001B[46m";
-    public static final String ANSI_WHITE_BACKGROUND = "\u001B[47m";
+    /**
+     * checks if a log level is enabled, can be used to skip building expensive log messages
+     * @param level the log level (1-5)
+     */
+    public static boolean isEnabled(int level)
+    {
+        return Main.getBotSettingsManager().getLogLevel() >= level;
+    }
 
     /**
      * used for most general logging (level 5)
@@ -37,16 +66,20 @@ public class Logging
      */
     public static void info(Class caller, String msg)
     {
-        if(Main.getBotSettingsManager().getLogLevel() < 5) return;
-
-        String now = LocalTime.now().truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_LOCAL_TIME);
-        String content = "[" + now + "] [Info]" +
-                ANSI_RESET + " " + ANSI_CYAN_BACKGROUND + ANSI_BLACK +
-                "[" + caller.getSimpleName() + "]" +
-                ANSI_RESET + " " + msg +
-                ANSI_RESET;
+        if(!isEnabled(Level.INFO.value)) return;
+        logger.log(new LogRecord(Level.INFO, caller, msg, null, null));
+    }
 
-        System.out.println(content);
+    /**
+     * used for most general logging (level 5)
+     * @param caller the java class from which the command is called
+     * @param msg the message to log
+     * @param keyValues alternating keys and values
+     */
+    public static void info(Class caller, String msg, Object... keyValues)
+    {
+        if(!isEnabled(Level.INFO.value)) return;
+        logger.log(new LogRecord(Level.INFO, caller, msg, null, keyValues));
     }
 
     /**
@@ -56,35 +89,43 @@ public class Logging
      */
     public static void event(Class caller, String msg)
     {
-        if(Main.getBotSettingsManager().getLogLevel() < 4) return;
-
-        String now = LocalTime.now().truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_LOCAL_TIME);
-        String content = "[" + now + "] [Info]" +
-                ANSI_RESET + " " + ANSI_BLUE_BACKGROUND + ANSI_BLACK +
-                "[" + caller.getSimpleName() + "]" +
-                ANSI_RESET + " " + msg +
-                ANSI_RESET;
+        if(!isEnabled(Level.EVENT.value)) return;
+        logger.log(new LogRecord(Level.EVENT, caller, msg, null, null));
+    }
 
-        System.out.println(content);
+    /**
+     * used only for event announcing (level 4)
+     * @param caller the java class from which the command is called
+     * @param msg the message to log
+     * @param keyValues alternating keys and values
+     */
+    public static void event(Class caller, String msg, Object... keyValues)
+    {
+        if(!isEnabled(Level.EVENT.value)) return;
+        logger.log(new LogRecord(Level.EVENT, caller, msg, null, keyValues));
     }
 
     /**
-     * used for logging command usage (level 2)
+     * used for logging command usage (level 3)
      * @param caller the java class from which the command is called
      * @param msg the message to log
      */
     public static void cmd(Class caller, String msg)
     {
-        if(Main.getBotSettingsManager().getLogLevel() < 3) return;
-
-        String now = LocalTime.now().truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_LOCAL_TIME);
-        String content = "[" + now + "] [Cmnd]" +
-                ANSI_RESET + " " + ANSI_GREEN_BACKGROUND + ANSI_BLACK +
-                "[" + caller.getSimpleName() + "]" +
-                ANSI_RESET + " " + msg +
-                ANSI_RESET;
+        if(!isEnabled(Level.CMD.value)) return;
+        logger.log(new LogRecord(Level.CMD, caller, msg, null, null));
+    }
 
-        System.out.println(content);
+    /**
+     * used for logging command usage (level 3)
+     * @param caller the java class from which the command is called
+     * @param msg the message to log
+     * @param keyValues alternating keys and values
+     */
+    public static void cmd(Class caller, String msg, Object... keyValues)
+    {
+        if(!isEnabled(Level.CMD.value)) return;
+        logger.log(new LogRecord(Level.CMD, caller, msg, null, keyValues));
     }
 
     /**
@@ -94,17 +135,20 @@ public class Logging
      */
     public static void warn(Class caller, String msg)
     {
-        if(Main.getBotSettingsManager().getLogLevel() < 2) return;
-
-        String now = LocalTime.now().truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_LOCAL_TIME);
-        String content = "[" + now + "] " +
-                ANSI_RED + "[Warn]" + ANSI_RESET + " " +
-                ANSI_YELLOW_BACKGROUND + ANSI_BLACK +
-                "[" + caller.getSimpleName() + "]" +
-                ANSI_RESET + " " + ANSI_RED + msg +
-                ANSI_RESET;
+        if(!isEnabled(Level.WARN.value)) return;
+        logger.log(new LogRecord(Level.WARN, caller, msg, null, null));
+    }
 
-        System.out.println(content);
+    /**
+     * used logging minor (possibly expected) errors (level 2)
+     * @param caller the java class from which the command is called
+     * @param msg the message to log
+     * @param keyValues alternating keys and values
+     */
+    public static void warn(Class caller, String msg, Object... keyValues)
+    {
+        if(!isEnabled(Level.WARN.value)) return;
+        logger.log(new LogRecord(Level.WARN, caller, msg, null, keyValues));
     }
 
     /**
@@ -114,16 +158,15 @@ public class Logging
      */
     public static void exception(Class caller, Throwable error)
     {
-        if(Main.getBotSettingsManager().getLogLevel() < 1) return;
+        if(!isEnabled(Level.EXCEPTION.value)) return;
+        logger.log(new LogRecord(Level.EXCEPTION, caller, String.valueOf(error.getMessage()), error, null));
+    }
 
-        String now = LocalTime.now().truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_LOCAL_TIME);
-        String content = "[" + now + "] " +
-                ANSI_PURPLE + "[Excp]" + ANSI_RESET + " " +
-                ANSI_PURPLE_BACKGROUND + ANSI_BLACK +
-                "[" + caller.getSimpleName() + "]" +
-                ANSI_RESET + " " + ANSI_PURPLE + error.getMessage() +
-                ANSI_RESET;
-        System.out.println(content);
-        error.printStackTrace();
+    /**
+     * @return the total number of log records which have been dropped due to a full log buffer since startup
+     */
+    public static long getDropped()
+    {
+        return logger.getDropped();
     }
 }
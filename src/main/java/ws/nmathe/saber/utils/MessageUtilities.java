@@ -3,14 +3,21 @@ package ws.nmathe.saber.utils;
 import net.dv8tion.jda.core.entities.Message;
 import net.dv8tion.jda.core.entities.MessageChannel;
 import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.exceptions.ErrorResponseException;
 import net.dv8tion.jda.core.exceptions.PermissionException;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.OutboundScheduler;
+import ws.nmathe.saber.core.OutboundScheduler.Priority;
 
+import java.util.concurrent.CompletionException;
 import java.util.function.Consumer;
 
 /**
  * A collection of method wrappers for sending different types of messages to specific channels
  * Consumer may be passed into functions to operate on the result of the RestAction, exceptions
  * are caught and printed to stdout
+ * Requests are queued through the outbound scheduler, methods which do not take a priority send
+ * with the priority of command replies
  */
 public class MessageUtilities
 {
@@ -23,12 +30,18 @@ public class MessageUtilities
      * @param action a non null Consumer will do operations on the results returned
      */
     public static void sendMsg(String content, MessageChannel chan, Consumer<Message> action )
+    {
+        sendMsg(content, chan, action, Priority.COMMAND);
+    }
+
+    /// version which takes the request's priority
+    public static void sendMsg(String content, MessageChannel chan, Consumer<Message> action, Priority priority)
     {
         if(content.isEmpty()) return;
 
         try
         {
-            chan.sendMessage(content).queue(action, e ->
+            scheduler().submit(priority, OutboundScheduler.route(chan), null, chan.sendMessage(content), action, e ->
             {
                 if (!(e instanceof PermissionException))
                 {
@@ -50,7 +63,7 @@ public class MessageUtilities
 
         try
         {
-            chan.sendMessage(message).queue(action, e ->
+            scheduler().submit(Priority.COMMAND, OutboundScheduler.route(chan), null, chan.sendMessage(message), action, e ->
             {
                 if(!(e instanceof PermissionException))
                 {
@@ -72,7 +85,7 @@ public class MessageUtilities
 
         try
         {
-            chan.sendMessage(message).queue(action, error);
+            scheduler().submit(Priority.COMMAND, OutboundScheduler.route(chan), null, chan.sendMessage(message), action, error);
         }
         catch(Exception e)
         {
@@ -87,7 +100,7 @@ public class MessageUtilities
 
         try
         {
-            return chan.sendMessage(message).complete();
+            return scheduler().complete(Priority.COMMAND, OutboundScheduler.route(chan), null, chan.sendMessage(message));
         }
         catch (PermissionException e) { return null; }
         catch (Exception e)
@@ -105,13 +118,19 @@ public class MessageUtilities
      * @param action a non null Consumer will do operations on the results returned
      */
     public static void sendPrivateMsg(String content, User user, Consumer<Message> action )
+    {
+        sendPrivateMsg(content, user, action, Priority.COMMAND);
+    }
+
+    /// version which takes the request's priority
+    public static void sendPrivateMsg(String content, User user, Consumer<Message> action, Priority priority)
     {
         if (content.isEmpty()) return;
         if (user.isBot()) return;
 
         try
         {
-            user.openPrivateChannel().queue(privateChannel -> sendMsg(content, privateChannel, action), null);
+            user.openPrivateChannel().queue(privateChannel -> sendMsg(content, privateChannel, action, priority), null);
         }
         catch (PermissionException ignored) { }
         catch (Exception e)
@@ -128,12 +147,18 @@ public class MessageUtilities
      * @param action a non null Consumer will do operations on the results returned
      */
     public static void editMsg(Message newMsg, Message msg, Consumer<Message> action )
+    {
+        editMsg(newMsg, msg, action, Priority.COMMAND);
+    }
+
+    /// version which takes the request's priority
+    public static void editMsg(Message newMsg, Message msg, Consumer<Message> action, Priority priority)
     {
         if (newMsg.getContentRaw().isEmpty() && newMsg.getEmbeds().isEmpty()) return;
 
         try
         {
-            msg.editMessage(newMsg).queue(action, e ->
+            scheduler().submit(priority, OutboundScheduler.route(msg.getChannel()), msg.getId(), msg.editMessage(newMsg), action, e ->
             {
                 if (!(e instanceof PermissionException))
                 {
@@ -150,12 +175,24 @@ public class MessageUtilities
 
     // blocking
     public static Message editMsg(Message newMsg, Message msg)
+    {
+        return editMsgBlocking(newMsg, msg, Priority.COMMAND);
+    }
+
+    /**
+     * edits a message, blocking until the edit is made
+     * @param newMsg the message's new content
+     * @param msg the message to edit
+     * @param priority the priority class of the edit
+     * @return the edited message, or null if the edit failed
+     */
+    public static Message editMsgBlocking(Message newMsg, Message msg, Priority priority)
     {
         if (newMsg.getContentRaw().isEmpty() && newMsg.getEmbeds().isEmpty()) return null;
 
         try
         {
-            return msg.editMessage(newMsg).complete();
+            return scheduler().complete(priority, OutboundScheduler.route(msg.getChannel()), msg.getId(), msg.editMessage(newMsg));
         }
         catch (PermissionException e) { return null; }
         catch (Exception e)
@@ -165,16 +202,48 @@ public class MessageUtilities
         }
     }
 
+    /**
+     * edits a message by ID, blocking until the edit is made
+     * @param newMsg the message's new content
+     * @param chan the channel of the message
+     * @param msgId ID of the message to edit
+     * @param priority the priority class of the edit
+     * @return the edited message, or null if the edit failed
+     */
+    public static Message editMsgBlocking(Message newMsg, MessageChannel chan, String msgId, Priority priority)
+    {
+        if (newMsg.getContentRaw().isEmpty() && newMsg.getEmbeds().isEmpty()) return null;
+
+        try
+        {
+            return scheduler().complete(priority, OutboundScheduler.route(chan), msgId, chan.editMessageById(msgId, newMsg));
+        }
+        catch (Exception e)
+        {
+            if (!isExpected(e))
+            {
+                Logging.exception(MessageUtilities.class, e);
+            }
+            return null;
+        }
+    }
+
     /**
      * attempts to remove a message, asynchronous (non-blocking)
      * @param msg the message to delete
      * @param action a non null Consumer will do operations on the results returned
      */
     public static void deleteMsg(Message msg, Consumer<Void> action)
+    {
+        deleteMsg(msg, action, Priority.COMMAND);
+    }
+
+    /// version which takes the request's priority
+    public static void deleteMsg(Message msg, Consumer<Void> action, Priority priority)
     {
         try
         {
-            msg.delete().queue(action, e ->
+            scheduler().submit(priority, OutboundScheduler.deleteRoute(msg.getChannel()), null, msg.delete(), action, e ->
             {
                 if (!(e instanceof PermissionException))
                 {
@@ -189,11 +258,33 @@ public class MessageUtilities
         }
     }
 
+    /// version which deletes a message by ID
+    public static void deleteMsg(MessageChannel chan, String msgId, Consumer<Void> action, Priority priority)
+    {
+        if (msgId == null) return;
+
+        try
+        {
+            scheduler().submit(priority, OutboundScheduler.deleteRoute(chan), null, chan.deleteMessageById(msgId), action, e ->
+            {
+                if (!isExpected(e))
+                {
+                    Logging.exception(MessageUtilities.class, e);
+                }
+            });
+        }
+        catch (PermissionException ignored) { }
+        catch (Exception e)
+        {
+            Logging.exception(MessageUtilities.class, e);
+        }
+    }
+
     public static Void deleteMsg(Message msg)
     {
         try
         {
-            return msg.delete().complete();
+            return scheduler().complete(Priority.COMMAND, OutboundScheduler.deleteRoute(msg.getChannel()), null, msg.delete());
         }
         catch (PermissionException ignored) { }
         catch (Exception e)
@@ -202,4 +293,42 @@ public class MessageUtilities
         }
         return null;
     }
+
+    /**
+     * removes every reaction from a message, asynchronous (non-blocking)
+     * @param msg the message to clear
+     * @param priority the priority class of the request
+     */
+    public static void clearReactions(Message msg, Priority priority)
+    {
+        try
+        {
+            scheduler().submit(priority, OutboundScheduler.reactionRoute(msg.getChannel()), null, msg.clearReactions(), null, e ->
+            {
+                if (!isExpected(e))
+                {
+                    Logging.exception(MessageUtilities.class, e);
+                }
+            });
+        }
+        catch (PermissionException ignored) { }
+        catch (Exception e)
+        {
+            Logging.exception(MessageUtilities.class, e);
+        }
+    }
+
+    /**
+     * @return true if a request failed because the message was deleted or the bot lacks permissions
+     */
+    private static boolean isExpected(Throwable e)
+    {
+        if (e instanceof CompletionException && e.getCause() != null) e = e.getCause();
+        return e instanceof PermissionException || e instanceof ErrorResponseException;
+    }
+
+    private static OutboundScheduler scheduler()
+    {
+        return Main.getOutboundScheduler();
+    }
 }
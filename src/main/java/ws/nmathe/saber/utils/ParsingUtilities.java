@@ -25,6 +25,9 @@ import java.util.stream.Collectors;
  */
 public class ParsingUtilities
 {
+    private static final DateTimeFormatter CLOCK_12 = DateTimeFormatter.ofPattern("hh:mm a");
+    private static final DateTimeFormatter CLOCK_24 = DateTimeFormatter.ofPattern("HH:mm");
+
     /**
      * parses a local time string inputted by a user into a ZonedDateTime object
      * @param userInput the local time
@@ -76,14 +79,36 @@ public class ParsingUtilities
      * @return a new message which has entry specific information inserted into the format string
      */
     public static String processText(String raw, ScheduleEntry entry, boolean firstPass)
+    {
+        return processText(raw, entry, firstPass, Main.getScheduleManager().getClockFormat(entry.getChannelId()));
+    }
+
+    /**
+     * @param raw the base string to parse into a message
+     * @param entry the entry associated with the message
+     * @param firstPass boolean used to prevent message parsing loops
+     * @param clock the clock format of the entry's schedule
+     * @return a new message which has entry specific information inserted into the format string
+     */
+    public static String processText(String raw, ScheduleEntry entry, boolean firstPass, String clock)
+    {
+        return processText(raw, entry, firstPass, clock, null);
+    }
+
+    /**
+     * @param raw the base string to parse into a message
+     * @param entry the entry associated with the message
+     * @param firstPass boolean used to prevent message parsing loops
+     * @param clock the clock format of the entry's schedule
+     * @param roles maps an rsvp group to the text its role mention (%{role group}) is rendered to,
+     *              or to null if the group has no role, role mentions are omitted if null
+     * @return a new message which has entry specific information inserted into the format string
+     */
+    public static String processText(String raw, ScheduleEntry entry, boolean firstPass, String clock,
+                                     Function<String, String> roles)
     {
         // determine time formatter from schedule settings
-        String clock = Main.getScheduleManager().getClockFormat(entry.getChannelId());
-        DateTimeFormatter timeFormatter;
-        if(clock.equalsIgnoreCase("12"))
-             timeFormatter = DateTimeFormatter.ofPattern("hh:mm a");
-        else
-             timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+        DateTimeFormatter timeFormatter = clock.equalsIgnoreCase("12") ? CLOCK_12 : CLOCK_24;
 
         /*
          * function handles the insertion of the '[..]' text for advanced substitution
@@ -117,7 +142,7 @@ public class ParsingUtilities
                     int i = Integer.parseInt(trimmed.replaceAll("(\\[.*?])?comment |\\[.*?]", ""));
                     if(entry.getComments().size() >= i && i > 0)
                     {
-                        sub.append(processText(helper.apply(entry.getComments().get(i - 1), matcher2), entry, false));
+                        sub.append(processText(helper.apply(entry.getComments().get(i - 1), matcher2), entry, false, clock, roles));
                     }
                 }
                 else if(trimmed.matches("(\\[.*?])?s(\\[.*?])?")) // advanced start
@@ -209,6 +234,15 @@ public class ParsingUtilities
                         sub.append(helper.apply(""+members.size(), matcher2));
                     }
                 }
+                else if(trimmed.matches("(\\[.*?])?role .+(\\[.*?])?")) // rsvp group role mention
+                {
+                    String name = trimmed.replaceAll("role ","").replaceAll("\\[.*?]","");
+                    String mention = roles == null ? null : roles.apply(name.trim());
+                    if(mention != null)
+                    {
+                        sub.append(helper.apply(mention, matcher2));
+                    }
+                }
                 else if(trimmed.matches("(\\[.*?])?mention .+(\\[.*?])?")) // rsvp mentions
                 {
                     String name = trimmed.replaceAll("mention ","").replaceAll("\\[.*?]","");
@@ -348,7 +382,7 @@ public class ParsingUtilities
                                 if(entry.getComments().size()>=x && x!=0)
                                 {
                                     String parsedComment =
-                                            ParsingUtilities.processText(entry.getComments().get(x - 1), entry, false);
+                                            ParsingUtilities.processText(entry.getComments().get(x - 1), entry, false, clock, roles);
                                     processed.append(parsedComment);
                                 }
                             }
@@ -360,7 +394,7 @@ public class ParsingUtilities
                         if(firstPass)
                         {   // if this call of the parser is nested, don't insert comments
                             processed.append(String.join("\n", entry.getComments().stream()
-                                    .map(comment -> ParsingUtilities.processText(comment, entry, false))
+                                    .map(comment -> ParsingUtilities.processText(comment, entry, false, clock, roles))
                                     .collect(Collectors.toList())));
                         }
                         break;
@@ -374,7 +408,7 @@ public class ParsingUtilities
                             for (int j=0; j<entry.getComments().size(); j++)
                             {
                                 if (j>0) stringBuilder.append("\n"); // newline pad between comment lines
-                                stringBuilder.append(processText(entry.getComments().get(j), entry, false))
+                                stringBuilder.append(processText(entry.getComments().get(j), entry, false, clock, roles))
                                         .append("\n"); // trailing newline
                             }
                             processed.append(stringBuilder.toString());
@@ -746,6 +780,34 @@ public class ParsingUtilities
         else return announcementTime.minusMinutes(minutes);
     }
 
+    /**
+     * parses a listing page argument of the form "p: 2" or "page: 2"
+     * @param arg user-supplied argument
+     * @return the page number (starting from 1), or 0 if the argument is not a page argument
+     */
+    public static int parsePage(String arg)
+    {
+        String[] split = arg.split(":", 2);
+        if (split.length != 2) return 0;
+        String key = split[0].trim().toLowerCase();
+        if (!key.equals("p") && !key.equals("page")) return 0;
+        String value = split[1].trim();
+        if (!value.matches("\\d{1,6}")) return 0;
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * parses a listing page argument which was split in two, as "p: 2" is split into "p:" and "2"
+     * @param arg user-supplied argument
+     * @param next the argument which followed it
+     * @return the page number (starting from 1), or 0 if the arguments are not a page argument
+     */
+    public static int parsePage(String arg, String next)
+    {
+        if (!arg.trim().endsWith(":")) return 0;
+        return parsePage(arg + next);
+    }
+
     /**
      * @param input user-supplied encoded string
      * @return int representation of the base64 string
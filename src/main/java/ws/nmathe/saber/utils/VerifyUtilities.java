@@ -204,14 +204,10 @@ public class VerifyUtilities
         {
             String[] split = emoji.split(":"); // split on colons to isolate the reaction name from it's ID
             String emoteId = split[split.length-1].replaceAll("[^\\d]", ""); // trim to include only the ID
-            Emote emote = null;
+            Emote emote;
             try
             {
-                for(JDA jda : Main.getShardManager().getShards())
-                {
-                    emote = jda.getEmoteById(emoteId);
-                    if(emote != null) break;
-                }
+                emote = Main.getShardManager().getEmoteIndex().getEmote(emoteId);
             }
             catch(Exception e)
             {
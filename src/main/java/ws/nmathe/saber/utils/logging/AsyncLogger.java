@@ -0,0 +1,167 @@
+package ws.nmathe.saber.utils.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands log records off to a single writer thread through a bounded lock-free ring buffer.
+ * Producers claim a slot with a CAS on the tail sequence and publish the record into it,
+ * the writer thread consumes slots in order and passes each record to every sink.
+ * When the ring is full records are dropped (and counted) rather than blocking the caller,
+ * except for exceptions which are written through synchronously on the caller's thread.
+ * All calls to the sinks are made while holding the logger's lock.
+ */
+public class AsyncLogger
+{
+    private static final int CAPACITY = 1<<14;     // must be a power of two
+    private static final int MASK = CAPACITY-1;
+    private static final long IDLE_PARK = 1_000_000; // nanoseconds to park the writer when the ring is empty
+
+    private final AtomicReferenceArray<LogRecord> ring = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong tail = new AtomicLong(0);    // next sequence to be claimed by a producer
+    private volatile long head = 0;                         // next sequence to be consumed by the writer
+    private final AtomicLong dropped = new AtomicLong(0);
+    private long reported = 0;                              // dropped records already reported to the sinks
+
+    private List<LogSink> sinks = new ArrayList<>();        // guarded by this
+    private final Thread writer;
+
+    public AsyncLogger()
+    {
+        this.writer = new Thread(this::drainLoop, "log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "log-shutdown"));
+    }
+
+    /**
+     * replaces the logger's sinks, the records already queued are written to the old sinks which are then closed
+     * this is done on the calling thread and waits for the writer thread to finish it's current drain
+     */
+    public synchronized void setSinks(List<LogSink> newSinks)
+    {
+        this.drain();
+        for (LogSink sink : sinks)
+        {
+            try
+            {
+                sink.close();
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+            }
+        }
+        sinks = new ArrayList<>(newSinks);
+    }
+
+    /**
+     * enqueues a record to be written, does not block unless the ring is full and the record carries an
+     * exception, in which case the record is written to the sinks on the calling thread
+     */
+    public void log(LogRecord record)
+    {
+        long seq;
+        do
+        {
+            seq = tail.get();
+            if (seq - head >= CAPACITY)
+            {   // ring is full
+                if (record.error != null)
+                {
+                    this.writeDirect(record);
+                }
+                else
+                {
+                    dropped.incrementAndGet();
+                }
+                return;
+            }
+        }
+        while (!tail.compareAndSet(seq, seq+1));
+        ring.lazySet((int) (seq & MASK), record);
+    }
+
+    /**
+     * @return the total number of records dropped due to a full buffer
+     */
+    public long getDropped()
+    {
+        return dropped.get();
+    }
+
+    private void drainLoop()
+    {
+        while (true)
+        {
+            if (!this.drain())
+            {
+                LockSupport.parkNanos(IDLE_PARK);
+            }
+        }
+    }
+
+    /**
+     * writes all published records to the sinks
+     * @return true if any records were written
+     */
+    private synchronized boolean drain()
+    {
+        boolean wrote = false;
+        long seq = head;
+        while (seq < tail.get())
+        {
+            int index = (int) (seq & MASK);
+            LogRecord record = ring.get(index);
+            if (record == null) break;  // slot claimed but not yet published
+            ring.lazySet(index, null);
+            head = ++seq;
+
+            for (LogSink sink : sinks)
+            {
+                try
+                {
+                    sink.write(record);
+                }
+                catch (Exception e)
+                {
+                    e.printStackTrace();
+                }
+            }
+            wrote = true;
+        }
+
+        if (wrote)
+        {
+            long total = dropped.get();
+            long lost = total - reported;
+            reported = total;
+            if (lost > 0)
+            {
+                this.writeDirect(new LogRecord(LogRecord.Level.WARN, AsyncLogger.class,
+                        "Dropped " + lost + " log records, the log buffer was full", null, null));
+            }
+            sinks.forEach(LogSink::flush);
+        }
+        return wrote;
+    }
+
+    private synchronized void writeDirect(LogRecord record)
+    {
+        for (LogSink sink : sinks)
+        {
+            try
+            {
+                sink.write(record);
+                sink.flush();
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ws.nmathe.saber.utils.logging;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Writes ANSI colored log lines to standard out
+ */
+public class ConsoleSink implements LogSink
+{
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1<<16));
+
+    @Override
+    public void write(LogRecord record)
+    {
+        out.println(record.toText(true));
+        if (record.error != null) record.error.printStackTrace(out);
+    }
+
+    @Override
+    public void flush()
+    {
+        out.flush();
+    }
+}
@@ -0,0 +1,189 @@
+package ws.nmathe.saber.utils.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * An immutable log event, captured on the logging thread and formatted later by the sinks
+ */
+public final class LogRecord
+{
+    public static final String ANSI_RESET = "\u001B[0m";
+    public static final String ANSI_BLACK = "\u001B[30m";
+    public static final String ANSI_RED = "\u001B[31m";
+    public static final String ANSI_YELLOW = "\u001B[33m";
+    public static final String ANSI_PURPLE = "\u001B[35m";
+
+    public static final String ANSI_GREEN_BACKGROUND = "\u001B[42m";
+    public static final String ANSI_YELLOW_BACKGROUND = "\u001B[43m";
+    public static final String ANSI_BLUE_BACKGROUND = "\u001B[44m";
+    public static final String ANSI_PURPLE_BACKGROUND = "\u001B[45m";
+    public static final String ANSI_CYAN_BACKGROUND = "\u001B[46m";
+
+    public enum Level
+    {
+        EXCEPTION(1, "Excp"), WARN(2, "Warn"), CMD(3, "Cmnd"), EVENT(4, "Info"), INFO(5, "Info");
+
+        public final int value;
+        public final String tag;
+
+        Level(int value, String tag)
+        {
+            this.value = value;
+            this.tag = tag;
+        }
+    }
+
+    public final Level level;
+    public final long timestamp;        // epoch milliseconds
+    public final Class caller;
+    public final String message;
+    public final Throwable error;
+    public final Object[] keyValues;    // alternating keys and values, may be null
+    public final String thread;
+
+    public LogRecord(Level level, Class caller, String message, Throwable error, Object[] keyValues)
+    {
+        this.level = level;
+        this.timestamp = System.currentTimeMillis();
+        this.caller = caller;
+        this.message = message;
+        this.error = error;
+        this.keyValues = keyValues;
+        this.thread = Thread.currentThread().getName();
+    }
+
+    /**
+     * formats the record as a line of console text
+     * @param ansi whether to color the output with ANSI escape codes
+     */
+    public String toText(boolean ansi)
+    {
+        StringBuilder builder = new StringBuilder(128);
+        String time = LocalTime.from(Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()))
+                .truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_LOCAL_TIME);
+        builder.append('[').append(time).append("] ");
+
+        if (!ansi)
+        {
+            builder.append('[').append(level.tag).append("] [").append(caller.getSimpleName()).append("] ")
+                    .append(message);
+            appendKeyValues(builder);
+            return builder.toString();
+        }
+
+        String tagColor = "", background, textColor = "";
+        switch (level)
+        {
+            case EXCEPTION:
+                tagColor = ANSI_PURPLE;
+                background = ANSI_PURPLE_BACKGROUND;
+                textColor = ANSI_PURPLE;
+                break;
+            case WARN:
+                tagColor = ANSI_RED;
+                background = ANSI_YELLOW_BACKGROUND;
+                textColor = ANSI_RED;
+                break;
+            case CMD:
+                background = ANSI_GREEN_BACKGROUND;
+                break;
+            case EVENT:
+                background = ANSI_BLUE_BACKGROUND;
+                break;
+            default:
+                background = ANSI_CYAN_BACKGROUND;
+        }
+        builder.append(tagColor).append('[').append(level.tag).append(']').append(ANSI_RESET).append(' ')
+                .append(background).append(ANSI_BLACK).append('[').append(caller.getSimpleName()).append(']')
+                .append(ANSI_RESET).append(' ').append(textColor).append(message);
+        appendKeyValues(builder);
+        builder.append(ANSI_RESET);
+        return builder.toString();
+    }
+
+    /**
+     * formats the record as a single line JSON object
+     */
+    public String toJson()
+    {
+        StringBuilder builder = new StringBuilder(160);
+        builder.append("{\"ts\":").append(timestamp)
+                .append(",\"level\":\"").append(level.name().toLowerCase()).append('"')
+                .append(",\"caller\":");
+        appendJsonString(builder, caller.getSimpleName());
+        builder.append(",\"thread\":");
+        appendJsonString(builder, thread);
+        builder.append(",\"msg\":");
+        appendJsonString(builder, message);
+        if (keyValues != null)
+        {
+            for (int i=0; i+1<keyValues.length; i+=2)
+            {
+                builder.append(',');
+                appendJsonString(builder, String.valueOf(keyValues[i]));
+                builder.append(':');
+                Object value = keyValues[i+1];
+                if (value instanceof Number || value instanceof Boolean)
+                    builder.append(value);
+                else
+                    appendJsonString(builder, String.valueOf(value));
+            }
+        }
+        if (error != null)
+        {
+            builder.append(",\"error\":");
+            appendJsonString(builder, stackTrace());
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * @return the error's stack trace as a string
+     */
+    public String stackTrace()
+    {
+        if (error == null) return "";
+        StringWriter writer = new StringWriter();
+        error.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+
+    private void appendKeyValues(StringBuilder builder)
+    {
+        if (keyValues == null) return;
+        for (int i=0; i+1<keyValues.length; i+=2)
+        {
+            builder.append(' ').append(keyValues[i]).append('=').append(keyValues[i+1]);
+        }
+    }
+
+    private static void appendJsonString(StringBuilder builder, String str)
+    {
+        builder.append('"');
+        if (str != null)
+        {
+            for (int i=0; i<str.length(); i++)
+            {
+                char c = str.charAt(i);
+                switch (c)
+                {
+                    case '"':  builder.append("\\\""); break;
+                    case '\\': builder.append("\\\\"); break;
+                    case '\n': builder.append("\\n"); break;
+                    case '\r': builder.append("\\r"); break;
+                    case '\t': builder.append("\\t"); break;
+                    default:
+                        if (c < 0x20) builder.append(String.format("\\u%04x", (int) c));
+                        else builder.append(c);
+                }
+            }
+        }
+        builder.append('"');
+    }
+}
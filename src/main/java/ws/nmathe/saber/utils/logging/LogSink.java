@@ -0,0 +1,30 @@
+package ws.nmathe.saber.utils.logging;
+
+/**
+ * Destination for log records, calls to a logger's sinks are serialized by the logger's lock so sinks need not be
+ * thread-safe. They are usually made from the logger's writer thread, but an exception logged while the
+ * buffer is full is written through on the logging thread, and replaced sinks are flushed and closed on
+ * the thread which replaced them.
+ */
+public interface LogSink
+{
+    /**
+     * writes a record to the sink
+     * @param record the log record
+     */
+    void write(LogRecord record);
+
+    /**
+     * flushes any buffered output, invoked whenever the log queue has been drained
+     */
+    default void flush()
+    {}
+
+    /**
+     * releases the sink's resources, invoked once the sink has been replaced and will receive no more records
+     */
+    default void close()
+    {
+        this.flush();
+    }
+}
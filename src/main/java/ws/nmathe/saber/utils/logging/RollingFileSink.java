@@ -0,0 +1,126 @@
+package ws.nmathe.saber.utils.logging;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * Appends formatted log lines to a file, the file is rolled over once it exceeds a maximum size.
+ * Rolled files are renamed with an increasing numeric suffix (.1 being the most recent)
+ * and only a fixed number of rolled files are kept.
+ */
+public class RollingFileSink implements LogSink
+{
+    private final File file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final Function<LogRecord, String> format;
+
+    private Writer writer;
+    private long written;
+
+    /**
+     * @param path path of the log file
+     * @param maxBytes size at which the file is rolled over
+     * @param maxFiles number of rolled files to keep
+     * @param format formats a record into a line of text
+     */
+    public RollingFileSink(String path, long maxBytes, int maxFiles, Function<LogRecord, String> format)
+    {
+        this.file = new File(path);
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.format = format;
+    }
+
+    /**
+     * plain text log file
+     */
+    public static RollingFileSink text(String path)
+    {
+        return new RollingFileSink(path, 32*1024*1024, 5, record ->
+        {
+            String line = record.toText(false);
+            return record.error == null ? line : line + System.lineSeparator() + record.stackTrace();
+        });
+    }
+
+    /**
+     * JSON lines log file, one JSON object per record
+     */
+    public static RollingFileSink json(String path)
+    {
+        return new RollingFileSink(path, 32*1024*1024, 5, LogRecord::toJson);
+    }
+
+    @Override
+    public void write(LogRecord record)
+    {
+        try
+        {
+            if (writer == null) this.open();
+            String line = format.apply(record) + System.lineSeparator();
+            writer.write(line);
+            written += line.length();
+            if (written >= maxBytes) this.roll();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            this.close();
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        try
+        {
+            if (writer != null) writer.flush();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    private void open() throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), 1<<16);
+        written = file.length();
+    }
+
+    private void roll() throws IOException
+    {
+        this.close();
+        for (int i=maxFiles-1; i>=1; i--)
+        {
+            File older = new File(file.getPath() + "." + i);
+            if (older.exists())
+            {
+                File target = new File(file.getPath() + "." + (i+1));
+                if (target.exists()) target.delete();
+                older.renameTo(target);
+            }
+        }
+        File first = new File(file.getPath() + ".1");
+        if (first.exists()) first.delete();
+        file.renameTo(first);
+        this.open();
+    }
+
+    @Override
+    public void close()
+    {
+        if (writer == null) return;
+        try
+        {
+            writer.close();
+        }
+        catch (IOException ignored)
+        {}
+        writer = null;
+    }
+}
@@ -0,0 +1,264 @@
+package ws.nmathe.saber.commands.general;
+
+import org.junit.Test;
+import ws.nmathe.saber.core.schedule.EventRecurrence;
+import ws.nmathe.saber.utils.ParsingUtilities;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * checks that the create command's option grammar parses the same options as the
+ * option loop of the command's action before the grammar replaced it
+ */
+public class CreateCommandParseTest
+{
+    private static final ZoneId ZONE = ZoneId.of("America/New_York");
+    private static final String HEAD = "!create";
+
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy/M/d");
+    private static final LocalDate TODAY = LocalDate.now(ZONE);
+
+    @Test
+    public void grammarMatchesLegacyParse()
+    {
+        for (String[] args : commands())
+        {
+            Options expected = legacy(args);
+            CreateCommand.Options actual = parse(args);
+            String command = String.join(" | ", args);
+
+            assertEquals(command, day(expected.startDate), day(actual.startDate));
+            assertEquals(command, day(expected.endDate), day(actual.endDate));
+            assertEquals(command, expected.repeat, actual.repeat);
+            assertEquals(command, expected.url, actual.url);
+            assertEquals(command, expected.image, actual.image);
+            assertEquals(command, expected.thumbnail, actual.thumbnail);
+            assertEquals(command, expected.expire, actual.expire);
+            assertEquals(command, expected.deadline, actual.deadline);
+            assertEquals(command, expected.count, actual.count);
+            assertEquals(command, expected.location, actual.location);
+            assertEquals(command, expected.color, actual.color);
+            assertEquals(command, expected.comments, actual.comments);
+        }
+    }
+
+    @Test
+    public void countAcceptsEveryAlias()
+    {
+        // the legacy verify only accepted "co" and the legacy action only "c"
+        for (String alias : new String[]{"c", "co", "count"})
+        {
+            assertEquals(Integer.valueOf(3), parse(new String[]{alias, "3"}).count);
+        }
+        assertNull(parse(new String[]{"count", "off"}).count);
+    }
+
+    @Test
+    public void invalidOptionsAreRejected()
+    {
+        String[][] invalid = {
+                {"repeat"},
+                {"url", "example.com"},
+                {"count", "0"},
+                {"date", "not a date"},
+                {"color", "red"},
+                {"expire", TODAY.minusDays(2).format(FORMAT)}};
+        for (String[] args : invalid)
+        {
+            assertFalse(String.join(" | ", args), CreateCommand.GRAMMAR.parse(options(), args, 0, HEAD).isEmpty());
+        }
+    }
+
+    /**
+     * @return option lists which the legacy verify accepted, and which the legacy action parsed as intended
+     *         (urls are only turned off, as verifying a url connects to it)
+     */
+    private static List<String[]> commands()
+    {
+        String date = TODAY.plusDays(30).format(FORMAT);
+        String later = TODAY.plusDays(31).format(FORMAT);
+        return Arrays.asList(
+                new String[]{},
+                new String[]{"a comment", "another comment"},
+                new String[]{"date", date},
+                new String[]{"d", date, "a comment"},
+                new String[]{"start-date", date, "end-date", later},
+                new String[]{"sd", date, "ed", later, "repeat", "daily"},
+                new String[]{"REPEAT", "Mon, Wed", "Url", "off"},
+                new String[]{"r", "fri", "u", "off", "im", "null", "th", "off"},
+                new String[]{"image", "off", "thumbnail", "null"},
+                new String[]{"expire", later, "deadline", date},
+                new String[]{"ex", "never", "dl", date},
+                new String[]{"count", "10", "location", "The usual place"},
+                new String[]{"c", "2", "lo", "off"},
+                new String[]{"color", "0x4286f4", "comment"},
+                new String[]{"tomorrow"},
+                new String[]{"overmorrow", "a comment", "date", date},
+                new String[]{"start-date", date, "repeat", "mon, wed, fri", "url", "off", "image", "null", "expire", later,
+                        "deadline", date, "count", "10", "location", "The usual place", "color", "0x4286f4",
+                        "first comment", "second comment"});
+    }
+
+    private static CreateCommand.Options parse(String[] args)
+    {
+        CreateCommand.Options options = options();
+        String err = CreateCommand.GRAMMAR.parse(options, args, 0, HEAD);
+        assertEquals(String.join(" | ", args), "", err);
+        return options;
+    }
+
+    private static CreateCommand.Options options()
+    {
+        CreateCommand.Options options = new CreateCommand.Options();
+        options.zone = ZONE;
+        options.startTime = LocalTime.of(17, 0);
+        options.startDate = ZonedDateTime.now(ZONE).plusDays(1);
+        return options;
+    }
+
+    private static LocalDate day(ZonedDateTime date)
+    {
+        return date == null ? null : date.toLocalDate();
+    }
+
+    /**
+     * the option loop of the create command's action, as it was before the option grammar
+     */
+    private static Options legacy(String[] args)
+    {
+        Options options = new Options();
+        ZoneId zone = ZONE;
+        int index = 0;
+        while(index < args.length)
+        {
+            switch(args[index++].toLowerCase())
+            {
+                case "d":
+                case "date":
+                    options.startDate = ParsingUtilities.parseDate(args[index].toLowerCase(), zone);
+                    options.endDate = options.startDate;
+                    index++;
+                    break;
+
+                case "sd":
+                case "start date":
+                case "start-date":
+                    options.startDate = ParsingUtilities.parseDate(args[index].toLowerCase(), zone);
+                    index++;
+                    break;
+
+                case "ed":
+                case "end date":
+                case "end-date":
+                    options.endDate = ParsingUtilities.parseDate(args[index].toLowerCase(), zone);
+                    index++;
+                    break;
+
+                case "r":
+                case "repeats":
+                case "repeat":
+                    options.repeat = EventRecurrence.parseRepeat(args[index].toLowerCase());
+                    index++;
+                    break;
+
+                case "u":
+                case "url":
+                    options.url = ParsingUtilities.parseUrl(args[index]);
+                    index++;
+                    break;
+
+                case "ex":
+                case "expire":
+                    options.expire = ParsingUtilities.parseNullableDate(args[index], zone);
+                    index++;
+                    break;
+
+                case "im":
+                case "image":
+                    options.image = ParsingUtilities.parseUrl(args[index]);
+                    index++;
+                    break;
+
+                case "th":
+                case "thumbnail":
+                    options.thumbnail = ParsingUtilities.parseUrl(args[index]);
+                    index++;
+                    break;
+
+                case "deadline":
+                case "dl":
+                    options.deadline = ParsingUtilities.parseNullableDate(args[index], zone);
+                    index++;
+                    break;
+
+                case "c":
+                case "count":
+                    options.count = Integer.parseInt(args[index]);
+                    index++;
+                    break;
+
+                case "lo":
+                case "location":
+                    if (args[index].equalsIgnoreCase("off"))
+                        options.location = null;
+                    else
+                        options.location = args[index];
+                    index++;
+                    break;
+
+                case "today":
+                    options.startDate = ZonedDateTime.now(zone);
+                    options.endDate = ZonedDateTime.now(zone);
+                    break;
+
+                case "tomorrow":
+                    options.startDate = ZonedDateTime.now(zone).plusDays(1);
+                    options.endDate = ZonedDateTime.now(zone).plusDays(1);
+                    break;
+
+                case "overmorrow":
+                    options.startDate = ZonedDateTime.now(zone).plusDays(2);
+                    options.endDate = ZonedDateTime.now(zone).plusDays(2);
+                    break;
+
+                case "color":
+                    options.color = args[index];
+                    index++;
+                    break;
+
+                default:
+                    options.comments.add(args[index-1]);
+                    break;
+            }
+        }
+        return options;
+    }
+
+    /**
+     * the variables the legacy action parsed into
+     */
+    private static class Options
+    {
+        ZonedDateTime startDate = ZonedDateTime.now(ZONE).plusDays(1);
+        ZonedDateTime endDate   = null;
+        int repeat              = 0;
+        String url              = null;
+        String image            = null;
+        String thumbnail        = null;
+        ZonedDateTime expire    = null;
+        ZonedDateTime deadline  = null;
+        Integer count           = null;
+        String location         = null;
+        String color            = null;
+        ArrayList<String> comments = new ArrayList<>();
+    }
+}
@@ -0,0 +1,196 @@
+package ws.nmathe.saber.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * checks that stats reports are coalesced per shard and that a failing endpoint backs off
+ */
+public class StatsReporterTest
+{
+    private static final String BOT_ID = "1234";
+
+    private long now = 1_000_000;
+    private final List<Long> failures = new ArrayList<>();   // backoff of each failed post
+
+    @Test
+    public void markingDirtyManyTimesPostsOnce()
+    {
+        FakeEndpoint endpoint = new FakeEndpoint();
+        StatsReporter reporter = this.reporter(endpoint);
+
+        for (int i=0; i<100; i++)
+        {
+            reporter.markDirty(3);
+        }
+        reporter.report();
+        assertEquals(1, endpoint.posts.size());
+        assertEquals(Integer.valueOf(3), endpoint.posts.get(0).shardId);
+
+        // nothing changed since the last report
+        reporter.report();
+        assertEquals(1, endpoint.posts.size());
+    }
+
+    @Test
+    public void eachDirtyShardIsPostedOnce()
+    {
+        FakeEndpoint endpoint = new FakeEndpoint();
+        StatsReporter reporter = this.reporter(endpoint);
+
+        for (int i=0; i<30; i++)
+        {
+            reporter.markDirty(i % 3);
+        }
+        reporter.markDirty(null);
+        reporter.report();
+        assertEquals(4, endpoint.posts.size());
+    }
+
+    @Test
+    public void failedPostBacksOffAndRetries()
+    {
+        FakeEndpoint endpoint = new FakeEndpoint();
+        StatsReporter reporter = this.reporter(endpoint);
+
+        endpoint.failures = 2;
+        reporter.markDirty(0);
+        reporter.report();
+        assertEquals(1, endpoint.attempts);
+
+        // the shard stays dirty, but the endpoint is not tried again until it's backoff passes
+        reporter.report();
+        now += StatsReporter.REPORT_INTERVAL*1000 - 1;
+        reporter.report();
+        assertEquals(1, endpoint.attempts);
+
+        // the second failure doubles the backoff
+        now += 1;
+        reporter.report();
+        assertEquals(2, endpoint.attempts);
+        now += StatsReporter.REPORT_INTERVAL*2000 - 1;
+        reporter.report();
+        assertEquals(2, endpoint.attempts);
+
+        now += 1;
+        reporter.report();
+        assertEquals(3, endpoint.attempts);
+        assertEquals(1, endpoint.posts.size());
+        assertEquals(Arrays.asList(StatsReporter.REPORT_INTERVAL, StatsReporter.REPORT_INTERVAL*2), failures);
+
+        // success clears the backoff and the shard
+        reporter.report();
+        assertEquals(3, endpoint.attempts);
+        reporter.markDirty(0);
+        reporter.report();
+        assertEquals(4, endpoint.attempts);
+    }
+
+    @Test
+    public void backoffIsCapped()
+    {
+        FakeEndpoint endpoint = new FakeEndpoint();
+        StatsReporter reporter = this.reporter(endpoint);
+
+        endpoint.failures = Integer.MAX_VALUE;
+        reporter.markDirty(0);
+        for (int i=0; i<20; i++)
+        {
+            reporter.report();
+            now += StatsReporter.MAX_BACKOFF*1000;
+        }
+        assertEquals(20, endpoint.attempts);
+        assertEquals(Long.valueOf(StatsReporter.MAX_BACKOFF), failures.get(failures.size()-1));
+    }
+
+    @Test
+    public void failingEndpointDoesNotHoldBackOthers()
+    {
+        FakeEndpoint failing = new FakeEndpoint();
+        FakeEndpoint working = new FakeEndpoint();
+        StatsReporter reporter = this.reporter(failing, working);
+
+        failing.failures = Integer.MAX_VALUE;
+        reporter.markDirty(0);
+        reporter.report();
+        assertEquals(1, failing.attempts);
+        assertEquals(1, working.posts.size());
+
+        // the failing endpoint is still backing off
+        reporter.report();
+        assertEquals(1, failing.attempts);
+    }
+
+    @Test
+    public void reportWaitsForAConnectedShard()
+    {
+        FakeEndpoint endpoint = new FakeEndpoint();
+        String[] botId = {null};
+        StatsReporter reporter = new StatsReporter(() -> botId[0], this::stats, () -> now, this::failed);
+        reporter.register(endpoint);
+
+        reporter.markDirty(0);
+        reporter.report();
+        assertEquals(0, endpoint.attempts);
+
+        botId[0] = BOT_ID;
+        reporter.report();
+        assertEquals(1, endpoint.posts.size());
+    }
+
+    private StatsReporter reporter(FakeEndpoint... endpoints)
+    {
+        StatsReporter reporter = new StatsReporter(() -> BOT_ID, this::stats, () -> now, this::failed);
+        for (FakeEndpoint endpoint : endpoints)
+        {
+            reporter.register(endpoint);
+        }
+        return reporter;
+    }
+
+    private void failed(String endpoint, StatsReporter.Stats stats, long backoff, Exception e)
+    {
+        failures.add(backoff);
+    }
+
+    private StatsReporter.Stats stats(int shardId)
+    {
+        return shardId == StatsReporter.UNSHARDED
+                ? new StatsReporter.Stats(null, 0, 100)
+                : new StatsReporter.Stats(shardId, 4, 25);
+    }
+
+    /**
+     * records it's posts, failing the first few
+     */
+    private static class FakeEndpoint implements StatsReporter.Endpoint
+    {
+        final List<StatsReporter.Stats> posts = new ArrayList<>();
+        int attempts = 0;
+        int failures = 0;
+
+        @Override
+        public String name()
+        {
+            return "fake";
+        }
+
+        @Override
+        public void post(String botId, StatsReporter.Stats stats) throws Exception
+        {
+            assertEquals(BOT_ID, botId);
+            attempts++;
+            if (failures > 0)
+            {
+                failures--;
+                throw new Exception("unavailable");
+            }
+            posts.add(stats);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ws.nmathe.saber.core.google;
+
+import org.jsoup.Jsoup;
+import org.jsoup.helper.StringUtil;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * checks the streaming stripper against the jsoup DOM traversal it replaced
+ */
+public class HTMLStripperTest
+{
+    private static final String[] DESCRIPTIONS = {
+            "",
+            "plain description",
+            "two\nlines\n\nand a blank",
+            "  padded   text\twith   tabs  ",
+            "!start 10m\n!end 20m\nsome text",
+            "<b>bold</b> and <i>italic</i> text",
+            "<p>first paragraph</p><p>second paragraph</p>",
+            "<p>unclosed paragraph<p>another one",
+            "line one<br>line two<br/>line three<br />",
+            "<ul><li>one</li><li>two</li><li>three</li></ul>",
+            "<ol><li>first<li>second</ol>after",
+            "<dl><dt>term</dt><dd>definition</dd></dl>",
+            "<h1>title</h1>body<h2>sub</h2>more",
+            "<table><tr><td>a</td><td>b</td></tr><tr><td>c</td></tr></table>",
+            "<div>nested <span>tags <b>here</b></span></div>",
+            "<a href=\"https://example.com/?a=1&amp;b=2\">link</a>",
+            "Tom &amp; Jerry &lt;3 &gt; &quot;quoted&quot; &apos;single&apos;",
+            "non&nbsp;breaking&nbsp;&nbsp;spaces",
+            "It&rsquo;s caf&eacute; time &mdash; &hellip; &copy; &euro;5",
+            "numeric &#169; &#x2014; &#8217; references",
+            "missing semicolons &amp &lt &gt &copy &nbsp end",
+            "a bare & ampersand and &unknown; entity",
+            "&amp;amp; double escaped",
+            "<!-- a comment -->visible<!DOCTYPE html>",
+            "<script>var x = '<b>';</script>after script<style>p { }</style>",
+            "mixed\n<b>html</b> and\nnewlines<br>here",
+            "<p>!start 10m</p><p>!expire 2d</p><p>&laquo;text&raquo;</p>",
+            "unterminated <b tag",
+            "less than < sign and 3<4",
+            // tokenizer and tree building cases
+            "<a href='x>y'>link</a> after",
+            "<a title=\"a>b\" href=x>double quoted</a>",
+            "<a title=x'y>unquoted</a>",
+            "<div><p>x</div>y",
+            "<div><p>one<div>two</div>three</div>four",
+            "stray</p>close",
+            "<span><p>x</span>y",
+            "<b><p>bold</b>after",
+            "<dl><dt>a<dd>b<dt>c<dd>d</dl>",
+            "<h1>one<h2>two</h2>three",
+            "<p>para<table><tr><td>cell</td></tr></table>after",
+            "<p>para<ul><li>item</ul>after",
+            "<ul><li>a<li>b</ul><p>c",
+            "<textarea><b>not bold</b> &amp; text</textarea>after",
+            "<title>a &amp; b</title>text",
+            "<xmp><b>raw</b> &amp;</xmp>after",
+            "<SCRIPT>var a = '</b>';</SCRIPT>upper script<Style>b{}</STYLE>",
+            "<script>never closed",
+            "<?xml version=\"1.0\"?>processing",
+            "</>empty close and </ bogus>end",
+            "<p/>self closed<div/>div",
+            "<my-tag>custom</my-tag><p-x>dashed",
+            "<!---->empty comment<!-->x<!--->y",
+            "<p unterminated",
+    };
+
+    @Test
+    public void matchesJsoupTraversal()
+    {
+        for (String description : DESCRIPTIONS)
+        {
+            assertEquals(description, jsoup(description.replace("\n", "<br>")),
+                    HTMLStripper.cleanDescription(description));
+        }
+    }
+
+    @Test
+    public void linesMatchJsoupTraversal()
+    {
+        for (String description : DESCRIPTIONS)
+        {
+            List<String> expected = new ArrayList<>();
+            for (String line : jsoup(description.replace("\n", "<br>")).split("\n"))
+            {
+                expected.add(line.trim());
+            }
+
+            List<String> actual = new ArrayList<>();
+            HTMLStripper.forEachLine(description, line -> actual.add(line.trim()));
+
+            assertEquals(description, trimTrailing(expected), trimTrailing(actual));
+        }
+    }
+
+    @Test
+    public void decodesEntitiesWithoutSemicolon()
+    {
+        assertEquals(Arrays.asList("a & b \u00A9 c"), lines("a &amp b &copy c"));
+    }
+
+    private static List<String> lines(String description)
+    {
+        List<String> lines = new ArrayList<>();
+        HTMLStripper.forEachLine(description, lines::add);
+        return lines;
+    }
+
+    /** String.split drops trailing empty lines */
+    private static List<String> trimTrailing(List<String> lines)
+    {
+        int end = lines.size();
+        while (end > 0 && lines.get(end-1).isEmpty()) end--;
+        return lines.subList(0, end);
+    }
+
+    /** the jsoup traversal used by the stripper before it was streamed */
+    private static String jsoup(String description)
+    {
+        StringBuilder accum = new StringBuilder();
+        new NodeTraversor(new NodeVisitor()
+        {
+            public void head(Node node, int depth)
+            {
+                String name = node.nodeName();
+                if (node instanceof TextNode)
+                    accum.append(((TextNode) node).text());
+                else if (name.equals("li"))
+                    accum.append("\n * ");
+                else if (name.equals("dt"))
+                    accum.append("  ");
+                else if (StringUtil.in(name, "p", "h1", "h2", "h3", "h4", "h5", "tr"))
+                    accum.append("\n");
+            }
+
+            public void tail(Node node, int depth)
+            {
+                String name = node.nodeName();
+                if (StringUtil.in(name, "br", "dd", "dt", "p", "h1", "h2", "h3", "h4", "h5"))
+                    accum.append("\n");
+            }
+        }).traverse(Jsoup.parse(description));
+        return accum.toString();
+    }
+}
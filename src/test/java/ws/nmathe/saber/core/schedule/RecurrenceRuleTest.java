@@ -0,0 +1,277 @@
+package ws.nmathe.saber.core.schedule;
+
+import org.junit.Test;
+
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * property tests of the compiled recurrence rules, run over randomly generated rules and start times
+ * which fall around the daylight savings transitions of several zones
+ */
+public class RecurrenceRuleTest
+{
+    private static final ZoneId[] ZONES = {
+            ZoneId.of("America/New_York"),
+            ZoneId.of("Europe/London"),
+            ZoneId.of("Australia/Sydney"),      // transitions in the opposite half of the year
+            ZoneId.of("America/St_Johns"),      // half hour offset
+            ZoneId.of("Asia/Kolkata"),          // no transitions
+    };
+    private static final int CASES = 2000;
+
+    private final Random random = new Random(5545);
+
+    @Test
+    public void nextMatchesPreviousImplementation()
+    {
+        for (int i=0; i<CASES; i++)
+        {
+            ZonedDateTime date = this.randomStart();
+            int recurrence = this.randomRecurrence(true);
+            assertEquals(describe(recurrence, date),
+                    legacyNext(recurrence, date), RecurrenceRule.compile(recurrence).next(date));
+        }
+    }
+
+    @Test
+    public void occurrencesKeepTheirTimeOfDay()
+    {
+        for (int i=0; i<CASES; i++)
+        {
+            ZonedDateTime first = this.randomStart();
+            int recurrence = this.randomRecurrence(false);
+            RecurrenceRule rule = RecurrenceRule.compile(recurrence);
+            RecurrenceRule.OccurrenceIterator occurrences = rule.iterator(first);
+
+            long previous = occurrences.nextLong();
+            assertEquals(describe(recurrence, first), first.toEpochSecond(), previous);
+            for (int k=1; k<=40; k++)
+            {
+                long epochSecond = occurrences.nextLong();
+                assertTrue(describe(recurrence, first), epochSecond > previous);
+
+                if ((recurrence & 0b111) == EventRecurrence.MINUTE_MODE)
+                {   // minute intervals are absolute durations, unaffected by offset changes
+                    assertEquals(describe(recurrence, first), (recurrence>>3)*60L, epochSecond - previous);
+                }
+                else
+                {   // others keep the first occurrence's local time, unless that time does not exist on the day
+                    ZonedDateTime occurrence = Instant.ofEpochSecond(epochSecond).atZone(first.getZone());
+                    LocalDateTime intended = LocalDateTime.of(occurrence.toLocalDate(), first.toLocalTime());
+                    if (!first.getZone().getRules().getValidOffsets(intended).isEmpty())
+                    {
+                        assertEquals(describe(recurrence, first) + " #" + k, first.toLocalTime(), occurrence.toLocalTime());
+                    }
+                }
+                previous = epochSecond;
+            }
+        }
+    }
+
+    @Test
+    public void nthOccurrenceMatchesIteration()
+    {
+        for (int i=0; i<CASES; i++)
+        {
+            ZonedDateTime first = this.randomStart();
+            int recurrence = this.randomRecurrence(false);
+            RecurrenceRule rule = RecurrenceRule.compile(recurrence);
+            RecurrenceRule.OccurrenceIterator occurrences = rule.iterator(first);
+            occurrences.nextLong();
+
+            for (int k=1; k<=40; k++)
+            {
+                assertEquals(describe(recurrence, first) + " #" + k,
+                        occurrences.nextLong(), rule.next(first, k).toEpochSecond());
+            }
+        }
+    }
+
+    @Test
+    public void stepsUntilIsLeastStepNotBeforeNow()
+    {
+        for (int i=0; i<CASES; i++)
+        {
+            ZonedDateTime date = this.randomStart();
+            int recurrence = this.randomRecurrence(false);
+            RecurrenceRule rule = RecurrenceRule.compile(recurrence);
+            ZonedDateTime now = date.plusMinutes(random.nextInt(this.span(recurrence)));
+
+            long n = rule.stepsUntil(date, now);
+            String message = describe(recurrence, date) + " now=" + now;
+            assertTrue(message, n >= 1);
+            assertFalse(message, rule.next(date, n).isBefore(now));
+            if (n > 1) assertTrue(message, rule.next(date, n-1).isBefore(now));
+        }
+    }
+
+    @Test
+    public void countAfterMatchesIteration()
+    {
+        for (int i=0; i<CASES; i++)
+        {
+            ZonedDateTime first = this.randomStart();
+            int recurrence = this.randomRecurrence(false);
+            RecurrenceRule rule = RecurrenceRule.compile(recurrence);
+            ZonedDateTime until = first.plusMinutes(random.nextInt(this.span(recurrence)));
+
+            long expected = 0;
+            RecurrenceRule.OccurrenceIterator occurrences = rule.iterator(first);
+            occurrences.nextLong();
+            while (occurrences.nextLong() <= until.toEpochSecond()) expected++;
+
+            assertEquals(describe(recurrence, first) + " until=" + until, expected, rule.countAfter(first, until));
+        }
+    }
+
+    @Test
+    public void countRemainingCountsPastOccurrences()
+    {
+        for (int i=0; i<CASES; i++)
+        {
+            ZonedDateTime first = this.randomStart();
+            int recurrence = this.randomRecurrence(false);
+            int count = 1 + random.nextInt(30);
+            EventRecurrence eventRecurrence = new EventRecurrence(recurrence, first).setCount(count);
+
+            // each occurrence, and a moment after it, across the event's run
+            RecurrenceRule rule = RecurrenceRule.compile(recurrence);
+            for (int k=1; k<count; k++)
+            {
+                ZonedDateTime occurrence = rule.next(first, k);
+                String message = describe(recurrence, first) + " count=" + count + " #" + k;
+                assertEquals(message, Integer.valueOf(count - k), eventRecurrence.countRemaining(occurrence));
+                assertEquals(message, Integer.valueOf(count - k), eventRecurrence.countRemaining(occurrence.plusSeconds(1)));
+                assertEquals(message, count - k > 1, eventRecurrence.shouldRepeat(occurrence));
+            }
+        }
+    }
+
+    @Test
+    public void rulesAreCompiledOnce()
+    {
+        int recurrence = EventRecurrence.parseRepeat("mon, wed, fri");
+        assertSame(RecurrenceRule.compile(recurrence), RecurrenceRule.compile(recurrence));
+        assertSame(RecurrenceRule.compile(recurrence).toString(),
+                new EventRecurrence(recurrence, ZonedDateTime.now()).toString());
+    }
+
+    /**
+     * @return a start time within a few days of a daylight savings transition, often at the hour of the transition
+     */
+    private ZonedDateTime randomStart()
+    {
+        ZoneId zone = ZONES[random.nextInt(ZONES.length)];
+        List<ZonedDateTime> transitions = new ArrayList<>();
+        for (int year=2016; year<=2020; year++)
+        {
+            for (Month month : new Month[]{Month.MARCH, Month.APRIL, Month.OCTOBER, Month.NOVEMBER})
+            {
+                transitions.add(ZonedDateTime.of(year, month.getValue(), 1, 2, 0, 0, 0, zone));
+            }
+        }
+        ZonedDateTime near = transitions.get(random.nextInt(transitions.size()))
+                .plusDays(random.nextInt(45) - 10);
+
+        LocalTime time = random.nextBoolean()
+                ? LocalTime.of(1 + random.nextInt(3), 30 * random.nextInt(2))    // around the transition hour
+                : LocalTime.of(random.nextInt(24), 15 * random.nextInt(4));
+        return ZonedDateTime.of(near.toLocalDate(), time, zone);
+    }
+
+    /**
+     * @param legacyCompatible only generate rules whose arithmetic the previous implementation did without
+     *                         resolving intermediate dates in the zone
+     */
+    private int randomRecurrence(boolean legacyCompatible)
+    {
+        int[] modes = legacyCompatible
+                ? new int[]{EventRecurrence.DAILY_MODE, EventRecurrence.MINUTE_MODE, EventRecurrence.YEAR_MODE,
+                            EventRecurrence.WEEK_MODE}
+                : new int[]{EventRecurrence.DAILY_MODE, EventRecurrence.MINUTE_MODE, EventRecurrence.YEAR_MODE,
+                            EventRecurrence.WEEK_MODE, EventRecurrence.MONTH1_MODE, EventRecurrence.MONTH2_MODE};
+        int mode = modes[random.nextInt(modes.length)];
+        int data;
+        switch (mode)
+        {
+            case EventRecurrence.DAILY_MODE:
+                data = 1 + random.nextInt(10);
+                break;
+            case EventRecurrence.MINUTE_MODE:
+                data = new int[]{15, 30, 45, 60, 90, 120, 720, 1440}[random.nextInt(8)];
+                break;
+            case EventRecurrence.YEAR_MODE:
+                data = 1 + random.nextInt(3);
+                break;
+            case EventRecurrence.WEEK_MODE:
+                data = (1 + random.nextInt(127)) | (legacyCompatible ? 1 : 1 + random.nextInt(4)) << 7;
+                break;
+            case EventRecurrence.MONTH1_MODE:
+                data = (1 + random.nextInt(7)) | (1 + random.nextInt(4)) << 3 | (1 + random.nextInt(3)) << 6;
+                break;
+            default:
+                data = random.nextInt(29) | (1 + random.nextInt(6)) << 5;
+                break;
+        }
+        return mode | data << 3;
+    }
+
+    /**
+     * @return minutes over which to choose a time, long enough to cover many occurrences of the rule
+     */
+    private int span(int recurrence)
+    {
+        int mode = recurrence & 0b111;
+        if (mode == EventRecurrence.MINUTE_MODE) return 60*24*30;
+        if (mode == EventRecurrence.YEAR_MODE) return 60*24*366*6;
+        return 60*24*366*2;
+    }
+
+    private static String describe(int recurrence, ZonedDateTime date)
+    {
+        return "recurrence=" + recurrence + " (" + RecurrenceRule.compile(recurrence) + ") date=" + date;
+    }
+
+    /**
+     * EventRecurrence.next as it was before rules were compiled, for the modes it computed without
+     * resolving intermediate dates
+     */
+    private static ZonedDateTime legacyNext(int recurrence, ZonedDateTime date)
+    {
+        int mode = recurrence & 0b111;
+        int data = recurrence >> 3;
+        switch (mode)
+        {
+            case EventRecurrence.DAILY_MODE:
+                return date.plusDays(data);
+            case EventRecurrence.MINUTE_MODE:
+                return date.plusMinutes(data);
+            case EventRecurrence.YEAR_MODE:
+                return date.plusYears(data);
+            case EventRecurrence.WEEK_MODE:
+                int day   = 1<<(date.getDayOfWeek().getValue()-1);
+                int weeks = (data>>7)==0 ? 1:data>>7;
+                data = data & 0b1111111;
+
+                if (data == 0 || day == data) return date.plusWeeks(weeks);
+
+                int count = 1;
+                if (day<(1<<6)) day<<=1;
+                else { day = 1; date = date.plusWeeks(weeks-1); }
+                while (day != (data&day))
+                {
+                    if (day<(1<<6)) day<<=1;
+                    else { day = 1; date = date.plusWeeks(weeks-1); }
+                    count++;
+                }
+                return date.plusDays(count);
+            default:
+                return date;
+        }
+    }
+}
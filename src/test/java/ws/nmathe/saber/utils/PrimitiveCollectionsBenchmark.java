@@ -0,0 +1,138 @@
+package ws.nmathe.saber.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Allocation harness for the primitive concurrent collections, compares each against the boxed
+ * collection it replaced on the per-message work done by the event listener and the entry processor:
+ *  - blacklist checks (three lookups per message, snowflakes previously keyed by their string)
+ *  - rate limiter timestamps (a lookup and an update per command)
+ *  - entry ID sets (an add, lookup, and remove per processed event)
+ *
+ * run with: java -cp target/classes:target/test-classes ws.nmathe.saber.utils.PrimitiveCollectionsBenchmark
+ */
+public class PrimitiveCollectionsBenchmark
+{
+    private static final int MESSAGES = 2_000_000;
+    private static final int USERS = 50_000;
+    private static final int ROUNDS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink = 0;   // keeps results live
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(42);
+        long[] authors = new long[MESSAGES];
+        for (int i=0; i<MESSAGES; i++)
+        {   // snowflakes of a pool of users, so that lookups mostly hit
+            authors[i] = 100_000_000_000_000_000L + random.nextInt(USERS) * 4_194_304L;
+        }
+
+        // blacklist holding a few hundred entries
+        Set<String> boxedBlacklist = ConcurrentHashMap.newKeySet();
+        ConcurrentLongSet blacklist = new ConcurrentLongSet();
+        for (int i=0; i<500; i++)
+        {
+            boxedBlacklist.add(Long.toUnsignedString(authors[i]));
+            blacklist.add(authors[i]);
+        }
+
+        Map<String, Long> boxedTimestamps = new ConcurrentHashMap<>();
+        ConcurrentLongLongMap timestamps = new ConcurrentLongLongMap();
+
+        Set<Integer> boxedEntries = ConcurrentHashMap.newKeySet();
+        ConcurrentIntSet entries = new ConcurrentIntSet();
+
+        for (int round=0; round<ROUNDS; round++)
+        {
+            boolean report = round == ROUNDS-1;     // earlier rounds warm up the JIT
+
+            measure(report, "blacklist (Set<String>)", () ->
+            {
+                for (long author : authors)
+                {
+                    for (int i=0; i<3; i++)
+                    {   // the listener converted the snowflake to it's string for each check
+                        if (boxedBlacklist.contains(Long.toUnsignedString(author))) sink++;
+                    }
+                }
+            });
+            measure(report, "blacklist (ConcurrentLongSet)", () ->
+            {
+                for (long author : authors)
+                {
+                    for (int i=0; i<3; i++)
+                    {
+                        if (blacklist.contains(author)) sink++;
+                    }
+                }
+            });
+
+            measure(report, "rate limiter (Map<String, Long>)", () ->
+            {
+                long now = 1_500_000_000_000L;
+                for (long author : authors)
+                {
+                    String key = Long.toUnsignedString(author);
+                    Long last = boxedTimestamps.get(key);
+                    if (last != null) sink += now - last;
+                    boxedTimestamps.put(key, now++);
+                }
+            });
+            measure(report, "rate limiter (ConcurrentLongLongMap)", () ->
+            {
+                long now = 1_500_000_000_000L;
+                for (long author : authors)
+                {
+                    sink += now - timestamps.get(author, now);
+                    timestamps.put(author, now++);
+                }
+            });
+
+            measure(report, "entry ids (Set<Integer>)", () ->
+            {
+                for (int i=0; i<MESSAGES; i++)
+                {
+                    int id = (int) (authors[i] % 0xFFFF);
+                    boxedEntries.add(id);
+                    if (boxedEntries.contains(id)) sink++;
+                    boxedEntries.remove(id);
+                }
+            });
+            measure(report, "entry ids (ConcurrentIntSet)", () ->
+            {
+                for (int i=0; i<MESSAGES; i++)
+                {
+                    int id = (int) (authors[i] % 0xFFFF);
+                    entries.add(id);
+                    if (entries.contains(id)) sink++;
+                    entries.remove(id);
+                }
+            });
+        }
+        System.out.println("(" + sink + ")");
+    }
+
+    private static void measure(boolean report, String name, Runnable work)
+    {
+        long thread = Thread.currentThread().getId();
+        long bytes = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        work.run();
+        long elapsed = System.nanoTime() - start;
+        bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+
+        if (report)
+        {
+            System.out.printf("%-40s %8.1f bytes/message %8.1f ns/message%n",
+                    name, (double) bytes / MESSAGES, (double) elapsed / MESSAGES);
+        }
+    }
+}